@@ -39,16 +39,26 @@ import com.linkedin.pinot.broker.servlet.PinotClientRequestServlet;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.common.datatable.DataTableCustomSerDe;
 import com.linkedin.pinot.core.query.reduce.DefaultReduceService;
 import com.linkedin.pinot.requestHandler.BrokerRequestHandler;
+import com.linkedin.pinot.requestHandler.BrokerResultCache;
 import com.linkedin.pinot.routing.CfgBasedRouting;
 import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
 import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.SegmentPruningService;
 import com.linkedin.pinot.routing.TimeBoundaryService;
+import com.linkedin.pinot.transport.common.LatencyAwareReplicaSelection;
+import com.linkedin.pinot.transport.common.ReplicaSelection;
+import com.linkedin.pinot.transport.common.ReplicaSelection.ReplicaSelectionPolicy;
+import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
 import com.linkedin.pinot.transport.conf.TransportClientConf;
 import com.linkedin.pinot.transport.conf.TransportClientConf.RoutingMode;
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
+import com.linkedin.pinot.transport.config.SpeculativeRequestConfig;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.MultiplexedNettyClientPool;
 import com.linkedin.pinot.transport.netty.NettyClientConnection;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPool;
@@ -66,6 +76,9 @@ public class BrokerServerBuilder {
   private static final String CLIENT_CONFIG_PREFIX = "pinot.broker.client";
   private static final String METRICS_CONFIG_PREFIX = "pinot.broker.metrics";
   private static final String BROKER_TIME_OUT_CONFIG = "pinot.broker.time.out";
+  private static final String RESULT_CACHE_CONFIG_PREFIX = "pinot.broker.result.cache";
+  private static final String REPLICA_SELECTION_POLICY_CONFIG = "pinot.broker.replica.selection.policy";
+  private static final String SPECULATIVE_REQUEST_CONFIG_PREFIX = "pinot.broker.speculative.request";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerServerBuilder.class);
   private static final long DEFAULT_BROKER_TIME_OUT = 10 * 1000L;
@@ -144,12 +157,22 @@ public class BrokerServerBuilder {
             .getThreadPool().getIdleTimeoutMs(), TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
     ConnectionPoolConfig connPoolCfg = conf.getConnPool();
 
-    _connPool =
-        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(connPoolCfg.getMinConnectionsPerServer(),
-            connPoolCfg.getMaxConnectionsPerServer(), connPoolCfg.getIdleTimeoutMs(),
-            connPoolCfg.getMaxBacklogPerServer(), _resourceManager, _poolTimeoutExecutor, _requestSenderPool, _registry);
-    // MoreExecutors.sameThreadExecutor(), _registry);
-    _resourceManager.setPool(_connPool);
+    if (connPoolCfg.isMultiplexed()) {
+      // Requests are pipelined on a few shared connections per server instead of checking out one each
+      _connPool =
+          new MultiplexedNettyClientPool(connPoolCfg.getMultiplexedConnectionsPerServer(),
+              connPoolCfg.getMaxOutstandingRequestsPerConnection(), _eventLoopGroup, new HashedWheelTimer(),
+              clientMetrics);
+    } else {
+      _connPool =
+          new KeyedPoolImpl<ServerInstance, NettyClientConnection>(connPoolCfg.getMinConnectionsPerServer(),
+              connPoolCfg.getMaxConnectionsPerServer(), connPoolCfg.getIdleTimeoutMs(),
+              connPoolCfg.getMaxBacklogPerServer(), _resourceManager, _poolTimeoutExecutor, _requestSenderPool,
+              _registry);
+      // MoreExecutors.sameThreadExecutor(), _registry);
+      _resourceManager.setPool(_connPool);
+    }
+    LOGGER.info("Broker connections to servers multiplexed - " + connPoolCfg.isMultiplexed());
 
     // Setup Routing Table
     if (conf.getRoutingMode() == RoutingMode.CONFIG) {
@@ -160,8 +183,8 @@ public class BrokerServerBuilder {
       // Helix based routing is already initialized.
     }
 
-    // Setup ScatterGather
-    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    // Setup ScatterGather, speculative requests are scheduled on the pool timeout executor
+    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool, _poolTimeoutExecutor);
 
     // Setup Broker Request Handler
     long brokerTimeOut = DEFAULT_BROKER_TIME_OUT;
@@ -174,9 +197,53 @@ public class BrokerServerBuilder {
     }
     LOGGER.info("Broker timeout is - " + brokerTimeOut + " ms");
 
+    // Setup the result cache, invalidated on external view changes when routing is helix based
+    BrokerResultCache resultCache = null;
+    Configuration resultCacheConfig = _config.subset(RESULT_CACHE_CONFIG_PREFIX);
+    if (resultCacheConfig.getBoolean(BrokerResultCache.ENABLED_CONFIG, false)) {
+      resultCache = new BrokerResultCache(resultCacheConfig);
+      if (_routingTable instanceof HelixExternalViewBasedRouting) {
+        ((HelixExternalViewBasedRouting) _routingTable).addRoutingTableChangeListener(resultCache);
+      }
+    }
+    LOGGER.info("Broker result cache enabled - " + (resultCache != null));
+
+    // Setup the replica selection, latency aware selection also steers the choice of helix routing tables
+    ReplicaSelectionPolicy replicaSelectionPolicy =
+        ReplicaSelectionPolicy.valueOf(_config.getString(REPLICA_SELECTION_POLICY_CONFIG,
+            ReplicaSelectionPolicy.ROUND_ROBIN.toString()));
+    ReplicaSelection replicaSelection;
+    if (replicaSelectionPolicy == ReplicaSelectionPolicy.LATENCY_AWARE) {
+      LatencyAwareReplicaSelection latencyAwareReplicaSelection = new LatencyAwareReplicaSelection();
+      if (_routingTable instanceof HelixExternalViewBasedRouting) {
+        ((HelixExternalViewBasedRouting) _routingTable).setLatencyAwareReplicaSelection(latencyAwareReplicaSelection);
+      }
+      replicaSelection = latencyAwareReplicaSelection;
+    } else {
+      replicaSelection = new RoundRobinReplicaSelection();
+    }
+    LOGGER.info("Broker replica selection policy - " + replicaSelectionPolicy);
+
+    SpeculativeRequestConfig speculativeRequestConfig = new SpeculativeRequestConfig();
+    speculativeRequestConfig.init(_config.subset(SPECULATIVE_REQUEST_CONFIG_PREFIX));
+
+    // Brokers read both the binary and the Java serialized DataTable objects, without changing what a server in the
+    // same JVM writes.
+    DataTableSerDeRegistry.getInstance().registerDeserializer(new DataTableCustomSerDe());
+
+    // Segments are pruned on the broker from their ZK metadata when routing is helix based
+    SegmentPruningService segmentPruningService = null;
+    if (_routingTable instanceof HelixExternalViewBasedRouting) {
+      segmentPruningService = ((HelixExternalViewBasedRouting) _routingTable).getSegmentPruningService();
+    }
+
     _requestHandler =
-        new BrokerRequestHandler(_routingTable, _timeBoundaryService, _scatterGather, new DefaultReduceService(),
-            _brokerMetrics, brokerTimeOut);
+        new BrokerRequestHandler.BrokerRequestHandlerBuilder().setRoutingTable(_routingTable)
+            .setTimeBoundaryService(_timeBoundaryService).setScatterGather(_scatterGather)
+            .setReduceService(new DefaultReduceService()).setBrokerMetrics(_brokerMetrics)
+            .setBrokerTimeOut(brokerTimeOut).setResultCache(resultCache).setReplicaSelection(replicaSelection)
+            .setSpeculativeRequestConfig(speculativeRequestConfig).setSegmentPruningService(segmentPruningService)
+            .build();
 
     //TODO: Start Broker Server : Code goes here. Broker Server part should use request handler to submit requests
 
@@ -29,7 +29,11 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   REQUEST_COMPILATION_EXCEPTIONS("exceptions", true),
   REQUEST_FETCH_EXCEPTIONS("exceptions", false),
   REQUEST_DESERIALIZATION_EXCEPTIONS("exceptions", false),
-  DOCUMENTS_SCANNED("documents", false);
+  DOCUMENTS_SCANNED("documents", false),
+  RESULT_CACHE_HITS("queries", false),
+  RESULT_CACHE_MISSES("queries", false),
+  SPECULATIVE_REQUESTS("requests", false),
+  SPECULATIVE_RESPONSES_USED("responses", false);
 
   private final String brokerMeterName;
   private final String unit;
@@ -24,6 +24,8 @@ import com.linkedin.pinot.common.Utils;
 */
 public enum ServerQueryPhase implements AbstractMetrics.QueryPhase {
   TOTAL_QUERY_TIME,
+  REQUEST_DESERIALIZATION,
+  SCHEDULER_WAIT,
   SEGMENT_PRUNING,
   BUILD_QUERY_PLAN,
   QUERY_PLAN_EXECUTION,
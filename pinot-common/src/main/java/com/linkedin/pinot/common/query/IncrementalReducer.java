@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.query;
+
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Reduces the DataTables of a single broker request one at a time, as the server responses arrive, into a running
+ * accumulator. Once a DataTable has been reduced, it is no longer referenced by the reducer.
+ * Implementations are not thread safe, all the calls for a request are expected to come from the same thread.
+ */
+public interface IncrementalReducer {
+
+  /**
+   * Merge one server response into the accumulated result.
+   *
+   * @param serverInstance
+   * @param instanceResponse
+   */
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse);
+
+  /**
+   * Build the broker response out of all the server responses reduced so far.
+   *
+   * @return BrokerResponse
+   */
+  public BrokerResponse getBrokerResponse();
+}
@@ -50,4 +50,13 @@ public interface ReduceService {
   public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
       Map<ServerInstance, DataTable> instanceResponseMap);
 
+  /**
+   * Create a reducer merging the DataTables of the given request one by one, as they are gathered from the server
+   * instances. Reducing all the DataTables with it gives the same result as
+   * {@link #reduceOnDataTable(BrokerRequest, Map)}.
+   *
+   * @param brokerRequest
+   * @return IncrementalReducer
+   */
+  public IncrementalReducer getIncrementalReducer(BrokerRequest brokerRequest);
 }
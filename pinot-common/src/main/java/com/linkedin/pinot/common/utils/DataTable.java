@@ -17,13 +17,9 @@ package com.linkedin.pinot.common.utils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -31,11 +27,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
@@ -173,8 +167,18 @@ public class DataTable {
    * @param buffer
    */
   public DataTable(byte[] buffer) {
+    this(ByteBuffer.wrap(buffer));
+  }
 
-    final ByteBuffer input = ByteBuffer.wrap(buffer);
+  /**
+   * Reads a serialized DataTable from the buffer, starting at its current position. The fixed and variable size data
+   * sections are not copied, the DataTable reads them directly from the given buffer, which must not be modified
+   * afterwards.
+   *
+   * @param buffer
+   */
+  public DataTable(ByteBuffer buffer) {
+    final ByteBuffer input = buffer.slice();
 
     final int version = input.getInt();
     numRows = input.getInt();
@@ -210,18 +214,29 @@ public class DataTable {
     schema = DataSchema.fromBytes(schemaBytes);
     columnOffsets = computeColumnOffsets(schema);
 
-    // READ FIXED SIZE DATA BYTES 
-    fixedSizeDataBytes = new byte[fixedDataLength];
-    input.position(fixedDataStart);
-    input.get(fixedSizeDataBytes);
-    fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
+    // FIXED SIZE DATA, NOT COPIED
+    fixedSizeData = sliceSection(input, fixedDataStart, fixedDataLength);
 
-    // READ VARIABLE SIZE DATA BYTES 
-    variableSizeDataBytes = new byte[variableDataLength];
-    input.position(variableDataStart);
-    input.get(variableSizeDataBytes);
-    variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
+    // VARIABLE SIZE DATA, NOT COPIED
+    variableSizeData = sliceSection(input, variableDataStart, variableDataLength);
+  }
 
+  private static ByteBuffer sliceSection(ByteBuffer input, int start, int length) {
+    final ByteBuffer duplicate = input.duplicate();
+    duplicate.position(start);
+    duplicate.limit(start + length);
+    return duplicate.slice();
+  }
+
+  private static byte[] getSectionBytes(byte[] sectionBytes, ByteBuffer section) {
+    if (sectionBytes != null || section == null) {
+      return sectionBytes;
+    }
+    final ByteBuffer duplicate = section.duplicate();
+    duplicate.clear();
+    final byte[] bytes = new byte[duplicate.remaining()];
+    duplicate.get(bytes);
+    return bytes;
   }
 
   public DataTable() {
@@ -244,6 +259,8 @@ public class DataTable {
     if (schema != null) {
       schemaBytes = schema.toBytes();
     }
+    final byte[] fixedSizeDataBytes = getSectionBytes(this.fixedSizeDataBytes, fixedSizeData);
+    final byte[] variableSizeDataBytes = getSectionBytes(this.variableSizeDataBytes, variableSizeData);
     final ByteArrayOutputStream baos = new ByteArrayOutputStream();
     final DataOutputStream out = new DataOutputStream(baos);
     // TODO: convert this format into a proper class
@@ -392,60 +409,13 @@ public class DataTable {
     return map;
   }
 
-  /**
-   *
-   * @param value
-   * @return
-   */
-  private byte[] serializeObject(Object value) {
-    long start = System.nanoTime();
-
-    byte[] bytes;
-    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutput out = null;
-
-    try {
-      try {
-        out = new ObjectOutputStream(bos);
-        out.writeObject(value);
-      } catch (final IOException e) {
-        LOGGER.error("Caught exception", e);
-        Utils.rethrowException(e);
-      }
-      bytes = bos.toByteArray();
-
-    } finally {
-      IOUtils.closeQuietly((Closeable) out);
-      IOUtils.closeQuietly(bos);
-    }
-    long end = System.nanoTime();
-    LOGGER.info("java ser time:{}", (end - start));
-    return bytes;
-  }
-
   @SuppressWarnings("unchecked")
   private <T extends Serializable> T deserialize(byte[] value) {
     long start = System.nanoTime();
-    final ByteArrayInputStream bais = new ByteArrayInputStream(value);
-    ObjectInputStream out = null;
-    Object readObject;
-    try {
-      try {
-        out = new ObjectInputStream(bais);
-        readObject = out.readObject();
-
-      } catch (final Exception e) {
-        LOGGER.error("Caught exception while deserializing DataTable", e);
-        return null;
-      }
-    } finally {
-      IOUtils.closeQuietly(out);
-      IOUtils.closeQuietly(bais);
-    }
+    T object = DataTableSerDeRegistry.getInstance().getDeserializer().deserialize(value);
     long end = System.nanoTime();
-    LOGGER.info("java deser time:{}", (end - start));
-    return (T) readObject;
-
+    LOGGER.debug("deser time:{}", (end - start));
+    return object;
   }
 
   /**
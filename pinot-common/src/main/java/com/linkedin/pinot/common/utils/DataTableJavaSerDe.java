@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+
+
+/**
+ * DataTableSerDe based on Java serialization, works for any Serializable object.
+ */
+public class DataTableJavaSerDe implements DataTableSerDe {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DataTableJavaSerDe.class);
+
+  @Override
+  public byte[] serialize(Object object) {
+    byte[] bytes;
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutput out = null;
+
+    try {
+      try {
+        out = new ObjectOutputStream(bos);
+        out.writeObject(object);
+      } catch (final IOException e) {
+        LOGGER.error("Caught exception", e);
+        Utils.rethrowException(e);
+      }
+      bytes = bos.toByteArray();
+    } finally {
+      IOUtils.closeQuietly((Closeable) out);
+      IOUtils.closeQuietly(bos);
+    }
+    return bytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Serializable> T deserialize(byte[] bytes) {
+    final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+    ObjectInputStream in = null;
+    Object readObject;
+    try {
+      try {
+        in = new ObjectInputStream(bais);
+        readObject = in.readObject();
+      } catch (final Exception e) {
+        LOGGER.error("Caught exception while deserializing DataTable", e);
+        return null;
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(bais);
+    }
+    return (T) readObject;
+  }
+}
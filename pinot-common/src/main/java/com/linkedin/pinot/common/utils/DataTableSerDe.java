@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import java.io.Serializable;
+
+
+/**
+ * Serializes the OBJECT columns of a DataTable, e.g. aggregation intermediate results and group by result maps.
+ *
+ * Implementations must be able to deserialize bytes written by {@link DataTableJavaSerDe}, so that a broker can read
+ * responses from servers that are not upgraded yet.
+ */
+public interface DataTableSerDe {
+
+  /**
+   * Serialize the given object.
+   *
+   * @param object
+   * @return serialized bytes
+   */
+  byte[] serialize(Object object);
+
+  /**
+   * Deserialize an object serialized by this SerDe or by {@link DataTableJavaSerDe}.
+   *
+   * @param bytes
+   * @return deserialized object, null if it can not be deserialized
+   */
+  <T extends Serializable> T deserialize(byte[] bytes);
+}
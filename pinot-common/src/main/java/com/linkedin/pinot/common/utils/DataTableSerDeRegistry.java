@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Holds the DataTableSerDes used by DataTableBuilder to write and by DataTable to read OBJECT columns. Both default to
+ * {@link DataTableJavaSerDe}. Servers register the SerDe they write with at startup, brokers only register the SerDe
+ * they read with, so that a broker sharing the JVM with a server does not change what the server writes.
+ */
+public class DataTableSerDeRegistry {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DataTableSerDeRegistry.class);
+  private static final DataTableSerDeRegistry INSTANCE = new DataTableSerDeRegistry();
+
+  private volatile DataTableSerDe _serializer = new DataTableJavaSerDe();
+  private volatile DataTableSerDe _deserializer = _serializer;
+
+  private DataTableSerDeRegistry() {
+  }
+
+  public static DataTableSerDeRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Register the SerDe to write and read OBJECT columns with.
+   */
+  public void register(DataTableSerDe dataTableSerDe) {
+    if (_serializer.getClass() != dataTableSerDe.getClass()) {
+      LOGGER.info("Registering DataTableSerDe: {}", dataTableSerDe.getClass().getName());
+    }
+    _serializer = dataTableSerDe;
+    _deserializer = dataTableSerDe;
+  }
+
+  /**
+   * Register the SerDe to read OBJECT columns with, leaving the one to write them with unchanged.
+   */
+  public void registerDeserializer(DataTableSerDe dataTableSerDe) {
+    if (_deserializer.getClass() != dataTableSerDe.getClass()) {
+      LOGGER.info("Registering DataTableSerDe for deserialization: {}", dataTableSerDe.getClass().getName());
+    }
+    _deserializer = dataTableSerDe;
+  }
+
+  public DataTableSerDe getSerializer() {
+    return _serializer;
+  }
+
+  public DataTableSerDe getDeserializer() {
+    return _deserializer;
+  }
+}
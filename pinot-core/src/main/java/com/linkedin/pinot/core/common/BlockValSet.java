@@ -26,6 +26,12 @@ public interface BlockValSet {
   BlockValIterator iterator();
 
   DataType getValueType();
+
+  /**
+   * Reads the value (the dictionary id for dictionary encoded columns) of limit single value docs, starting at
+   * startPos in docIds, into dictIdBuffer starting at dictIdStartPos. Doc ids are expected in ascending order.
+   */
+  void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos);
 /*
   int getDictionaryId(int docId);
 
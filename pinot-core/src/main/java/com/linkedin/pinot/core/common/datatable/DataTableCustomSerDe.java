@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.common.datatable;
+
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.utils.DataTableJavaSerDe;
+import com.linkedin.pinot.common.utils.DataTableSerDe;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+
+
+/**
+ * DataTableSerDe writing the intermediate aggregation results (Long, Double, String, AvgPair, IntOpenHashSet,
+ * HyperLogLog and group by result maps of those) in a compact binary format, as a leading type byte followed by the
+ * value. Any other object is serialized with Java serialization, and bytes written by {@link DataTableJavaSerDe} are
+ * still readable.
+ */
+public class DataTableCustomSerDe implements DataTableSerDe {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DataTableCustomSerDe.class);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // Java serialization streams start with the magic number 0xACED.
+  private static final byte JAVA_STREAM_MAGIC_FIRST_BYTE = (byte) 0xAC;
+  private static final byte JAVA_STREAM_MAGIC_SECOND_BYTE = (byte) 0xED;
+
+  private static final byte NULL = 0;
+  private static final byte INTEGER = 1;
+  private static final byte LONG = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte STRING = 4;
+  private static final byte AVG_PAIR = 5;
+  private static final byte INT_OPEN_HASH_SET = 6;
+  private static final byte MAP = 7;
+  private static final byte JAVA_OBJECT = 8;
+  private static final byte HYPER_LOG_LOG = 9;
+  private static final byte SPARSE_HYPER_LOG_LOG = 10;
+
+  // AvgPair is an inner class, it needs an enclosing instance to be created.
+  private static final AvgAggregationFunction AVG_AGGREGATION_FUNCTION = new AvgAggregationFunction();
+
+  private final DataTableJavaSerDe _javaSerDe = new DataTableJavaSerDe();
+
+  @Override
+  public byte[] serialize(Object object) {
+    if (!isSupported(object)) {
+      return _javaSerDe.serialize(object);
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    try {
+      writeObject(out, object);
+      out.flush();
+    } catch (IOException e) {
+      LOGGER.error("Caught exception", e);
+      Utils.rethrowException(e);
+    }
+    return bos.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Serializable> T deserialize(byte[] bytes) {
+    if (bytes.length >= 2 && bytes[0] == JAVA_STREAM_MAGIC_FIRST_BYTE && bytes[1] == JAVA_STREAM_MAGIC_SECOND_BYTE) {
+      return _javaSerDe.deserialize(bytes);
+    }
+    try {
+      return (T) readObject(ByteBuffer.wrap(bytes));
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while deserializing DataTable", e);
+      return null;
+    }
+  }
+
+  private static boolean isSupported(Object object) {
+    if (object == null) {
+      return true;
+    }
+    if (object instanceof Map) {
+      return isStringKeyedMap((Map<?, ?>) object);
+    }
+    Class<?> clazz = object.getClass();
+    return clazz == Integer.class || clazz == Long.class || clazz == Double.class || clazz == String.class
+        || clazz == AvgPair.class || clazz == IntOpenHashSet.class || clazz == HyperLogLog.class;
+  }
+
+  private static boolean isStringKeyedMap(Map<?, ?> map) {
+    for (Object key : map.keySet()) {
+      if (!(key instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeObject(DataOutputStream out, Object object) throws IOException {
+    if (object == null) {
+      out.writeByte(NULL);
+    } else if (object instanceof Map && isStringKeyedMap((Map<?, ?>) object)) {
+      Map<?, ?> map = (Map<?, ?>) object;
+      out.writeByte(MAP);
+      out.writeInt(map.size());
+      for (Entry<?, ?> entry : map.entrySet()) {
+        writeString(out, (String) entry.getKey());
+        writeObject(out, entry.getValue());
+      }
+    } else if (object.getClass() == Integer.class) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) object);
+    } else if (object.getClass() == Long.class) {
+      out.writeByte(LONG);
+      out.writeLong((Long) object);
+    } else if (object.getClass() == Double.class) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) object);
+    } else if (object.getClass() == String.class) {
+      out.writeByte(STRING);
+      writeString(out, (String) object);
+    } else if (object.getClass() == AvgPair.class) {
+      AvgPair avgPair = (AvgPair) object;
+      out.writeByte(AVG_PAIR);
+      out.writeDouble(avgPair.getFirst());
+      out.writeLong(avgPair.getSecond());
+    } else if (object.getClass() == IntOpenHashSet.class) {
+      IntOpenHashSet intSet = (IntOpenHashSet) object;
+      out.writeByte(INT_OPEN_HASH_SET);
+      out.writeInt(intSet.size());
+      IntIterator iterator = intSet.iterator();
+      while (iterator.hasNext()) {
+        out.writeInt(iterator.nextInt());
+      }
+    } else if (object.getClass() == HyperLogLog.class) {
+      HyperLogLog hyperLogLog = (HyperLogLog) object;
+      if (hyperLogLog.isSparse()) {
+        // Register indexes fit in 16 bits as log2m is at most 16
+        Int2ByteOpenHashMap sparseRegisters = hyperLogLog.getSparseRegisters();
+        out.writeByte(SPARSE_HYPER_LOG_LOG);
+        out.writeByte(hyperLogLog.getLog2m());
+        out.writeInt(sparseRegisters.size());
+        IntIterator iterator = sparseRegisters.keySet().iterator();
+        while (iterator.hasNext()) {
+          int index = iterator.nextInt();
+          out.writeShort(index);
+          out.writeByte(sparseRegisters.get(index));
+        }
+      } else {
+        out.writeByte(HYPER_LOG_LOG);
+        out.writeByte(hyperLogLog.getLog2m());
+        out.write(hyperLogLog.getRegisters());
+      }
+    } else {
+      byte[] bytes = _javaSerDe.serialize(object);
+      out.writeByte(JAVA_OBJECT);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private Serializable readObject(ByteBuffer buffer) {
+    byte type = buffer.get();
+    switch (type) {
+      case NULL:
+        return null;
+      case INTEGER:
+        return buffer.getInt();
+      case LONG:
+        return buffer.getLong();
+      case DOUBLE:
+        return buffer.getDouble();
+      case STRING:
+        return readString(buffer);
+      case AVG_PAIR:
+        double sum = buffer.getDouble();
+        long count = buffer.getLong();
+        return AVG_AGGREGATION_FUNCTION.new AvgPair(sum, count);
+      case INT_OPEN_HASH_SET:
+        int setSize = buffer.getInt();
+        IntOpenHashSet intSet = new IntOpenHashSet(setSize);
+        for (int i = 0; i < setSize; ++i) {
+          intSet.add(buffer.getInt());
+        }
+        return intSet;
+      case MAP:
+        int mapSize = buffer.getInt();
+        HashMap<String, Serializable> map = new HashMap<String, Serializable>(Math.max(16, (int) (mapSize / 0.75f) + 1));
+        for (int i = 0; i < mapSize; ++i) {
+          String key = readString(buffer);
+          map.put(key, readObject(buffer));
+        }
+        return map;
+      case HYPER_LOG_LOG:
+        int log2m = buffer.get();
+        byte[] registers = new byte[1 << log2m];
+        buffer.get(registers);
+        return new HyperLogLog(log2m, registers);
+      case SPARSE_HYPER_LOG_LOG:
+        int sparseLog2m = buffer.get();
+        int numSparseRegisters = buffer.getInt();
+        Int2ByteOpenHashMap sparseRegisters = new Int2ByteOpenHashMap(numSparseRegisters);
+        for (int i = 0; i < numSparseRegisters; ++i) {
+          sparseRegisters.put(buffer.getShort() & 0xFFFF, buffer.get());
+        }
+        return new HyperLogLog(sparseLog2m, sparseRegisters);
+      case JAVA_OBJECT:
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return _javaSerDe.deserialize(bytes);
+      default:
+        throw new IllegalStateException("Unknown serialized object type: " + type);
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+}
@@ -17,15 +17,84 @@ package com.linkedin.pinot.core.common.predicate;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.common.Predicate.Type;
 
 
+/**
+ * Predicate on a java.util.regex pattern, which must match the whole column value.
+ *
+ * The literal prefix of the pattern, if any, is extracted once so that evaluators backed by a sorted
+ * dictionary can narrow the candidate dictionary ids before running the pattern.
+ */
 public class RegexPredicate extends Predicate {
+  private static final String META_CHARACTERS = "[](){}.*+?^$|";
+
+  private final Pattern pattern;
+  private final String literalPrefix;
 
   public RegexPredicate(String lhs, List<String> rhs) {
     super(lhs, Type.REGEX, rhs);
+    pattern = Pattern.compile(rhs.get(0));
+    literalPrefix = computeLiteralPrefix(rhs.get(0));
+  }
+
+  public Pattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns the string every matching value has to start with, or an empty string if the pattern does not
+   * start with a literal.
+   */
+  public String getLiteralPrefix() {
+    return literalPrefix;
+  }
+
+  static String computeLiteralPrefix(String regex) {
+    // An alternation anywhere in the pattern can bypass the leading literal.
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '|') {
+        return "";
+      }
+    }
+
+    final StringBuilder prefix = new StringBuilder();
+    int i = regex.startsWith("^") ? 1 : 0;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      final char literal;
+      final int next;
+      if (c == '\\') {
+        // Escaped letters and digits are character classes, back references or quoting, not literals.
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          break;
+        }
+        literal = regex.charAt(i + 1);
+        next = i + 2;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      } else {
+        literal = c;
+        next = i + 1;
+      }
+
+      // A literal followed by an optional quantifier is not required to be present.
+      if (next < regex.length()) {
+        final char quantifier = regex.charAt(next);
+        if (quantifier == '*' || quantifier == '?' || quantifier == '{') {
+          break;
+        }
+      }
+      prefix.append(literal);
+      i = next;
+    }
+    return prefix.toString();
   }
 
   @Override
@@ -74,4 +74,16 @@ public interface SingleColumnSingleValueReader extends DataFileReader{
    * @return
    */
   byte[] getBytes(int row);
+
+  /**
+   * Reads the int values of a batch of rows, e.g. the dictionary ids for the doc ids of a block. Rows are expected
+   * in ascending order, readers may use that to avoid searching from scratch for every row.
+   *
+   * @param rows
+   * @param rowStartPos position of the first row to read in rows
+   * @param rowSize number of rows to read
+   * @param values
+   * @param valuesStartPos position in values where the value of the first row is written
+   */
+  void readValues(int[] rows, int rowStartPos, int rowSize, int[] values, int valuesStartPos);
 }
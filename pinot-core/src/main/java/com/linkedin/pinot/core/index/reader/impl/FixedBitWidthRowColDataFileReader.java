@@ -268,6 +268,31 @@ public class FixedBitWidthRowColDataFileReader {
 
   }
 
+  /**
+   * Reads the values of one column for a batch of rows, resolving the column size and offsets once for the batch.
+   *
+   * @param rows
+   * @param rowStartPos
+   * @param rowSize
+   * @param col
+   * @param values
+   * @param valuesStartPos
+   */
+  public void readInt(int[] rows, int rowStartPos, int rowSize, int col, int[] values, int valuesStartPos) {
+    final int colSizeInBits = colSizesInBits[col];
+    final int colBitOffset = colBitOffSets[col];
+    final int offset = offsets[col];
+    for (int i = 0; i < rowSize; i++) {
+      final int row = rows[rowStartPos + i];
+      if (row >= this.rows) {
+        throw new IndexOutOfBoundsException(String.format(
+            "Input (%d,%d) is not with in expected range (%d,%d)", row, col, this.rows, cols));
+      }
+      final int startBitOffset = row * rowSizeInBits + colBitOffset;
+      values[valuesStartPos + i] = customBitSet.readInt(startBitOffset, startBitOffset + colSizeInBits) - offset;
+    }
+  }
+
   public int getNumberOfRows() {
     return rows;
   }
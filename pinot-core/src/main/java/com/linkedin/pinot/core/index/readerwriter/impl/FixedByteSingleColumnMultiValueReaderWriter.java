@@ -197,8 +197,16 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public void setIntArray(int row, int[] intArray) {
-    int newStartIndex = updateHeader(row, intArray.length);
-    for (int i = 0; i < intArray.length; i++) {
+    setIntArray(row, intArray, intArray.length);
+  }
+
+  /**
+   * Same as {@link #setIntArray(int, int[])} but only writes the first length values, so callers can reuse a buffer
+   * that is larger than the row.
+   */
+  public void setIntArray(int row, int[] intArray, int length) {
+    int newStartIndex = updateHeader(row, length);
+    for (int i = 0; i < length; i++) {
       currentDataWriter.setInt(newStartIndex + i, 0, intArray[i]);
     }
   }
@@ -160,4 +160,11 @@ public class FixedByteSingleColumnSingleValueReaderWriter implements SingleColum
     return reader.getBytes(row, 0);
   }
 
+  @Override
+  public void readValues(int[] rows, int rowStartPos, int rowSize, int[] values, int valuesStartPos) {
+    for (int i = 0; i < rowSize; i++) {
+      values[valuesStartPos + i] = reader.getInt(rows[rowStartPos + i], 0);
+    }
+  }
+
 }
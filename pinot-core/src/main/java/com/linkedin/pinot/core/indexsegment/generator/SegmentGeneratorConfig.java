@@ -58,6 +58,9 @@ public class SegmentGeneratorConfig {
   private static final String FIELD_DATA_TYPE = "dataType";
   private static final String SEGMENT_NAME_POSTFIX = "segment.name.postfix";
   private static final String SEGMENT_NAME = "segment.name";
+  private static final String CREATION_THREADS = "segment.creation.threads";
+  private static final String CREATION_BUFFER_MEMORY_BYTES = "segment.creation.buffer.memory.bytes";
+  private static final long DEFAULT_CREATION_BUFFER_MEMORY_BYTES = 256L * 1024 * 1024;
 
   private static String COMMA = ",";
   private static String DOT = ".";
@@ -211,9 +214,41 @@ public class SegmentGeneratorConfig {
   }
 
   public SegmentVersion getSegmentVersion() {
+    if (!properties.containsKey(SEGMENT_INDEX_VERSION)) {
+      return SegmentVersion.v1;
+    }
     return SegmentVersion.valueOf(properties.get(SEGMENT_INDEX_VERSION).toString());
   }
 
+  /**
+   * Sets the number of threads building the dictionaries and indexes of different columns in parallel.
+   */
+  public void setCreationThreads(int numThreads) {
+    properties.put(CREATION_THREADS, numThreads);
+  }
+
+  public int getCreationThreads() {
+    if (!properties.containsKey(CREATION_THREADS)) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return Integer.parseInt(properties.get(CREATION_THREADS).toString());
+  }
+
+  /**
+   * Sets how many bytes of decoded input are kept in memory during segment creation before the column buffers
+   * spill to disk.
+   */
+  public void setCreationBufferMemoryBytes(long bytes) {
+    properties.put(CREATION_BUFFER_MEMORY_BYTES, bytes);
+  }
+
+  public long getCreationBufferMemoryBytes() {
+    if (!properties.containsKey(CREATION_BUFFER_MEMORY_BYTES)) {
+      return DEFAULT_CREATION_BUFFER_MEMORY_BYTES;
+    }
+    return Long.parseLong(properties.get(CREATION_BUFFER_MEMORY_BYTES).toString());
+  }
+
   public void setCreationTime(String creationTime) {
     properties.put(SEGMENT_CREATION_TIME, creationTime);
   }
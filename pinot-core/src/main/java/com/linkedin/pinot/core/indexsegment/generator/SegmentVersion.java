@@ -15,6 +15,14 @@
  */
 package com.linkedin.pinot.core.indexsegment.generator;
 
+/**
+ * On-disk format version of a segment.
+ * <ul>
+ *   <li>v1: string dictionaries are fixed width, every value padded to the longest one.</li>
+ *   <li>v2: string dictionaries are variable length, see VarLengthStringDictionary.</li>
+ * </ul>
+ */
 public enum SegmentVersion {
-  v1;
+  v1,
+  v2;
 }
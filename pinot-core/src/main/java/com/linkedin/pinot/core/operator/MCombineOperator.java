@@ -25,8 +25,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.helix.manager.zk.ZKHelixManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,17 +39,19 @@ import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationOperator;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOrderByOperator;
 import com.linkedin.pinot.core.query.aggregation.CombineService;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 
 
 /**
  * MCombineOperator will take the arguments below:
  *  1. BrokerRequest;
  *  2. Parallelism Parameters:
- *      ExecutorService;
+ *      ExecutorService and the max number of threads per query;
  *  3. All the Inner-Segment Operators:
  *      For now only three types:
  *          USelectionOperator, UAggregationOperator
@@ -68,10 +70,14 @@ public class MCombineOperator implements Operator {
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private long _timeOutMs;
-  //Make this configurable
-  //These two control the parallelism on a per query basis, depending on the number of segments to process
-  private static int MAX_THREADS_PER_QUERY = 5;
-  private static int MIN_SEGMENTS_PER_THREAD = 10;
+  // Upper bound on the number of workers pulling segments for a single query
+  private final int _maxThreadsPerQuery;
+
+  // Number of combine workers currently running on this server, across all queries
+  private static final AtomicInteger ACTIVE_WORKERS = new AtomicInteger(0);
+  private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+  // Marker offered by a worker that did not get any operator to process
+  private static final Block EMPTY_BLOCK = new IntermediateResultsBlock();
 
   private IntermediateResultsBlock _mergedBlock;
 
@@ -80,14 +86,21 @@ public class MCombineOperator implements Operator {
     _isParallel = false;
     _brokerRequest = brokerRequest;
     _executorService = null;
+    _maxThreadsPerQuery = 1;
   }
 
   public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(retOperators, executorService, timeOutMs, brokerRequest, QueryExecutorConfig.DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, int maxThreadsPerQuery) {
     _operators = retOperators;
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _maxThreadsPerQuery = Math.max(1, maxThreadsPerQuery);
     if (_executorService != null) {
       _isParallel = true;
     } else {
@@ -109,25 +122,27 @@ public class MCombineOperator implements Operator {
     final long startTime = System.currentTimeMillis();
     if (_isParallel) {
       final long queryEndTime = System.currentTimeMillis() + _timeOutMs;
-      int numGroups = Math.min(MAX_THREADS_PER_QUERY, (_operators.size() + MIN_SEGMENTS_PER_THREAD - 1) / MIN_SEGMENTS_PER_THREAD);
-
-      final List<List<Operator>> operatorGroups = new ArrayList<List<Operator>>(numGroups);
-      for (int i = 0; i < numGroups; i++) {
-        operatorGroups.add(new ArrayList<Operator>());
-      }
-      for (int i = 0; i < _operators.size(); i++) {
-        operatorGroups.get(i % numGroups).add(_operators.get(i));
-      }
-      final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<Block>(operatorGroups.size());
-      // Submit operators.
-      for (final List<Operator> operatorGroup : operatorGroups) {
+      final int numWorkers = getNumWorkers();
+      // Segments are not dealt out up front: every worker pulls the next unprocessed operator from the shared
+      // index, so a worker stuck on a large segment does not hold back the segments still waiting to be processed.
+      final AtomicInteger nextOperatorIndex = new AtomicInteger(0);
+      final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<Block>(numWorkers);
+      // Submit workers.
+      for (int i = 0; i < numWorkers; i++) {
+        ACTIVE_WORKERS.incrementAndGet();
         _executorService.submit(new Runnable() {
           @Override
           public void run() {
             IntermediateResultsBlock mergedBlock = null;
             try {
-              for (Operator operator : operatorGroup) {
-                IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) operator.nextBlock();
+              int operatorIndex;
+              while ((operatorIndex = nextOperatorIndex.getAndIncrement()) < _operators.size()) {
+                if (System.currentTimeMillis() >= queryEndTime) {
+                  LOGGER.warn("Query timed out before processing operator {} of {}", operatorIndex, _operators.size());
+                  break;
+                }
+                IntermediateResultsBlock blockToMerge =
+                    (IntermediateResultsBlock) _operators.get(operatorIndex).nextBlock();
                 if (mergedBlock == null) {
                   mergedBlock = blockToMerge;
                 } else {
@@ -137,9 +152,13 @@ public class MCombineOperator implements Operator {
             } catch (Exception e) {
               LOGGER.error("exception in the MCombine operator ", e);
               mergedBlock = new IntermediateResultsBlock(e);
+            } finally {
+              ACTIVE_WORKERS.decrementAndGet();
             }
-            if (blockingQueue != null) {
+            if (mergedBlock != null) {
               blockingQueue.offer(mergedBlock);
+            } else {
+              blockingQueue.offer(EMPTY_BLOCK);
             }
           }
         });
@@ -154,25 +173,25 @@ public class MCombineOperator implements Operator {
             public IntermediateResultsBlock call() throws Exception {
               int mergedBlocksNumber = 0;
               IntermediateResultsBlock mergedBlock = null;
-              while ((queryEndTime > System.currentTimeMillis()) && (mergedBlocksNumber < operatorGroups.size())) {
-                if (mergedBlock == null) {
-                  mergedBlock =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
+              while ((queryEndTime > System.currentTimeMillis()) && (mergedBlocksNumber < numWorkers)) {
+                Block block = blockingQueue.poll(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (block == EMPTY_BLOCK) {
+                  // Worker did not get any operator to process.
+                  mergedBlocksNumber++;
+                } else if (mergedBlock == null) {
+                  mergedBlock = (IntermediateResultsBlock) block;
                   if (mergedBlock != null) {
                     mergedBlocksNumber++;
                   }
-                  LOGGER.debug("Got response from operator 0 after: {}", (System.currentTimeMillis() - startTime));
+                  LOGGER.debug("Got response from worker 0 after: {}", (System.currentTimeMillis() - startTime));
                 } else {
-                  IntermediateResultsBlock blockToMerge =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
+                  IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) block;
                   if (blockToMerge != null) {
                     try {
-                      LOGGER.debug("Got response from operator {} after: {}", mergedBlocksNumber,
+                      LOGGER.debug("Got response from worker {} after: {}", mergedBlocksNumber,
                           (System.currentTimeMillis() - startTime));
                       CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                      LOGGER.debug("Merged response from operator {} after: {}", mergedBlocksNumber,
+                      LOGGER.debug("Merged response from worker {} after: {}", mergedBlocksNumber,
                           (System.currentTimeMillis() - startTime));
                     } catch (Exception e) {
                       mergedBlock.getExceptions().add(
@@ -228,7 +247,7 @@ public class MCombineOperator implements Operator {
       for (Operator operator : _operators) {
         if ((operator instanceof MAggregationOperator) || (operator instanceof MSelectionOrderByOperator)
             || (operator instanceof MSelectionOnlyOperator) || (operator instanceof MAggregationGroupByOperator)
-            || (operator instanceof MCombineOperator)) {
+            || (operator instanceof MCombineOperator) || (operator instanceof MSegmentResultCacheOperator)) {
           IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
           if (_mergedBlock == null) {
             _mergedBlock = block;
@@ -251,6 +270,16 @@ public class MCombineOperator implements Operator {
     return _mergedBlock;
   }
 
+  /**
+   * Number of workers for this query: bounded by the configured per query parallelism, the number of segments to
+   * process and the cores not already busy with combine workers of other queries. Always at least one.
+   */
+  private int getNumWorkers() {
+    int idleCores = NUM_CORES - ACTIVE_WORKERS.get();
+    int numWorkers = Math.min(_maxThreadsPerQuery, Math.min(_operators.size(), idleCores));
+    return Math.max(1, numWorkers);
+  }
+
   private void trimToSize(BrokerRequest brokerRequest, IntermediateResultsBlock mergedBlock) {
     AggregationGroupByOperatorService aggregationGroupByOperatorService =
         new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
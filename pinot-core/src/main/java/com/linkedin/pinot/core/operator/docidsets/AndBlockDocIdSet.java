@@ -15,10 +15,14 @@
  */
 package com.linkedin.pinot.core.operator.docidsets;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang3.tuple.Pair;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +32,15 @@ import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
 import com.linkedin.pinot.core.operator.filter.AndOperator;
 
 
+/**
+ * Intersection of the doc id sets of the children of an AND filter.
+ *
+ * Children backed by an index (bitmaps, sorted ranges, AND/OR of those) are intersected upfront, starting from the
+ * smallest one. Sorted ranges are intersected with each other as ranges, and the remaining bitmaps are intersected with
+ * roaring and then clipped to those ranges, so a sorted column never has to be turned into a bitmap. The result, or the
+ * most selective indexed child when there is only one, leads the iteration and the scan based children are only
+ * advanced to the documents it produces.
+ */
 public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
   /**
    * 
@@ -39,20 +52,80 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
   int currentDocId = -1;
   public final AtomicLong timeMeasure = new AtomicLong(0);
   private List<FilterBlockDocIdSet> blockDocIdSets;
+  // Doc id sets in iteration order: the indexed leader first, if any, then the scan based children
+  private final List<FilterBlockDocIdSet> iteratedDocIdSets;
+  private final boolean isIndexed;
   private int minDocId = Integer.MIN_VALUE;
   private int maxDocId = Integer.MAX_VALUE;
 
   public AndBlockDocIdSet(List<FilterBlockDocIdSet> blockDocIdSets) {
     this.blockDocIdSets = blockDocIdSets;
-    final int[] docIdPointers = new int[blockDocIdSets.size()];
-    final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[blockDocIdSets.size()];
-    for (int srcId = 0; srcId < blockDocIdSets.size(); srcId++) {
-      docIdIterators[srcId] = blockDocIdSets.get(srcId).iterator();
+    updateMinMaxRange();
+
+    long start = System.nanoTime();
+    List<FilterBlockDocIdSet> indexedDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    List<FilterBlockDocIdSet> scanDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    for (FilterBlockDocIdSet blockDocIdSet : blockDocIdSets) {
+      if (DocIdSetUtils.isIndexed(blockDocIdSet)) {
+        indexedDocIdSets.add(blockDocIdSet);
+      } else {
+        scanDocIdSets.add(blockDocIdSet);
+      }
+    }
+    DocIdSetUtils.sortByNumDocs(indexedDocIdSets);
+
+    iteratedDocIdSets = new ArrayList<FilterBlockDocIdSet>(scanDocIdSets.size() + 1);
+    if (indexedDocIdSets.size() > 1) {
+      FilterBlockDocIdSet intersection = intersect(indexedDocIdSets);
+      intersection.setStartDocId(minDocId);
+      intersection.setEndDocId(maxDocId);
+      iteratedDocIdSets.add(intersection);
+    } else {
+      iteratedDocIdSets.addAll(indexedDocIdSets);
+    }
+    iteratedDocIdSets.addAll(scanDocIdSets);
+    isIndexed = scanDocIdSets.isEmpty() && !indexedDocIdSets.isEmpty();
+
+    final int[] docIdPointers = new int[iteratedDocIdSets.size()];
+    final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[iteratedDocIdSets.size()];
+    for (int srcId = 0; srcId < iteratedDocIdSets.size(); srcId++) {
+      docIdIterators[srcId] = iteratedDocIdSets.get(srcId).iterator();
     }
     Arrays.fill(docIdPointers, -1);
     this.docIdIterators = docIdIterators;
     this.docIdPointers = docIdPointers;
-    updateMinMaxRange();
+    timeMeasure.addAndGet(System.nanoTime() - start);
+  }
+
+  private FilterBlockDocIdSet intersect(List<FilterBlockDocIdSet> indexedDocIdSets) {
+    List<Pair<Integer, Integer>> ranges = null;
+    List<FilterBlockDocIdSet> bitmapDocIdSets = new ArrayList<FilterBlockDocIdSet>(indexedDocIdSets.size());
+    for (FilterBlockDocIdSet docIdSet : indexedDocIdSets) {
+      if (docIdSet instanceof SortedDocIdSet) {
+        List<Pair<Integer, Integer>> docIdSetRanges = ((SortedDocIdSet) docIdSet).getRanges();
+        ranges = (ranges == null) ? docIdSetRanges : DocIdSetUtils.intersectRanges(ranges, docIdSetRanges);
+      } else {
+        bitmapDocIdSets.add(docIdSet);
+      }
+    }
+
+    if (bitmapDocIdSets.isEmpty()) {
+      return new SortedDocIdSet(ranges);
+    }
+
+    ImmutableRoaringBitmap bitmap = DocIdSetUtils.getBitmap(bitmapDocIdSets.get(0));
+    if (bitmapDocIdSets.size() > 1) {
+      MutableRoaringBitmap bitmapIntersection =
+          ImmutableRoaringBitmap.and(bitmap, DocIdSetUtils.getBitmap(bitmapDocIdSets.get(1)));
+      for (int i = 2; i < bitmapDocIdSets.size() && !bitmapIntersection.isEmpty(); i++) {
+        bitmapIntersection.and(DocIdSetUtils.getBitmap(bitmapDocIdSets.get(i)));
+      }
+      bitmap = bitmapIntersection;
+    }
+    if (ranges != null) {
+      bitmap = DocIdSetUtils.clip(bitmap, ranges);
+    }
+    return new BitmapDocIdSet(minDocId, maxDocId, bitmap);
   }
 
   private void updateMinMaxRange() {
@@ -64,6 +137,37 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
       blockDocIdSet.setStartDocId(minDocId);
       blockDocIdSet.setEndDocId(maxDocId);
     }
+    if (iteratedDocIdSets != null) {
+      for (FilterBlockDocIdSet blockDocIdSet : iteratedDocIdSets) {
+        blockDocIdSet.setStartDocId(minDocId);
+        blockDocIdSet.setEndDocId(maxDocId);
+      }
+    }
+  }
+
+  /**
+   * Returns true if all the children are backed by an index, in which case {@link #getBitmap()} can be used.
+   */
+  public boolean isIndexed() {
+    return isIndexed;
+  }
+
+  /**
+   * Returns the intersection of the children as a bitmap, ignoring the start and end doc ids. Only valid if
+   * {@link #isIndexed()}.
+   */
+  public ImmutableRoaringBitmap getBitmap() {
+    return DocIdSetUtils.getBitmap(iteratedDocIdSets.get(0));
+  }
+
+  /**
+   * Returns an upper bound of the number of matching documents, Integer.MAX_VALUE if unknown.
+   */
+  public int getNumDocsUpperBound() {
+    if (iteratedDocIdSets.isEmpty()) {
+      return Integer.MAX_VALUE;
+    }
+    return DocIdSetUtils.getNumDocsUpperBound(iteratedDocIdSets.get(0));
   }
 
   @Override
@@ -86,7 +190,6 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
 
       @Override
       public int next() {
-        long start = System.currentTimeMillis();
         if (currentDocId == Constants.EOF) {
           return currentDocId;
         }
@@ -110,12 +213,6 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
           }
         }
         currentDocId = currentMax;
-        long end = System.currentTimeMillis();
-        timeMeasure.addAndGet(end - start);
-        //Remove this after tracing is added
-//      if (currentDocId == Constants.EOF) {
-//        LOGGER.debug("AND operator took:" + timeMeasure.get());
-//      }
         return currentDocId;
       }
 
@@ -16,16 +16,13 @@
 package com.linkedin.pinot.core.operator.docidsets;
 
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.BufferFastAggregation;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
-import com.linkedin.pinot.common.utils.Pairs;
-import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockMetadata;
 import com.linkedin.pinot.core.common.Constants;
@@ -36,41 +33,46 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
 
   final private ImmutableRoaringBitmap[] raw;
   public final AtomicLong timeMeasure = new AtomicLong(0);
-  private BlockMetadata blockMetadata;
+  private final int minDocId;
+  private final int maxDocId;
+  // Union of all the bitmaps, computed once with roaring instead of merging the postings per document
+  private final ImmutableRoaringBitmap bitmap;
   BitmapBasedBlockIdSetIterator bitmapBasedBlockIdSetIterator;
 
   public BitmapDocIdSet(BlockMetadata blockMetadata, ImmutableRoaringBitmap... bitmaps) {
-    this.blockMetadata = blockMetadata;
-    raw = bitmaps;
-    IntIterator[] iterators = new IntIterator[bitmaps.length];
-    for (int i = 0; i < bitmaps.length; i++) {
-      iterators[i] = bitmaps[i].getIntIterator();
-    }
-    bitmapBasedBlockIdSetIterator = new BitmapBasedBlockIdSetIterator(iterators);
-    bitmapBasedBlockIdSetIterator.setStartDocId(blockMetadata.getStartDocId());
-    bitmapBasedBlockIdSetIterator.setEndDocId(blockMetadata.getEndDocId());
+    this(blockMetadata.getStartDocId(), blockMetadata.getEndDocId(), bitmaps);
   }
 
   public BitmapDocIdSet(BlockMetadata blockMetadata, MutableRoaringBitmap... bitmaps) {
-    this.blockMetadata = blockMetadata;
+    this(blockMetadata.getStartDocId(), blockMetadata.getEndDocId(), bitmaps);
+  }
+
+  public BitmapDocIdSet(int startDocId, int endDocId, ImmutableRoaringBitmap... bitmaps) {
+    long start = System.nanoTime();
     raw = bitmaps;
-    IntIterator[] iterators = new IntIterator[bitmaps.length];
-    for (int i = 0; i < bitmaps.length; i++) {
-      iterators[i] = bitmaps[i].getIntIterator();
+    minDocId = startDocId;
+    maxDocId = endDocId;
+    if (bitmaps.length == 1) {
+      bitmap = bitmaps[0];
+    } else if (bitmaps.length == 0) {
+      bitmap = new MutableRoaringBitmap();
+    } else {
+      bitmap = BufferFastAggregation.or(bitmaps);
     }
-    bitmapBasedBlockIdSetIterator = new BitmapBasedBlockIdSetIterator(iterators);
-    bitmapBasedBlockIdSetIterator.setStartDocId(blockMetadata.getStartDocId());
-    bitmapBasedBlockIdSetIterator.setEndDocId(blockMetadata.getEndDocId());
+    bitmapBasedBlockIdSetIterator = new BitmapBasedBlockIdSetIterator(bitmap.getIntIterator());
+    bitmapBasedBlockIdSetIterator.setStartDocId(startDocId);
+    bitmapBasedBlockIdSetIterator.setEndDocId(endDocId);
+    timeMeasure.addAndGet(System.nanoTime() - start);
   }
 
   @Override
   public int getMinDocId() {
-    return blockMetadata.getStartDocId();
+    return minDocId;
   }
 
   @Override
   public int getMaxDocId() {
-    return blockMetadata.getEndDocId();
+    return maxDocId;
   }
 
   /**
@@ -89,6 +91,13 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
     bitmapBasedBlockIdSetIterator.setEndDocId(endDocId);
   }
 
+  /**
+   * Returns the union of the bitmaps of this doc id set, ignoring the start and end doc ids.
+   */
+  public ImmutableRoaringBitmap getBitmap() {
+    return bitmap;
+  }
+
   @Override
   public BlockDocIdIterator iterator() {
     return bitmapBasedBlockIdSetIterator;
@@ -107,12 +116,13 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
   }
 
   public final class BitmapBasedBlockIdSetIterator implements BlockDocIdIterator {
-    final private IntIterator[] iterators;
+    final private IntIterator iterator;
     private int endDocId;
     private int startDocId;
+    int currentDocId = -1;
 
-    public BitmapBasedBlockIdSetIterator(IntIterator[] iterators) {
-      this.iterators = iterators;
+    public BitmapBasedBlockIdSetIterator(IntIterator iterator) {
+      this.iterator = iterator;
     }
 
     public void setEndDocId(int endDocId) {
@@ -122,92 +132,38 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
     public void setStartDocId(int startDocId) {
       this.startDocId = startDocId;
     }
-    //<docId Counter, postinglist Id> Int Pair
-    PriorityQueue<IntPair> queue = new PriorityQueue<IntPair>(Math.max(1, raw.length), new Pairs.AscendingIntPairComparator());
-    boolean[] iteratorIsInQueue = new boolean[raw.length];
-    int currentDocId = -1;
 
     @Override
     public int advance(int targetDocId) {
-      long start = System.nanoTime();
+      if (currentDocId == Constants.EOF) {
+        return currentDocId;
+      }
       if (targetDocId < startDocId) {
         targetDocId = startDocId;
       } else if (targetDocId > endDocId) {
-        currentDocId = Constants.EOF;
+        return (currentDocId = Constants.EOF);
       }
-      if (currentDocId == Constants.EOF) {
+      if (currentDocId >= targetDocId) {
         return currentDocId;
       }
-      Iterator<IntPair> iterator = queue.iterator();
-      //remove everything from the queue that is less than targetDocId
       while (iterator.hasNext()) {
-        IntPair pair = iterator.next();
-        if (pair.getA() < targetDocId) {
-          iterator.remove();
-          iteratorIsInQueue[pair.getB()] = false;
+        int next = iterator.next();
+        if (next > endDocId) {
+          break;
         }
-      }
-      //move the pointer until its great than or equal to targetDocId
-      for (int i = 0; i < iterators.length; i++) {
-        if (!iteratorIsInQueue[i]) {
-          int next;
-          while (iterators[i].hasNext()) {
-            next = iterators[i].next();
-            if (next > endDocId) {
-              break;
-            }
-            if (next >= targetDocId) {
-              queue.add(new IntPair(next, i));
-              break;
-            }
-          }
-          iteratorIsInQueue[i] = true;
+        if (next >= targetDocId) {
+          return (currentDocId = next);
         }
       }
-      if (queue.size() > 0) {
-        currentDocId = queue.peek().getA();
-      } else {
-        currentDocId = Constants.EOF;
-      }
-      long end = System.nanoTime();
-      timeMeasure.addAndGet(end - start);
-      return currentDocId;
+      return (currentDocId = Constants.EOF);
     }
 
     @Override
     public int next() {
-      long start = System.nanoTime();
       if (currentDocId == Constants.EOF) {
         return currentDocId;
       }
-      while (queue.size() > 0 && queue.peek().getA() <= currentDocId) {
-        IntPair pair = queue.remove();
-        iteratorIsInQueue[pair.getB()] = false;
-      }
-      currentDocId++;
-      for (int i = 0; i < iterators.length; i++) {
-        if (!iteratorIsInQueue[i]) {
-          while (iterators[i].hasNext()) {
-            int next = iterators[i].next();
-            if (next >= startDocId && next <= endDocId && next >= currentDocId) {
-              queue.add(new IntPair(next, i));
-              break;
-            }
-            if (next > endDocId) {
-              break;
-            }
-          }
-          iteratorIsInQueue[i] = true;
-        }
-      }
-      if (queue.size() > 0) {
-        currentDocId = queue.peek().getA();
-      } else {
-        currentDocId = Constants.EOF;
-      }
-      long end = System.nanoTime();
-      timeMeasure.addAndGet(end - start);
-      return currentDocId;
+      return advance(currentDocId + 1);
     }
 
     @Override
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.docidsets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
+
+
+/**
+ * Helpers for combining the doc id sets of the filter children in AND/OR. Doc id sets backed by an index (bitmaps,
+ * sorted ranges and AND/OR of those) can be combined with roaring operations, the remaining ones (scans) can only be
+ * iterated.
+ */
+final class DocIdSetUtils {
+  private DocIdSetUtils() {
+  }
+
+  /**
+   * Returns true if the documents of the doc id set can be materialized as a bitmap without scanning.
+   */
+  static boolean isIndexed(FilterBlockDocIdSet docIdSet) {
+    if (docIdSet instanceof BitmapDocIdSet || docIdSet instanceof SortedDocIdSet) {
+      return true;
+    }
+    if (docIdSet instanceof AndBlockDocIdSet) {
+      return ((AndBlockDocIdSet) docIdSet).isIndexed();
+    }
+    if (docIdSet instanceof OrBlockDocIdSet) {
+      return ((OrBlockDocIdSet) docIdSet).isIndexed();
+    }
+    return false;
+  }
+
+  /**
+   * Returns the documents of an indexed doc id set as a bitmap, ignoring the start and end doc ids.
+   */
+  static ImmutableRoaringBitmap getBitmap(FilterBlockDocIdSet docIdSet) {
+    if (docIdSet instanceof BitmapDocIdSet) {
+      return ((BitmapDocIdSet) docIdSet).getBitmap();
+    }
+    if (docIdSet instanceof SortedDocIdSet) {
+      return ((SortedDocIdSet) docIdSet).getBitmap();
+    }
+    if (docIdSet instanceof AndBlockDocIdSet) {
+      return ((AndBlockDocIdSet) docIdSet).getBitmap();
+    }
+    if (docIdSet instanceof OrBlockDocIdSet) {
+      return ((OrBlockDocIdSet) docIdSet).getBitmap();
+    }
+    throw new UnsupportedOperationException("Doc id set " + docIdSet.getClass() + " is not backed by an index");
+  }
+
+  /**
+   * Returns an upper bound of the number of documents in the doc id set, Integer.MAX_VALUE when unknown.
+   */
+  static int getNumDocsUpperBound(FilterBlockDocIdSet docIdSet) {
+    if (docIdSet instanceof BitmapDocIdSet) {
+      return ((BitmapDocIdSet) docIdSet).getBitmap().getCardinality();
+    }
+    if (docIdSet instanceof SortedDocIdSet) {
+      return ((SortedDocIdSet) docIdSet).getNumDocs();
+    }
+    if (docIdSet instanceof AndBlockDocIdSet) {
+      return ((AndBlockDocIdSet) docIdSet).getNumDocsUpperBound();
+    }
+    if (docIdSet instanceof OrBlockDocIdSet) {
+      return ((OrBlockDocIdSet) docIdSet).getNumDocsUpperBound();
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Sorts the doc id sets by increasing number of documents, keeping the order of the ones that are unknown.
+   */
+  static void sortByNumDocs(List<FilterBlockDocIdSet> docIdSets) {
+    Collections.sort(docIdSets, new Comparator<FilterBlockDocIdSet>() {
+      @Override
+      public int compare(FilterBlockDocIdSet o1, FilterBlockDocIdSet o2) {
+        return Integer.compare(getNumDocsUpperBound(o1), getNumDocsUpperBound(o2));
+      }
+    });
+  }
+
+  /**
+   * Returns the intersection of two sorted lists of disjoint inclusive doc id ranges.
+   */
+  static List<Pair<Integer, Integer>> intersectRanges(List<Pair<Integer, Integer>> ranges1,
+      List<Pair<Integer, Integer>> ranges2) {
+    List<Pair<Integer, Integer>> intersection = new ArrayList<Pair<Integer, Integer>>();
+    int i = 0;
+    int j = 0;
+    while (i < ranges1.size() && j < ranges2.size()) {
+      Pair<Integer, Integer> range1 = ranges1.get(i);
+      Pair<Integer, Integer> range2 = ranges2.get(j);
+      int start = Math.max(range1.getLeft(), range2.getLeft());
+      int end = Math.min(range1.getRight(), range2.getRight());
+      if (start <= end) {
+        intersection.add(ImmutablePair.of(start, end));
+      }
+      // Drop the range that ends first, the other one may still overlap the next range
+      if (range1.getRight() < range2.getRight()) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return intersection;
+  }
+
+  /**
+   * Returns the documents of the bitmap that fall within the sorted inclusive doc id ranges.
+   *
+   * Ranges that cover all or none of the bitmap are resolved with rank lookups, so the bitmap is only copied when
+   * the ranges actually cut through it.
+   */
+  static ImmutableRoaringBitmap clip(ImmutableRoaringBitmap bitmap, List<Pair<Integer, Integer>> ranges) {
+    int numDocsInRanges = 0;
+    for (Pair<Integer, Integer> range : ranges) {
+      int start = range.getLeft();
+      numDocsInRanges += bitmap.rank(range.getRight()) - (start > 0 ? bitmap.rank(start - 1) : 0);
+    }
+    if (numDocsInRanges == 0) {
+      return new MutableRoaringBitmap();
+    }
+    if (numDocsInRanges == bitmap.getCardinality()) {
+      return bitmap;
+    }
+    MutableRoaringBitmap rangeBitmap = new MutableRoaringBitmap();
+    for (Pair<Integer, Integer> range : ranges) {
+      rangeBitmap.flip(range.getLeft(), range.getRight() + 1);
+    }
+    return ImmutableRoaringBitmap.and(bitmap, rangeBitmap);
+  }
+}
@@ -15,11 +15,16 @@
  */
 package com.linkedin.pinot.core.operator.docidsets;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.roaringbitmap.buffer.BufferFastAggregation;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
 import com.linkedin.pinot.common.utils.Pairs;
 import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
@@ -27,6 +32,12 @@ import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
 
 
+/**
+ * Union of the doc id sets of the children of an OR filter.
+ *
+ * Children backed by an index (bitmaps, sorted ranges, AND/OR of those) are merged upfront with a roaring union, so
+ * that only the union and the scan based children are merged document by document.
+ */
 public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
   /**
    * 
@@ -34,17 +45,50 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
   private final BlockDocIdIterator[] docIdIterators;
   final public AtomicLong timeMeasure = new AtomicLong(0);
   private List<FilterBlockDocIdSet> docIdSets;
+  // Doc id sets that are iterated: the union of the indexed children, if any, and the scan based children
+  private final List<FilterBlockDocIdSet> iteratedDocIdSets;
+  private final boolean isIndexed;
+  // Union of the indexed children, null if there are less than two of them
+  private final MutableRoaringBitmap union;
   private int maxDocId = Integer.MIN_VALUE;
   private int minDocId = Integer.MAX_VALUE;
 
   public OrBlockDocIdSet(List<FilterBlockDocIdSet> blockDocIdSets) {
     this.docIdSets = blockDocIdSets;
-    final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[blockDocIdSets.size()];
-    for (int srcId = 0; srcId < blockDocIdSets.size(); srcId++) {
-      docIdIterators[srcId] = blockDocIdSets.get(srcId).iterator();
+    updateMinMaxRange();
+
+    long start = System.nanoTime();
+    List<FilterBlockDocIdSet> indexedDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    List<FilterBlockDocIdSet> scanDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    for (FilterBlockDocIdSet blockDocIdSet : blockDocIdSets) {
+      if (DocIdSetUtils.isIndexed(blockDocIdSet)) {
+        indexedDocIdSets.add(blockDocIdSet);
+      } else {
+        scanDocIdSets.add(blockDocIdSet);
+      }
+    }
+
+    iteratedDocIdSets = new ArrayList<FilterBlockDocIdSet>(scanDocIdSets.size() + 1);
+    if (indexedDocIdSets.size() > 1) {
+      ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[indexedDocIdSets.size()];
+      for (int i = 0; i < bitmaps.length; i++) {
+        bitmaps[i] = DocIdSetUtils.getBitmap(indexedDocIdSets.get(i));
+      }
+      union = BufferFastAggregation.or(bitmaps);
+      iteratedDocIdSets.add(new BitmapDocIdSet(minDocId, maxDocId, union));
+    } else {
+      union = null;
+      iteratedDocIdSets.addAll(indexedDocIdSets);
+    }
+    iteratedDocIdSets.addAll(scanDocIdSets);
+    isIndexed = scanDocIdSets.isEmpty() && !indexedDocIdSets.isEmpty();
+
+    final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[iteratedDocIdSets.size()];
+    for (int srcId = 0; srcId < iteratedDocIdSets.size(); srcId++) {
+      docIdIterators[srcId] = iteratedDocIdSets.get(srcId).iterator();
     }
     this.docIdIterators = docIdIterators;
-    updateMinMaxRange();
+    timeMeasure.addAndGet(System.nanoTime() - start);
   }
 
   private void updateMinMaxRange() {
@@ -56,6 +100,41 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
       blockDocIdSet.setStartDocId(minDocId);
       blockDocIdSet.setEndDocId(maxDocId);
     }
+    if (iteratedDocIdSets != null) {
+      for (FilterBlockDocIdSet blockDocIdSet : iteratedDocIdSets) {
+        blockDocIdSet.setStartDocId(minDocId);
+        blockDocIdSet.setEndDocId(maxDocId);
+      }
+    }
+  }
+
+  /**
+   * Returns true if all the children are backed by an index, in which case {@link #getBitmap()} can be used.
+   */
+  public boolean isIndexed() {
+    return isIndexed;
+  }
+
+  /**
+   * Returns the union of the children as a bitmap, ignoring the start and end doc ids. Only valid if
+   * {@link #isIndexed()}.
+   */
+  public ImmutableRoaringBitmap getBitmap() {
+    if (union != null) {
+      return union;
+    }
+    return DocIdSetUtils.getBitmap(iteratedDocIdSets.get(0));
+  }
+
+  /**
+   * Returns an upper bound of the number of matching documents, Integer.MAX_VALUE if unknown.
+   */
+  public int getNumDocsUpperBound() {
+    long numDocs = 0;
+    for (FilterBlockDocIdSet blockDocIdSet : iteratedDocIdSets) {
+      numDocs += DocIdSetUtils.getNumDocsUpperBound(blockDocIdSet);
+    }
+    return (int) Math.min(numDocs, Integer.MAX_VALUE);
   }
 
   @Override
@@ -88,8 +167,6 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
           currentDocId = Constants.EOF;
           return currentDocId;
         }
-        long start = System.nanoTime();
-
         // Remove iterators that are before the target document id from the queue
         Iterator<IntPair> iterator = queue.iterator();
         while (iterator.hasNext()) {
@@ -118,15 +195,11 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
           currentDocId = Constants.EOF;
         }
 
-        long end = System.nanoTime();
-        timeMeasure.addAndGet(end - start);
         return currentDocId;
       }
 
       @Override
       public int next() {
-        long start = System.currentTimeMillis();
-
         if (currentDocId == Constants.EOF) {
           return currentDocId;
         }
@@ -154,13 +227,6 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
         } else {
           currentDocId = Constants.EOF;
         }
-        long end = System.currentTimeMillis();
-        timeMeasure.addAndGet(end - start);
-        //Remove this after tracing is added
-//      if (currentDocId == Constants.EOF) {
-//        LOGGER.debug("OR took:" + timeMeasure.get());
-//      }
-
         return currentDocId;
       }
 
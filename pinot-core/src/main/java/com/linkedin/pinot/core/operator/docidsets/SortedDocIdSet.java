@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.Constants;
@@ -71,6 +72,35 @@ public class SortedDocIdSet implements FilterBlockDocIdSet {
     this.endDocId = endDocId;
   }
 
+  /**
+   * Returns the sorted, disjoint and inclusive doc id ranges, ignoring the start and end doc ids.
+   */
+  public List<Pair<Integer, Integer>> getRanges() {
+    return pairs;
+  }
+
+  /**
+   * Returns the number of documents in the ranges, ignoring the start and end doc ids.
+   */
+  public int getNumDocs() {
+    int numDocs = 0;
+    for (Pair<Integer, Integer> pair : pairs) {
+      numDocs += pair.getRight() - pair.getLeft() + 1;
+    }
+    return numDocs;
+  }
+
+  /**
+   * Returns a bitmap of the documents in the ranges, ignoring the start and end doc ids.
+   */
+  public MutableRoaringBitmap getBitmap() {
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    for (Pair<Integer, Integer> pair : pairs) {
+      bitmap.flip(pair.getLeft(), pair.getRight() + 1);
+    }
+    return bitmap;
+  }
+
   @Override
   public BlockDocIdIterator iterator() {
     if (pairs == null || pairs.isEmpty()) {
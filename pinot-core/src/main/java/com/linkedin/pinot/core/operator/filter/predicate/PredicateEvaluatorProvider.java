@@ -21,6 +21,7 @@ import com.linkedin.pinot.core.common.predicate.InPredicate;
 import com.linkedin.pinot.core.common.predicate.NEqPredicate;
 import com.linkedin.pinot.core.common.predicate.NotInPredicate;
 import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
 import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
@@ -47,7 +48,13 @@ public class PredicateEvaluatorProvider {
               (MutableDictionaryReader) dictionary);
         }
       case REGEX:
-        throw new UnsupportedOperationException("regex is not supported");
+        if (dictionary instanceof ImmutableDictionaryReader) {
+          return new RegexOfflineDictionaryPredicateEvaluator((RegexPredicate) predicate,
+              (ImmutableDictionaryReader) dictionary);
+        } else {
+          return new RegexRealtimeDictionaryPredicateEvaluator((RegexPredicate) predicate,
+              (MutableDictionaryReader) dictionary);
+        }
       default:
         throw new UnsupportedOperationException("UnKnown predicate type");
     }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.predicate;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+
+
+/**
+ * Evaluates a regex predicate once against the sorted offline dictionary. For string dictionaries the
+ * literal prefix of the pattern is used to binary search the range of candidate ids, so only values in that
+ * range are run through the pattern.
+ */
+public class RegexOfflineDictionaryPredicateEvaluator extends AbstractPredicateEvaluator {
+
+  public RegexOfflineDictionaryPredicateEvaluator(RegexPredicate predicate, ImmutableDictionaryReader dictionary) {
+    final String prefix = predicate.getLiteralPrefix();
+    int rangeStartIndex = 0;
+    int rangeEndIndex = dictionary.length();
+
+    if (prefix.length() > 0 && dictionary instanceof StringDictionary) {
+      final StringDictionary stringDictionary = (StringDictionary) dictionary;
+      rangeStartIndex = stringDictionary.prefixStartIndex(prefix);
+      rangeEndIndex = stringDictionary.prefixEndIndex(prefix, rangeStartIndex);
+    }
+
+    final Matcher matcher = predicate.getPattern().matcher("");
+    final int[] ids = new int[rangeEndIndex - rangeStartIndex];
+    int counter = 0;
+    for (int i = rangeStartIndex; i < rangeEndIndex; i++) {
+      if (matcher.reset(dictionary.get(i).toString()).matches()) {
+        ids[counter++] = i;
+      }
+    }
+    matchingIds = Arrays.copyOf(ids, counter);
+  }
+}
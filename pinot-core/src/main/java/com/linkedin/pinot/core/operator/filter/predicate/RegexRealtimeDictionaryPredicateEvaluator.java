@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.predicate;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+
+
+/**
+ * Evaluates a regex predicate once against a realtime dictionary. The dictionary is not sorted, so every
+ * value is visited, but values not starting with the literal prefix of the pattern are rejected without
+ * running the pattern.
+ */
+public class RegexRealtimeDictionaryPredicateEvaluator extends AbstractPredicateEvaluator {
+
+  public RegexRealtimeDictionaryPredicateEvaluator(RegexPredicate predicate, MutableDictionaryReader dictionary) {
+    if (dictionary.isEmpty()) {
+      matchingIds = new int[0];
+      return;
+    }
+
+    final String prefix = predicate.getLiteralPrefix();
+    final Matcher matcher = predicate.getPattern().matcher("");
+    // The dictionary keeps growing while the segment consumes, only look at the values present now. An id can be
+    // handed out before its value is put, so skip ids without a value.
+    final int length = dictionary.length();
+    final int[] ids = new int[length];
+    int counter = 0;
+    for (int dicId = 0; dicId < length; dicId++) {
+      final Object rawValue = dictionary.get(dicId);
+      if (rawValue == null) {
+        continue;
+      }
+      final String value = rawValue.toString();
+      if (value.startsWith(prefix) && matcher.reset(value).matches()) {
+        ids[counter++] = dicId;
+      }
+    }
+    matchingIds = Arrays.copyOf(ids, counter);
+  }
+}
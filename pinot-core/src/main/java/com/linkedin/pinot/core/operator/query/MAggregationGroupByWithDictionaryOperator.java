@@ -0,0 +1,449 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.block.query.ProjectionBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.MatchEntireSegmentDocIdSetBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * MAggregationGroupByWithDictionaryOperator applies all the aggregation functions of a group by query to an
+ * IndexSegment in a single pass, for single value group by columns whose dictionary ids fit in a long.
+ *
+ * For each document the dictionary ids of the group by columns are packed into a long group key once, which is
+ * mapped to a dense int group id. Count, sum, min, max and avg accumulate into primitive arrays indexed by group id,
+ * other functions keep one Serializable per group. Group keys are only decoded into Strings when the results are
+ * handed over to the combine phase.
+ *
+ * It replaces the per aggregation function AggregationFunctionGroupByOperators of MAggregationGroupByOperator.
+ *
+ */
+public class MAggregationGroupByWithDictionaryOperator extends MAggregationGroupByOperator {
+  private static final int INITIAL_NUM_GROUPS = 1024;
+  private static final int DOC_ID_CHUNK_SIZE = 10000;
+
+  private final IndexSegment _indexSegment;
+  private final List<AggregationInfo> _aggregationInfoList;
+  private final GroupBy _groupBy;
+  private final MProjectionOperator _projectionOperator;
+
+  private final String[] _groupByColumns;
+  private final Dictionary[] _groupByDictionaries;
+  private final int[] _groupKeyBitSize;
+  private final BlockValSet[] _groupByBlockValSets;
+
+  private final List<AggregationFunction> _aggregationFunctionList;
+  private final PrimitiveAggregationType[] _primitiveAggregationTypes;
+  private final String[] _aggregationColumns;
+  private final Dictionary[] _aggregationDictionaries;
+  private final Block[][] _aggregationFunctionBlocks;
+  private final BlockValSet[] _aggregationBlockValSets;
+
+  private final Long2IntOpenHashMap _groupKeyToGroupId = new Long2IntOpenHashMap();
+  private long[] _groupKeys = new long[INITIAL_NUM_GROUPS];
+  private int _numGroups = 0;
+  private int[] _groupIdBuffer = new int[0];
+  private long[] _groupKeyBuffer = new long[0];
+  private int[] _dictIdBuffer = new int[0];
+  private int[] _valueGroupIdBuffer = new int[0];
+  private double[] _valueBuffer = new double[0];
+  private int[] _docIdBuffer = null;
+
+  // Per aggregation function, indexed by group id
+  private final double[][] _values;
+  private final long[][] _counts;
+  private final Serializable[][] _objectValues;
+
+  public MAggregationGroupByWithDictionaryOperator(IndexSegment indexSegment, List<AggregationInfo> aggregationInfoList,
+      GroupBy groupBy, Operator projectionOperator) {
+    super(indexSegment, aggregationInfoList, groupBy, projectionOperator,
+        Collections.<AggregationFunctionGroupByOperator> emptyList());
+    _indexSegment = indexSegment;
+    _aggregationInfoList = aggregationInfoList;
+    _groupBy = groupBy;
+    _projectionOperator = (MProjectionOperator) projectionOperator;
+    _groupKeyToGroupId.defaultReturnValue(-1);
+
+    int numGroupByColumns = _groupBy.getColumnsSize();
+    _groupByColumns = _groupBy.getColumns().toArray(new String[numGroupByColumns]);
+    _groupByDictionaries = new Dictionary[numGroupByColumns];
+    _groupKeyBitSize = new int[numGroupByColumns];
+    _groupByBlockValSets = new BlockValSet[numGroupByColumns];
+    int totalBitSet = 0;
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      _groupByDictionaries[i] = getFirstBlock(_groupByColumns[i]).getMetadata().getDictionary();
+      _groupKeyBitSize[i] = BitHacks.findLogBase2(_groupByDictionaries[i].length()) + 1;
+      totalBitSet += _groupKeyBitSize[i];
+    }
+    if (totalBitSet > 64) {
+      throw new IllegalArgumentException("Too many columns for an efficient group by");
+    }
+
+    int numAggregationFunctions = _aggregationInfoList.size();
+    _aggregationFunctionList = new ArrayList<AggregationFunction>(numAggregationFunctions);
+    _primitiveAggregationTypes = new PrimitiveAggregationType[numAggregationFunctions];
+    _aggregationColumns = new String[numAggregationFunctions];
+    _aggregationDictionaries = new Dictionary[numAggregationFunctions];
+    _aggregationFunctionBlocks = new Block[numAggregationFunctions][];
+    _aggregationBlockValSets = new BlockValSet[numAggregationFunctions];
+    _values = new double[numAggregationFunctions][];
+    _counts = new long[numAggregationFunctions][];
+    _objectValues = new Serializable[numAggregationFunctions][];
+    for (int i = 0; i < numAggregationFunctions; ++i) {
+      AggregationInfo aggregationInfo = _aggregationInfoList.get(i);
+      AggregationFunction aggregationFunction = AggregationFunctionFactory.get(aggregationInfo, true);
+      _aggregationFunctionList.add(aggregationFunction);
+      _primitiveAggregationTypes[i] = PrimitiveAggregationType.of(aggregationFunction);
+      _counts[i] = new long[INITIAL_NUM_GROUPS];
+      if (_primitiveAggregationTypes[i] == PrimitiveAggregationType.COUNT) {
+        continue;
+      }
+      String[] columns = aggregationInfo.getAggregationParams().get("column").trim().split(",");
+      _aggregationFunctionBlocks[i] = new Block[columns.length];
+      for (int j = 0; j < columns.length; ++j) {
+        _aggregationFunctionBlocks[i][j] = getFirstBlock(columns[j]);
+      }
+      if (_primitiveAggregationTypes[i] == null) {
+        _objectValues[i] = new Serializable[INITIAL_NUM_GROUPS];
+      } else {
+        _aggregationColumns[i] = columns[0];
+        _aggregationDictionaries[i] = _aggregationFunctionBlocks[i][0].getMetadata().getDictionary();
+        _values[i] = new double[INITIAL_NUM_GROUPS];
+        Arrays.fill(_values[i], _primitiveAggregationTypes[i].getInitialValue());
+      }
+    }
+  }
+
+  private Block getFirstBlock(String column) {
+    return _projectionOperator.getDataSource(column).nextBlock(new BlockId(0));
+  }
+
+  @Override
+  public boolean open() {
+    _projectionOperator.open();
+    return true;
+  }
+
+  @Override
+  public Block nextBlock() {
+    final long startTime = System.currentTimeMillis();
+    long numDocsScanned = 0;
+    ProjectionBlock projectionBlock;
+    while ((projectionBlock = (ProjectionBlock) _projectionOperator.nextBlock()) != null) {
+      DocIdSetBlock docIdSetBlock = (DocIdSetBlock) projectionBlock.getDocIdSetBlock();
+      int length = docIdSetBlock.getSearchableLength();
+      numDocsScanned += length;
+
+      for (int i = 0; i < _groupByColumns.length; ++i) {
+        _groupByBlockValSets[i] = projectionBlock.getBlock(_groupByColumns[i]).getBlockValueSet();
+      }
+      for (int i = 0; i < _aggregationColumns.length; ++i) {
+        if (_aggregationColumns[i] != null) {
+          _aggregationBlockValSets[i] = projectionBlock.getBlock(_aggregationColumns[i]).getBlockValueSet();
+        }
+      }
+
+      if (docIdSetBlock instanceof MatchEntireSegmentDocIdSetBlock) {
+        // No filter, walk the whole segment in chunks of consecutive doc ids.
+        if (_docIdBuffer == null) {
+          _docIdBuffer = new int[DOC_ID_CHUNK_SIZE];
+        }
+        for (int start = 0; start < length; start += DOC_ID_CHUNK_SIZE) {
+          int chunkLength = Math.min(DOC_ID_CHUNK_SIZE, length - start);
+          for (int j = 0; j < chunkLength; ++j) {
+            _docIdBuffer[j] = start + j;
+          }
+          aggregate(_docIdBuffer, chunkLength);
+        }
+      } else {
+        aggregate(docIdSetBlock.getDocIdSet(), length);
+      }
+    }
+
+    final IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(_aggregationInfoList),
+            getAggregationGroupByResult(), true);
+    resultBlock.setNumDocsScanned(numDocsScanned);
+    resultBlock.setTotalDocs(_indexSegment.getTotalDocs());
+    resultBlock.setTimeUsedMs(System.currentTimeMillis() - startTime);
+    return resultBlock;
+  }
+
+  private void aggregate(int[] docIds, int length) {
+    int[] groupIds = computeGroupIds(docIds, length);
+    for (int i = 0; i < _primitiveAggregationTypes.length; ++i) {
+      PrimitiveAggregationType primitiveAggregationType = _primitiveAggregationTypes[i];
+      if (primitiveAggregationType == PrimitiveAggregationType.COUNT) {
+        long[] counts = _counts[i];
+        for (int j = 0; j < length; ++j) {
+          counts[groupIds[j]]++;
+        }
+      } else if (primitiveAggregationType != null) {
+        aggregatePrimitive(i, docIds, groupIds, length);
+      } else {
+        AggregationFunction aggregationFunction = _aggregationFunctionList.get(i);
+        Serializable[] objectValues = _objectValues[i];
+        for (int j = 0; j < length; ++j) {
+          int groupId = groupIds[j];
+          objectValues[groupId] =
+              aggregationFunction.aggregate(objectValues[groupId], docIds[j], _aggregationFunctionBlocks[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fills the group id of each document in the block, adding new groups as they are first seen.
+   */
+  private int[] computeGroupIds(int[] docIds, int length) {
+    ensureBufferCapacity(length);
+    long[] groupKeys = _groupKeyBuffer;
+    Arrays.fill(groupKeys, 0, length, 0L);
+    for (int i = 0; i < _groupByBlockValSets.length; ++i) {
+      _groupByBlockValSets[i].readIntValues(docIds, 0, length, _dictIdBuffer, 0);
+      int groupKeyBitSize = _groupKeyBitSize[i];
+      // Null dictionary ids would set all the bits of the group key, keep them to all the bits of the column instead,
+      // which is never a valid dictionary id as the column has one more bit than its largest dictionary id needs.
+      int groupKeyMask = (1 << groupKeyBitSize) - 1;
+      for (int j = 0; j < length; ++j) {
+        groupKeys[j] = (groupKeys[j] << groupKeyBitSize) | (_dictIdBuffer[j] & groupKeyMask);
+      }
+    }
+    for (int j = 0; j < length; ++j) {
+      int groupId = _groupKeyToGroupId.get(groupKeys[j]);
+      if (groupId == -1) {
+        groupId = addGroup(groupKeys[j]);
+      }
+      _groupIdBuffer[j] = groupId;
+    }
+    return _groupIdBuffer;
+  }
+
+  private void ensureBufferCapacity(int length) {
+    if (_groupIdBuffer.length < length) {
+      _groupIdBuffer = new int[length];
+      _groupKeyBuffer = new long[length];
+      _dictIdBuffer = new int[length];
+      _valueGroupIdBuffer = new int[length];
+      _valueBuffer = new double[length];
+    }
+  }
+
+  private int addGroup(long groupKey) {
+    int groupId = _numGroups++;
+    if (groupId == _groupKeys.length) {
+      int newCapacity = _groupKeys.length * 2;
+      _groupKeys = Arrays.copyOf(_groupKeys, newCapacity);
+      for (int i = 0; i < _primitiveAggregationTypes.length; ++i) {
+        _counts[i] = Arrays.copyOf(_counts[i], newCapacity);
+        if (_values[i] != null) {
+          _values[i] = Arrays.copyOf(_values[i], newCapacity);
+          Arrays.fill(_values[i], groupId, newCapacity, _primitiveAggregationTypes[i].getInitialValue());
+        }
+        if (_objectValues[i] != null) {
+          _objectValues[i] = Arrays.copyOf(_objectValues[i], newCapacity);
+        }
+      }
+    }
+    _groupKeys[groupId] = groupKey;
+    _groupKeyToGroupId.put(groupKey, groupId);
+    return groupId;
+  }
+
+  private void aggregatePrimitive(int index, int[] docIds, int[] groupIds, int length) {
+    _aggregationBlockValSets[index].readIntValues(docIds, 0, length, _dictIdBuffer, 0);
+
+    // Drop the docs with null values, then look up the values of the remaining ones in one batch.
+    int[] dictIds = _dictIdBuffer;
+    int[] valueGroupIds = _valueGroupIdBuffer;
+    int numValues = 0;
+    for (int j = 0; j < length; ++j) {
+      if (dictIds[j] != Dictionary.NULL_VALUE_INDEX) {
+        dictIds[numValues] = dictIds[j];
+        valueGroupIds[numValues++] = groupIds[j];
+      }
+    }
+    double[] valueBuffer = _valueBuffer;
+    _aggregationDictionaries[index].readDoubleValues(dictIds, 0, numValues, valueBuffer, 0);
+
+    double[] values = _values[index];
+    long[] counts = _counts[index];
+    switch (_primitiveAggregationTypes[index]) {
+      case SUM:
+      case AVG:
+        for (int j = 0; j < numValues; ++j) {
+          values[valueGroupIds[j]] += valueBuffer[j];
+          counts[valueGroupIds[j]]++;
+        }
+        break;
+      case MIN:
+        for (int j = 0; j < numValues; ++j) {
+          values[valueGroupIds[j]] = Math.min(values[valueGroupIds[j]], valueBuffer[j]);
+          counts[valueGroupIds[j]]++;
+        }
+        break;
+      case MAX:
+        for (int j = 0; j < numValues; ++j) {
+          values[valueGroupIds[j]] = Math.max(values[valueGroupIds[j]], valueBuffer[j]);
+          counts[valueGroupIds[j]]++;
+        }
+        break;
+      default:
+        throw new UnsupportedOperationException("Not a primitive aggregation: " + _primitiveAggregationTypes[index]);
+    }
+  }
+
+  /**
+   * Materializes the group by results with String group keys, one map per aggregation function. Groups that never
+   * saw a non null value for a function are reported with a null value, same as the per function operators.
+   */
+  public List<Map<String, Serializable>> getAggregationGroupByResult() {
+    List<Map<String, Serializable>> aggregationGroupByResults =
+        new ArrayList<Map<String, Serializable>>(_primitiveAggregationTypes.length);
+    for (int i = 0; i < _primitiveAggregationTypes.length; ++i) {
+      aggregationGroupByResults.add(new HashMap<String, Serializable>(_numGroups));
+    }
+    String[] stringArray = new String[_groupByColumns.length];
+    for (int groupId = 0; groupId < _numGroups; ++groupId) {
+      String groupKey = decodeGroupedKeyFromLong(_groupKeys[groupId], stringArray);
+      for (int i = 0; i < _primitiveAggregationTypes.length; ++i) {
+        aggregationGroupByResults.get(i).put(groupKey, getValue(i, groupId));
+      }
+    }
+    return aggregationGroupByResults;
+  }
+
+  private Serializable getValue(int index, int groupId) {
+    PrimitiveAggregationType primitiveAggregationType = _primitiveAggregationTypes[index];
+    if (primitiveAggregationType == null) {
+      return _objectValues[index][groupId];
+    }
+    long count = _counts[index][groupId];
+    if (primitiveAggregationType == PrimitiveAggregationType.COUNT) {
+      return count;
+    }
+    if (count == 0) {
+      return null;
+    }
+    double value = _values[index][groupId];
+    if (primitiveAggregationType == PrimitiveAggregationType.AVG) {
+      return ((AvgAggregationFunction) _aggregationFunctionList.get(index)).new AvgPair(value, count);
+    }
+    return value;
+  }
+
+  private String decodeGroupedKeyFromLong(long key, String[] stringArray) {
+    int i = _groupKeyBitSize.length - 1;
+    while (i >= 0) {
+      final long mask = -1L >>> (64 - _groupKeyBitSize[i]);
+      final long number = key & mask;
+      if (number == mask) {
+        stringArray[i] = Dictionary.DEFAULT_NULL_STRING_VALUE;
+      } else {
+        stringArray[i] = _groupByDictionaries[i].get((int) number).toString();
+      }
+      key >>>= _groupKeyBitSize[i];
+      i--;
+    }
+
+    final StringBuilder builder = new StringBuilder();
+    for (int j = 0; j < (stringArray.length - 1); j++) {
+      builder.append(stringArray[j]).append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString());
+    }
+    builder.append(stringArray[stringArray.length - 1]);
+    return builder.toString();
+  }
+
+  @Override
+  public Block nextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    _projectionOperator.close();
+    return true;
+  }
+
+  /**
+   * Aggregation functions whose per group state fits in a double and a count.
+   */
+  private enum PrimitiveAggregationType {
+    COUNT(0),
+    SUM(0),
+    AVG(0),
+    MIN(Double.POSITIVE_INFINITY),
+    MAX(Double.NEGATIVE_INFINITY);
+
+    private final double _initialValue;
+
+    private PrimitiveAggregationType(double initialValue) {
+      _initialValue = initialValue;
+    }
+
+    public double getInitialValue() {
+      return _initialValue;
+    }
+
+    /**
+     * Returns the primitive type for the given function, or null if it has to be aggregated as objects.
+     */
+    public static PrimitiveAggregationType of(AggregationFunction aggregationFunction) {
+      if (aggregationFunction instanceof CountAggregationFunction) {
+        return COUNT;
+      } else if (aggregationFunction instanceof SumAggregationFunction) {
+        return SUM;
+      } else if (aggregationFunction instanceof AvgAggregationFunction) {
+        return AVG;
+      } else if (aggregationFunction instanceof MinAggregationFunction) {
+        return MIN;
+      } else if (aggregationFunction instanceof MaxAggregationFunction) {
+        return MAX;
+      }
+      return null;
+    }
+  }
+}
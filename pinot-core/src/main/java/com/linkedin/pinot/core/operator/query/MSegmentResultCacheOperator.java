@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+
+
+/**
+ * MSegmentResultCacheOperator returns the IntermediateResultBlock of a segment found in the SegmentResultCache at
+ * planning time, or computes it with the wrapped segment level operator and caches it.
+ *
+ *
+ */
+public class MSegmentResultCacheOperator implements Operator {
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _key;
+  private final IntermediateResultsBlock _cachedResultBlock;
+  private final Operator _operator;
+
+  /**
+   * Operator serving a cached result.
+   */
+  public MSegmentResultCacheOperator(IntermediateResultsBlock cachedResultBlock) {
+    _segmentResultCache = null;
+    _key = null;
+    _cachedResultBlock = cachedResultBlock;
+    _operator = null;
+  }
+
+  /**
+   * Operator computing the result with the given operator and caching it.
+   */
+  public MSegmentResultCacheOperator(SegmentResultCache segmentResultCache, SegmentResultCache.Key key,
+      Operator operator) {
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+    _cachedResultBlock = null;
+    _operator = operator;
+  }
+
+  @Override
+  public boolean open() {
+    if (_operator != null) {
+      _operator.open();
+    }
+    return true;
+  }
+
+  @Override
+  public Block nextBlock() {
+    if (_cachedResultBlock != null) {
+      return _cachedResultBlock;
+    }
+    IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) _operator.nextBlock();
+    _segmentResultCache.put(_key, resultBlock);
+    return resultBlock;
+  }
+
+  @Override
+  public Block nextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    if (_operator != null) {
+      _operator.close();
+    }
+    return true;
+  }
+}
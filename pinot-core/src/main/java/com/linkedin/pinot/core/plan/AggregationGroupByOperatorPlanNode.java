@@ -26,10 +26,12 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.query.AggregationFunctionGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByWithDictionaryOperator;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionUtils;
 
 
@@ -79,6 +81,10 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
 
   @Override
   public Operator run() {
+    if (isSingleValueDictionaryGroupBy()) {
+      return new MAggregationGroupByWithDictionaryOperator(_indexSegment, _brokerRequest.getAggregationsInfo(),
+          _brokerRequest.getGroupBy(), _projectionPlanNode.run());
+    }
     List<AggregationFunctionGroupByOperator> aggregationFunctionOperatorList =
         new ArrayList<AggregationFunctionGroupByOperator>();
     for (AggregationFunctionGroupByPlanNode aggregationFunctionGroupByPlanNode : _aggregationFunctionGroupByPlanNodes) {
@@ -89,9 +95,36 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
         _brokerRequest.getGroupBy(), _projectionPlanNode.run(), aggregationFunctionOperatorList);
   }
 
+  /**
+   * All aggregations and single value group by columns go through dictionaries, so the group by can be done in one
+   * pass over primitive group keys by MAggregationGroupByWithDictionaryOperator.
+   */
+  private boolean isSingleValueDictionaryGroupBy() {
+    if (_aggregationGroupByImplementationType != AggregationGroupByImplementationType.Dictionary) {
+      return false;
+    }
+    for (AggregationInfo aggregationInfo : _brokerRequest.getAggregationsInfo()) {
+      if (!AggregationFunctionUtils.isAggregationFunctionWithDictionary(aggregationInfo, _indexSegment)) {
+        return false;
+      }
+    }
+    for (String column : _brokerRequest.getGroupBy().getColumns()) {
+      if (!_indexSegment.getDataSource(column).nextBlock(new BlockId(0)).getMetadata().isSingleValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public void showTree(String prefix) {
     LOGGER.debug(prefix + "Inner-Segment Plan Node :");
+    if (isSingleValueDictionaryGroupBy()) {
+      LOGGER.debug(prefix + "Operator: MAggregationGroupByWithDictionaryOperator");
+      LOGGER.debug(prefix + "Argument 0: Projection - ");
+      _projectionPlanNode.showTree(prefix + "    ");
+      return;
+    }
     LOGGER.debug(prefix + "Operator: MAggregationGroupByOperator");
     LOGGER.debug(prefix + "Argument 0: Projection - ");
     _projectionPlanNode.showTree(prefix + "    ");
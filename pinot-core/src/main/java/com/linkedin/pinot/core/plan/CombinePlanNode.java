@@ -29,6 +29,7 @@ import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 
 
 /**
@@ -42,12 +43,18 @@ public class CombinePlanNode implements PlanNode {
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private final long _timeOutMs;
+  private final int _maxThreadsPerQuery;
 
   public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
+    this(brokerRequest, executorService, timeOutMs, QueryExecutorConfig.DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs,
+      int maxThreadsPerQuery) {
     _brokerRequest = brokerRequest;
     _executorService = executorService;
     _timeOutMs = timeOutMs;
-
+    _maxThreadsPerQuery = maxThreadsPerQuery;
   }
 
   public void addPlanNode(PlanNode planNode) {
@@ -93,7 +100,7 @@ public class CombinePlanNode implements PlanNode {
       }
     }
     MCombineOperator mCombineOperator =
-        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest);
+        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest, _maxThreadsPerQuery);
     long end = System.currentTimeMillis();
     LOGGER.info("CombinePlanNode.run took: " + (end - start));
     return mCombineOperator;
@@ -105,7 +112,8 @@ public class CombinePlanNode implements PlanNode {
     LOGGER.debug(prefix + "Operator: MCombineOperator");
     LOGGER.debug(prefix + "Argument 0: BrokerRequest - " + _brokerRequest);
     LOGGER.debug(prefix + "Argument 1: isParallel - " + ((_executorService == null) ? false : true));
-    int i = 2;
+    LOGGER.debug(prefix + "Argument 2: maxThreadsPerQuery - " + _maxThreadsPerQuery);
+    int i = 3;
     for (PlanNode planNode : _planNodeList) {
       LOGGER.debug(prefix + "Argument " + (i++) + ":");
       planNode.showTree(prefix + "    ");
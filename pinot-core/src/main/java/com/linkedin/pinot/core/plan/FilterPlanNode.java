@@ -150,7 +150,8 @@ public class FilterPlanNode implements PlanNode {
   }
 
   /**
-   * Re orders operators, puts Sorted -> Inverted and then Raw scan. TODO: With Inverted, we can further optimize based on cardinality
+   * Re orders operators, puts Sorted -> Inverted and then Raw scan. The doc id sets of the indexed children are further
+   * ordered by their actual cardinality and combined with bitmap operations in AndBlockDocIdSet/OrBlockDocIdSet.
    * @param operators
    */
   private void reorder(List<Operator> operators) {
@@ -162,7 +163,7 @@ public class FilterPlanNode implements PlanNode {
         priority = 0;
       } else if (operator instanceof AndOperator) {
         priority = 1;
-      } else if (operator instanceof InvertedIndexBasedFilterOperator) {
+      } else if (operator instanceof BitmapBasedFilterOperator || operator instanceof InvertedIndexBasedFilterOperator) {
         priority = 2;
       } else if (operator instanceof ScanBasedFilterOperator) {
         priority = 3;
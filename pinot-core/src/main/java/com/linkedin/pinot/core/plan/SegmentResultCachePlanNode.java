@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+
+
+/**
+ * SegmentResultCachePlanNode looks up the result of a segment in the SegmentResultCache, the wrapped inner segment
+ * plan is only run on a miss.
+ *
+ *
+ */
+public class SegmentResultCachePlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger("QueryPlanLog");
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _key;
+  private final BrokerRequest _brokerRequest;
+  private final PlanNode _planNode;
+
+  public SegmentResultCachePlanNode(SegmentResultCache segmentResultCache, SegmentResultCache.Key key,
+      BrokerRequest brokerRequest, PlanNode planNode) {
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+    _brokerRequest = brokerRequest;
+    _planNode = planNode;
+  }
+
+  @Override
+  public Operator run() {
+    IntermediateResultsBlock cachedResultBlock = _segmentResultCache.get(_key, _brokerRequest);
+    if (cachedResultBlock != null) {
+      return new MSegmentResultCacheOperator(cachedResultBlock);
+    }
+    return new MSegmentResultCacheOperator(_segmentResultCache, _key, _planNode.run());
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Segment Result Cache Plan Node :");
+    LOGGER.debug(prefix + "Operator: MSegmentResultCacheOperator");
+    LOGGER.debug(prefix + "Argument 0: Inner-Segment Plan - ");
+    _planNode.showTree(prefix + "    ");
+  }
+}
@@ -30,8 +30,11 @@ import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.SegmentResultCachePlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
 import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 
 
@@ -42,9 +45,35 @@ import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
  *
  */
 public class InstancePlanMakerImplV2 implements PlanMaker {
+  private final QueryExecutorConfig _queryExecutorConfig;
+  private final SegmentResultCache _segmentResultCache;
+
+  public InstancePlanMakerImplV2() {
+    this(null);
+  }
+
+  public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig) {
+    this(queryExecutorConfig, null);
+  }
+
+  public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig, SegmentResultCache segmentResultCache) {
+    _queryExecutorConfig = queryExecutorConfig;
+    _segmentResultCache = segmentResultCache;
+  }
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    if (_segmentResultCache != null) {
+      SegmentResultCache.Key key = SegmentResultCache.getKey(indexSegment, brokerRequest);
+      if (key != null) {
+        return new SegmentResultCachePlanNode(_segmentResultCache, key, brokerRequest,
+            makeUncachedInnerSegmentPlan(indexSegment, brokerRequest));
+      }
+    }
+    return makeUncachedInnerSegmentPlan(indexSegment, brokerRequest);
+  }
+
+  private PlanNode makeUncachedInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
 
     if (brokerRequest.isSetAggregationsInfo()) {
       if (!brokerRequest.isSetGroupBy()) {
@@ -80,7 +109,8 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    final CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, getMaxThreadsPerQuery(brokerRequest));
     rootNode.setPlanNode(combinePlanNode);
     for (final IndexSegment indexSegment : indexSegmentList) {
       combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest));
@@ -88,6 +118,13 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     return new GlobalPlanImplV0(rootNode);
   }
 
+  private int getMaxThreadsPerQuery(BrokerRequest brokerRequest) {
+    if (_queryExecutorConfig == null) {
+      return QueryExecutorConfig.DEFAULT_MAX_THREADS_PER_QUERY;
+    }
+    return _queryExecutorConfig.getMaxThreadsPerQuery(brokerRequest.getQuerySource().getTableName());
+  }
+
   private boolean isGroupKeyFitForLong(IndexSegment indexSegment, BrokerRequest brokerRequest) {
     final IndexSegmentImpl columnarSegment = (IndexSegmentImpl) indexSegment;
     int totalBitSet = 0;
@@ -24,6 +24,8 @@ import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationNoDictio
 import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationNoDictionaryFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
@@ -55,6 +57,7 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithDictionary.put("sum", SumAggregationFunction.class);
     keyToFunctionWithDictionary.put("avg", AvgAggregationFunction.class);
     keyToFunctionWithDictionary.put("distinctcount", DistinctCountAggregationFunction.class);
+    keyToFunctionWithDictionary.put("distinctcounthll", DistinctCountHLLAggregationFunction.class);
   }
 
   static {
@@ -63,6 +66,7 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithoutDictionary.put("sum", SumAggregationNoDictionaryFunction.class);
     keyToFunctionWithoutDictionary.put("avg", AvgAggregationNoDictionaryFunction.class);
     keyToFunctionWithoutDictionary.put("distinctcount", DistinctCountAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("distinctcounthll", DistinctCountHLLAggregationNoDictionaryFunction.class);
   }
 
   public static void register(String aggregationKey, Class<? extends AggregationFunction> aggregationFunction) {
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.operator.MatchEntireSegmentDocIdSetBlock;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * Reads a single value, dictionary encoded column for the docs of a DocIdSetBlock a batch at a time, so that
+ * aggregation functions loop over primitive arrays instead of calling skipTo and nextIntVal for every doc.
+ *
+ * <pre>
+ *   SingleValueBatchReader reader = new SingleValueBatchReader(docIdSetBlock, block[0]);
+ *   int length;
+ *   while ((length = reader.nextDoubleValues()) > 0) {
+ *     double[] values = reader.getDoubleValues();
+ *     ...
+ *   }
+ * </pre>
+ */
+public class SingleValueBatchReader {
+  public static final int MAX_BATCH_SIZE = 10000;
+
+  private final BlockValSet _blockValSet;
+  private final Dictionary _dictionary;
+  private final boolean _matchEntireSegment;
+  private final int[] _docIds;
+  private final int _length;
+  private final int[] _dictIds;
+  private double[] _values = null;
+  private int _position = 0;
+
+  public SingleValueBatchReader(Block docIdSetBlock, Block valueBlock) {
+    DocIdSetBlock block = (DocIdSetBlock) docIdSetBlock;
+    _length = block.getSearchableLength();
+    int batchSize = Math.min(_length, MAX_BATCH_SIZE);
+    _matchEntireSegment = block instanceof MatchEntireSegmentDocIdSetBlock;
+    _docIds = _matchEntireSegment ? new int[batchSize] : block.getDocIdSet();
+    _dictIds = new int[batchSize];
+    _blockValSet = valueBlock.getBlockValueSet();
+    _dictionary = valueBlock.getMetadata().getDictionary();
+  }
+
+  /**
+   * @return true if the docs of docIdSetBlock can be read in batches from valueBlock
+   */
+  public static boolean canRead(Block docIdSetBlock, Block valueBlock) {
+    return (docIdSetBlock instanceof DocIdSetBlock) && valueBlock.getMetadata().isSingleValue();
+  }
+
+  public Dictionary getDictionary() {
+    return _dictionary;
+  }
+
+  /**
+   * Reads the dictionary ids of the next batch of docs into {@link #getDictIds()}, including
+   * {@link Dictionary#NULL_VALUE_INDEX} entries.
+   *
+   * @return number of dictionary ids read, 0 once all the docs were read
+   */
+  public int nextDictIds() {
+    int batchLength = Math.min(_dictIds.length, _length - _position);
+    if (batchLength <= 0) {
+      return 0;
+    }
+    if (_matchEntireSegment) {
+      for (int i = 0; i < batchLength; ++i) {
+        _docIds[i] = _position + i;
+      }
+      _blockValSet.readIntValues(_docIds, 0, batchLength, _dictIds, 0);
+    } else {
+      _blockValSet.readIntValues(_docIds, _position, batchLength, _dictIds, 0);
+    }
+    _position += batchLength;
+    return batchLength;
+  }
+
+  /**
+   * Reads the double values of the next batch of docs into {@link #getDoubleValues()}, skipping docs with a null
+   * dictionary id.
+   *
+   * @return number of values read, 0 once all the docs were read
+   */
+  public int nextDoubleValues() {
+    int batchLength;
+    while ((batchLength = nextDictIds()) > 0) {
+      int numValues = 0;
+      for (int i = 0; i < batchLength; ++i) {
+        int dictId = _dictIds[i];
+        if (dictId != Dictionary.NULL_VALUE_INDEX) {
+          _dictIds[numValues++] = dictId;
+        }
+      }
+      if (numValues > 0) {
+        if (_values == null) {
+          _values = new double[_dictIds.length];
+        }
+        _dictionary.readDoubleValues(_dictIds, 0, numValues, _values, 0);
+        return numValues;
+      }
+    }
+    return 0;
+  }
+
+  public int[] getDictIds() {
+    return _dictIds;
+  }
+
+  public double[] getDoubleValues() {
+    return _values;
+  }
+}
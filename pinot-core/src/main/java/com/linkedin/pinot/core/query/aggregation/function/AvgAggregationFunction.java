@@ -33,6 +33,7 @@ import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.SingleValueBatchReader;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
 import com.linkedin.pinot.core.query.utils.Pair;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
@@ -59,6 +60,9 @@ public class AvgAggregationFunction implements AggregationFunction<AvgPair, Doub
 
   @Override
   public AvgPair aggregate(Block docIdSetBlock, Block[] block) {
+    if (SingleValueBatchReader.canRead(docIdSetBlock, block[0])) {
+      return aggregate(new SingleValueBatchReader(docIdSetBlock, block[0]));
+    }
     double ret = 0;
     long cnt = 0;
     int docId = 0;
@@ -78,6 +82,20 @@ public class AvgAggregationFunction implements AggregationFunction<AvgPair, Doub
     return new AvgPair(ret, cnt);
   }
 
+  private AvgPair aggregate(SingleValueBatchReader reader) {
+    double ret = 0;
+    long cnt = 0;
+    int length;
+    while ((length = reader.nextDoubleValues()) > 0) {
+      double[] values = reader.getDoubleValues();
+      for (int i = 0; i < length; ++i) {
+        ret += values[i];
+      }
+      cnt += length;
+    }
+    return new AvgPair(ret, cnt);
+  }
+
   @Override
   public AvgPair aggregate(AvgPair mergedResult, int docId, Block[] block) {
     BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
@@ -32,6 +32,7 @@ import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.SingleValueBatchReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +54,9 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
 
   @Override
   public IntOpenHashSet aggregate(Block docIdSetBlock, Block[] block) {
+    if (SingleValueBatchReader.canRead(docIdSetBlock, block[0])) {
+      return aggregate(new SingleValueBatchReader(docIdSetBlock, block[0]));
+    }
     IntOpenHashSet ret = new IntOpenHashSet();
     int docId = 0;
     Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
@@ -85,6 +89,27 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
     return ret;
   }
 
+  private IntOpenHashSet aggregate(SingleValueBatchReader reader) {
+    IntOpenHashSet ret = new IntOpenHashSet();
+    Dictionary dictionaryReader = reader.getDictionary();
+    // Each dictionary value only needs to be hashed once. The seen ids are bounded by the block length, not by the
+    // cardinality of the column.
+    IntOpenHashSet addedDictionaryIds = new IntOpenHashSet();
+    int length;
+    while ((length = reader.nextDictIds()) > 0) {
+      int[] dictIds = reader.getDictIds();
+      for (int i = 0; i < length; ++i) {
+        int dictionaryIndex = dictIds[i];
+        if (dictionaryIndex == Dictionary.NULL_VALUE_INDEX) {
+          ret.add(Integer.MIN_VALUE);
+        } else if (addedDictionaryIds.add(dictionaryIndex)) {
+          ret.add(dictionaryReader.get(dictionaryIndex).hashCode());
+        }
+      }
+    }
+    return ret;
+  }
+
   @Override
   public IntOpenHashSet aggregate(IntOpenHashSet mergedResult, int docId, Block[] block) {
     if (mergedResult == null) {
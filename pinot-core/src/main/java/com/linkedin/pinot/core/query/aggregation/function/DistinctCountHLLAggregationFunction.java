@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.SingleValueBatchReader;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * Approximate distinct count based on HyperLogLog sketches. Unlike distinctCount, the intermediate results are
+ * bounded by 2^log2m bytes whatever the cardinality of the column, and small ones stay sparse. The precision can be
+ * set with the optional "log2m" aggregation parameter, it defaults to {@link HyperLogLog#DEFAULT_LOG2M}.
+ */
+public class DistinctCountHLLAggregationFunction implements AggregationFunction<HyperLogLog, Long> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DistinctCountHLLAggregationFunction.class);
+
+  public static final String LOG2M = "log2m";
+
+  private String _distinctCountHLLColumnName;
+  protected int _log2m = HyperLogLog.DEFAULT_LOG2M;
+
+  public DistinctCountHLLAggregationFunction() {
+
+  }
+
+  @Override
+  public void init(AggregationInfo aggregationInfo) {
+    _distinctCountHLLColumnName = aggregationInfo.getAggregationParams().get("column");
+    String log2m = aggregationInfo.getAggregationParams().get(LOG2M);
+    if (log2m != null) {
+      _log2m = Integer.parseInt(log2m);
+    }
+  }
+
+  @Override
+  public HyperLogLog aggregate(Block docIdSetBlock, Block[] block) {
+    if (SingleValueBatchReader.canRead(docIdSetBlock, block[0])) {
+      return aggregate(new SingleValueBatchReader(docIdSetBlock, block[0]));
+    }
+    HyperLogLog ret = new HyperLogLog(_log2m);
+    int docId = 0;
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+
+    // Each dictionary value only needs to be hashed once. The seen ids are bounded by the block length, not by the
+    // cardinality of the column.
+    IntOpenHashSet offeredDictionaryIds = new IntOpenHashSet();
+    boolean offeredNull = false;
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      if (blockValIterator.skipTo(docId)) {
+        int dictionaryIndex = blockValIterator.nextIntVal();
+        if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+          if (offeredDictionaryIds.add(dictionaryIndex)) {
+            ret.offer(dictionaryReader.get(dictionaryIndex));
+          }
+        } else if (!offeredNull) {
+          offeredNull = true;
+          ret.offer(Integer.MIN_VALUE);
+        }
+      }
+    }
+    return ret;
+  }
+
+  private HyperLogLog aggregate(SingleValueBatchReader reader) {
+    HyperLogLog ret = new HyperLogLog(_log2m);
+    Dictionary dictionaryReader = reader.getDictionary();
+    IntOpenHashSet offeredDictionaryIds = new IntOpenHashSet();
+    boolean offeredNull = false;
+    int length;
+    while ((length = reader.nextDictIds()) > 0) {
+      int[] dictIds = reader.getDictIds();
+      for (int i = 0; i < length; ++i) {
+        int dictionaryIndex = dictIds[i];
+        if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+          if (offeredDictionaryIds.add(dictionaryIndex)) {
+            ret.offer(dictionaryReader.get(dictionaryIndex));
+          }
+        } else if (!offeredNull) {
+          offeredNull = true;
+          ret.offer(Integer.MIN_VALUE);
+        }
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public HyperLogLog aggregate(HyperLogLog mergedResult, int docId, Block[] block) {
+    if (mergedResult == null) {
+      mergedResult = new HyperLogLog(_log2m);
+    }
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    if (blockValIterator.skipTo(docId)) {
+      int dictId = blockValIterator.nextIntVal();
+      if (dictId != Dictionary.NULL_VALUE_INDEX) {
+        mergedResult.offer(block[0].getMetadata().getDictionary().get(dictId));
+      } else {
+        mergedResult.offer(Integer.MIN_VALUE);
+      }
+    }
+    return mergedResult;
+  }
+
+  @Override
+  public List<HyperLogLog> combine(List<HyperLogLog> aggregationResultList, CombineLevel combineLevel) {
+    if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
+      return null;
+    }
+    HyperLogLog hyperLogLog = aggregationResultList.get(0);
+    for (int i = 1; i < aggregationResultList.size(); ++i) {
+      hyperLogLog.merge(aggregationResultList.get(i));
+    }
+    aggregationResultList.clear();
+    aggregationResultList.add(hyperLogLog);
+    return aggregationResultList;
+  }
+
+  @Override
+  public HyperLogLog combineTwoValues(HyperLogLog aggregationResult0, HyperLogLog aggregationResult1) {
+    if (aggregationResult0 == null) {
+      return aggregationResult1;
+    }
+    if (aggregationResult1 == null) {
+      return aggregationResult0;
+    }
+    return aggregationResult0.merge(aggregationResult1);
+  }
+
+  @Override
+  public Long reduce(List<HyperLogLog> combinedResultList) {
+    if ((combinedResultList == null) || combinedResultList.isEmpty()) {
+      return 0L;
+    }
+    HyperLogLog reducedResult = combinedResultList.get(0);
+    for (int i = 1; i < combinedResultList.size(); ++i) {
+      reducedResult.merge(combinedResultList.get(i));
+    }
+    return reducedResult.cardinality();
+  }
+
+  @Override
+  public JSONObject render(Long finalAggregationResult) {
+    try {
+      return new JSONObject().put("value", finalAggregationResult.toString());
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while rendering aggregation result", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  @Override
+  public DataType aggregateResultDataType() {
+    return DataType.OBJECT;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return "distinctCountHLL_" + _distinctCountHLLColumnName;
+  }
+
+  @Override
+  public Serializable getDefaultValue() {
+    return new HyperLogLog(_log2m);
+  }
+
+}
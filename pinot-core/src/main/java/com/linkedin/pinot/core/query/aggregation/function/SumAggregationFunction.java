@@ -30,6 +30,7 @@ import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.SingleValueBatchReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +57,9 @@ public class SumAggregationFunction implements AggregationFunction<Double, Doubl
 
   @Override
   public Double aggregate(Block docIdSetBlock, Block[] block) {
+    if (SingleValueBatchReader.canRead(docIdSetBlock, block[0])) {
+      return aggregate(new SingleValueBatchReader(docIdSetBlock, block[0]));
+    }
     double ret = 0;
     int docId = 0;
     Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
@@ -73,6 +77,18 @@ public class SumAggregationFunction implements AggregationFunction<Double, Doubl
     return ret;
   }
 
+  private double aggregate(SingleValueBatchReader reader) {
+    double ret = 0;
+    int length;
+    while ((length = reader.nextDoubleValues()) > 0) {
+      double[] values = reader.getDoubleValues();
+      for (int i = 0; i < length; ++i) {
+        ret += values[i];
+      }
+    }
+    return ret;
+  }
+
   @Override
   public Double aggregate(Double mergedResult, int docId, Block[] block) {
     BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
@@ -89,30 +89,52 @@ public class AggregationGroupByOperatorService {
     }
     List<Map<String, Serializable>> reducedResult = null;
     for (DataTable toBeReducedGroupByResults : instanceResponseMap.values()) {
-      if (reducedResult == null) {
-        if (toBeReducedGroupByResults != null) {
-          reducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        }
-      } else {
-        List<Map<String, Serializable>> toBeReducedResult =
-            transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        for (int i = 0; i < reducedResult.size(); ++i) {
-          for (String key : toBeReducedResult.get(i).keySet()) {
-            if (reducedResult.get(i).containsKey(key)) {
-              reducedResult.get(i).put(
-                  key,
-                  _aggregationFunctionList.get(i).combineTwoValues(reducedResult.get(i).get(key),
-                      toBeReducedResult.get(i).get(key)));
-            } else {
-              reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
-            }
-          }
+      reducedResult = combineGroupByOperators(reducedResult, toBeReducedGroupByResults);
+    }
+    reduceCombinedGroupByOperators(reducedResult);
+    return reducedResult;
+  }
+
+  /**
+   * Merge the group by results of one DataTable into the results combined so far.
+   *
+   * @param combinedResult results combined so far, null for the first DataTable
+   * @param toBeReducedGroupByResults
+   * @return the combined results
+   */
+  public List<Map<String, Serializable>> combineGroupByOperators(List<Map<String, Serializable>> combinedResult,
+      DataTable toBeReducedGroupByResults) {
+    if (combinedResult == null) {
+      if (toBeReducedGroupByResults != null) {
+        return transformDataTableToGroupByResult(toBeReducedGroupByResults);
+      }
+      return null;
+    }
+    List<Map<String, Serializable>> toBeReducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
+    for (int i = 0; i < combinedResult.size(); ++i) {
+      for (String key : toBeReducedResult.get(i).keySet()) {
+        if (combinedResult.get(i).containsKey(key)) {
+          combinedResult.get(i).put(
+              key,
+              _aggregationFunctionList.get(i).combineTwoValues(combinedResult.get(i).get(key),
+                  toBeReducedResult.get(i).get(key)));
+        } else {
+          combinedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
         }
       }
     }
-    if (reducedResult != null) {
-      for (int i = 0; i < reducedResult.size(); ++i) {
-        Map<String, Serializable> functionLevelReducedResult = reducedResult.get(i);
+    return combinedResult;
+  }
+
+  /**
+   * Replace in place the combined value of each group by its reduced value.
+   *
+   * @param combinedResult
+   */
+  public void reduceCombinedGroupByOperators(List<Map<String, Serializable>> combinedResult) {
+    if (combinedResult != null) {
+      for (int i = 0; i < combinedResult.size(); ++i) {
+        Map<String, Serializable> functionLevelReducedResult = combinedResult.get(i);
         for (String key : functionLevelReducedResult.keySet()) {
           if (functionLevelReducedResult.get(key) != null) {
             functionLevelReducedResult.put(key,
@@ -121,7 +143,6 @@ public class AggregationGroupByOperatorService {
         }
       }
     }
-    return reducedResult;
   }
 
   public List<JSONObject> renderGroupByOperators(List<Map<String, Serializable>> finalAggregationResult) {
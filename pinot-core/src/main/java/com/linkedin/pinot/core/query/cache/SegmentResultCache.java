@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.DataTableSerDe;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+
+
+/**
+ * Server side cache of the per segment results of aggregation and aggregation group-by queries.
+ *
+ * Only immutable offline segments are cached. Entries are keyed by table, segment name and segment CRC plus the parts
+ * of the request that determine a segment result (filter, aggregations, group-by), so a reloaded segment with new
+ * content never matches the entries of the previous version, which then age out of the LRU.
+ *
+ * Results are kept serialized: the cache is bounded by the actual bytes held, and every hit hands out fresh objects
+ * that the combine phase is free to merge into.
+ */
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  private final Cache<Key, CachedResult> _cache;
+  private final ServerMetrics _serverMetrics;
+
+  public SegmentResultCache(long maxSizeInBytes, ServerMetrics serverMetrics) {
+    _serverMetrics = serverMetrics;
+    _cache = CacheBuilder.newBuilder().maximumWeight(maxSizeInBytes).weigher(new Weigher<Key, CachedResult>() {
+      @Override
+      public int weigh(Key key, CachedResult cachedResult) {
+        return cachedResult._sizeInBytes;
+      }
+    }).build();
+    LOGGER.info("Segment result cache of {} bytes", maxSizeInBytes);
+  }
+
+  /**
+   * Returns the cache key for the segment result of the request, or null if it cannot be cached.
+   */
+  public static Key getKey(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    if (!(indexSegment instanceof IndexSegmentImpl) || !brokerRequest.isSetAggregationsInfo()
+        || brokerRequest.isEnableTrace()) {
+      return null;
+    }
+    String crc = indexSegment.getSegmentMetadata().getCrc();
+    if (crc == null) {
+      return null;
+    }
+    BrokerRequest normalizedRequest = new BrokerRequest();
+    normalizedRequest.setAggregationsInfo(brokerRequest.getAggregationsInfo());
+    normalizedRequest.setGroupBy(brokerRequest.getGroupBy());
+    normalizedRequest.setFilterQuery(brokerRequest.getFilterQuery());
+    normalizedRequest.setFilterSubQueryMap(brokerRequest.getFilterSubQueryMap());
+    return new Key(brokerRequest.getQuerySource().getTableName(), indexSegment.getSegmentName(), crc,
+        normalizedRequest.deepCopy());
+  }
+
+  /**
+   * Returns a fresh result block for the key, or null on a miss.
+   */
+  public IntermediateResultsBlock get(Key key, BrokerRequest brokerRequest) {
+    CachedResult cachedResult = _cache.getIfPresent(key);
+    if (cachedResult == null) {
+      _serverMetrics.addMeteredValue(brokerRequest, ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+      return null;
+    }
+    try {
+      IntermediateResultsBlock resultBlock = cachedResult.toResultBlock(brokerRequest);
+      _serverMetrics.addMeteredValue(brokerRequest, ServerMeter.SEGMENT_RESULT_CACHE_HITS, 1);
+      return resultBlock;
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while reading cached result of segment {}, dropping it", key._segmentName, e);
+      _cache.invalidate(key);
+      _serverMetrics.addMeteredValue(brokerRequest, ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+      return null;
+    }
+  }
+
+  /**
+   * Caches the result block computed for the key. Blocks carrying exceptions are not cached.
+   */
+  public void put(Key key, IntermediateResultsBlock resultBlock) {
+    // Failed blocks come with an exception list, possibly still empty when the failure is attached later
+    if (resultBlock.getExceptions() != null) {
+      return;
+    }
+    try {
+      _cache.put(key, new CachedResult(resultBlock));
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while caching result of segment {}", key._segmentName, e);
+    }
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  public static class Key {
+    private final String _tableName;
+    private final String _segmentName;
+    private final String _crc;
+    private final BrokerRequest _normalizedRequest;
+    private final int _hashCode;
+
+    private Key(String tableName, String segmentName, String crc, BrokerRequest normalizedRequest) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _crc = crc;
+      _normalizedRequest = normalizedRequest;
+      _hashCode = 31 * (31 * (31 * String.valueOf(tableName).hashCode() + segmentName.hashCode()) + crc.hashCode())
+          + normalizedRequest.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return _hashCode == other._hashCode && _segmentName.equals(other._segmentName) && _crc.equals(other._crc)
+          && String.valueOf(_tableName).equals(String.valueOf(other._tableName))
+          && _normalizedRequest.equals(other._normalizedRequest);
+    }
+  }
+
+  private static class CachedResult {
+    private final byte[][] _aggregationResults;
+    private final byte[][] _groupByResults;
+    private final long _numDocsScanned;
+    private final long _totalDocs;
+    private final int _sizeInBytes;
+    // Read back with the SerDe the results were written with
+    private final DataTableSerDe _serDe;
+
+    private CachedResult(IntermediateResultsBlock resultBlock) {
+      _serDe = DataTableSerDeRegistry.getInstance().getSerializer();
+      _aggregationResults = serialize(_serDe, resultBlock.getAggregationResult());
+      _groupByResults = serialize(_serDe, resultBlock.getAggregationGroupByOperatorResult());
+      _numDocsScanned = resultBlock.getNumDocsScanned();
+      _totalDocs = resultBlock.getTotalDocs();
+      _sizeInBytes = getSizeInBytes(_aggregationResults) + getSizeInBytes(_groupByResults);
+    }
+
+    private IntermediateResultsBlock toResultBlock(BrokerRequest brokerRequest) {
+      DataTableSerDe serDe = _serDe;
+      IntermediateResultsBlock resultBlock;
+      if (_groupByResults != null) {
+        List<Map<String, Serializable>> groupByResults = new ArrayList<Map<String, Serializable>>();
+        for (byte[] bytes : _groupByResults) {
+          @SuppressWarnings("unchecked")
+          Map<String, Serializable> groupByResult = (Map<String, Serializable>) serDe.<Serializable> deserialize(bytes);
+          groupByResults.add(groupByResult);
+        }
+        resultBlock =
+            new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+                groupByResults, true);
+      } else {
+        List<Serializable> aggregationResults = new ArrayList<Serializable>();
+        for (byte[] bytes : _aggregationResults) {
+          Serializable aggregationResult = serDe.deserialize(bytes);
+          aggregationResults.add(aggregationResult);
+        }
+        resultBlock =
+            new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+                aggregationResults);
+      }
+      resultBlock.setNumDocsScanned(_numDocsScanned);
+      resultBlock.setTotalDocs(_totalDocs);
+      resultBlock.setTimeUsedMs(0);
+      return resultBlock;
+    }
+
+    private static byte[][] serialize(DataTableSerDe serDe, List<?> values) {
+      if (values == null) {
+        return null;
+      }
+      byte[][] serializedValues = new byte[values.size()][];
+      for (int i = 0; i < serializedValues.length; i++) {
+        serializedValues[i] = serDe.serialize(values.get(i));
+      }
+      return serializedValues;
+    }
+
+    private static int getSizeInBytes(byte[][] serializedValues) {
+      if (serializedValues == null) {
+        return 0;
+      }
+      int sizeInBytes = 0;
+      for (byte[] bytes : serializedValues) {
+        sizeInBytes += bytes.length;
+      }
+      return sizeInBytes;
+    }
+  }
+}
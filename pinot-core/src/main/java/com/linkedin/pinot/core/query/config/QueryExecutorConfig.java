@@ -32,6 +32,21 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Prefix key of inter segment combine parallelism, e.g. combine.maxThreadsPerQuery for the server wide default and
+  // combine.myTable_OFFLINE.maxThreadsPerQuery for a per table override
+  public static final String COMBINE = "combine";
+  public static final String MAX_THREADS_PER_QUERY = "maxThreadsPerQuery";
+  // Key of the binary DataTable format switch. Off by default: the DataTable version does not tell the formats apart,
+  // so brokers must be able to read the binary format before it is turned on
+  public static final String ENABLE_CUSTOM_DATA_TABLE_SER_DE = "enableCustomDataTableSerDe";
+  // Keys of the per segment result cache, e.g. segmentResultCache.enabled and segmentResultCache.maxSizeInBytes
+  public static final String SEGMENT_RESULT_CACHE = "segmentResultCache";
+  public static final String ENABLED = "enabled";
+  public static final String MAX_SIZE_IN_BYTES = "maxSizeInBytes";
+
+  public static final long DEFAULT_SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES = 64L * 1024 * 1024;
+
+  public static final int DEFAULT_MAX_THREADS_PER_QUERY = Runtime.getRuntime().availableProcessors();
 
   private static final String[] REQUIRED_KEYS = {};
 
@@ -39,6 +54,10 @@ public class QueryExecutorConfig {
   private SegmentPrunerConfig _segmentPrunerConfig;
   private QueryPlannerConfig _queryPlannerConfig;
   private final long _timeOutMs;
+  private final int _maxThreadsPerQuery;
+  private final boolean _enableCustomDataTableSerDe;
+  private final boolean _enableSegmentResultCache;
+  private final long _segmentResultCacheMaxSizeInBytes;
 
   public QueryExecutorConfig(Configuration config) throws ConfigurationException {
     _queryExecutorConfig = config;
@@ -46,6 +65,12 @@ public class QueryExecutorConfig {
     _segmentPrunerConfig = new SegmentPrunerConfig(_queryExecutorConfig.subset(QUERY_PRUNER));
     _queryPlannerConfig = new QueryPlannerConfig(_queryExecutorConfig.subset(QUERY_PLANNER));
     _timeOutMs = _queryExecutorConfig.getLong(TIME_OUT, -1);
+    _maxThreadsPerQuery =
+        _queryExecutorConfig.getInt(COMBINE + "." + MAX_THREADS_PER_QUERY, DEFAULT_MAX_THREADS_PER_QUERY);
+    _enableCustomDataTableSerDe = _queryExecutorConfig.getBoolean(ENABLE_CUSTOM_DATA_TABLE_SER_DE, false);
+    _enableSegmentResultCache = _queryExecutorConfig.getBoolean(SEGMENT_RESULT_CACHE + "." + ENABLED, false);
+    _segmentResultCacheMaxSizeInBytes = _queryExecutorConfig.getLong(SEGMENT_RESULT_CACHE + "." + MAX_SIZE_IN_BYTES,
+        DEFAULT_SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES);
   }
 
   private void checkRequiredKeys() throws ConfigurationException {
@@ -71,4 +96,23 @@ public class QueryExecutorConfig {
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  /**
+   * Max number of threads a single query on the given table may use to process its segments.
+   */
+  public int getMaxThreadsPerQuery(String tableName) {
+    return _queryExecutorConfig.getInt(COMBINE + "." + tableName + "." + MAX_THREADS_PER_QUERY, _maxThreadsPerQuery);
+  }
+
+  public boolean isCustomDataTableSerDeEnabled() {
+    return _enableCustomDataTableSerDe;
+  }
+
+  public boolean isSegmentResultCacheEnabled() {
+    return _enableSegmentResultCache;
+  }
+
+  public long getSegmentResultCacheMaxSizeInBytes() {
+    return _segmentResultCacheMaxSizeInBytes;
+  }
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.config;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+
+
+/**
+ * Config for the QueryScheduler sitting between the server request handler and the QueryExecutor.
+ *
+ *
+ */
+public class QuerySchedulerConfig {
+
+  // Scheduling policy, one of fcfs, priority or tokenbucket
+  public static final String ALGORITHM = "algorithm";
+  // Number of threads running queries, the same as the netty worker threads that used to run them
+  public static final String QUERY_RUNNER_THREADS = "queryRunnerThreads";
+  // Bounds on the number of queries waiting for a query runner, over all the tables and per table
+  public static final String MAX_PENDING_QUERIES = "maxPendingQueries";
+  public static final String MAX_PENDING_QUERIES_PER_TABLE = "maxPendingQueriesPerTable";
+  // Per table keys, e.g. table.myTable_OFFLINE.priority
+  public static final String TABLE = "table";
+  public static final String PRIORITY = "priority";
+  // Token bucket keys, tokensPerSecond can be overridden per table, e.g. table.myTable_OFFLINE.tokensPerSecond
+  public static final String TOKENS_PER_SECOND = "tokensPerSecond";
+  public static final String MAX_TOKENS = "maxTokens";
+
+  public static final String FCFS = "fcfs";
+  public static final String PRIORITY_ALGORITHM = "priority";
+  public static final String TOKEN_BUCKET = "tokenbucket";
+
+  public static final int DEFAULT_QUERY_RUNNER_THREADS = 20;
+  public static final int DEFAULT_MAX_PENDING_QUERIES = 1000;
+  public static final int DEFAULT_MAX_PENDING_QUERIES_PER_TABLE = 100;
+  // One query runner thread worth of time, in milliseconds, per second
+  public static final long DEFAULT_TOKENS_PER_SECOND = 1000L;
+
+  private final Configuration _schedulerConfig;
+  private final String _algorithm;
+  private final int _queryRunnerThreads;
+  private final int _maxPendingQueries;
+  private final int _maxPendingQueriesPerTable;
+  private final long _tokensPerSecond;
+  private final long _maxTokens;
+
+  public QuerySchedulerConfig(Configuration config) {
+    _schedulerConfig = (config == null) ? new PropertiesConfiguration() : config;
+    _algorithm = _schedulerConfig.getString(ALGORITHM, FCFS).toLowerCase();
+    _queryRunnerThreads = _schedulerConfig.getInt(QUERY_RUNNER_THREADS, DEFAULT_QUERY_RUNNER_THREADS);
+    _maxPendingQueries = _schedulerConfig.getInt(MAX_PENDING_QUERIES, DEFAULT_MAX_PENDING_QUERIES);
+    _maxPendingQueriesPerTable =
+        _schedulerConfig.getInt(MAX_PENDING_QUERIES_PER_TABLE, DEFAULT_MAX_PENDING_QUERIES_PER_TABLE);
+    _tokensPerSecond = _schedulerConfig.getLong(TOKENS_PER_SECOND, DEFAULT_TOKENS_PER_SECOND);
+    _maxTokens = _schedulerConfig.getLong(MAX_TOKENS, 10 * _tokensPerSecond);
+  }
+
+  public Configuration getConfig() {
+    return _schedulerConfig;
+  }
+
+  public String getAlgorithm() {
+    return _algorithm;
+  }
+
+  public int getQueryRunnerThreads() {
+    return _queryRunnerThreads;
+  }
+
+  public int getMaxPendingQueries() {
+    return _maxPendingQueries;
+  }
+
+  public int getMaxPendingQueriesPerTable() {
+    return _maxPendingQueriesPerTable;
+  }
+
+  /**
+   * Static priority of the given table, tables with a higher priority are scheduled first.
+   */
+  public int getPriority(String tableName) {
+    return _schedulerConfig.getInt(TABLE + "." + tableName + "." + PRIORITY, 0);
+  }
+
+  /**
+   * Milliseconds of query runner time the given table earns per second under the token bucket policy.
+   */
+  public long getTokensPerSecond(String tableName) {
+    return _schedulerConfig.getLong(TABLE + "." + tableName + "." + TOKENS_PER_SECOND, _tokensPerSecond);
+  }
+
+  public long getMaxTokens() {
+    return _maxTokens;
+  }
+}
@@ -36,6 +36,8 @@ import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.common.datatable.DataTableCustomSerDe;
 import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
@@ -43,7 +45,10 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.query.pruner.DataSchemaSegmentPruner;
+import com.linkedin.pinot.core.query.pruner.SegmentPruner;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
 import com.yammer.metrics.Metrics;
@@ -59,6 +64,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   private QueryExecutorConfig _queryExecutorConfig = null;
   private InstanceDataManager _instanceDataManager = null;
   private SegmentPrunerService _segmentPrunerService = null;
+  private final SegmentPruner _dataSchemaSegmentPruner = new DataSchemaSegmentPruner();
   private PlanMaker _planMaker = null;
   private Timer _queryExecutorTimer = null;
   private volatile boolean _isStarted = false;
@@ -84,12 +90,20 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _defaultTimeOutMs = _queryExecutorConfig.getTimeOut();
     }
     LOGGER.info("Default timeout for query executor : {}", _defaultTimeOutMs);
+    if (_queryExecutorConfig.isCustomDataTableSerDeEnabled()) {
+      DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe());
+    }
     LOGGER.info("Trying to build SegmentPrunerService");
     if (_segmentPrunerService == null) {
       _segmentPrunerService = new SegmentPrunerServiceImpl(_queryExecutorConfig.getPrunerConfig());
     }
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2();
+    SegmentResultCache segmentResultCache = null;
+    if (_queryExecutorConfig.isSegmentResultCacheEnabled()) {
+      segmentResultCache =
+          new SegmentResultCache(_queryExecutorConfig.getSegmentResultCacheMaxSizeInBytes(), _serverMetrics);
+    }
+    _planMaker = new InstancePlanMakerImplV2(_queryExecutorConfig, segmentResultCache);
     LOGGER.info("Trying to build QueryExecutorTimer");
     if (_queryExecutorTimer == null) {
       _queryExecutorTimer =
@@ -177,6 +191,17 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
         queryableSegmentDataManagerList.add(indexSegment);
       }
     }
+    if (queryableSegmentDataManagerList.isEmpty()) {
+      // Keep one segment able to serve the query, so that the response still has the shape of the query (e.g. a
+      // count of 0) instead of being dropped as empty by the broker.
+      for (final SegmentDataManager segmentDataManager : matchedSegmentDataManagerFromServer) {
+        final IndexSegment indexSegment = segmentDataManager.getSegment();
+        if (!_dataSchemaSegmentPruner.prune(indexSegment, instanceRequest.getQuery())) {
+          queryableSegmentDataManagerList.add(indexSegment);
+          break;
+        }
+      }
+    }
     return queryableSegmentDataManagerList;
   }
 
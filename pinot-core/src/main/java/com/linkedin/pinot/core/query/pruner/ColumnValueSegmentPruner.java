@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import java.util.List;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Pruner will prune segment if the filter can not match any value of the segment. EQUALITY, IN and RANGE
+ * predicates are checked against the sorted dictionary of the column, which gives both the min/max value and
+ * an exact membership test. AND prunes if any child prunes, OR prunes only if every child prunes.
+ * Other predicates, realtime segments and columns missing from the segment are never pruned here.
+ *
+ *
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree == null) {
+      return false;
+    }
+    return pruneSegment(segment, filterQueryTree);
+  }
+
+  private boolean pruneSegment(IndexSegment segment, FilterQueryTree filterQueryTree) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (pruneSegment(segment, child)) {
+              return true;
+            }
+          }
+          return false;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (!pruneSegment(segment, child)) {
+              return false;
+            }
+          }
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    ImmutableDictionaryReader dictionary = getSortedDictionary(segment, filterQueryTree.getColumn());
+    if (dictionary == null || dictionary.length() == 0) {
+      return false;
+    }
+    List<String> values = filterQueryTree.getValue();
+    try {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY:
+          return dictionary.indexOf(new EqPredicate(filterQueryTree.getColumn(), values).getEqualsValue()) < 0;
+        case IN:
+          for (String value : new InPredicate(filterQueryTree.getColumn(), values).getInRange()) {
+            if (dictionary.indexOf(value) >= 0) {
+              return false;
+            }
+          }
+          return true;
+        case RANGE:
+          return !rangeOverlaps(dictionary, new RangePredicate(filterQueryTree.getColumn(), values));
+        default:
+          return false;
+      }
+    } catch (NumberFormatException e) {
+      // Value does not parse as the column type, leave it to the query to reject.
+      return false;
+    }
+  }
+
+  private static ImmutableDictionaryReader getSortedDictionary(IndexSegment segment, String column) {
+    Schema schema = segment.getSegmentMetadata().getSchema();
+    if (schema == null || !schema.isExisted(column)) {
+      return null;
+    }
+    DataSource dataSource = segment.getDataSource(column);
+    if (dataSource == null) {
+      return null;
+    }
+    Dictionary dictionary = dataSource.getDictionary();
+    if (dictionary instanceof ImmutableDictionaryReader) {
+      return (ImmutableDictionaryReader) dictionary;
+    }
+    return null;
+  }
+
+  /**
+   * Same boundary handling as RangeOfflineDictionaryPredicateEvaluator, without materializing the dictionary ids.
+   */
+  private static boolean rangeOverlaps(ImmutableDictionaryReader dictionary, RangePredicate predicate) {
+    final String lower = predicate.getLowerBoundary();
+    final String upper = predicate.getUpperBoundary();
+
+    int rangeStartIndex = 0;
+    if (!lower.equals("*")) {
+      rangeStartIndex = dictionary.indexOf(lower);
+      if (rangeStartIndex < 0) {
+        rangeStartIndex = -(rangeStartIndex + 1);
+      } else if (!predicate.includeLowerBoundary()) {
+        rangeStartIndex += 1;
+      }
+    }
+
+    int rangeEndIndex = dictionary.length() - 1;
+    if (!upper.equals("*")) {
+      rangeEndIndex = dictionary.indexOf(upper);
+      if (rangeEndIndex < 0) {
+        rangeEndIndex = -(rangeEndIndex + 1) - 1;
+      } else if (!predicate.includeUpperBoundary()) {
+        rangeEndIndex -= 1;
+      }
+    }
+    return rangeStartIndex <= rangeEndIndex;
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.query.IncrementalReducer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+
+
+/**
+ * IncrementalReducer used by the DefaultReduceService. Each DataTable is merged into a running accumulator as soon as
+ * it is reduced: the selected rows so far, one combined value per aggregation function, or the combined group by
+ * result maps.
+ */
+public class DefaultIncrementalReducer implements IncrementalReducer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultIncrementalReducer.class);
+
+  private static String NUM_DOCS_SCANNED = "numDocsScanned";
+  private static String TIME_USED_MS = "timeUsedMs";
+  private static String TOTAL_DOCS = "totalDocs";
+
+  private final BrokerRequest _brokerRequest;
+  private final BrokerResponse _brokerResponse = new BrokerResponse();
+  private final boolean _isSelectionQuery;
+  private int _numInstanceResponses = 0;
+  private Exception _reduceException = null;
+
+  // Selection
+  private DataSchema _selectionDataSchema = null;
+  private SelectionOperatorService _selectionOperatorService = null;
+  private Collection<Serializable[]> _selectionRows = null;
+
+  // Aggregation
+  private List<AggregationFunction> _aggregationFunctions = null;
+  private Serializable[] _combinedAggregationResults = null;
+  private boolean _hasAggregationResults = false;
+
+  // Aggregation group by
+  private AggregationGroupByOperatorService _aggregationGroupByOperatorService = null;
+  private List<Map<String, Serializable>> _combinedGroupByResults = null;
+
+  public DefaultIncrementalReducer(BrokerRequest brokerRequest) {
+    _brokerRequest = brokerRequest;
+    _isSelectionQuery =
+        brokerRequest.isSetSelections() && (brokerRequest.getSelections().getSelectionColumns() != null)
+            && (brokerRequest.getSelections().getSelectionColumns().size() >= 0);
+    if (!_isSelectionQuery && brokerRequest.isSetAggregationsInfo()) {
+      if (brokerRequest.isSetGroupBy()) {
+        _aggregationGroupByOperatorService =
+            new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
+      } else {
+        _aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(brokerRequest);
+        _combinedAggregationResults = new Serializable[_aggregationFunctions.size()];
+      }
+    }
+  }
+
+  @Override
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+    _numInstanceResponses++;
+    if (instanceResponse == null) {
+      return;
+    }
+    if (instanceResponse.getDataSchema() == null && instanceResponse.getMetadata() != null) {
+      for (String key : instanceResponse.getMetadata().keySet()) {
+        if (key.startsWith("Exception")) {
+          ProcessingException processingException = new ProcessingException();
+          processingException.setErrorCode(Integer.parseInt(key.substring(9)));
+          processingException.setMessage(instanceResponse.getMetadata().get(key));
+          _brokerResponse.addToExceptions(processingException);
+        }
+      }
+      return;
+    }
+
+    // reduceOnNumDocsScanned
+    _brokerResponse.setNumDocsScanned(_brokerResponse.getNumDocsScanned()
+        + Long.parseLong(instanceResponse.getMetadata().get(NUM_DOCS_SCANNED)));
+    // reduceOnTotalDocs
+    _brokerResponse.setTotalDocs(_brokerResponse.getTotalDocs()
+        + Long.parseLong(instanceResponse.getMetadata().get(TOTAL_DOCS)));
+    if (Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)) > _brokerResponse.getTimeUsedMs()) {
+      _brokerResponse.setTimeUsedMs(Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)));
+    }
+
+    if (_reduceException != null) {
+      return;
+    }
+    try {
+      if (_isSelectionQuery) {
+        reduceOnSelectionResults(instanceResponse);
+      } else if (_aggregationGroupByOperatorService != null) {
+        _combinedGroupByResults =
+            _aggregationGroupByOperatorService.combineGroupByOperators(_combinedGroupByResults, instanceResponse);
+      } else if (_aggregationFunctions != null) {
+        reduceOnAggregationResults(instanceResponse);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while reducing results from server: {}", serverInstance, e);
+      _reduceException = e;
+    }
+  }
+
+  @Override
+  public BrokerResponse getBrokerResponse() {
+    if (_numInstanceResponses == 0) {
+      return BrokerResponse.EMPTY_RESULT;
+    }
+    if (_reduceException != null) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR,
+          _reduceException));
+      return _brokerResponse;
+    }
+    try {
+      if (_isSelectionQuery) {
+        _brokerResponse.setSelectionResults(renderSelectionResults());
+        return _brokerResponse;
+      }
+      if (_aggregationGroupByOperatorService != null) {
+        _aggregationGroupByOperatorService.reduceCombinedGroupByOperators(_combinedGroupByResults);
+        _brokerResponse.setAggregationResults(_aggregationGroupByOperatorService
+            .renderGroupByOperators(_combinedGroupByResults));
+        return _brokerResponse;
+      }
+      if (_aggregationFunctions != null) {
+        _brokerResponse.setAggregationResults(renderAggregationResults());
+        return _brokerResponse;
+      }
+    } catch (Exception e) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR, e));
+      return _brokerResponse;
+    }
+    throw new UnsupportedOperationException(
+        "Should not reach here, the query has no attributes of selection or aggregation!");
+  }
+
+  private void reduceOnSelectionResults(DataTable instanceResponse) {
+    if (_selectionDataSchema == null) {
+      _selectionDataSchema = instanceResponse.getDataSchema();
+      if (_brokerRequest.getSelections().isSetSelectionSortSequence()) {
+        _selectionOperatorService = new SelectionOperatorService(_brokerRequest.getSelections(), _selectionDataSchema);
+      } else {
+        _selectionRows = new ArrayList<Serializable[]>(_brokerRequest.getSelections().getSize());
+      }
+    }
+    if (_selectionOperatorService != null) {
+      _selectionRows = _selectionOperatorService.reduce(instanceResponse);
+    } else if (_selectionRows.size() != _brokerRequest.getSelections().getSize()) {
+      SelectionOperatorUtils.reduce(_selectionRows, instanceResponse, _brokerRequest.getSelections().getSize());
+    }
+  }
+
+  private JSONObject renderSelectionResults() throws Exception {
+    if (_selectionDataSchema == null) {
+      return null;
+    }
+    if (_selectionOperatorService != null) {
+      return _selectionOperatorService.render(_selectionRows);
+    }
+    return SelectionOperatorUtils.render(_selectionRows, _brokerRequest.getSelections().getSelectionColumns(),
+        _selectionDataSchema);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void reduceOnAggregationResults(DataTable instanceResponse) {
+    DataSchema aggregationResultSchema = instanceResponse.getDataSchema();
+    for (int rowId = 0; rowId < instanceResponse.getNumberOfRows(); ++rowId) {
+      for (int colId = 0; colId < _brokerRequest.getAggregationsInfoSize(); ++colId) {
+        Serializable value;
+        switch (aggregationResultSchema.getColumnType(colId)) {
+          case INT:
+            value = instanceResponse.getInt(rowId, colId);
+            break;
+          case SHORT:
+            value = instanceResponse.getShort(rowId, colId);
+            break;
+          case FLOAT:
+            value = instanceResponse.getFloat(rowId, colId);
+            break;
+          case LONG:
+            value = instanceResponse.getLong(rowId, colId);
+            break;
+          case DOUBLE:
+            value = instanceResponse.getDouble(rowId, colId);
+            break;
+          case STRING:
+            value = instanceResponse.getString(rowId, colId);
+            break;
+          default:
+            value = instanceResponse.getObject(rowId, colId);
+            break;
+        }
+        _combinedAggregationResults[colId] =
+            _aggregationFunctions.get(colId).combineTwoValues(_combinedAggregationResults[colId], value);
+      }
+      _hasAggregationResults = true;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<JSONObject> renderAggregationResults() {
+    List<JSONObject> retAggregationResults = new ArrayList<JSONObject>();
+    for (int i = 0; i < _aggregationFunctions.size(); ++i) {
+      List<Serializable> combinedResults;
+      if (_hasAggregationResults) {
+        combinedResults = Arrays.asList(_combinedAggregationResults[i]);
+      } else {
+        combinedResults = Collections.emptyList();
+      }
+      Serializable retResult = _aggregationFunctions.get(i).reduce(combinedResults);
+      try {
+        retAggregationResults.add(_aggregationFunctions.get(i).render(retResult)
+            .put("function", _aggregationFunctions.get(i).getFunctionName()));
+      } catch (JSONException e) {
+        LOGGER.error("Caught exception while reducing aggregation results", e);
+        Utils.rethrowException(e);
+        throw new AssertionError("Should not reach this");
+      }
+    }
+    return retAggregationResults;
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+
+
+/**
+ * Runs queries in arrival order, whatever table they are on, on a fixed number of query runner threads. Queries
+ * arriving while maxPendingQueries queries are already waiting are rejected.
+ *
+ *
+ */
+public class FCFSQueryScheduler extends QueryScheduler {
+
+  public FCFSQueryScheduler(QuerySchedulerConfig config, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    super(queryExecutor, serverMetrics, new ThreadPoolExecutor(config.getQueryRunnerThreads(),
+        config.getQueryRunnerThreads(), 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+            config.getMaxPendingQueries()), new NamedThreadFactory("query-runner")));
+  }
+
+  @Override
+  public ListenableFuture<DataTable> submit(InstanceRequest instanceRequest) {
+    QueryTask queryTask = new QueryTask(instanceRequest, System.nanoTime());
+    try {
+      _queryRunners.execute(queryTask);
+    } catch (RejectedExecutionException e) {
+      if (_queryRunners.isShutdown()) {
+        return Futures.immediateFuture(getRejectedResponse(instanceRequest, QueryException.SERVER_SCHEDULER_DOWN_ERROR));
+      }
+      return Futures.immediateFuture(getRejectedResponse(instanceRequest, QueryException.SERVER_OUT_OF_CAPACITY_ERROR));
+    }
+    return queryTask._response;
+  }
+
+  @Override
+  public void stop() {
+    // Answer the queries that never got to run, so that their connections are not left waiting
+    for (Runnable pendingTask : _queryRunners.shutdownNow()) {
+      QueryTask queryTask = (QueryTask) pendingTask;
+      queryTask._response.set(getRejectedResponse(queryTask._instanceRequest,
+          QueryException.SERVER_SCHEDULER_DOWN_ERROR));
+    }
+  }
+
+  private class QueryTask implements Runnable {
+    private final InstanceRequest _instanceRequest;
+    private final long _submitTimeNs;
+    private final SettableFuture<DataTable> _response = SettableFuture.create();
+
+    QueryTask(InstanceRequest instanceRequest, long submitTimeNs) {
+      _instanceRequest = instanceRequest;
+      _submitTimeNs = submitTimeNs;
+    }
+
+    @Override
+    public void run() {
+      _response.set(processQuery(_instanceRequest, _submitTimeNs));
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+
+
+/**
+ * Keeps one bounded queue of pending queries per table. Whenever a query runner thread is free, the first query of
+ * the table whose SchedulerGroup compares first is run. By default tables are ordered by their configured priority,
+ * then by how long their oldest query has been waiting, so tables of the same priority are served in arrival order
+ * while a table flooding the server only fills its own queue.
+ *
+ *
+ */
+public class PriorityQueryScheduler extends QueryScheduler {
+  protected final QuerySchedulerConfig _config;
+  private final int _maxRunningQueries;
+  private final int _maxPendingQueries;
+  private final int _maxPendingQueriesPerTable;
+
+  // Guarded by this
+  private final Map<String, SchedulerGroup> _schedulerGroups = new HashMap<String, SchedulerGroup>();
+  private int _numRunningQueries = 0;
+  private int _numPendingQueries = 0;
+
+  public PriorityQueryScheduler(QuerySchedulerConfig config, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    super(queryExecutor, serverMetrics, Executors.newFixedThreadPool(config.getQueryRunnerThreads(),
+        new NamedThreadFactory("query-runner")));
+    _config = config;
+    _maxRunningQueries = config.getQueryRunnerThreads();
+    _maxPendingQueries = config.getMaxPendingQueries();
+    _maxPendingQueriesPerTable = config.getMaxPendingQueriesPerTable();
+  }
+
+  @Override
+  public ListenableFuture<DataTable> submit(InstanceRequest instanceRequest) {
+    String tableName = getTableName(instanceRequest);
+    SchedulerQuery query = new SchedulerQuery(instanceRequest, System.nanoTime());
+    synchronized (this) {
+      if (_queryRunners.isShutdown()) {
+        return Futures.immediateFuture(getRejectedResponse(instanceRequest, QueryException.SERVER_SCHEDULER_DOWN_ERROR));
+      }
+      SchedulerGroup schedulerGroup = _schedulerGroups.get(tableName);
+      if (schedulerGroup == null) {
+        schedulerGroup = createSchedulerGroup(tableName);
+        _schedulerGroups.put(tableName, schedulerGroup);
+      }
+      if (_numPendingQueries >= _maxPendingQueries
+          || schedulerGroup.getNumPendingQueries() >= _maxPendingQueriesPerTable) {
+        return Futures.immediateFuture(getRejectedResponse(instanceRequest, QueryException.SERVER_OUT_OF_CAPACITY_ERROR));
+      }
+      schedulerGroup.addQuery(query);
+      _numPendingQueries++;
+    }
+    schedule();
+    return query._response;
+  }
+
+  @Override
+  public void stop() {
+    List<SchedulerQuery> pendingQueries = new ArrayList<SchedulerQuery>();
+    for (Runnable queryRunner : _queryRunners.shutdownNow()) {
+      pendingQueries.add(((QueryRunner) queryRunner)._query);
+    }
+    synchronized (this) {
+      for (SchedulerGroup schedulerGroup : _schedulerGroups.values()) {
+        SchedulerQuery query;
+        while ((query = schedulerGroup.pollQuery()) != null) {
+          pendingQueries.add(query);
+        }
+      }
+      _numPendingQueries = 0;
+    }
+    for (SchedulerQuery query : pendingQueries) {
+      query._response.set(getRejectedResponse(query._instanceRequest, QueryException.SERVER_SCHEDULER_DOWN_ERROR));
+    }
+  }
+
+  /**
+   * Creates the group holding the pending queries of a table the first time a query on it is submitted.
+   */
+  protected SchedulerGroup createSchedulerGroup(String tableName) {
+    return new SchedulerGroup(tableName, _config.getPriority(tableName));
+  }
+
+  /**
+   * Starts pending queries until all the query runners are busy or no query is pending.
+   */
+  private void schedule() {
+    while (true) {
+      final SchedulerGroup schedulerGroup;
+      final SchedulerQuery query;
+      synchronized (this) {
+        if (_numRunningQueries >= _maxRunningQueries) {
+          return;
+        }
+        schedulerGroup = selectSchedulerGroup(System.nanoTime());
+        if (schedulerGroup == null) {
+          return;
+        }
+        query = schedulerGroup.pollQuery();
+        _numPendingQueries--;
+        _numRunningQueries++;
+      }
+      run(schedulerGroup, query);
+    }
+  }
+
+  private SchedulerGroup selectSchedulerGroup(long nowNs) {
+    SchedulerGroup selected = null;
+    for (SchedulerGroup schedulerGroup : _schedulerGroups.values()) {
+      if (schedulerGroup.getNumPendingQueries() > 0
+          && (selected == null || schedulerGroup.compareTo(selected, nowNs) < 0)) {
+        selected = schedulerGroup;
+      }
+    }
+    return selected;
+  }
+
+  private void run(SchedulerGroup schedulerGroup, SchedulerQuery query) {
+    try {
+      _queryRunners.execute(new QueryRunner(schedulerGroup, query));
+    } catch (RejectedExecutionException e) {
+      synchronized (this) {
+        _numRunningQueries--;
+      }
+      query._response.set(getRejectedResponse(query._instanceRequest, QueryException.SERVER_SCHEDULER_DOWN_ERROR));
+    }
+  }
+
+  private class QueryRunner implements Runnable {
+    private final SchedulerGroup _schedulerGroup;
+    private final SchedulerQuery _query;
+
+    QueryRunner(SchedulerGroup schedulerGroup, SchedulerQuery query) {
+      _schedulerGroup = schedulerGroup;
+      _query = query;
+    }
+
+    @Override
+    public void run() {
+      long startTimeNs = System.nanoTime();
+      try {
+        _query._response.set(processQuery(_query._instanceRequest, _query._submitTimeNs));
+      } finally {
+        long endTimeNs = System.nanoTime();
+        synchronized (PriorityQueryScheduler.this) {
+          _numRunningQueries--;
+          _schedulerGroup.onQueryCompleted(endTimeNs - startTimeNs, endTimeNs);
+        }
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * The pending queries of one table, in arrival order. Only accessed while holding the scheduler lock.
+   */
+  protected static class SchedulerGroup {
+    protected final String _tableName;
+    protected final int _priority;
+    private final ArrayDeque<SchedulerQuery> _pendingQueries = new ArrayDeque<SchedulerQuery>();
+
+    protected SchedulerGroup(String tableName, int priority) {
+      _tableName = tableName;
+      _priority = priority;
+    }
+
+    int getNumPendingQueries() {
+      return _pendingQueries.size();
+    }
+
+    void addQuery(SchedulerQuery query) {
+      _pendingQueries.addLast(query);
+    }
+
+    SchedulerQuery pollQuery() {
+      return _pendingQueries.pollFirst();
+    }
+
+    /**
+     * @return negative if the next query of this group should run before the next query of other
+     */
+    protected int compareTo(SchedulerGroup other, long nowNs) {
+      if (_priority != other._priority) {
+        return (_priority > other._priority) ? -1 : 1;
+      }
+      return compareOldestSubmitTime(other);
+    }
+
+    protected int compareOldestSubmitTime(SchedulerGroup other) {
+      long submitTimeNs = _pendingQueries.peekFirst()._submitTimeNs;
+      long otherSubmitTimeNs = other._pendingQueries.peekFirst()._submitTimeNs;
+      if (submitTimeNs == otherSubmitTimeNs) {
+        return 0;
+      }
+      // Compare the difference, System.nanoTime() may overflow
+      return (submitTimeNs - otherSubmitTimeNs < 0) ? -1 : 1;
+    }
+
+    /**
+     * Called once a query of this group is done running.
+     */
+    protected void onQueryCompleted(long runTimeNs, long nowNs) {
+    }
+  }
+
+  static class SchedulerQuery {
+    final InstanceRequest _instanceRequest;
+    final long _submitTimeNs;
+    final SettableFuture<DataTable> _response = SettableFuture.create();
+
+    SchedulerQuery(InstanceRequest instanceRequest, long submitTimeNs) {
+      _instanceRequest = instanceRequest;
+      _submitTimeNs = submitTimeNs;
+    }
+  }
+}
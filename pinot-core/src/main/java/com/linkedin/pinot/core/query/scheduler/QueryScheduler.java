@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * A QueryScheduler decides when and on which thread the queries received by a server run, so that the netty worker
+ * threads never block on query execution. Implementations bound the number of queries they hold and reject the ones
+ * they cannot take with a {@link QueryException#SERVER_OUT_OF_CAPACITY_ERROR} response.
+ *
+ *
+ */
+public abstract class QueryScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryScheduler.class);
+
+  protected final QueryExecutor _queryExecutor;
+  protected final ServerMetrics _serverMetrics;
+  protected final ExecutorService _queryRunners;
+
+  public QueryScheduler(QueryExecutor queryExecutor, ServerMetrics serverMetrics, ExecutorService queryRunners) {
+    _queryExecutor = queryExecutor;
+    _serverMetrics = serverMetrics;
+    _queryRunners = queryRunners;
+  }
+
+  /**
+   * Schedules the query for execution. The returned future is never failed, queries that are rejected or throw
+   * complete with a DataTable carrying the exception.
+   *
+   * @param instanceRequest
+   * @return future of the query response
+   */
+  public abstract ListenableFuture<DataTable> submit(InstanceRequest instanceRequest);
+
+  /**
+   * Stops running queries, queries submitted afterwards are rejected.
+   */
+  public void stop() {
+    _queryRunners.shutdownNow();
+  }
+
+  public QueryExecutor getQueryExecutor() {
+    return _queryExecutor;
+  }
+
+  /**
+   * Runs the query on the calling thread, recording how long it waited since it was submitted.
+   */
+  protected DataTable processQuery(InstanceRequest instanceRequest, long submitTimeNs) {
+    long startTimeNs = System.nanoTime();
+    if (_serverMetrics != null) {
+      _serverMetrics.addPhaseTiming(instanceRequest.getQuery(), ServerQueryPhase.SCHEDULER_WAIT,
+          startTimeNs - submitTimeNs);
+    }
+    DataTable instanceResponse;
+    try {
+      instanceResponse = _queryExecutor.processQuery(instanceRequest);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while processing request {}", instanceRequest.getRequestId(), e);
+      instanceResponse = getErrorResponse(instanceRequest, QueryException.getException(QueryException.INTERNAL_ERROR, e));
+    }
+    if (_serverMetrics != null) {
+      _serverMetrics.addPhaseTiming(instanceRequest.getQuery(), ServerQueryPhase.QUERY_PROCESSING,
+          System.nanoTime() - startTimeNs);
+    }
+    return instanceResponse;
+  }
+
+  /**
+   * Builds the response of a query the scheduler could not take.
+   */
+  protected DataTable getRejectedResponse(InstanceRequest instanceRequest, ProcessingException exception) {
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredValue(instanceRequest.getQuery(), ServerMeter.SCHEDULER_REJECTED_QUERIES, 1);
+    }
+    LOGGER.warn("Rejecting request {} : {}", instanceRequest.getRequestId(), exception.getMessage());
+    return getErrorResponse(instanceRequest, exception.deepCopy());
+  }
+
+  public static DataTable getErrorResponse(InstanceRequest instanceRequest, ProcessingException exception) {
+    DataTable instanceResponse = new DataTable();
+    instanceResponse.addException(exception);
+    instanceResponse.getMetadata().put("requestId", Long.toString(instanceRequest.getRequestId()));
+    return instanceResponse;
+  }
+
+  protected static String getTableName(InstanceRequest instanceRequest) {
+    return instanceRequest.getQuery().getQuerySource().getTableName();
+  }
+}
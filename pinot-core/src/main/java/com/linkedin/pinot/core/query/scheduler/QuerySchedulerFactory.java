@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+
+
+/**
+ * Builds the QueryScheduler for the algorithm set in the scheduler config, fcfs by default.
+ *
+ *
+ */
+public class QuerySchedulerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuerySchedulerFactory.class);
+
+  public static QueryScheduler create(QuerySchedulerConfig config, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    String algorithm = config.getAlgorithm();
+    LOGGER.info("Using {} query scheduler with {} query runner threads", algorithm, config.getQueryRunnerThreads());
+    if (QuerySchedulerConfig.PRIORITY_ALGORITHM.equals(algorithm)) {
+      return new PriorityQueryScheduler(config, queryExecutor, serverMetrics);
+    }
+    if (QuerySchedulerConfig.TOKEN_BUCKET.equals(algorithm)) {
+      return new TokenBucketQueryScheduler(config, queryExecutor, serverMetrics);
+    }
+    if (!QuerySchedulerConfig.FCFS.equals(algorithm)) {
+      LOGGER.warn("Unknown query scheduler algorithm {}, using {}", algorithm, QuerySchedulerConfig.FCFS);
+    }
+    return new FCFSQueryScheduler(config, queryExecutor, serverMetrics);
+  }
+}
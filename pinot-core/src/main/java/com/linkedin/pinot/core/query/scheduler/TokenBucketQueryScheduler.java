@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+
+
+/**
+ * Shares the query runners between tables with one token bucket per table. A table earns tokensPerSecond
+ * milliseconds of query runner time per second, up to maxTokens, and pays for the time its queries run. The table
+ * with the most tokens left runs next, so a table sending expensive queries quickly runs out of tokens and only gets
+ * the runners the other tables leave idle.
+ *
+ *
+ */
+public class TokenBucketQueryScheduler extends PriorityQueryScheduler {
+
+  public TokenBucketQueryScheduler(QuerySchedulerConfig config, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    super(config, queryExecutor, serverMetrics);
+  }
+
+  @Override
+  protected SchedulerGroup createSchedulerGroup(String tableName) {
+    return new TokenBucketSchedulerGroup(tableName, _config.getTokensPerSecond(tableName), _config.getMaxTokens(),
+        System.nanoTime());
+  }
+
+  static class TokenBucketSchedulerGroup extends SchedulerGroup {
+    private final long _tokensPerSecond;
+    private final long _maxTokens;
+    // Milliseconds of query runner time this table may still use, negative once it used more than it earned
+    private double _tokens;
+    private long _lastRefillTimeNs;
+
+    TokenBucketSchedulerGroup(String tableName, long tokensPerSecond, long maxTokens, long nowNs) {
+      super(tableName, 0);
+      _tokensPerSecond = tokensPerSecond;
+      _maxTokens = maxTokens;
+      _tokens = maxTokens;
+      _lastRefillTimeNs = nowNs;
+    }
+
+    double getTokens(long nowNs) {
+      _tokens = Math.min(_maxTokens, _tokens + (nowNs - _lastRefillTimeNs) * _tokensPerSecond / 1e9);
+      _lastRefillTimeNs = nowNs;
+      return _tokens;
+    }
+
+    @Override
+    protected int compareTo(SchedulerGroup other, long nowNs) {
+      double tokens = getTokens(nowNs);
+      double otherTokens = ((TokenBucketSchedulerGroup) other).getTokens(nowNs);
+      if (tokens != otherTokens) {
+        return (tokens > otherTokens) ? -1 : 1;
+      }
+      return compareOldestSubmitTime(other);
+    }
+
+    @Override
+    protected void onQueryCompleted(long runTimeNs, long nowNs) {
+      _tokens = getTokens(nowNs) - runTimeNs / 1e6;
+    }
+  }
+}
@@ -205,30 +205,39 @@ public class SelectionOperatorService {
 
   public Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults) {
     _rowEventsSet.clear();
+    for (final DataTable dt : selectionResults.values()) {
+      reduce(dt);
+    }
+    return _rowEventsSet;
+  }
+
+  /**
+   * Merge the rows of one more DataTable into the rows reduced so far.
+   *
+   * @param dt
+   * @return the rows reduced so far
+   */
+  public Collection<Serializable[]> reduce(DataTable dt) {
     if (_doOrdering) {
       PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) _rowEventsSet;
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (queue.size() < _maxRowSize) {
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (queue.size() < _maxRowSize) {
+          queue.add(row);
+        } else {
+          if (_rowComparator.compare(queue.peek(), row) < 0) {
             queue.add(row);
-          } else {
-            if (_rowComparator.compare(queue.peek(), row) < 0) {
-              queue.add(row);
-              queue.poll();
-            }
+            queue.poll();
           }
         }
       }
     } else {
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (_rowEventsSet.size() < _maxRowSize) {
-            _rowEventsSet.add(row);
-          } else {
-            break;
-          }
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (_rowEventsSet.size() < _maxRowSize) {
+          _rowEventsSet.add(row);
+        } else {
+          break;
         }
       }
     }
@@ -136,17 +136,29 @@ public class SelectionOperatorUtils {
   public static Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults, int maxRowSize) {
     Collection<Serializable[]> rowEventsSet = new ArrayList<Serializable[]>(maxRowSize);
     for (final DataTable dt : selectionResults.values()) {
-      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-        final Serializable[] row = extractRowFromDataTable(dt, rowId);
-        rowEventsSet.add(row);
-        if (rowEventsSet.size() == maxRowSize) {
-          return rowEventsSet;
-        }
+      if (reduce(rowEventsSet, dt, maxRowSize)) {
+        return rowEventsSet;
       }
     }
     return rowEventsSet;
   }
 
+  /**
+   * Add the rows of one more DataTable to the rows reduced so far.
+   *
+   * @return true once maxRowSize rows have been collected
+   */
+  public static boolean reduce(Collection<Serializable[]> rowEventsSet, DataTable dt, int maxRowSize) {
+    for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+      final Serializable[] row = extractRowFromDataTable(dt, rowId);
+      rowEventsSet.add(row);
+      if (rowEventsSet.size() == maxRowSize) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static JSONObject render(Collection<Serializable[]> finalResults, List<String> selectionColumns, DataSchema dataSchema) throws Exception {
     final LinkedList<JSONArray> rowEventsJSonList = new LinkedList<JSONArray>();
     List<Serializable[]> list = (List<Serializable[]>) finalResults;
@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.utils;
+
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values offered to it, using 2^log2m one byte registers.
+ * The relative standard error is about 1.04 / sqrt(2^log2m), e.g. 1.6% for the default log2m of 12 (4KB).
+ * Sketches with the same log2m can be merged, the result is the sketch of the union of their values.
+ *
+ * A new sketch only keeps its non zero registers in a hash map, and switches to the dense register array once more
+ * than 1/32 of the registers are set. Group by queries create one sketch per group, most of which only ever see a
+ * few values. Both representations give the same estimates.
+ */
+public class HyperLogLog implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int MIN_LOG2M = 4;
+  public static final int MAX_LOG2M = 16;
+  public static final int DEFAULT_LOG2M = 12;
+
+  // The sparse registers are turned dense once there are more than 2^(log2m - SPARSE_SIZE_SHIFT) of them
+  private static final int SPARSE_SIZE_SHIFT = 5;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final long SEED = 0x9E3779B97F4A7C15L;
+
+  private final int _log2m;
+  // Exactly one of the two is set
+  private byte[] _registers;
+  private Int2ByteOpenHashMap _sparseRegisters;
+
+  public HyperLogLog(int log2m) {
+    checkLog2m(log2m);
+    _log2m = log2m;
+    _sparseRegisters = new Int2ByteOpenHashMap();
+  }
+
+  public HyperLogLog(int log2m, byte[] registers) {
+    checkLog2m(log2m);
+    if (registers.length != (1 << log2m)) {
+      throw new IllegalArgumentException("Expected " + (1 << log2m) + " registers for log2m " + log2m + ", got "
+          + registers.length);
+    }
+    _log2m = log2m;
+    _registers = registers;
+  }
+
+  /**
+   * Sparse sketch from its non zero registers, keyed by register index.
+   */
+  public HyperLogLog(int log2m, Int2ByteOpenHashMap sparseRegisters) {
+    checkLog2m(log2m);
+    _log2m = log2m;
+    _sparseRegisters = sparseRegisters;
+    if (_sparseRegisters.size() > getMaxSparseSize()) {
+      toDense();
+    }
+  }
+
+  private static void checkLog2m(int log2m) {
+    if (log2m < MIN_LOG2M || log2m > MAX_LOG2M) {
+      throw new IllegalArgumentException("log2m must be between " + MIN_LOG2M + " and " + MAX_LOG2M + ", got "
+          + log2m);
+    }
+  }
+
+  public int getLog2m() {
+    return _log2m;
+  }
+
+  public boolean isSparse() {
+    return _sparseRegisters != null;
+  }
+
+  /**
+   * Returns the registers, as a copy while the sketch is sparse.
+   */
+  public byte[] getRegisters() {
+    if (_sparseRegisters == null) {
+      return _registers;
+    }
+    byte[] registers = new byte[1 << _log2m];
+    IntIterator iterator = _sparseRegisters.keySet().iterator();
+    while (iterator.hasNext()) {
+      int index = iterator.nextInt();
+      registers[index] = _sparseRegisters.get(index);
+    }
+    return registers;
+  }
+
+  /**
+   * Returns the non zero registers keyed by register index, or null once the sketch is dense.
+   */
+  public Int2ByteOpenHashMap getSparseRegisters() {
+    return _sparseRegisters;
+  }
+
+  /**
+   * Offer a dictionary value. Integral numbers are offered as longs and floating point numbers as doubles, so that
+   * the same value read from differently typed columns gets the same hash.
+   */
+  public void offer(Object value) {
+    if (value instanceof String) {
+      offer((String) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      offer(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      offer(((Number) value).longValue());
+    } else {
+      offer(String.valueOf(value));
+    }
+  }
+
+  public void offer(long value) {
+    offerHash(fmix64(value ^ SEED));
+  }
+
+  public void offer(double value) {
+    offer(Double.doubleToLongBits(value));
+  }
+
+  public void offer(String value) {
+    offerHash(murmurHash64(value.getBytes(UTF8)));
+  }
+
+  /**
+   * Offer an already hashed value, the hash is expected to be uniformly distributed over the 64 bits.
+   */
+  public void offerHash(long hash) {
+    // The first log2m bits select the register, the rank is the position of the first set bit in the remaining ones.
+    int index = (int) (hash >>> (Long.SIZE - _log2m));
+    int rank = Long.numberOfLeadingZeros((hash << _log2m) | (1L << (_log2m - 1))) + 1;
+    updateRegister(index, (byte) rank);
+  }
+
+  private void updateRegister(int index, byte rank) {
+    if (_sparseRegisters == null) {
+      if (rank > _registers[index]) {
+        _registers[index] = rank;
+      }
+    } else if (rank > _sparseRegisters.get(index)) {
+      _sparseRegisters.put(index, rank);
+      if (_sparseRegisters.size() > getMaxSparseSize()) {
+        toDense();
+      }
+    }
+  }
+
+  private int getMaxSparseSize() {
+    return (1 << _log2m) >> SPARSE_SIZE_SHIFT;
+  }
+
+  private void toDense() {
+    _registers = getRegisters();
+    _sparseRegisters = null;
+  }
+
+  /**
+   * Merge the other sketch into this one.
+   *
+   * @return this sketch
+   */
+  public HyperLogLog merge(HyperLogLog other) {
+    if (other._log2m != _log2m) {
+      throw new IllegalArgumentException("Cannot merge HyperLogLog with log2m " + other._log2m + " into log2m " + _log2m);
+    }
+    if (other._sparseRegisters != null) {
+      IntIterator iterator = other._sparseRegisters.keySet().iterator();
+      while (iterator.hasNext()) {
+        int index = iterator.nextInt();
+        updateRegister(index, other._sparseRegisters.get(index));
+      }
+      return this;
+    }
+    if (_sparseRegisters != null) {
+      toDense();
+    }
+    byte[] otherRegisters = other._registers;
+    for (int i = 0; i < _registers.length; i++) {
+      if (otherRegisters[i] > _registers[i]) {
+        _registers[i] = otherRegisters[i];
+      }
+    }
+    return this;
+  }
+
+  public long cardinality() {
+    int numRegisters = 1 << _log2m;
+    double sum = 0;
+    int numZeroRegisters = 0;
+    if (_sparseRegisters == null) {
+      for (byte register : _registers) {
+        sum += 1.0 / (1L << register);
+        if (register == 0) {
+          numZeroRegisters++;
+        }
+      }
+    } else {
+      // Registers missing from the map are 0
+      numZeroRegisters = numRegisters - _sparseRegisters.size();
+      sum = numZeroRegisters;
+      IntIterator iterator = _sparseRegisters.keySet().iterator();
+      while (iterator.hasNext()) {
+        sum += 1.0 / (1L << _sparseRegisters.get(iterator.nextInt()));
+      }
+    }
+    double estimate = getAlpha(numRegisters) * numRegisters * numRegisters / sum;
+    if (estimate <= 2.5 * numRegisters && numZeroRegisters > 0) {
+      // Small range correction: linear counting
+      estimate = numRegisters * Math.log((double) numRegisters / numZeroRegisters);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double getAlpha(int numRegisters) {
+    switch (numRegisters) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / numRegisters);
+    }
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  /**
+   * 64 bit MurmurHash2 (MurmurHash64A).
+   */
+  private static long murmurHash64(byte[] data) {
+    final long m = 0xc6a4a7935bd1e995L;
+    final int r = 47;
+    int length = data.length;
+    long h = SEED ^ (length * m);
+
+    int numLongs = length / 8;
+    for (int i = 0; i < numLongs; i++) {
+      int offset = i * 8;
+      long k =
+          (data[offset] & 0xffL) | ((data[offset + 1] & 0xffL) << 8) | ((data[offset + 2] & 0xffL) << 16)
+              | ((data[offset + 3] & 0xffL) << 24) | ((data[offset + 4] & 0xffL) << 32)
+              | ((data[offset + 5] & 0xffL) << 40) | ((data[offset + 6] & 0xffL) << 48)
+              | ((data[offset + 7] & 0xffL) << 56);
+      k *= m;
+      k ^= k >>> r;
+      k *= m;
+      h ^= k;
+      h *= m;
+    }
+
+    int tail = numLongs * 8;
+    switch (length - tail) {
+      case 7:
+        h ^= (data[tail + 6] & 0xffL) << 48;
+      case 6:
+        h ^= (data[tail + 5] & 0xffL) << 40;
+      case 5:
+        h ^= (data[tail + 4] & 0xffL) << 32;
+      case 4:
+        h ^= (data[tail + 3] & 0xffL) << 24;
+      case 3:
+        h ^= (data[tail + 2] & 0xffL) << 16;
+      case 2:
+        h ^= (data[tail + 1] & 0xffL) << 8;
+      case 1:
+        h ^= (data[tail] & 0xffL);
+        h *= m;
+      default:
+        break;
+    }
+
+    h ^= h >>> r;
+    h *= m;
+    h ^= h >>> r;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(cardinality());
+  }
+}
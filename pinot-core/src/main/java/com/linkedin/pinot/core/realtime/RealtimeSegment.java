@@ -35,6 +35,15 @@ public interface RealtimeSegment extends MutableIndexSegment {
    */
   public void init(Schema dataSchema);
 
+  /**
+   * Indexes a batch of rows, stopping early if the segment fills up. Rows of the batch become searchable together
+   * once the whole batch has been indexed.
+   *
+   * @param rows rows that have all the columns of the schema
+   * @return the number of rows indexed, a prefix of the given list
+   */
+  public int index(List<GenericRow> rows);
+
   /**
    * returns a RecordReader implementation
    * which can be used to create an offline segment.
@@ -88,6 +88,28 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   private final Map<String, DataFileReader> columnIndexReaderWriterMap;
 
+  // Column slots resolved once at construction so that index() does no per-row map lookups, indexed by the
+  // ordinal of the column in the schema's dimension/metric name lists
+  private final String[] dimensionNames;
+  private final boolean[] isSingleValueDimension;
+  private final MutableDictionaryReader[] dimensionDictionaries;
+  private final RealtimeInvertedIndex[] dimensionInvertedIndexes;
+  private final DataFileReader[] dimensionReaderWriters;
+  private final int[] dimensionMaxNumberOfMultiValues;
+  private final String[] metricNames;
+  private final MutableDictionaryReader[] metricDictionaries;
+  private final RealtimeInvertedIndex[] metricInvertedIndexes;
+  private final FixedByteSingleColumnSingleValueReaderWriter[] metricReaderWriters;
+  private final MutableDictionaryReader timeDictionary;
+  private final RealtimeInvertedIndex timeInvertedIndex;
+  private final FixedByteSingleColumnSingleValueReaderWriter timeReaderWriter;
+
+  // Scratch buffers reused for every row, a realtime segment is only ever indexed by its consuming thread
+  private final Object[] dimensionValues;
+  private final int[] dimensionDictIds;
+  private final int[][] multiValueDictIds;
+  private final int[] metricDictIds;
+
   public RealtimeSegmentImpl(Schema schema, int capacity) throws IOException {
     // intial variable setup
     dataSchema = schema;
@@ -141,6 +163,45 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
         V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
 
+    // resolve the per column slots used on the ingestion path
+    List<String> dimensions = dataSchema.getDimensionNames();
+    int numDimensions = dimensions.size();
+    dimensionNames = dimensions.toArray(new String[numDimensions]);
+    isSingleValueDimension = new boolean[numDimensions];
+    dimensionDictionaries = new MutableDictionaryReader[numDimensions];
+    dimensionInvertedIndexes = new RealtimeInvertedIndex[numDimensions];
+    dimensionReaderWriters = new DataFileReader[numDimensions];
+    dimensionMaxNumberOfMultiValues = new int[numDimensions];
+    dimensionValues = new Object[numDimensions];
+    dimensionDictIds = new int[numDimensions];
+    multiValueDictIds = new int[numDimensions][];
+    for (int i = 0; i < numDimensions; i++) {
+      String dimension = dimensionNames[i];
+      isSingleValueDimension[i] = dataSchema.getFieldSpecFor(dimension).isSingleValueField();
+      dimensionDictionaries[i] = dictionaryMap.get(dimension);
+      dimensionInvertedIndexes[i] = invertedIndexMap.get(dimension);
+      dimensionReaderWriters[i] = columnIndexReaderWriterMap.get(dimension);
+      multiValueDictIds[i] = new int[0];
+    }
+
+    List<String> metrics = dataSchema.getMetricNames();
+    int numMetrics = metrics.size();
+    metricNames = metrics.toArray(new String[numMetrics]);
+    metricDictionaries = new MutableDictionaryReader[numMetrics];
+    metricInvertedIndexes = new RealtimeInvertedIndex[numMetrics];
+    metricReaderWriters = new FixedByteSingleColumnSingleValueReaderWriter[numMetrics];
+    metricDictIds = new int[numMetrics];
+    for (int i = 0; i < numMetrics; i++) {
+      String metric = metricNames[i];
+      metricDictionaries[i] = dictionaryMap.get(metric);
+      metricInvertedIndexes[i] = invertedIndexMap.get(metric);
+      metricReaderWriters[i] = (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric);
+    }
+
+    timeDictionary = dictionaryMap.get(outgoingTimeColumnName);
+    timeInvertedIndex = invertedIndexMap.get(outgoingTimeColumnName);
+    timeReaderWriter =
+        (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName);
   }
 
   @Override
@@ -160,103 +221,130 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   @Override
   public boolean index(GenericRow row) {
-    if (numDocsIndexed >= capacity) {
+    int docId = indexRow(row);
+    if (docId < 0) {
       return false;
     }
+    docIdSearchableOffset = docId;
+    return true;
+  }
+
+  @Override
+  public int index(List<GenericRow> rows) {
+    int numRowsIndexed = 0;
+    int lastDocId = -1;
+    for (GenericRow row : rows) {
+      int docId = indexRow(row);
+      if (docId < 0) {
+        break;
+      }
+      lastDocId = docId;
+      numRowsIndexed++;
+    }
+    // make the whole batch searchable at once
+    if (lastDocId >= 0) {
+      docIdSearchableOffset = lastDocId;
+    }
+    return numRowsIndexed;
+  }
+
+  /**
+   * Indexes a single row without making it searchable.
+   *
+   * @return the docId assigned to the row, or -1 if the segment is full
+   */
+  private int indexRow(GenericRow row) {
+    if (numDocsIndexed >= capacity) {
+      return -1;
+    }
     // updating dictionary for dimesions only
     // its ok to insert this first
     // since filtering won't return back anything unless a new entry is made in the inverted index
-    for (String dimension : dataSchema.getDimensionNames()) {
-      dictionaryMap.get(dimension).index(row.getValue(dimension));
-      if (!dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-        Object[] entries = (Object[]) row.getValue(dimension);
-        if ((entries != null) && (maxNumberOfMultivaluesMap.get(dimension) < entries.length)) {
-          maxNumberOfMultivaluesMap.put(dimension, entries.length);
+    for (int i = 0; i < dimensionNames.length; i++) {
+      Object value = row.getValue(dimensionNames[i]);
+      dimensionValues[i] = value;
+      dimensionDictionaries[i].index(value);
+      if (!isSingleValueDimension[i]) {
+        Object[] entries = (Object[]) value;
+        if ((entries != null) && (dimensionMaxNumberOfMultiValues[i] < entries.length)) {
+          dimensionMaxNumberOfMultiValues[i] = entries.length;
+          maxNumberOfMultivaluesMap.put(dimensionNames[i], entries.length);
         }
       }
     }
 
-    for (String metric : dataSchema.getMetricNames()) {
-      dictionaryMap.get(metric).index(row.getValue(metric));
+    // metric values are only needed once, keep their dictIds right away
+    for (int i = 0; i < metricNames.length; i++) {
+      Object value = row.getValue(metricNames[i]);
+      metricDictionaries[i].index(value);
+      metricDictIds[i] = metricDictionaries[i].indexOf(value);
     }
 
     // convert time granularity and add the time value to dictionary
     Object timeValueObj = timeConverter.convert(row.getValue(incomingTimeColumnName));
-
-    long timeValue = -1;
-    if (timeValueObj instanceof Integer) {
-      timeValue = ((Integer) timeValueObj).longValue();
-    } else {
-      timeValue = (Long) timeValueObj;
-    }
-
-    dictionaryMap.get(outgoingTimeColumnName).index(timeValueObj);
+    long timeValue = ((Number) timeValueObj).longValue();
+    timeDictionary.index(timeValueObj);
 
     // update the min max time values
     minTimeVal = Math.min(minTimeVal, timeValue);
     maxTimeVal = Math.max(maxTimeVal, timeValue);
 
-    // also lets collect all dicIds to update inverted index later
-    Map<String, Object> rawRowToDicIdMap = new HashMap<String, Object>();
-
-    // lets update forward index now
+    // lets update forward index now, dictIds are kept in the scratch buffers for the inverted index
     int docId = docIdGenerator.incrementAndGet();
 
-    for (String dimension : dataSchema.getDimensionNames()) {
-      if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-        int dicId = dictionaryMap.get(dimension).indexOf(row.getValue(dimension));
-        ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setInt(docId, dicId);
-        rawRowToDicIdMap.put(dimension, dicId);
+    for (int i = 0; i < dimensionNames.length; i++) {
+      if (isSingleValueDimension[i]) {
+        int dicId = dimensionDictionaries[i].indexOf(dimensionValues[i]);
+        ((FixedByteSingleColumnSingleValueReaderWriter) dimensionReaderWriters[i]).setInt(docId, dicId);
+        dimensionDictIds[i] = dicId;
       } else {
-        Object[] mValues = (Object[]) row.getValue(dimension);
-        int[] dicIds = new int[mValues.length];
-        for (int i = 0; i < dicIds.length; i++) {
-          dicIds[i] = dictionaryMap.get(dimension).indexOf(mValues[i]);
+        Object[] mValues = (Object[]) dimensionValues[i];
+        int[] dicIds = multiValueDictIds[i];
+        if (dicIds.length < mValues.length) {
+          dicIds = new int[mValues.length];
+          multiValueDictIds[i] = dicIds;
         }
-        ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setIntArray(docId,
-            dicIds);
-        rawRowToDicIdMap.put(dimension, dicIds);
+        for (int j = 0; j < mValues.length; j++) {
+          dicIds[j] = dimensionDictionaries[i].indexOf(mValues[j]);
+        }
+        ((FixedByteSingleColumnMultiValueReaderWriter) dimensionReaderWriters[i]).setIntArray(docId, dicIds,
+            mValues.length);
       }
     }
 
-    for (String metric : dataSchema.getMetricNames()) {
-      FixedByteSingleColumnSingleValueReaderWriter readerWriter =
-          (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric);
-      int dicId = dictionaryMap.get(metric).indexOf(row.getValue(metric));
-      readerWriter.setInt(docId, dicId);
-      rawRowToDicIdMap.put(metric, dicId);
+    for (int i = 0; i < metricNames.length; i++) {
+      metricReaderWriters[i].setInt(docId, metricDictIds[i]);
     }
 
-    int timeDicId = dictionaryMap.get(outgoingTimeColumnName).indexOf(timeValueObj);
-
-    ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName)).setInt(
-        docId, timeDicId);
-    rawRowToDicIdMap.put(outgoingTimeColumnName, timeDicId);
+    int timeDicId = timeDictionary.indexOf(timeValueObj);
+    timeReaderWriter.setInt(docId, timeDicId);
 
     // lets update the inverted index now
     // metrics
-    for (String metric : dataSchema.getMetricNames()) {
-      invertedIndexMap.get(metric).add(rawRowToDicIdMap.get(metric), docId);
+    for (int i = 0; i < metricNames.length; i++) {
+      metricInvertedIndexes[i].add(metricDictIds[i], docId);
     }
 
     //dimension
-    for (String dimension : dataSchema.getDimensionNames()) {
-      if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-        invertedIndexMap.get(dimension).add(rawRowToDicIdMap.get(dimension), docId);
+    for (int i = 0; i < dimensionNames.length; i++) {
+      if (isSingleValueDimension[i]) {
+        dimensionInvertedIndexes[i].add(dimensionDictIds[i], docId);
       } else {
-        int[] dicIds = (int[]) rawRowToDicIdMap.get(dimension);
-        for (int dicId : dicIds) {
-          invertedIndexMap.get(dimension).add(dicId, docId);
+        int numValues = ((Object[]) dimensionValues[i]).length;
+        int[] dicIds = multiValueDictIds[i];
+        for (int j = 0; j < numValues; j++) {
+          dimensionInvertedIndexes[i].add(dicIds[j], docId);
         }
       }
+      // do not hold on to the row values
+      dimensionValues[i] = null;
     }
     //time
-    invertedIndexMap.get(outgoingTimeColumnName).add(rawRowToDicIdMap.get(outgoingTimeColumnName), docId);
+    timeInvertedIndex.add(timeDicId, docId);
 
-    docIdSearchableOffset = docId;
     numDocsIndexed += 1;
     numSuccessIndexed += 1;
-    return true;
+    return docId;
   }
 
   @Override
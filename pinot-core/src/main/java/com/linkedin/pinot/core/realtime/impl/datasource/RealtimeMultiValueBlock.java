@@ -141,6 +141,11 @@ public class RealtimeMultiValueBlock implements Block {
       public DataType getValueType() {
         return spec.getDataType();
       }
+
+      @Override
+      public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+        throw new UnsupportedOperationException("cannot read a single int value per doc from a multi value column");
+      }
     };
   }
 
@@ -142,6 +142,11 @@ public class RealtimeSingleValueBlock implements Block {
       public DataType getValueType() {
         return spec.getDataType();
       }
+
+      @Override
+      public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+        reader.readValues(docIds, startPos, limit, dictIdBuffer, dictIdStartPos);
+      }
     };
   }
 
@@ -90,6 +90,13 @@ public abstract class MutableDictionaryReader implements Dictionary {
   @Override
   public abstract double getDoubleValue(int dictionaryId);
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = getDoubleValue(dictionaryIds[startPos + i]);
+    }
+  }
+
   @Override
   public abstract String toString(int dictionaryId);
 
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.invertedIndex;
+
+import java.io.IOException;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Realtime inverted index keyed by dictionary id.
+ *
+ * Bitmaps live in an array indexed by dictId that grows along with the mutable dictionary, so adding a document
+ * neither boxes the dictId nor allocates anything beyond the bitmap of a newly seen value.
+ *
+ * There is a single writer (the consuming thread) and any number of query threads reading. The writer only ever
+ * publishes a new bitmap or a grown array through the volatile array reference, so readers always see either the old
+ * or the new slot contents, never a partially copied array.
+ */
+public abstract class BaseRealtimeInvertedIndex implements RealtimeInvertedIndex {
+  private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+  private final String _columnName;
+  private volatile MutableRoaringBitmap[] _bitmaps;
+
+  protected BaseRealtimeInvertedIndex(String columnName) {
+    _columnName = columnName;
+    _bitmaps = new MutableRoaringBitmap[DEFAULT_INITIAL_CAPACITY];
+  }
+
+  public String getColumnName() {
+    return _columnName;
+  }
+
+  @Override
+  public void add(Object dictId, int docId) {
+    add(((Number) dictId).intValue(), docId);
+  }
+
+  @Override
+  public void add(int dictId, int docId) {
+    MutableRoaringBitmap[] bitmaps = _bitmaps;
+    if (dictId < bitmaps.length) {
+      MutableRoaringBitmap bitmap = bitmaps[dictId];
+      if (bitmap != null) {
+        bitmap.add(docId);
+        return;
+      }
+    } else {
+      MutableRoaringBitmap[] grownBitmaps = new MutableRoaringBitmap[Math.max(dictId + 1, bitmaps.length * 2)];
+      System.arraycopy(bitmaps, 0, grownBitmaps, 0, bitmaps.length);
+      bitmaps = grownBitmaps;
+    }
+
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    bitmap.add(docId);
+    bitmaps[dictId] = bitmap;
+    // Volatile write publishes the new slot (and the grown array, if any) to readers.
+    _bitmaps = bitmaps;
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(Object dicId) {
+    if (!(dicId instanceof Number)) {
+      return null;
+    }
+    return getDocIdSetFor(((Number) dicId).intValue());
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(int dictId) {
+    MutableRoaringBitmap[] bitmaps = _bitmaps;
+    if (dictId < 0 || dictId >= bitmaps.length) {
+      return null;
+    }
+    return bitmaps[dictId];
+  }
+
+  /**
+   * Returns one past the largest dictId that may have a bitmap, slots below it may still be empty.
+   */
+  protected int getDictIdUpperBound() {
+    return _bitmaps.length;
+  }
+
+  @Override
+  public ImmutableRoaringBitmap getImmutable(int idx) {
+    return getDocIdSetFor(idx);
+  }
+
+  @Override
+  public int[] getMinMaxRangeFor(int docId) {
+    throw new UnsupportedOperationException("");
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+}
@@ -15,48 +15,9 @@
  */
 package com.linkedin.pinot.core.realtime.impl.invertedIndex;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-
-import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
-import org.roaringbitmap.buffer.MutableRoaringBitmap;
-
-
-public class DimensionInvertertedIndex implements RealtimeInvertedIndex {
-
-  private Map<Integer, MutableRoaringBitmap> invertedIndex;
+public class DimensionInvertertedIndex extends BaseRealtimeInvertedIndex {
 
   public DimensionInvertertedIndex(String columnName) {
-    invertedIndex = new HashMap<Integer, MutableRoaringBitmap>();
-  }
-
-  @Override
-  public void add(Object dictId, int docId) {
-    if (!invertedIndex.containsKey(dictId)) {
-      invertedIndex.put((Integer) dictId, new MutableRoaringBitmap());
-    }
-
-    invertedIndex.get(dictId).add(docId);
-  }
-
-  @Override
-  public MutableRoaringBitmap getDocIdSetFor(Object dicId) {
-    return invertedIndex.get(dicId);
-  }
-
-  @Override
-  public ImmutableRoaringBitmap getImmutable(int idx) {
-    return invertedIndex.get(idx);
-  }
-
-  @Override
-  public int[] getMinMaxRangeFor(int docId) {
-    throw new UnsupportedOperationException("");
-  }
-
-  @Override
-  public void close() throws IOException {
+    super(columnName);
   }
-
 }
@@ -15,52 +15,27 @@
  */
 package com.linkedin.pinot.core.realtime.impl.invertedIndex;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 
-import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
-import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
-
-public class MetricInvertedIndex implements RealtimeInvertedIndex {
-
-  Map<Object, MutableRoaringBitmap> invertedIndex;
+public class MetricInvertedIndex extends BaseRealtimeInvertedIndex {
 
   public MetricInvertedIndex(String columnName) {
-    invertedIndex = new HashMap<Object, MutableRoaringBitmap>();
-  }
-
-  @Override
-  public void add(Object id, int docId) {
-    if (!invertedIndex.containsKey(id)) {
-      invertedIndex.put(id, new MutableRoaringBitmap());
-    }
-    invertedIndex.get(id).add(docId);
-  }
-
-  @Override
-  public MutableRoaringBitmap getDocIdSetFor(Object dicId) {
-    return invertedIndex.get(dicId);
+    super(columnName);
   }
 
+  /**
+   * Returns the dictIds that have at least one document indexed.
+   */
   public Set<Object> getKeys() {
-    return invertedIndex.keySet();
-  }
-
-  @Override
-  public ImmutableRoaringBitmap getImmutable(int idx) {
-    return invertedIndex.get(idx);
-  }
-
-  @Override
-  public int[] getMinMaxRangeFor(int docId) {
-    throw new UnsupportedOperationException("");
-  }
-
-  @Override
-  public void close() throws IOException {
+    Set<Object> keys = new HashSet<Object>();
+    int upperBound = getDictIdUpperBound();
+    for (int dictId = 0; dictId < upperBound; dictId++) {
+      if (getDocIdSetFor(dictId) != null) {
+        keys.add(dictId);
+      }
+    }
+    return keys;
   }
-
 }
@@ -23,6 +23,10 @@ import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
 public interface RealtimeInvertedIndex extends InvertedIndexReader {
   public void add(Object dictId, int docId);
 
+  public void add(int dictId, int docId);
+
   public MutableRoaringBitmap getDocIdSetFor(Object dicId);
 
+  public MutableRoaringBitmap getDocIdSetFor(int dictId);
+
 }
@@ -65,23 +65,28 @@ public abstract class AbstractColumnStatisticsCollector {
   }
 
   public void addressSorted(Object entry) {
-    if (((Comparable) entry).compareTo(previousValue) != 0) {
+    if (compare(entry, previousValue) != 0) {
       numberOfChanges++;
     }
-    if (((Comparable) entry).compareTo(previousValue) < 0) {
+    if (compare(entry, previousValue) < 0) {
       prevBiggerThanNextCount++;
     }
 
     if (!entry.equals(previousValue) && previousValue != null) {
-      final Comparable prevValue = (Comparable) previousValue;
-      final Comparable origin = (Comparable) entry;
-      if (origin.compareTo(prevValue) < 0) {
+      if (compare(entry, previousValue) < 0) {
         isSorted = false;
       }
     }
     previousValue = entry;
   }
 
+  /**
+   * Order used to track whether the column is sorted, it must match the order of the column's dictionary.
+   */
+  protected int compare(Object entry, Object previous) {
+    return ((Comparable) entry).compareTo(previous);
+  }
+
   public boolean isSorted() {
     if (fieldSpec.isSingleValueField()) {
       return isSorted;
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+
+
+/**
+ * Buffers the values of one column, in document order, so the input only has to be read and decoded once for
+ * both stats collection and index creation. Values are kept in memory up to the given number of bytes, after
+ * which the buffer spills to the given file.
+ *
+ * Values are written by one thread, then read back by any one thread once {@link #finish()} has been called.
+ */
+public class ColumnValueBuffer implements Closeable {
+  private static final Charset UTF_8 = Charset.forName(V1Constants.Str.CHAR_SET);
+
+  private final FieldSpec spec;
+  private final File spillFile;
+  private final long maxInMemoryBytes;
+  private ExposedByteArrayOutputStream memory;
+  private DataOutputStream out;
+  private int numValues = 0;
+
+  public ColumnValueBuffer(FieldSpec spec, File spillFile, long maxInMemoryBytes) {
+    this.spec = spec;
+    this.spillFile = spillFile;
+    this.maxInMemoryBytes = maxInMemoryBytes;
+    memory = new ExposedByteArrayOutputStream();
+    out = new DataOutputStream(memory);
+  }
+
+  public FieldSpec getFieldSpec() {
+    return spec;
+  }
+
+  public int getNumValues() {
+    return numValues;
+  }
+
+  /**
+   * Appends the value of the next document, an Object[] for multi value columns.
+   */
+  public void add(Object value) throws IOException {
+    if (spec.isSingleValueField()) {
+      writeValue(value);
+    } else {
+      final Object[] values = (Object[]) value;
+      out.writeInt(values.length);
+      for (final Object element : values) {
+        writeValue(element);
+      }
+    }
+    numValues++;
+
+    if (memory != null && memory.size() > maxInMemoryBytes) {
+      spill();
+    }
+  }
+
+  /**
+   * Ends writing, after which the values can be read through {@link #openReader()}.
+   */
+  public void finish() throws IOException {
+    out.flush();
+    if (memory == null) {
+      out.close();
+    }
+    out = null;
+  }
+
+  public Reader openReader() throws IOException {
+    if (out != null) {
+      throw new IllegalStateException("Column " + spec.getName() + " is still being written");
+    }
+    final InputStream in;
+    if (memory != null) {
+      in = memory.toInputStream();
+    } else {
+      in = new BufferedInputStream(new FileInputStream(spillFile));
+    }
+    return new Reader(new DataInputStream(in));
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+    memory = null;
+    spillFile.delete();
+  }
+
+  private void spill() throws IOException {
+    out.flush();
+    final FileOutputStream fileOut = new FileOutputStream(spillFile);
+    memory.writeTo(fileOut);
+    memory = null;
+    out = new DataOutputStream(new BufferedOutputStream(fileOut));
+  }
+
+  private void writeValue(Object value) throws IOException {
+    switch (spec.getDataType()) {
+      case INT:
+        out.writeInt(((Integer) value).intValue());
+        break;
+      case LONG:
+        out.writeLong(((Long) value).longValue());
+        break;
+      case FLOAT:
+        out.writeFloat(((Float) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Double) value).doubleValue());
+        break;
+      case STRING:
+      case BOOLEAN:
+        final byte[] bytes = value.toString().getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        break;
+      default:
+        throw new UnsupportedOperationException("unsupported data type : " + spec.getDataType() + " for column : "
+            + spec.getName());
+    }
+  }
+
+  /**
+   * Reads the buffered values back in the order they were added.
+   */
+  public class Reader implements Closeable {
+    private final DataInputStream in;
+    private int remaining = numValues;
+
+    private Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    public Object next() throws IOException {
+      remaining--;
+      if (spec.isSingleValueField()) {
+        return readValue();
+      }
+      final Object[] values = new Object[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = readValue();
+      }
+      return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private Object readValue() throws IOException {
+      switch (spec.getDataType()) {
+        case INT:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case FLOAT:
+          return in.readFloat();
+        case DOUBLE:
+          return in.readDouble();
+        case STRING:
+        case BOOLEAN:
+          final byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          return new String(bytes, UTF_8);
+        default:
+          throw new UnsupportedOperationException("unsupported data type : " + spec.getDataType()
+              + " for column : " + spec.getName());
+      }
+    }
+  }
+
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    InputStream toInputStream() {
+      return new ByteArrayInputStream(buf, 0, count);
+    }
+  }
+}
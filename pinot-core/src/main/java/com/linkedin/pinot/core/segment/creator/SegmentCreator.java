@@ -53,6 +53,16 @@ public interface SegmentCreator {
    */
   void indexRow(GenericRow row);
 
+  /**
+   * Adds all values of one column to the index, in document order. This is an alternative to
+   * {@link #indexRow(GenericRow)}, and different columns may be indexed concurrently.
+   *
+   * @param column The column to index.
+   * @param values The buffered values of the column, one per document.
+   * @throws Exception
+   */
+  void indexColumn(String column, ColumnValueBuffer values) throws Exception;
+
   /**
    * Sets the name of the segment.
    *
@@ -34,14 +34,24 @@ import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataK
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.SEGMENT_NAME;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.SEGMENT_START_TIME;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.SEGMENT_TOTAL_DOCS;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.SEGMENT_VERSION;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.TIME_COLUMN_NAME;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.TIME_INTERVAL;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.TIME_UNIT;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
@@ -51,6 +61,7 @@ import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ColumnValueBuffer;
 import com.linkedin.pinot.core.segment.creator.ForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.InvertedIndexCreator;
 import com.linkedin.pinot.core.segment.creator.SegmentCreator;
@@ -61,7 +72,8 @@ import com.linkedin.pinot.core.segment.creator.impl.inv.BitmapInvertedIndexCreat
 
 
 /**
- * Segment creator which writes data in a columnar form.
+ * Segment creator which writes data in a columnar form. The dictionaries and indexes of different columns are
+ * independent, so they are built on up to {@link SegmentGeneratorConfig#getCreationThreads()} threads.
  *
  * Nov 9, 2014
  */
@@ -80,6 +92,7 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   private int totalDocs;
   private int docIdCounter;
   private Map<String, Map<Object, Object>> dictionaryCache = new HashMap<String, Map<Object, Object>>();
+  private final Map<String, Boolean> sealedColumns = new ConcurrentHashMap<String, Boolean>();
 
   @Override
   public void init(SegmentGeneratorConfig segmentCreationSpec,
@@ -88,10 +101,9 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     docIdCounter = 0;
     config = segmentCreationSpec;
     this.indexCreationInfoMap = indexCreationInfoMap;
-    dictionaryCreatorMap = new HashMap<String, SegmentDictionaryCreator>();
-    forwardIndexCreatorMap = new HashMap<String, ForwardIndexCreator>();
-    this.indexCreationInfoMap = indexCreationInfoMap;
-    invertedIndexCreatorMap = new HashMap<String, InvertedIndexCreator>();
+    dictionaryCreatorMap = new ConcurrentHashMap<String, SegmentDictionaryCreator>();
+    forwardIndexCreatorMap = new ConcurrentHashMap<String, ForwardIndexCreator>();
+    invertedIndexCreatorMap = new ConcurrentHashMap<String, InvertedIndexCreator>();
     file = outDir;
 
     // Check that the output directory does not exist
@@ -110,7 +122,8 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       final ColumnIndexCreationInfo info = indexCreationInfoMap.get(spec.getName());
       if (info.isCreateDictionary()) {
         dictionaryCreatorMap.put(spec.getName(),
-            new SegmentDictionaryCreator(info.hasNulls(), info.getSortedUniqueElementsArray(), spec, file));
+            new SegmentDictionaryCreator(info.hasNulls(), info.getSortedUniqueElementsArray(), spec, file,
+                config.getSegmentVersion()));
       } else {
         throw new RuntimeException("Creation of indices without dictionaries is not implemented!");
       }
@@ -118,35 +131,44 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
 
     // For each column, build its dictionary and initialize a forwards and an inverted index
     for (final String column : dictionaryCreatorMap.keySet()) {
-      dictionaryCreatorMap.get(column).build();
       dictionaryCache.put(column, new HashMap<Object, Object>());
-      ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
-      if (schema.getFieldSpecFor(column).isSingleValueField()) {
-        if (indexCreationInfo.isSorted()) {
-          forwardIndexCreatorMap.put(column,
-              new SingleValueSortedForwardIndexCreator(file, indexCreationInfo.getSortedUniqueElementsArray().length,
-                  schema.getFieldSpecFor(column)));
-        } else {
-          forwardIndexCreatorMap.put(
-              column,
-              new SingleValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file, indexCreationInfo
-                  .getSortedUniqueElementsArray().length, totalDocs, indexCreationInfo.getTotalNumberOfEntries(),
-                  indexCreationInfo.hasNulls()));
-        }
+    }
+    runForEachColumn(dictionaryCreatorMap.keySet(), config.getCreationThreads(), new ColumnTask() {
+      @Override
+      public void run(String column) throws Exception {
+        initColumn(column);
+      }
+    });
+  }
+
+  private void initColumn(String column) throws Exception {
+    dictionaryCreatorMap.get(column).build();
+    ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
+    if (schema.getFieldSpecFor(column).isSingleValueField()) {
+      if (indexCreationInfo.isSorted()) {
+        forwardIndexCreatorMap.put(column,
+            new SingleValueSortedForwardIndexCreator(file, indexCreationInfo.getSortedUniqueElementsArray().length,
+                schema.getFieldSpecFor(column)));
       } else {
         forwardIndexCreatorMap.put(
             column,
-            new MultiValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file, indexCreationInfo
+            new SingleValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file, indexCreationInfo
                 .getSortedUniqueElementsArray().length, totalDocs, indexCreationInfo.getTotalNumberOfEntries(),
                 indexCreationInfo.hasNulls()));
       }
+    } else {
+      forwardIndexCreatorMap.put(
+          column,
+          new MultiValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file, indexCreationInfo
+              .getSortedUniqueElementsArray().length, totalDocs, indexCreationInfo.getTotalNumberOfEntries(),
+              indexCreationInfo.hasNulls()));
+    }
 
-      if (config.createInvertedIndexEnabled()) {
-        invertedIndexCreatorMap.put(
-            column,
-            new BitmapInvertedIndexCreator(file, indexCreationInfo.getSortedUniqueElementsArray().length, schema
-                .getFieldSpecFor(column)));
-      }
+    if (config.createInvertedIndexEnabled()) {
+      invertedIndexCreatorMap.put(
+          column,
+          new BitmapInvertedIndexCreator(file, indexCreationInfo.getSortedUniqueElementsArray().length, schema
+              .getFieldSpecFor(column)));
     }
   }
 
@@ -170,6 +192,39 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     docIdCounter++;
   }
 
+  @Override
+  public void indexColumn(String column, ColumnValueBuffer values) throws Exception {
+    final SegmentDictionaryCreator dictionaryCreator = dictionaryCreatorMap.get(column);
+    final ForwardIndexCreator forwardIndexCreator = forwardIndexCreatorMap.get(column);
+    final InvertedIndexCreator invertedIndexCreator = invertedIndexCreatorMap.get(column);
+    // Multi values are read back as new arrays, which would never hit the cache
+    final Map<Object, Object> cache =
+        schema.getFieldSpecFor(column).isSingleValueField() ? dictionaryCache.get(column) : null;
+
+    final ColumnValueBuffer.Reader reader = values.openReader();
+    try {
+      int docId = 0;
+      while (reader.hasNext()) {
+        final Object value = reader.next();
+        Object dictionaryIndex = cache != null ? cache.get(value) : null;
+        if (dictionaryIndex == null) {
+          dictionaryIndex = dictionaryCreator.indexOf(value);
+          if (cache != null) {
+            cache.put(value, dictionaryIndex);
+          }
+        }
+        forwardIndexCreator.index(docId, dictionaryIndex);
+        if (invertedIndexCreator != null) {
+          invertedIndexCreator.add(docId, dictionaryIndex);
+        }
+        docId++;
+      }
+    } finally {
+      reader.close();
+    }
+    sealColumn(column);
+  }
+
   @Override
   public void setSegmentName(String segmentName) {
     this.segmentName = segmentName;
@@ -177,16 +232,78 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
 
   @Override
   public void seal() throws ConfigurationException, IOException {
+    final List<String> columnsToSeal = new ArrayList<String>();
     for (final String column : forwardIndexCreatorMap.keySet()) {
-      forwardIndexCreatorMap.get(column).close();
-      if (config.createInvertedIndexEnabled()) {
-        invertedIndexCreatorMap.get(column).seal();
+      if (!sealedColumns.containsKey(column)) {
+        columnsToSeal.add(column);
       }
-      dictionaryCreatorMap.get(column).close();
+    }
+    try {
+      runForEachColumn(columnsToSeal, config.getCreationThreads(), new ColumnTask() {
+        @Override
+        public void run(String column) throws Exception {
+          sealColumn(column);
+        }
+      });
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
     }
     writeMetadata();
   }
 
+  private void sealColumn(String column) throws IOException {
+    forwardIndexCreatorMap.get(column).close();
+    if (config.createInvertedIndexEnabled()) {
+      invertedIndexCreatorMap.get(column).seal();
+    }
+    dictionaryCreatorMap.get(column).close();
+    sealedColumns.put(column, Boolean.TRUE);
+  }
+
+  interface ColumnTask {
+    void run(String column) throws Exception;
+  }
+
+  /**
+   * Runs the task for every column on up to numThreads threads, and rethrows the first failure.
+   */
+  static void runForEachColumn(Collection<String> columns, int numThreads, final ColumnTask task) throws Exception {
+    if (numThreads <= 1 || columns.size() <= 1) {
+      for (final String column : columns) {
+        task.run(column);
+      }
+      return;
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, columns.size()));
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (final String column : columns) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            task.run(column);
+            return null;
+          }
+        }));
+      }
+      for (final Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   void writeMetadata() throws ConfigurationException {
     final PropertiesConfiguration properties =
         new PropertiesConfiguration(new File(file, V1Constants.MetadataKeys.METADATA_FILE_NAME));
@@ -198,6 +315,7 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     properties.setProperty(TIME_COLUMN_NAME, config.getTimeColumnName());
     properties.setProperty(TIME_INTERVAL, "not_there");
     properties.setProperty(SEGMENT_TOTAL_DOCS, String.valueOf(totalDocs));
+    properties.setProperty(SEGMENT_VERSION, config.getSegmentVersion().toString());
 
     String timeColumn = config.getTimeColumnName();
     if (indexCreationInfoMap.get(timeColumn) != null) {
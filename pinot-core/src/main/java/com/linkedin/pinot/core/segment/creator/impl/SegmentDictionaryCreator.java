@@ -21,33 +21,49 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
+import com.google.common.primitives.UnsignedBytes;
+
 import org.apache.commons.io.FileUtils;
 
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.index.reader.impl.FixedByteWidthRowColDataFileReader;
 import com.linkedin.pinot.core.index.writer.impl.FixedByteWidthRowColDataFileWriter;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.indexsegment.utils.ByteBufferBinarySearchUtil;
+import com.linkedin.pinot.core.segment.index.readers.VarLengthStringDictionary;
 
 
 public class SegmentDictionaryCreator implements Closeable {
   private final Object[] sortedList;
   private final FieldSpec spec;
   private final File dictionaryFile;
+  private final SegmentVersion segmentVersion;
+  private VarLengthStringDictionary varLengthStringDictionary;
   private FixedByteWidthRowColDataFileReader dataReader;
   private ByteBufferBinarySearchUtil searchableByteBuffer;
   private int stringColumnMaxLength = 0;
 
   public SegmentDictionaryCreator(boolean hasNulls, Object[] sortedList, FieldSpec spec, File indexDir)
       throws IOException {
+    this(hasNulls, sortedList, spec, indexDir, SegmentVersion.v1);
+  }
+
+  public SegmentDictionaryCreator(boolean hasNulls, Object[] sortedList, FieldSpec spec, File indexDir,
+      SegmentVersion segmentVersion) throws IOException {
     this.sortedList = sortedList;
     this.spec = spec;
+    this.segmentVersion = segmentVersion;
     dictionaryFile = new File(indexDir, spec.getName() + ".dict");
     FileUtils.touch(dictionaryFile);
   }
 
   @Override
   public void close() throws IOException {
-    dataReader.close();
+    if (varLengthStringDictionary != null) {
+      varLengthStringDictionary.close();
+    } else {
+      dataReader.close();
+    }
   }
 
   public void build() throws Exception {
@@ -114,6 +130,11 @@ public class SegmentDictionaryCreator implements Closeable {
           }
         }
 
+        if (segmentVersion != SegmentVersion.v1) {
+          buildVarLengthStringDictionary();
+          return;
+        }
+
         final FixedByteWidthRowColDataFileWriter stringDictionaryWrite =
             new FixedByteWidthRowColDataFileWriter(dictionaryFile, sortedList.length, 1,
                 new int[] { stringColumnMaxLength });
@@ -147,6 +168,19 @@ public class SegmentDictionaryCreator implements Closeable {
     searchableByteBuffer = new ByteBufferBinarySearchUtil(dataReader);
   }
 
+  /**
+   * Since v2 string dictionaries store each value without padding, sorted by its UTF-8 bytes.
+   */
+  private void buildVarLengthStringDictionary() throws IOException {
+    final byte[][] values = new byte[sortedList.length][];
+    for (int i = 0; i < sortedList.length; i++) {
+      values[i] = sortedList[i].toString().getBytes(Charset.forName("UTF-8"));
+    }
+    Arrays.sort(values, UnsignedBytes.lexicographicalComparator());
+    VarLengthStringDictionary.write(dictionaryFile, values);
+    varLengthStringDictionary = new VarLengthStringDictionary(dictionaryFile, sortedList.length, true);
+  }
+
   public int getStringColumnMaxLength() {
     return stringColumnMaxLength;
   }
@@ -175,6 +209,9 @@ public class SegmentDictionaryCreator implements Closeable {
         return new Integer(searchableByteBuffer.binarySearch(0, longValue));
       case STRING:
       case BOOLEAN:
+        if (varLengthStringDictionary != null) {
+          return new Integer(varLengthStringDictionary.indexOf(e));
+        }
         final StringBuilder bld = new StringBuilder();
         bld.append(e.toString());
         for (int i = 0; i < (stringColumnMaxLength - ((String) e).getBytes(Charset.forName("UTF-8")).length); i++) {
@@ -217,6 +254,12 @@ public class SegmentDictionaryCreator implements Closeable {
         break;
       case STRING:
       case BOOLEAN:
+        if (varLengthStringDictionary != null) {
+          for (int i = 0; i < multiValues.length; i++) {
+            ret[i] = varLengthStringDictionary.indexOf(multiValues[i]);
+          }
+          break;
+        }
         for (int i = 0; i < multiValues.length; i++) {
           final StringBuilder bld = new StringBuilder();
           bld.append(multiValues[i].toString());
@@ -34,6 +34,7 @@ import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.data.readers.RecordReaderFactory;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ColumnValueBuffer;
 import com.linkedin.pinot.core.segment.creator.ForwardIndexType;
 import com.linkedin.pinot.core.segment.creator.InvertedIndexType;
 import com.linkedin.pinot.core.segment.creator.SegmentCreator;
@@ -45,6 +46,10 @@ import com.linkedin.pinot.core.util.CrcUtils;
 
 /**
  * Implementation of an index segment creator.
+ *
+ * The input is read once: while the statistics are collected, the values are buffered column by column (spilling
+ * to disk past {@link SegmentGeneratorConfig#getCreationBufferMemoryBytes()}). The columns are then indexed from
+ * their buffers in parallel.
  */
 
 public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDriver {
@@ -59,10 +64,12 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   Schema dataSchema;
   int totalDocs;
   File tempIndexDir;
+  File bufferDir;
   String segmentName;
   long totalRecordReadTime = 0;
   long totalIndexTime = 0;
   long totalStatsCollectorTime = 0;
+  long totalBufferTime = 0;
 
   @Override
   public void init(SegmentGeneratorConfig config) throws Exception {
@@ -92,43 +99,59 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
     // Create a temporary directory used in segment creation
     tempIndexDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    bufferDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
   }
 
   @Override
   public void build() throws Exception {
-    // Count the number of documents and gather per-column statistics
-    LOGGER.info("Start building StatsCollector!");
-    totalDocs = 0;
-    while (recordReader.hasNext()) {
-      totalDocs++;
-      long start = System.currentTimeMillis();
-      GenericRow row = recordReader.next();
-      long stop = System.currentTimeMillis();
-      statsCollector.collectRow(row);
-      long stop1 = System.currentTimeMillis();
-      totalRecordReadTime += (stop - start);
-      totalStatsCollectorTime += (stop1 - stop);
-    }
-    buildIndexCreationInfo();
-    LOGGER.info("Finished building StatsCollector!");
+    final Map<String, ColumnValueBuffer> columnBuffers = createColumnBuffers();
+    try {
+      // Count the number of documents, gather per-column statistics and buffer the values of each column
+      LOGGER.info("Start building StatsCollector!");
+      totalDocs = 0;
+      while (recordReader.hasNext()) {
+        totalDocs++;
+        long start = System.currentTimeMillis();
+        GenericRow row = recordReader.next();
+        long stop = System.currentTimeMillis();
+        statsCollector.collectRow(row);
+        long stop1 = System.currentTimeMillis();
+        for (final Map.Entry<String, ColumnValueBuffer> entry : columnBuffers.entrySet()) {
+          entry.getValue().add(row.getValue(entry.getKey()));
+        }
+        long stop2 = System.currentTimeMillis();
+        totalRecordReadTime += (stop - start);
+        totalStatsCollectorTime += (stop1 - stop);
+        totalBufferTime += (stop2 - stop1);
+      }
+      recordReader.close();
+      for (final ColumnValueBuffer buffer : columnBuffers.values()) {
+        buffer.finish();
+      }
+      buildIndexCreationInfo();
+      LOGGER.info("Finished building StatsCollector!");
 
-    // Initialize the index creation using the per-column statistics information
-    indexCreator.init(config, indexCreationInfoMap, dataSchema, totalDocs, tempIndexDir);
+      // Initialize the index creation using the per-column statistics information
+      indexCreator.init(config, indexCreationInfoMap, dataSchema, totalDocs, tempIndexDir);
 
-    // Build the index
-    recordReader.rewind();
-    LOGGER.info("Start building IndexCreator!");
-    while (recordReader.hasNext()) {
+      // Build the index of each column from its buffered values
+      LOGGER.info("Start building IndexCreator!");
       long start = System.currentTimeMillis();
-      GenericRow row = recordReader.next();
-      long stop = System.currentTimeMillis();
-      indexCreator.indexRow(row);
-      long stop1 = System.currentTimeMillis();
-      totalRecordReadTime += (stop - start);
-      totalIndexTime += (stop1 - stop);
+      SegmentColumnarIndexCreator.runForEachColumn(columnBuffers.keySet(), config.getCreationThreads(),
+          new SegmentColumnarIndexCreator.ColumnTask() {
+            @Override
+            public void run(String column) throws Exception {
+              indexCreator.indexColumn(column, columnBuffers.get(column));
+            }
+          });
+      totalIndexTime += (System.currentTimeMillis() - start);
+      LOGGER.info("Finished records indexing in IndexCreator!");
+    } finally {
+      for (final ColumnValueBuffer buffer : columnBuffers.values()) {
+        buffer.close();
+      }
+      FileUtils.deleteQuietly(bufferDir);
     }
-    recordReader.close();
-    LOGGER.info("Finished records indexing in IndexCreator!");
 
     // Build the segment name, if necessary
     final String timeColumn = config.getTimeColumnName();
@@ -174,6 +197,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
     LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
     LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
+    LOGGER.info("Driver, column buffer time : {}", totalBufferTime);
     LOGGER.info("Driver, indexing time : {}", totalIndexTime);
   }
 
@@ -205,6 +229,21 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     out.close();
   }
 
+  /**
+   * Creates one value buffer per column, sharing the configured memory budget evenly.
+   */
+  Map<String, ColumnValueBuffer> createColumnBuffers() {
+    bufferDir.mkdirs();
+    final long maxInMemoryBytesPerColumn =
+        config.getCreationBufferMemoryBytes() / Math.max(1, dataSchema.getAllFieldSpecs().size());
+    final Map<String, ColumnValueBuffer> columnBuffers = new HashMap<String, ColumnValueBuffer>();
+    for (final FieldSpec spec : dataSchema.getAllFieldSpecs()) {
+      columnBuffers.put(spec.getName(), new ColumnValueBuffer(spec, new File(bufferDir, spec.getName() + ".buf"),
+          maxInMemoryBytesPerColumn));
+    }
+    return columnBuffers;
+  }
+
   /**
    * Complete the stats gathering process and store the stats information in indexCreationInfoMap.
    */
@@ -98,6 +98,7 @@ public class V1Constants {
       public static final String SEGMENT_TOTAL_DOCS = "segment.total.docs";
       public static final String SEGMENT_CRC = "segment.crc";
       public static final String SEGMENT_CREATION_TIME = "segment.creation.time";
+      public static final String SEGMENT_VERSION = "segment.index.version";
 
       // not using currently
       public static final String SEGMENT_INDEX_TYPE = "segment.index.type";
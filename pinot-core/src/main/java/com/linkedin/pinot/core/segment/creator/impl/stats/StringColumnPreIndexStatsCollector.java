@@ -22,6 +22,7 @@ import java.util.Set;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.segment.creator.AbstractColumnStatisticsCollector;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.index.readers.VarLengthStringDictionary;
 
 
 /**
@@ -106,13 +107,18 @@ public class StringColumnPreIndexStatsCollector extends AbstractColumnStatistics
     return false;
   }
 
+  @Override
+  protected int compare(Object entry, Object previous) {
+    return VarLengthStringDictionary.VALUE_ORDER.compare((String) entry, (String) previous);
+  }
+
   @Override
   public void seal() {
     sealed = true;
     sortedStringList = new String[stringSet.size()];
     stringSet.toArray(sortedStringList);
 
-    Arrays.sort(sortedStringList);
+    Arrays.sort(sortedStringList, VarLengthStringDictionary.VALUE_ORDER);
 
     if (sortedStringList.length == 0) {
       min = null;
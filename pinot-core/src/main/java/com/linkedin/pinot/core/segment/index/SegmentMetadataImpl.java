@@ -342,7 +342,8 @@ public class SegmentMetadataImpl implements SegmentMetadata {
 
   @Override
   public String getVersion() {
-    return SegmentVersion.v1.toString();
+    return _segmentMetadataPropertiesConfiguration.getString(V1Constants.MetadataKeys.Segment.SEGMENT_VERSION,
+        SegmentVersion.v1.toString());
   }
 
   @Override
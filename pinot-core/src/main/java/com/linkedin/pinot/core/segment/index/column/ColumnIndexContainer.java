@@ -23,6 +23,7 @@ import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.index.reader.DataFileReader;
 import com.linkedin.pinot.core.index.reader.impl.FixedBitSkipListSCMVReader;
 import com.linkedin.pinot.core.index.reader.impl.FixedByteWidthRowColDataFileReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.BitmapInvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
@@ -34,12 +35,14 @@ import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.IntDictionary;
 import com.linkedin.pinot.core.segment.index.readers.LongDictionary;
 import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.segment.index.readers.VarLengthStringDictionary;
 
 
 public abstract class ColumnIndexContainer {
 
-  public static ColumnIndexContainer init(String column, File indexDir,
-      ColumnMetadata metadata, IndexLoadingConfigMetadata indexLoadingConfigMetadata, ReadMode mode) throws Exception {
+  public static ColumnIndexContainer init(String column, File indexDir, ColumnMetadata metadata,
+      IndexLoadingConfigMetadata indexLoadingConfigMetadata, ReadMode mode, SegmentVersion segmentVersion)
+      throws Exception {
 
     boolean loadInverted = false;
     if (indexLoadingConfigMetadata != null) {
@@ -49,7 +52,7 @@ public abstract class ColumnIndexContainer {
     }
 
     File dictionaryFile = new File(indexDir, column + V1Constants.Dict.FILE_EXTENTION);
-    ImmutableDictionaryReader dictionary = load(metadata, dictionaryFile, mode);
+    ImmutableDictionaryReader dictionary = load(metadata, dictionaryFile, mode, segmentVersion);
 
     if (metadata.isSorted() && metadata.isSingleValue()) {
       return loadSorted(column, indexDir, metadata, dictionary, mode);
@@ -111,8 +114,8 @@ public abstract class ColumnIndexContainer {
   }
 
   @SuppressWarnings("incomplete-switch")
-  private static ImmutableDictionaryReader load(ColumnMetadata metadata, File dictionaryFile, ReadMode loadMode)
-      throws IOException {
+  private static ImmutableDictionaryReader load(ColumnMetadata metadata, File dictionaryFile, ReadMode loadMode,
+      SegmentVersion segmentVersion) throws IOException {
     switch (metadata.getDataType()) {
       case INT:
         return new IntDictionary(dictionaryFile, metadata, loadMode);
@@ -124,7 +127,10 @@ public abstract class ColumnIndexContainer {
         return new DoubleDictionary(dictionaryFile, metadata, loadMode);
       case STRING:
       case BOOLEAN:
-        return new StringDictionary(dictionaryFile, metadata, loadMode);
+        if (segmentVersion == SegmentVersion.v1) {
+          return new StringDictionary(dictionaryFile, metadata, loadMode);
+        }
+        return new VarLengthStringDictionary(dictionaryFile, metadata, loadMode);
     }
 
     throw new UnsupportedOperationException("unsupported data type : " + metadata.getDataType());
@@ -147,6 +147,11 @@ public class MultiValueBlock implements Block {
       public DataType getValueType() {
         return columnMetadata.getDataType();
       }
+
+      @Override
+      public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+        throw new UnsupportedOperationException("cannot read a single int value per doc from a multi value column");
+      }
     };
   }
 
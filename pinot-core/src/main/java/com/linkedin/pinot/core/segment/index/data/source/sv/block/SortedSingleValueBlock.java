@@ -134,6 +134,11 @@ public class SortedSingleValueBlock implements Block {
         // TODO Auto-generated method stub
         return null;
       }
+
+      @Override
+      public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+        sVReader.readValues(docIds, startPos, limit, dictIdBuffer, dictIdStartPos);
+      }
     };
   }
 
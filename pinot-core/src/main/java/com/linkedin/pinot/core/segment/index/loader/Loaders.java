@@ -21,6 +21,7 @@ import java.util.Map;
 
 import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
 import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
@@ -43,9 +44,10 @@ public class Loaders {
 
       Map<String, ColumnIndexContainer> indexContainerMap = new HashMap<String, ColumnIndexContainer>();
 
+      SegmentVersion segmentVersion = SegmentVersion.valueOf(metadata.getVersion());
       for (String column : metadata.getColumnMetadataMap().keySet()) {
         indexContainerMap.put(column, ColumnIndexContainer.init(column, indexDir,
-            metadata.getColumnMetadataFor(column), indexLoadingConfigMetadata, readMode));
+            metadata.getColumnMetadataFor(column), indexLoadingConfigMetadata, readMode, segmentVersion));
       }
       return new IndexSegmentImpl(indexDir, metadata, indexContainerMap);
     }
@@ -33,6 +33,12 @@ public interface Dictionary {
 
   double getDoubleValue(int dictionaryId);
 
+  /**
+   * Batch version of {@link #getDoubleValue(int)}, looks up the double values of limit dictionary ids starting at
+   * startPos and writes them to outValues starting at outStartPos.
+   */
+  void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos);
+
   String getStringValue(int dictionaryId);
 
   String toString(int dictionaryId);
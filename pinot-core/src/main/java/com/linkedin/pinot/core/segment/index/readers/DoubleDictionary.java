@@ -59,6 +59,13 @@ public class DoubleDictionary extends ImmutableDictionaryReader  {
     return new Double(getDouble(dictionaryId));
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = dataFileReader.getDouble(dictionaryIds[startPos + i], 0);
+    }
+  }
+
   @Override
   public String toString(int dictionaryId) {
     return (new Double(getDouble(dictionaryId))).toString();
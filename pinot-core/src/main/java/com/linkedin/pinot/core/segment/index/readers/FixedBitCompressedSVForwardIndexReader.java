@@ -73,6 +73,11 @@ public class FixedBitCompressedSVForwardIndexReader implements SingleColumnSingl
     return dataFileReader.getInt(row, 0);
   }
 
+  @Override
+  public void readValues(int[] rows, int rowStartPos, int rowSize, int[] values, int valuesStartPos) {
+    dataFileReader.readInt(rows, rowStartPos, rowSize, 0, values, valuesStartPos);
+  }
+
   @Override
   public long getLong(int row) {
     throw new UnsupportedOperationException();
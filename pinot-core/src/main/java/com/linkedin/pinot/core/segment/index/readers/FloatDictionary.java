@@ -59,6 +59,13 @@ public class FloatDictionary extends ImmutableDictionaryReader {
     return new Double(getFloat(dictionaryId));
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = dataFileReader.getFloat(dictionaryIds[startPos + i], 0);
+    }
+  }
+
   @Override
   public String toString(int dictionaryId) {
     return new Float(getFloat(dictionaryId)).toString();
@@ -42,6 +42,15 @@ public abstract class ImmutableDictionaryReader implements Dictionary {
     fileSearcher = new ByteBufferBinarySearchUtil(dataFileReader);
   }
 
+  /**
+   * For dictionaries that are not stored as fixed width rows and manage their own buffers.
+   */
+  protected ImmutableDictionaryReader(int rows) {
+    dataFileReader = null;
+    fileSearcher = null;
+    this.rows = rows;
+  }
+
   protected int intIndexOf(int actualValue) {
     return fileSearcher.binarySearch(0, actualValue);
   }
@@ -74,11 +83,20 @@ public abstract class ImmutableDictionaryReader implements Dictionary {
   @Override
   public abstract double getDoubleValue(int dictionaryId);
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = getDoubleValue(dictionaryIds[startPos + i]);
+    }
+  }
+
   @Override
   public abstract String toString(int dictionaryId);
 
   public void close() throws IOException {
-    dataFileReader.close();
+    if (dataFileReader != null) {
+      dataFileReader.close();
+    }
   }
 
   @Override
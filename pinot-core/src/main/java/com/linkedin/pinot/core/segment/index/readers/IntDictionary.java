@@ -58,6 +58,13 @@ public class IntDictionary extends ImmutableDictionaryReader {
   public double getDoubleValue(int dictionaryId) {
     return new Double(getInt(dictionaryId));
   }
+
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = dataFileReader.getInt(dictionaryIds[startPos + i], 0);
+    }
+  }
   
   @Override
   public String getStringValue(int dictionaryId) {
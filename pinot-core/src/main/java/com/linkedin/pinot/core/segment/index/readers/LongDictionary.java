@@ -58,6 +58,13 @@ public class LongDictionary extends ImmutableDictionaryReader {
     return new Double(getLong(dictionaryId));
   }
 
+  @Override
+  public void readDoubleValues(int[] dictionaryIds, int startPos, int limit, double[] outValues, int outStartPos) {
+    for (int i = 0; i < limit; i++) {
+      outValues[outStartPos + i] = dataFileReader.getLong(dictionaryIds[startPos + i], 0);
+    }
+  }
+
   @Override
   public String getStringValue(int dictionaryId) {
     return new Long(getLong(dictionaryId)).toString();
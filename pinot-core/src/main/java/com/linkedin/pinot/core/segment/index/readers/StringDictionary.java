@@ -37,6 +37,11 @@ public class StringDictionary extends ImmutableDictionaryReader {
     lengthofMaxEntry = metadata.getStringColumnMaxLength();
   }
 
+  protected StringDictionary(int cardinality) {
+    super(cardinality);
+    lengthofMaxEntry = 0;
+  }
+
   @Override
   public int indexOf(Object rawValue) {
     final String lookup = rawValue.toString();
@@ -77,6 +82,41 @@ public class StringDictionary extends ImmutableDictionaryReader {
     return get(dictionaryId);
   }
 
+  /**
+   * Returns the first dictionary id whose stored value is not smaller than the prefix. Values starting with the
+   * prefix form one contiguous run of ids from there on, see {@link #prefixEndIndex(String, int)}.
+   */
+  public int prefixStartIndex(String prefix) {
+    int low = 0;
+    int high = length();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (getStringValue(mid).compareTo(prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the first dictionary id from start on whose stored value does not start with the prefix.
+   */
+  public int prefixEndIndex(String prefix, int start) {
+    int low = start;
+    int high = length();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (getStringValue(mid).startsWith(prefix)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   private String getString(int dictionaryId) {
     return dataFileReader.getString(dictionaryId, 0);
   }
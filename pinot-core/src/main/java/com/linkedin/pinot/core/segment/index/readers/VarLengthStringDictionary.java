@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.readers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Comparator;
+
+import com.google.common.primitives.UnsignedBytes;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.MmapUtils;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+
+
+/**
+ * String dictionary of segment version v2 and up. Values are stored without padding as
+ * <pre>
+ *   int[cardinality + 1] offsets   offset of each value in the data section, the last one is its total length
+ *   byte[] data                   UTF-8 bytes of all values, sorted by unsigned byte comparison
+ * </pre>
+ * so lookups binary search on the raw bytes and only the values actually read are decoded.
+ */
+public class VarLengthStringDictionary extends StringDictionary {
+  private static final Charset UTF_8 = Charset.forName(V1Constants.Str.CHAR_SET);
+
+  /**
+   * Order of the values in this dictionary. It differs from {@link String#compareTo(String)} for supplementary
+   * characters, which sort after U+E000..U+FFFF here but before them as UTF-16.
+   */
+  public static final Comparator<String> VALUE_ORDER = new Comparator<String>() {
+    private final Comparator<byte[]> bytes = UnsignedBytes.lexicographicalComparator();
+
+    @Override
+    public int compare(String s1, String s2) {
+      return bytes.compare(s1.getBytes(UTF_8), s2.getBytes(UTF_8));
+    }
+  };
+
+  private final RandomAccessFile file;
+  private final ByteBuffer buffer;
+  private final int dataOffset;
+  private final boolean isMmap;
+
+  public VarLengthStringDictionary(File dictFile, ColumnMetadata metadata, ReadMode mode) throws IOException {
+    this(dictFile, metadata.getCardinality(), mode == ReadMode.mmap);
+  }
+
+  public VarLengthStringDictionary(File dictFile, int cardinality, boolean isMmap) throws IOException {
+    super(cardinality);
+    this.isMmap = isMmap;
+    dataOffset = (cardinality + 1) * 4;
+    file = new RandomAccessFile(dictFile, "r");
+    if (isMmap) {
+      buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).order(ByteOrder.BIG_ENDIAN);
+    } else {
+      buffer = ByteBuffer.allocateDirect((int) file.length());
+      final FileChannel channel = file.getChannel();
+      while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+      }
+      file.close();
+    }
+  }
+
+  /**
+   * Writes the sorted values in the layout read by this class.
+   */
+  public static void write(File dictFile, byte[][] sortedValues) throws IOException {
+    int totalLength = 0;
+    for (final byte[] value : sortedValues) {
+      totalLength += value.length;
+    }
+
+    final ByteBuffer out = ByteBuffer.allocate((sortedValues.length + 1) * 4 + totalLength);
+    int offset = 0;
+    for (final byte[] value : sortedValues) {
+      out.putInt(offset);
+      offset += value.length;
+    }
+    out.putInt(offset);
+    for (final byte[] value : sortedValues) {
+      out.put(value);
+    }
+    out.flip();
+
+    final RandomAccessFile raf = new RandomAccessFile(dictFile, "rw");
+    try {
+      raf.setLength(0);
+      raf.getChannel().write(out);
+    } finally {
+      raf.close();
+    }
+  }
+
+  @Override
+  public int indexOf(Object rawValue) {
+    final byte[] lookup = rawValue.toString().getBytes(UTF_8);
+    int low = 0;
+    int high = length() - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int cmp = compare(middle, lookup);
+      if (cmp < 0) {
+        low = middle + 1;
+      } else if (cmp > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  @Override
+  public String get(int dictionaryId) {
+    if ((dictionaryId == -1) || (dictionaryId >= length())) {
+      return "null";
+    }
+    final int start = offsetOf(dictionaryId);
+    final byte[] bytes = new byte[offsetOf(dictionaryId + 1) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(dataOffset + start + i);
+    }
+    return new String(bytes, UTF_8);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return get(dictionaryId);
+  }
+
+  @Override
+  public int prefixStartIndex(String prefix) {
+    final int index = indexOf(prefix);
+    return index >= 0 ? index : -(index + 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isMmap) {
+      MmapUtils.unloadByteBuffer(buffer);
+      file.close();
+    } else {
+      buffer.clear();
+    }
+  }
+
+  private int offsetOf(int dictionaryId) {
+    return buffer.getInt(dictionaryId * 4);
+  }
+
+  /**
+   * Compares the stored bytes of the given id with the lookup bytes, treating bytes as unsigned.
+   */
+  private int compare(int dictionaryId, byte[] lookup) {
+    final int start = dataOffset + offsetOf(dictionaryId);
+    final int length = offsetOf(dictionaryId + 1) - offsetOf(dictionaryId);
+    final int common = Math.min(length, lookup.length);
+    for (int i = 0; i < common; i++) {
+      final int cmp = (buffer.get(start + i) & 0xff) - (lookup[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - lookup.length;
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.common.datatable;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.common.utils.DataTableJavaSerDe;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+
+
+public class DataTableCustomSerDeTest {
+  private final DataTableCustomSerDe _serDe = new DataTableCustomSerDe();
+  private final AvgAggregationFunction _avgAggregationFunction = new AvgAggregationFunction();
+
+  @AfterClass
+  public void tearDown() {
+    DataTableSerDeRegistry.getInstance().register(new DataTableJavaSerDe());
+  }
+
+  @Test
+  public void testPrimitives() {
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize(12L)), (Serializable) 12L);
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize(3.5)), (Serializable) 3.5);
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize(7)), (Serializable) 7);
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize("fooé")), (Serializable) "fooé");
+    Assert.assertNull(_serDe.deserialize(_serDe.serialize(null)));
+
+    AvgPair avgPair = _serDe.deserialize(_serDe.serialize(_avgAggregationFunction.new AvgPair(10.0, 4L)));
+    Assert.assertEquals(avgPair.getFirst(), 10.0);
+    Assert.assertEquals(avgPair.getSecond(), Long.valueOf(4L));
+
+    IntOpenHashSet intSet = new IntOpenHashSet(new int[] { 1, 5, -3, 1000000 });
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize(intSet)), intSet);
+
+    HyperLogLog hyperLogLog = new HyperLogLog(10);
+    for (int i = 0; i < 1000; ++i) {
+      hyperLogLog.offer("value_" + i);
+    }
+    byte[] bytes = _serDe.serialize(hyperLogLog);
+    Assert.assertEquals(bytes.length, 2 + 1024);
+    HyperLogLog deserializedHyperLogLog = _serDe.deserialize(bytes);
+    Assert.assertEquals(deserializedHyperLogLog.getLog2m(), 10);
+    Assert.assertEquals(deserializedHyperLogLog.getRegisters(), hyperLogLog.getRegisters());
+
+    // Sparse sketches only write their non zero registers
+    HyperLogLog sparseHyperLogLog = new HyperLogLog(12);
+    for (int i = 0; i < 10; ++i) {
+      sparseHyperLogLog.offer("value_" + i);
+    }
+    Assert.assertTrue(sparseHyperLogLog.isSparse());
+    bytes = _serDe.serialize(sparseHyperLogLog);
+    Assert.assertEquals(bytes.length, 2 + 4 + 3 * sparseHyperLogLog.getSparseRegisters().size());
+    deserializedHyperLogLog = _serDe.deserialize(bytes);
+    Assert.assertTrue(deserializedHyperLogLog.isSparse());
+    Assert.assertEquals(deserializedHyperLogLog.getLog2m(), 12);
+    Assert.assertEquals(deserializedHyperLogLog.getRegisters(), sparseHyperLogLog.getRegisters());
+  }
+
+  @Test
+  public void testGroupByResultMap() {
+    Map<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    for (int i = 0; i < 100; ++i) {
+      groupByResult.put("group\t" + i, _avgAggregationFunction.new AvgPair((double) i, (long) i + 1));
+    }
+    Map<String, Serializable> result = _serDe.deserialize(_serDe.serialize(groupByResult));
+    Assert.assertEquals(result.size(), groupByResult.size());
+    for (int i = 0; i < 100; ++i) {
+      AvgPair avgPair = (AvgPair) result.get("group\t" + i);
+      Assert.assertEquals(avgPair.getFirst(), (double) i);
+      Assert.assertEquals(avgPair.getSecond(), Long.valueOf(i + 1));
+    }
+  }
+
+  @Test
+  public void testFallbackToJavaSerialization() {
+    DataTableJavaSerDe javaSerDe = new DataTableJavaSerDe();
+
+    // Bytes written by older servers are still readable.
+    Map<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    groupByResult.put("a", 1.0);
+    Assert.assertEquals(_serDe.deserialize(javaSerDe.serialize(groupByResult)), groupByResult);
+
+    // Unknown types are Java serialized, also when nested in a map.
+    List<Integer> list = new ArrayList<Integer>();
+    list.add(42);
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize((Serializable) list)), list);
+    Map<String, Serializable> nested = new HashMap<String, Serializable>();
+    nested.put("list", (Serializable) list);
+    Assert.assertEquals(_serDe.deserialize(_serDe.serialize(nested)), nested);
+  }
+
+  @Test
+  public void testRegisterDeserializerKeepsSerializer() {
+    // A server writing Java serialized objects shares the JVM with a broker reading both formats.
+    DataTableSerDeRegistry registry = DataTableSerDeRegistry.getInstance();
+    registry.register(new DataTableJavaSerDe());
+    registry.registerDeserializer(_serDe);
+    Assert.assertTrue(registry.getSerializer() instanceof DataTableJavaSerDe);
+    Assert.assertSame(registry.getDeserializer(), _serDe);
+
+    Map<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    groupByResult.put("a", 1.0);
+    byte[] bytes = registry.getSerializer().serialize(groupByResult);
+    Assert.assertEquals(registry.getDeserializer().deserialize(bytes), groupByResult);
+  }
+
+  @Test
+  public void testDataTableFromByteBuffer() throws Exception {
+    DataTableSerDeRegistry.getInstance().register(_serDe);
+
+    DataSchema dataSchema =
+        new DataSchema(new String[] { "functionName", "value" }, new DataType[] { DataType.STRING, DataType.OBJECT });
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(dataSchema);
+    dataTableBuilder.open();
+    for (int i = 0; i < 10; ++i) {
+      dataTableBuilder.startRow();
+      dataTableBuilder.setColumn(0, "avg_" + i);
+      dataTableBuilder.setColumn(1, _avgAggregationFunction.new AvgPair((double) i, 2L));
+      dataTableBuilder.finishRow();
+    }
+    dataTableBuilder.seal();
+    byte[] bytes = dataTableBuilder.build().toBytes();
+
+    // Read the data table from the middle of a larger buffer, the way it is read from a network buffer.
+    ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 8);
+    buffer.position(4);
+    buffer.put(bytes);
+    buffer.position(4);
+    DataTable dataTable = new DataTable(buffer);
+    Assert.assertEquals(dataTable.getNumberOfRows(), 10);
+    for (int i = 0; i < 10; ++i) {
+      Assert.assertEquals(dataTable.getString(i, 0), "avg_" + i);
+      AvgPair avgPair = (AvgPair) dataTable.getObject(i, 1);
+      Assert.assertEquals(avgPair.getFirst(), (double) i);
+    }
+
+    // Serializing it again copies the sections out of the buffer.
+    DataTable copy = new DataTable(dataTable.toBytes());
+    Assert.assertEquals(copy.getString(9, 0), "avg_9");
+  }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.common.docidsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
+import com.linkedin.pinot.core.operator.docidsets.AndBlockDocIdSet;
+import com.linkedin.pinot.core.operator.docidsets.BitmapDocIdSet;
+import com.linkedin.pinot.core.operator.docidsets.OrBlockDocIdSet;
+import com.linkedin.pinot.core.operator.docidsets.SortedDocIdSet;
+
+
+/**
+ * Checks AND/OR of bitmap, sorted and scan based doc id sets against the expected set operations.
+ */
+public class FilterBlockDocIdSetTest {
+  private static final int NUM_DOCS = 10000;
+  private static final int NUM_ITERATIONS = 20;
+
+  private final Random _random = new Random();
+
+  @Test
+  public void testAnd() {
+    for (int iteration = 0; iteration < NUM_ITERATIONS; iteration++) {
+      List<TreeSet<Integer>> expectedSets = new ArrayList<TreeSet<Integer>>();
+      List<FilterBlockDocIdSet> docIdSets = makeMixedDocIdSets(expectedSets);
+      TreeSet<Integer> expected = new TreeSet<Integer>(expectedSets.get(0));
+      for (TreeSet<Integer> expectedSet : expectedSets) {
+        expected.retainAll(expectedSet);
+      }
+      Assert.assertEquals(iterate(new AndBlockDocIdSet(docIdSets)), expected);
+    }
+  }
+
+  @Test
+  public void testAndSortedRanges() {
+    for (int iteration = 0; iteration < NUM_ITERATIONS; iteration++) {
+      TreeSet<Integer> sorted1 = new TreeSet<Integer>();
+      TreeSet<Integer> sorted2 = new TreeSet<Integer>();
+      TreeSet<Integer> bitmap = randomSet(NUM_DOCS / 4);
+      FilterBlockDocIdSet sortedDocIdSet1 = makeSortedDocIdSet(sorted1);
+      FilterBlockDocIdSet sortedDocIdSet2 = makeSortedDocIdSet(sorted2);
+
+      // Ranges only, intersected without bitmaps
+      TreeSet<Integer> expected = new TreeSet<Integer>(sorted1);
+      expected.retainAll(sorted2);
+      AndBlockDocIdSet rangesAnd = new AndBlockDocIdSet(Arrays.asList(sortedDocIdSet1, sortedDocIdSet2));
+      Assert.assertEquals(iterate(rangesAnd), expected);
+
+      // Ranges clipping a bitmap, also as a bitmap for an enclosing filter
+      expected.retainAll(bitmap);
+      AndBlockDocIdSet clippedAnd = new AndBlockDocIdSet(
+          Arrays.asList(new SortedDocIdSet(((SortedDocIdSet) sortedDocIdSet1).getRanges()), makeBitmapDocIdSet(bitmap),
+              new SortedDocIdSet(((SortedDocIdSet) sortedDocIdSet2).getRanges())));
+      Assert.assertTrue(clippedAnd.isIndexed());
+      Assert.assertEquals(iterate(clippedAnd), expected);
+      Assert.assertEquals(clippedAnd.getBitmap().getCardinality(), expected.size());
+    }
+  }
+
+  @Test
+  public void testOr() {
+    for (int iteration = 0; iteration < NUM_ITERATIONS; iteration++) {
+      List<TreeSet<Integer>> expectedSets = new ArrayList<TreeSet<Integer>>();
+      List<FilterBlockDocIdSet> docIdSets = makeMixedDocIdSets(expectedSets);
+      TreeSet<Integer> expected = new TreeSet<Integer>();
+      for (TreeSet<Integer> expectedSet : expectedSets) {
+        expected.addAll(expectedSet);
+      }
+      Assert.assertEquals(iterate(new OrBlockDocIdSet(docIdSets)), expected);
+    }
+  }
+
+  @Test
+  public void testNested() {
+    for (int iteration = 0; iteration < NUM_ITERATIONS; iteration++) {
+      // (bitmap AND sorted) OR bitmap, AND with (bitmap OR scan)
+      TreeSet<Integer> bitmap1 = randomSet(NUM_DOCS / 2);
+      TreeSet<Integer> sorted = new TreeSet<Integer>();
+      TreeSet<Integer> bitmap2 = randomSet(NUM_DOCS / 20);
+      TreeSet<Integer> bitmap3 = randomSet(NUM_DOCS / 4);
+      TreeSet<Integer> scan = randomSet(NUM_DOCS / 4);
+
+      FilterBlockDocIdSet innerAnd =
+          new AndBlockDocIdSet(Arrays.asList(makeBitmapDocIdSet(bitmap1), makeSortedDocIdSet(sorted)));
+      FilterBlockDocIdSet indexedOr = new OrBlockDocIdSet(Arrays.asList(innerAnd, makeBitmapDocIdSet(bitmap2)));
+      FilterBlockDocIdSet scanOr =
+          new OrBlockDocIdSet(Arrays.asList(makeBitmapDocIdSet(bitmap3), makeScanDocIdSet(scan)));
+      Assert.assertTrue(((AndBlockDocIdSet) innerAnd).isIndexed());
+      Assert.assertTrue(((OrBlockDocIdSet) indexedOr).isIndexed());
+      Assert.assertFalse(((OrBlockDocIdSet) scanOr).isIndexed());
+
+      TreeSet<Integer> expected = new TreeSet<Integer>(bitmap1);
+      expected.retainAll(sorted);
+      expected.addAll(bitmap2);
+      TreeSet<Integer> expectedScanOr = new TreeSet<Integer>(bitmap3);
+      expectedScanOr.addAll(scan);
+      expected.retainAll(expectedScanOr);
+
+      Assert.assertEquals(iterate(new AndBlockDocIdSet(Arrays.asList(indexedOr, scanOr))), expected);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    FilterBlockDocIdSet emptyBitmap = new BitmapDocIdSet(0, NUM_DOCS - 1);
+    FilterBlockDocIdSet emptySorted = new SortedDocIdSet(new ArrayList<Pair<Integer, Integer>>());
+    TreeSet<Integer> scan = randomSet(NUM_DOCS / 2);
+
+    Assert.assertTrue(iterate(new AndBlockDocIdSet(Arrays.asList(emptyBitmap, makeScanDocIdSet(scan)))).isEmpty());
+    Assert.assertEquals(iterate(new OrBlockDocIdSet(Arrays.asList(emptySorted, makeScanDocIdSet(scan)))), scan);
+  }
+
+  /**
+   * Makes one doc id set of each kind (bitmap, sorted, scan) plus one random one, in random order.
+   */
+  private List<FilterBlockDocIdSet> makeMixedDocIdSets(List<TreeSet<Integer>> expectedSets) {
+    List<FilterBlockDocIdSet> docIdSets = new ArrayList<FilterBlockDocIdSet>();
+    for (int i = 0; i < 4; i++) {
+      TreeSet<Integer> expectedSet = new TreeSet<Integer>();
+      int type = i < 3 ? i : _random.nextInt(3);
+      switch (type) {
+        case 0:
+          expectedSet.addAll(randomSet(1 + _random.nextInt(NUM_DOCS)));
+          docIdSets.add(makeBitmapDocIdSet(expectedSet));
+          break;
+        case 1:
+          docIdSets.add(makeSortedDocIdSet(expectedSet));
+          break;
+        default:
+          expectedSet.addAll(randomSet(1 + _random.nextInt(NUM_DOCS)));
+          docIdSets.add(makeScanDocIdSet(expectedSet));
+          break;
+      }
+      expectedSets.add(expectedSet);
+    }
+    long seed = _random.nextLong();
+    Collections.shuffle(docIdSets, new Random(seed));
+    Collections.shuffle(expectedSets, new Random(seed));
+    return docIdSets;
+  }
+
+  private TreeSet<Integer> randomSet(int size) {
+    TreeSet<Integer> set = new TreeSet<Integer>();
+    for (int i = 0; i < size; i++) {
+      set.add(_random.nextInt(NUM_DOCS));
+    }
+    return set;
+  }
+
+  private FilterBlockDocIdSet makeBitmapDocIdSet(TreeSet<Integer> docIds) {
+    // Split over two bitmaps, as for a predicate matching two dictionary ids
+    MutableRoaringBitmap bitmap1 = new MutableRoaringBitmap();
+    MutableRoaringBitmap bitmap2 = new MutableRoaringBitmap();
+    for (int docId : docIds) {
+      if (_random.nextBoolean()) {
+        bitmap1.add(docId);
+      } else {
+        bitmap2.add(docId);
+      }
+    }
+    return new BitmapDocIdSet(0, NUM_DOCS - 1, bitmap1, bitmap2);
+  }
+
+  /**
+   * Makes random ranges of documents and adds them to docIds.
+   */
+  private FilterBlockDocIdSet makeSortedDocIdSet(TreeSet<Integer> docIds) {
+    List<Pair<Integer, Integer>> pairs = new ArrayList<Pair<Integer, Integer>>();
+    int start = _random.nextInt(NUM_DOCS / 10);
+    while (start < NUM_DOCS) {
+      int end = Math.min(start + _random.nextInt(NUM_DOCS / 10), NUM_DOCS - 1);
+      pairs.add(new ImmutablePair<Integer, Integer>(start, end));
+      for (int docId = start; docId <= end; docId++) {
+        docIds.add(docId);
+      }
+      start = end + 2 + _random.nextInt(NUM_DOCS / 10);
+    }
+    return new SortedDocIdSet(pairs);
+  }
+
+  private FilterBlockDocIdSet makeScanDocIdSet(TreeSet<Integer> docIds) {
+    final int[] values = new int[docIds.size()];
+    int i = 0;
+    for (int docId : docIds) {
+      values[i++] = docId;
+    }
+    return new FilterBlockDocIdSet() {
+      private int startDocId = 0;
+      private int endDocId = NUM_DOCS - 1;
+
+      @Override
+      public BlockDocIdIterator iterator() {
+        return new BlockDocIdIterator() {
+          int index = -1;
+          int currentDocId = -1;
+
+          @Override
+          public int next() {
+            return advance(currentDocId + 1);
+          }
+
+          @Override
+          public int advance(int targetDocId) {
+            if (currentDocId == Constants.EOF) {
+              return currentDocId;
+            }
+            targetDocId = Math.max(targetDocId, startDocId);
+            if (currentDocId >= targetDocId) {
+              return currentDocId;
+            }
+            while (++index < values.length) {
+              if (values[index] > endDocId) {
+                break;
+              }
+              if (values[index] >= targetDocId) {
+                return (currentDocId = values[index]);
+              }
+            }
+            return (currentDocId = Constants.EOF);
+          }
+
+          @Override
+          public int currentDocId() {
+            return currentDocId;
+          }
+        };
+      }
+
+      @Override
+      public <T> T getRaw() {
+        return null;
+      }
+
+      @Override
+      public int getMinDocId() {
+        return 0;
+      }
+
+      @Override
+      public int getMaxDocId() {
+        return NUM_DOCS - 1;
+      }
+
+      @Override
+      public void setStartDocId(int startDocId) {
+        this.startDocId = startDocId;
+      }
+
+      @Override
+      public void setEndDocId(int endDocId) {
+        this.endDocId = endDocId;
+      }
+    };
+  }
+
+  private static TreeSet<Integer> iterate(FilterBlockDocIdSet docIdSet) {
+    TreeSet<Integer> docIds = new TreeSet<Integer>();
+    BlockDocIdIterator iterator = docIdSet.iterator();
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      docIds.add(docId);
+    }
+    return docIds;
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.predicate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.FieldSpec.FieldType;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
+import com.linkedin.pinot.core.realtime.impl.dictionary.StringMutableDictionary;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentDictionaryCreator;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+
+
+public class RegexPredicateEvaluatorTest {
+  private static final String COLUMN = "country";
+  private static final String[] VALUES =
+      { "a", "ab!", "abc", "abcd", "abd", "b.c", "bac", "bc", "us", "usa", "zz" };
+
+  private final File indexDir = new File(System.getProperty("java.io.tmpdir"), "RegexPredicateEvaluatorTest");
+  private StringDictionary offlineDictionary;
+  private StringMutableDictionary realtimeDictionary;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(indexDir);
+    indexDir.mkdirs();
+
+    FieldSpec spec = new DimensionFieldSpec(COLUMN, DataType.STRING, true);
+    SegmentDictionaryCreator creator = new SegmentDictionaryCreator(false, VALUES, spec, indexDir);
+    creator.build();
+    creator.close();
+
+    int maxLength = 0;
+    for (String value : VALUES) {
+      maxLength = Math.max(maxLength, value.length());
+    }
+    ColumnMetadata metadata =
+        new ColumnMetadata(COLUMN, VALUES.length, VALUES.length, DataType.STRING, 4, maxLength, FieldType.DIMENSION,
+            false, true, true, 0, false, true, null, VALUES.length);
+    offlineDictionary = new StringDictionary(new File(indexDir, COLUMN + ".dict"), metadata, ReadMode.heap);
+
+    realtimeDictionary = new StringMutableDictionary(spec);
+    for (int i = VALUES.length - 1; i >= 0; i--) {
+      realtimeDictionary.index(VALUES[i]);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    offlineDictionary.close();
+    FileUtils.deleteQuietly(indexDir);
+  }
+
+  @Test
+  public void testLiteralPrefix() {
+    Assert.assertEquals(regex("abc.*").getLiteralPrefix(), "abc");
+    Assert.assertEquals(regex("^abc").getLiteralPrefix(), "abc");
+    Assert.assertEquals(regex("abc?d").getLiteralPrefix(), "ab");
+    Assert.assertEquals(regex("ab+c").getLiteralPrefix(), "ab");
+    Assert.assertEquals(regex("b\\.c").getLiteralPrefix(), "b.c");
+    Assert.assertEquals(regex("a\\d").getLiteralPrefix(), "a");
+    Assert.assertEquals(regex("abc|us").getLiteralPrefix(), "");
+    Assert.assertEquals(regex("[ab]c").getLiteralPrefix(), "");
+    Assert.assertEquals(regex(".*c").getLiteralPrefix(), "");
+  }
+
+  @Test
+  public void testOfflineDictionary() {
+    assertMatches("ab.*", "ab!", "abc", "abcd", "abd");
+    assertMatches("abc", "abc");
+    assertMatches("b\\.c", "b.c");
+    assertMatches("b.c", "b.c", "bac");
+    assertMatches(".*c", "abc", "b.c", "bac", "bc");
+    assertMatches("us|zz", "us", "zz");
+    assertMatches("x.*");
+    assertMatches("abcde");
+  }
+
+  private void assertMatches(String regex, String... expected) {
+    List<String> offline = new ArrayList<String>();
+    int[] offlineIds = new RegexOfflineDictionaryPredicateEvaluator(regex(regex), offlineDictionary).getDictionaryIds();
+    for (int id : offlineIds) {
+      offline.add(offlineDictionary.get(id));
+    }
+    Assert.assertEquals(offline, Arrays.asList(expected), regex);
+
+    List<String> realtime = new ArrayList<String>();
+    int[] realtimeIds =
+        new RegexRealtimeDictionaryPredicateEvaluator(regex(regex), realtimeDictionary).getDictionaryIds();
+    for (int i = 0; i < realtimeIds.length; i++) {
+      if (i > 0) {
+        Assert.assertTrue(realtimeIds[i - 1] < realtimeIds[i]);
+      }
+      realtime.add(realtimeDictionary.get(realtimeIds[i]).toString());
+    }
+    // Realtime dictionary ids are in insertion order, which is the reverse of the sorted values here.
+    List<String> sorted = new ArrayList<String>(realtime);
+    Collections.reverse(sorted);
+    Assert.assertEquals(sorted, Arrays.asList(expected), regex);
+  }
+
+  private static RegexPredicate regex(String regex) {
+    return new RegexPredicate(COLUMN, Arrays.asList(regex));
+  }
+}
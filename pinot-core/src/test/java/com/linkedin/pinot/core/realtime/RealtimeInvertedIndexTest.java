@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.DimensionInvertertedIndex;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.MetricInvertedIndex;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
+
+
+public class RealtimeInvertedIndexTest {
+
+  @Test
+  public void testAddAndGrow() {
+    RealtimeInvertedIndex invertedIndex = new DimensionInvertertedIndex("dim");
+    int numDictIds = 1000;
+    for (int docId = 0; docId < 10 * numDictIds; docId++) {
+      invertedIndex.add(docId % numDictIds, docId);
+    }
+    // Boxed ids are still accepted
+    invertedIndex.add(Integer.valueOf(0), 10 * numDictIds);
+
+    for (int dictId = 0; dictId < numDictIds; dictId++) {
+      MutableRoaringBitmap bitmap = invertedIndex.getDocIdSetFor(dictId);
+      Assert.assertEquals(bitmap.getCardinality(), dictId == 0 ? 11 : 10);
+      Assert.assertTrue(bitmap.contains(dictId + numDictIds));
+      Assert.assertSame(invertedIndex.getDocIdSetFor(Integer.valueOf(dictId)), bitmap);
+      Assert.assertSame(invertedIndex.getImmutable(dictId), bitmap);
+    }
+    Assert.assertNull(invertedIndex.getDocIdSetFor(numDictIds));
+    Assert.assertNull(invertedIndex.getDocIdSetFor(-1));
+    Assert.assertNull(invertedIndex.getDocIdSetFor("0"));
+  }
+
+  @Test
+  public void testMetricKeys() {
+    MetricInvertedIndex invertedIndex = new MetricInvertedIndex("met");
+    invertedIndex.add(3, 0);
+    invertedIndex.add(40, 1);
+    invertedIndex.add(3, 2);
+    Assert.assertEquals(invertedIndex.getKeys().size(), 2);
+    Assert.assertTrue(invertedIndex.getKeys().contains(3));
+    Assert.assertTrue(invertedIndex.getKeys().contains(40));
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+public class RealtimeSegmentIndexingTest {
+
+  private static Schema buildSchema() {
+    return new Schema.SchemaBuilder().setSchemaName("indexingTest")
+        .addSingleValueDimension("dimString", DataType.STRING).addSingleValueDimension("dimInt", DataType.INT)
+        .addMultiValueDimension("dimMulti", DataType.STRING, ",").addMetric("count", DataType.INT)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT).build();
+  }
+
+  private static GenericRow buildRow(int i) {
+    Map<String, Object> fields = new HashMap<String, Object>();
+    fields.put("dimString", "s" + (i % 7));
+    fields.put("dimInt", i % 5);
+    Object[] multiValues = new Object[1 + i % 3];
+    for (int j = 0; j < multiValues.length; j++) {
+      multiValues[j] = "m" + (i + j) % 4;
+    }
+    fields.put("dimMulti", multiValues);
+    fields.put("count", i % 11);
+    fields.put("daysSinceEpoch", 16000 + i % 10);
+    GenericRow row = new GenericRow();
+    row.init(fields);
+    return row;
+  }
+
+  @Test
+  public void testBatchIndexMatchesRowByRow() throws Exception {
+    int numRows = 1000;
+    RealtimeSegmentImpl rowByRow = new RealtimeSegmentImpl(buildSchema(), numRows);
+    RealtimeSegmentImpl batched = new RealtimeSegmentImpl(buildSchema(), numRows);
+
+    List<GenericRow> batch = new ArrayList<GenericRow>();
+    for (int i = 0; i < numRows; i++) {
+      Assert.assertTrue(rowByRow.index(buildRow(i)));
+      batch.add(buildRow(i));
+      if (batch.size() == 64) {
+        Assert.assertEquals(batched.index(batch), 64);
+        batch.clear();
+      }
+    }
+    Assert.assertEquals(batched.index(batch), batch.size());
+
+    Assert.assertEquals(rowByRow.getTotalDocs(), numRows);
+    Assert.assertEquals(batched.getTotalDocs(), numRows);
+    Assert.assertEquals(batched.getMinTime(), 16000);
+    Assert.assertEquals(batched.getMaxTime(), 16009);
+
+    for (int docId = 0; docId < numRows; docId++) {
+      GenericRow expected = buildRow(docId);
+      GenericRow actual = batched.getRawValueRowAt(docId);
+      Assert.assertEquals(actual.getValue("dimString"), expected.getValue("dimString"));
+      Assert.assertEquals(actual.getValue("dimInt"), expected.getValue("dimInt"));
+      Assert.assertEquals((Object[]) actual.getValue("dimMulti"), (Object[]) expected.getValue("dimMulti"));
+      Assert.assertEquals(actual.getValue("daysSinceEpoch"), expected.getValue("daysSinceEpoch"));
+      Assert.assertEquals((Object[]) rowByRow.getRawValueRowAt(docId).getValue("dimMulti"),
+          (Object[]) actual.getValue("dimMulti"));
+    }
+
+    // a full segment stops accepting rows
+    Assert.assertFalse(batched.index(buildRow(numRows)));
+    Assert.assertEquals(batched.index(batch), 0);
+  }
+}
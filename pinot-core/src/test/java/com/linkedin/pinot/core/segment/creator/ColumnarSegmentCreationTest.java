@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnMultiValueReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnSingleValueReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+
+
+/**
+ * Builds segments from in-memory rows through the single pass, column parallel creation path and checks that
+ * every document reads back its original values.
+ */
+public class ColumnarSegmentCreationTest {
+  private static final int NUM_DOCS = 5000;
+  private static final String[] COUNTRIES = { "us", "ca", "in", "de", "fr", "a-very-long-country-name-value" };
+
+  private final File outputDir = new File(System.getProperty("java.io.tmpdir"), "ColumnarSegmentCreationTest");
+  private Schema schema;
+  private List<GenericRow> rows;
+
+  @BeforeClass
+  public void setUp() {
+    FileUtils.deleteQuietly(outputDir);
+
+    schema = new Schema();
+    schema.addSchema("country", new DimensionFieldSpec("country", DataType.STRING, true));
+    schema.addSchema("tags", new DimensionFieldSpec("tags", DataType.STRING, false, ","));
+    schema.addSchema("count", new MetricFieldSpec("count", DataType.INT));
+    schema.addSchema("revenue", new MetricFieldSpec("revenue", DataType.DOUBLE));
+
+    Random random = new Random(42);
+    rows = new ArrayList<GenericRow>();
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Map<String, Object> fields = new HashMap<String, Object>();
+      fields.put("country", COUNTRIES[random.nextInt(COUNTRIES.length)]);
+      Object[] tags = new Object[1 + random.nextInt(3)];
+      for (int j = 0; j < tags.length; j++) {
+        tags[j] = "tag" + random.nextInt(20);
+      }
+      fields.put("tags", tags);
+      fields.put("count", random.nextInt(100));
+      fields.put("revenue", (double) random.nextInt(1000) / 10);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      rows.add(row);
+    }
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(outputDir);
+  }
+
+  @Test
+  public void testSerialInMemory() throws Exception {
+    checkSegment(buildSegment("serial", 1, 64L * 1024 * 1024, SegmentVersion.v1));
+  }
+
+  @Test
+  public void testParallelSpilled() throws Exception {
+    checkSegment(buildSegment("parallel", 4, 1024, SegmentVersion.v2));
+  }
+
+  private File buildSegment(String name, int numThreads, long bufferBytes, SegmentVersion version)
+      throws Exception {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setTableName("testTable");
+    config.setSegmentName(name);
+    config.setIndexOutputDir(outputDir.getAbsolutePath());
+    config.setCreationThreads(numThreads);
+    config.setCreationBufferMemoryBytes(bufferBytes);
+    config.setSegmentVersion(version);
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new ListRecordReader());
+    driver.build();
+    return new File(outputDir, name);
+  }
+
+  private void checkSegment(File indexDir) throws Exception {
+    IndexSegmentImpl segment = (IndexSegmentImpl) Loaders.IndexSegment.load(indexDir, ReadMode.heap);
+    Assert.assertEquals(segment.getSegmentMetadata().getTotalDocs(), NUM_DOCS);
+
+    int[] dictIds = new int[3];
+    for (String column : new String[] { "country", "count", "revenue" }) {
+      ImmutableDictionaryReader dictionary = segment.getDictionaryFor(column);
+      SingleColumnSingleValueReader reader = (SingleColumnSingleValueReader) segment.getForwardIndexReaderFor(column);
+      for (int docId = 0; docId < NUM_DOCS; docId++) {
+        Assert.assertEquals(dictionary.get(reader.getInt(docId)), rows.get(docId).getValue(column), column);
+      }
+    }
+
+    ImmutableDictionaryReader dictionary = segment.getDictionaryFor("tags");
+    SingleColumnMultiValueReader reader = (SingleColumnMultiValueReader) segment.getForwardIndexReaderFor("tags");
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      // Multi values are stored in dictionary order
+      Object[] expected = ((Object[]) rows.get(docId).getValue("tags")).clone();
+      Arrays.sort(expected);
+      int length = reader.getIntArray(docId, dictIds);
+      Object[] actual = new Object[length];
+      for (int i = 0; i < length; i++) {
+        actual[i] = dictionary.get(dictIds[i]);
+      }
+      Assert.assertEquals(actual, expected);
+    }
+    segment.destroy();
+  }
+
+  private class ListRecordReader implements RecordReader {
+    private int next = 0;
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void rewind() {
+      throw new UnsupportedOperationException("Segment creation should read the input only once");
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < rows.size();
+    }
+
+    @Override
+    public Schema getSchema() {
+      return schema;
+    }
+
+    @Override
+    public GenericRow next() {
+      return rows.get(next++);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
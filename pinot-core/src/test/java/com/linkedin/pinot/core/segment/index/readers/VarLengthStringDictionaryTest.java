@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.readers;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentDictionaryCreator;
+import com.linkedin.pinot.core.segment.creator.impl.stats.StringColumnPreIndexStatsCollector;
+
+
+public class VarLengthStringDictionaryTest {
+  private static final String COLUMN = "url";
+  // Sorted by UTF-8 bytes, which puts the supplementary character after the one from the private use area.
+  private static final String[] VALUES = { "", "a", "a%", "ab", "http://www.linkedin.com/in/some/very/long/path",
+      "z", "\u00e9", "\ue000", "\ud83d\ude00" };
+
+  private final File indexDir = new File(System.getProperty("java.io.tmpdir"), "VarLengthStringDictionaryTest");
+  private SegmentDictionaryCreator creator;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(indexDir);
+    indexDir.mkdirs();
+
+    FieldSpec spec = new DimensionFieldSpec(COLUMN, DataType.STRING, true);
+    // The creator gets the values in String order and has to sort them itself.
+    String[] unsorted = { "\ud83d\ude00", "\ue000", "", "z", "ab", "a%", "a",
+        "http://www.linkedin.com/in/some/very/long/path", "\u00e9" };
+    creator = new SegmentDictionaryCreator(false, unsorted, spec, indexDir, SegmentVersion.v2);
+    creator.build();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    creator.close();
+    FileUtils.deleteQuietly(indexDir);
+  }
+
+  @Test
+  public void testLookups() throws Exception {
+    File dictFile = new File(indexDir, COLUMN + ".dict");
+    Assert.assertEquals(dictFile.length(), (VALUES.length + 1) * 4 + totalUtf8Length());
+
+    for (boolean isMmap : new boolean[] { true, false }) {
+      VarLengthStringDictionary dictionary = new VarLengthStringDictionary(dictFile, VALUES.length, isMmap);
+      Assert.assertEquals(dictionary.length(), VALUES.length);
+      for (int i = 0; i < VALUES.length; i++) {
+        Assert.assertEquals(dictionary.get(i), VALUES[i]);
+        Assert.assertEquals(dictionary.getStringValue(i), VALUES[i]);
+        Assert.assertEquals(dictionary.indexOf(VALUES[i]), i);
+        Assert.assertEquals(creator.indexOf(VALUES[i]), i);
+      }
+      Assert.assertEquals(dictionary.indexOf("aa"), -4);
+      Assert.assertEquals(dictionary.indexOf("zz"), -7);
+      Assert.assertEquals(dictionary.prefixStartIndex("a"), 1);
+      Assert.assertEquals(dictionary.prefixEndIndex("a", 1), 4);
+      Assert.assertEquals(dictionary.prefixStartIndex("b"), 4);
+      Assert.assertEquals(dictionary.prefixEndIndex("b", 4), 4);
+      dictionary.close();
+    }
+  }
+
+  @Test
+  public void testStatsCollectorUsesDictionaryOrder() throws Exception {
+    FieldSpec spec = new DimensionFieldSpec(COLUMN, DataType.STRING, true);
+
+    StringColumnPreIndexStatsCollector all = new StringColumnPreIndexStatsCollector(spec);
+    for (int i = VALUES.length - 1; i >= 0; i--) {
+      all.collect(VALUES[i]);
+    }
+    all.seal();
+    Assert.assertEquals(all.getUniqueValuesSet(), VALUES);
+    Assert.assertEquals(all.getMinValue(), "");
+    Assert.assertEquals(all.getMaxValue(), "\ud83d\ude00");
+
+    // Only values after the collector's initial null string, so the first one does not count as a decrease.
+    StringColumnPreIndexStatsCollector sorted = new StringColumnPreIndexStatsCollector(spec);
+    for (String value : new String[] { "z", "\u00e9", "\ue000", "\ud83d\ude00" }) {
+      sorted.collect(value);
+    }
+    sorted.seal();
+    Assert.assertTrue(sorted.isSorted());
+
+    // In String order the supplementary character would come first.
+    StringColumnPreIndexStatsCollector unsorted = new StringColumnPreIndexStatsCollector(spec);
+    unsorted.collect("\ud83d\ude00");
+    unsorted.collect("\ue000");
+    unsorted.seal();
+    Assert.assertFalse(unsorted.isSorted());
+    Assert.assertEquals(unsorted.getMinValue(), "\ue000");
+    Assert.assertEquals(unsorted.getMaxValue(), "\ud83d\ude00");
+  }
+
+  private static int totalUtf8Length() throws Exception {
+    int length = 0;
+    for (String value : VALUES) {
+      length += value.getBytes("UTF-8").length;
+    }
+    return length;
+  }
+}
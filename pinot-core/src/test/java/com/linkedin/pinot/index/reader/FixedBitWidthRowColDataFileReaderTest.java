@@ -189,6 +189,15 @@ public class FixedBitWidthRowColDataFileReaderTest {
           System.out.println(i + "  Expected:" + values[i] + " Actual:" + readInt);
           Assert.assertEquals(readInt, values[i]);
         }
+        int[] rows = new int[numElements / 2];
+        for (int i = 0; i < rows.length; i++) {
+          rows[i] = 2 * i + 1;
+        }
+        int[] batchValues = new int[rows.length + 1];
+        heapReader.readInt(rows, 0, rows.length, 0, batchValues, 1);
+        for (int i = 0; i < rows.length; i++) {
+          Assert.assertEquals(batchValues[i + 1], values[rows[i]]);
+        }
         // Assert.assertEquals(FileReaderTestUtils.getNumOpenFiles(file), 0);
         heapReader.close();
         // Assert.assertEquals(FileReaderTestUtils.getNumOpenFiles(file), 0);
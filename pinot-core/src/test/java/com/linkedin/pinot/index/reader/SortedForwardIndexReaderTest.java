@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.index.reader;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.index.reader.impl.FixedByteWidthRowColDataFileReader;
+import com.linkedin.pinot.core.segment.index.readers.SortedForwardIndexReader;
+
+
+public class SortedForwardIndexReaderTest {
+
+  @Test
+  public void testReadValues() throws Exception {
+    // One (start, end) doc id range per dictionary id, with random run lengths
+    Random random = new Random(42);
+    int cardinality = 200;
+    ByteBuffer buffer = ByteBuffer.allocate(cardinality * 2 * 4);
+    int numDocs = 0;
+    for (int dictId = 0; dictId < cardinality; dictId++) {
+      int runLength = 1 + random.nextInt(20);
+      buffer.putInt(numDocs);
+      buffer.putInt(numDocs + runLength - 1);
+      numDocs += runLength;
+    }
+    FixedByteWidthRowColDataFileReader rawReader =
+        new FixedByteWidthRowColDataFileReader(buffer, cardinality, 2, new int[] { 4, 4 });
+    SortedForwardIndexReader reader = new SortedForwardIndexReader(rawReader, numDocs);
+
+    int[] docIds = new int[numDocs];
+    int length = 0;
+    for (int docId = 0; docId < numDocs; docId++) {
+      if (random.nextInt(4) == 0) {
+        docIds[length++] = docId;
+      }
+    }
+    int[] dictIds = new int[length];
+    reader.readValues(docIds, 0, length, dictIds, 0);
+    for (int i = 0; i < length; i++) {
+      Assert.assertEquals(dictIds[i], reader.getInt(docIds[i]));
+    }
+
+    // Doc ids out of order fall back to searching
+    int[] unorderedDocIds = new int[] { numDocs - 1, 0, numDocs / 2, numDocs / 2, 1 };
+    int[] unorderedDictIds = new int[unorderedDocIds.length];
+    reader.readValues(unorderedDocIds, 0, unorderedDocIds.length, unorderedDictIds, 0);
+    for (int i = 0; i < unorderedDocIds.length; i++) {
+      Assert.assertEquals(unorderedDictIds[i], reader.getInt(unorderedDocIds[i]));
+    }
+  }
+}
@@ -21,8 +21,10 @@ import java.io.FileInputStream;
 import java.util.Arrays;
 import java.util.Random;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
 import com.linkedin.pinot.core.index.reader.impl.FixedByteWidthRowColDataFileReader;
@@ -32,10 +34,17 @@ import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 
 @Test
 public class FixedByteWidthRowColDataFileWriterTest {
+  private static final File TEST_DIR = FileUtils.getTempDirectory();
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(new File(TEST_DIR, "test_single_col_writer.dat"));
+  }
+
   @Test
   public void testSingleCol() throws Exception {
 
-    File file = new File("test_single_col_writer.dat");
+    File file = new File(TEST_DIR, "test_single_col_writer.dat");
     file.delete();
     int rows = 100;
     int cols = 1;
@@ -60,7 +69,7 @@ public class FixedByteWidthRowColDataFileWriterTest {
   @Test
   public void testMultiCol() throws Exception {
 
-    File file = new File("test_single_col_writer.dat");
+    File file = new File(TEST_DIR, "test_single_col_writer.dat");
     file.delete();
     int rows = 100;
     int cols = 2;
@@ -90,7 +99,7 @@ public class FixedByteWidthRowColDataFileWriterTest {
   public void testSpecialCharsForStringReaderWriter() throws Exception {
     final byte[] bytes1 = new byte[] { -17, -65, -67, -17, -65, -67, 32, 69, 120, 101, 99, 117, 116, 105, 118, 101 };
     final byte[] bytes2 = new byte[] { -17, -65, -68, 32, 99, 97, 108, 103, 97, 114, 121, 32, 106, 117, 110, 107, 32, 114, 101, 109, 111, 118, 97, 108 };
-    File file = new File("test_single_col_writer.dat");
+    File file = new File(TEST_DIR, "test_single_col_writer.dat");
     file.delete();
     int rows = 100;
     int cols = 1;
@@ -121,6 +130,7 @@ public class FixedByteWidthRowColDataFileWriterTest {
       Assert.assertEquals(StringUtils.remove(stringInFile, String.valueOf(V1Constants.Str.STRING_PAD_CHAR)),
           StringUtils.remove(data[i], String.valueOf(V1Constants.Str.STRING_PAD_CHAR)));
     }
+    dataFileReader.close();
     file.delete();
   }
 }
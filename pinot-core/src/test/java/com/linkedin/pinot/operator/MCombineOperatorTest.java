@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.operator;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+
+
+public class MCombineOperatorTest {
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setup() {
+    _executorService = Executors.newCachedThreadPool();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdownNow();
+  }
+
+  @Test
+  public void testAllSegmentsCombinedWithSkewedSegments() {
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < 37; i++) {
+      // Every tenth segment is slow, the other workers should keep pulling the remaining ones.
+      operators.add(new CountOperator((i % 10 == 0) ? 50 : 0));
+    }
+    assertCount(operators, 4, 37);
+  }
+
+  @Test
+  public void testFewerSegmentsThanThreads() {
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < 3; i++) {
+      operators.add(new CountOperator(0));
+    }
+    assertCount(operators, 16, 3);
+  }
+
+  private void assertCount(List<Operator> operators, int maxThreadsPerQuery, long expectedCount) {
+    MCombineOperator combineOperator =
+        new MCombineOperator(operators, _executorService, 10000, getCountQuery(), maxThreadsPerQuery);
+    combineOperator.open();
+    IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+    combineOperator.close();
+    Assert.assertEquals(((Number) block.getAggregationResult().get(0)).longValue(), expectedCount);
+    Assert.assertEquals(block.getNumDocsScanned(), expectedCount);
+  }
+
+  private static BrokerRequest getCountQuery() {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("count");
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "*");
+    aggregationInfo.setAggregationParams(params);
+    aggregationsInfo.add(aggregationInfo);
+    brokerRequest.setAggregationsInfo(aggregationsInfo);
+    return brokerRequest;
+  }
+
+  /**
+   * Stands in for a per segment aggregation operator, counting a single document.
+   */
+  private static class CountOperator implements Operator {
+    private final long _sleepMs;
+
+    CountOperator(long sleepMs) {
+      _sleepMs = sleepMs;
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public Block nextBlock() {
+      if (_sleepMs > 0) {
+        try {
+          Thread.sleep(_sleepMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      List<Serializable> aggregationResult = new ArrayList<Serializable>();
+      aggregationResult.add(1L);
+      IntermediateResultsBlock block = new IntermediateResultsBlock(null, aggregationResult);
+      block.setNumDocsScanned(1);
+      return block;
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,425 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdSet;
+import com.linkedin.pinot.core.common.BlockDocIdValueSet;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.BlockValIterator;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
+import com.linkedin.pinot.core.operator.query.AggregationFunctionGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationFunctionGroupByWithDictionaryOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByWithDictionaryOperator;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Checks that MAggregationGroupByWithDictionaryOperator returns the same results as running one
+ * MAggregationFunctionGroupByWithDictionaryOperator per aggregation function on the same segment.
+ */
+public class MAggregationGroupByWithDictionaryOperatorTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(),
+      "MAggregationGroupByWithDictionaryOperatorTest");
+  private static final String METRIC_COLUMN = "met_impressionCount";
+
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testMultipleGroupByColumns() {
+    assertSameResults(getPrimitiveAggregationsInfo(), getGroupBy("column11", "column10", "column12"), null);
+  }
+
+  @Test
+  public void testGroupKeyOfSixtyFourBits() {
+    // 13 + 12 + 11 + 9 + 8 + 5 + 4 + 1 + 1 bits, the group key uses the sign bit too
+    assertSameResults(getPrimitiveAggregationsInfo(), getGroupBy("column8", "column15", "column9", "column13",
+        "column12", "column10", "column14", "column1", "column2"), null);
+  }
+
+  @Test
+  public void testNonPrimitiveAggregationFunction() {
+    List<AggregationInfo> aggregationsInfo = getPrimitiveAggregationsInfo();
+    aggregationsInfo.add(getAggregationInfo("distinctCount", "column12"));
+    aggregationsInfo.add(getAggregationInfo("distinctCount", METRIC_COLUMN));
+    assertSameResults(aggregationsInfo, getGroupBy("column11", "column10"), null);
+  }
+
+  @Test
+  public void testNullDictionaryIds() {
+    List<AggregationInfo> aggregationsInfo = getPrimitiveAggregationsInfo();
+    aggregationsInfo.add(getAggregationInfo("distinctCount", METRIC_COLUMN));
+    List<Map<String, Serializable>> results = assertSameResults(aggregationsInfo, getGroupBy("column8"), METRIC_COLUMN);
+
+    // Groups whose metric values are all null report a null sum
+    Assert.assertTrue(results.get(1).containsValue(null));
+  }
+
+  @Test
+  public void testNullGroupByDictionaryIds() {
+    // A null dictionary id in the last group by column must neither change the group of the other columns nor
+    // decode to a dictionary value
+    List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(getAggregationInfo("count", "*"));
+    Map<String, Serializable> counts = aggregate(aggregationsInfo, getGroupBy("column11", "column10"), "column10");
+    Map<String, Serializable> expectedCounts = aggregate(aggregationsInfo, getGroupBy("column11"), null);
+
+    String delimiter = GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString();
+    Map<String, Long> countsByFirstColumn = new HashMap<String, Long>();
+    long numNullGroupDocs = 0;
+    for (Map.Entry<String, Serializable> entry : counts.entrySet()) {
+      String[] groupKey = entry.getKey().split(delimiter, -1);
+      Assert.assertEquals(groupKey.length, 2, entry.getKey());
+      long count = (Long) entry.getValue();
+      if (groupKey[1].equals(Dictionary.DEFAULT_NULL_STRING_VALUE)) {
+        numNullGroupDocs += count;
+      }
+      Long firstColumnCount = countsByFirstColumn.get(groupKey[0]);
+      countsByFirstColumn.put(groupKey[0], (firstColumnCount == null ? 0L : firstColumnCount) + count);
+    }
+    Assert.assertEquals(numNullGroupDocs, (_indexSegment.getTotalDocs() + 2) / 3);
+    Assert.assertEquals(countsByFirstColumn, expectedCounts);
+  }
+
+  private Map<String, Serializable> aggregate(List<AggregationInfo> aggregationsInfo, GroupBy groupBy,
+      String nullValueColumn) {
+    MAggregationGroupByWithDictionaryOperator operator =
+        new MAggregationGroupByWithDictionaryOperator(_indexSegment, aggregationsInfo, groupBy,
+            getProjectionOperator(aggregationsInfo, groupBy, nullValueColumn));
+    return ((IntermediateResultsBlock) operator.nextBlock()).getAggregationGroupByOperatorResult().get(0);
+  }
+
+  private List<Map<String, Serializable>> assertSameResults(List<AggregationInfo> aggregationsInfo, GroupBy groupBy,
+      String nullValueColumn) {
+    MProjectionOperator projectionOperator = getProjectionOperator(aggregationsInfo, groupBy, nullValueColumn);
+    MAggregationGroupByWithDictionaryOperator operator =
+        new MAggregationGroupByWithDictionaryOperator(_indexSegment, aggregationsInfo, groupBy, projectionOperator);
+    IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
+    Assert.assertEquals(block.getNumDocsScanned(), _indexSegment.getTotalDocs());
+    List<Map<String, Serializable>> results = block.getAggregationGroupByOperatorResult();
+
+    MProjectionOperator expectedProjectionOperator =
+        getProjectionOperator(aggregationsInfo, groupBy, nullValueColumn);
+    List<AggregationFunctionGroupByOperator> aggregationFunctionGroupByOperators =
+        new ArrayList<AggregationFunctionGroupByOperator>();
+    for (AggregationInfo aggregationInfo : aggregationsInfo) {
+      aggregationFunctionGroupByOperators.add(new MAggregationFunctionGroupByWithDictionaryOperator(aggregationInfo,
+          groupBy, new UReplicatedProjectionOperator(expectedProjectionOperator), true));
+    }
+    MAggregationGroupByOperator expectedOperator =
+        new MAggregationGroupByOperator(_indexSegment, aggregationsInfo, groupBy, expectedProjectionOperator,
+            aggregationFunctionGroupByOperators);
+    List<Map<String, Serializable>> expectedResults =
+        ((IntermediateResultsBlock) expectedOperator.nextBlock()).getAggregationGroupByOperatorResult();
+
+    Assert.assertEquals(results.size(), aggregationsInfo.size());
+    for (int i = 0; i < aggregationsInfo.size(); i++) {
+      Map<String, Serializable> result = results.get(i);
+      Map<String, Serializable> expectedResult = expectedResults.get(i);
+      Assert.assertTrue(result.size() > 1);
+      Assert.assertEquals(result.keySet(), expectedResult.keySet());
+      for (String groupKey : expectedResult.keySet()) {
+        assertSameValue(result.get(groupKey), expectedResult.get(groupKey),
+            aggregationsInfo.get(i).getAggregationType() + " of group " + groupKey);
+      }
+    }
+    return results;
+  }
+
+  private static void assertSameValue(Serializable value, Serializable expectedValue, String message) {
+    if (expectedValue instanceof Double) {
+      Assert.assertNotNull(value, message);
+      Assert.assertEquals(((Double) value).doubleValue(), ((Double) expectedValue).doubleValue(), 1e-6, message);
+    } else if (expectedValue instanceof AvgPair) {
+      Assert.assertNotNull(value, message);
+      AvgPair avgPair = (AvgPair) value;
+      AvgPair expectedAvgPair = (AvgPair) expectedValue;
+      Assert.assertEquals(avgPair.getFirst(), expectedAvgPair.getFirst(), 1e-6, message);
+      Assert.assertEquals(avgPair.getSecond(), expectedAvgPair.getSecond(), message);
+    } else {
+      Assert.assertEquals(value, expectedValue, message);
+    }
+  }
+
+  private MProjectionOperator getProjectionOperator(List<AggregationInfo> aggregationsInfo, GroupBy groupBy,
+      String nullValueColumn) {
+    Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+    List<String> columns = new ArrayList<String>(groupBy.getColumns());
+    for (AggregationInfo aggregationInfo : aggregationsInfo) {
+      if (!aggregationInfo.getAggregationType().equalsIgnoreCase("count")) {
+        columns.add(aggregationInfo.getAggregationParams().get("column"));
+      }
+    }
+    for (String column : columns) {
+      DataSource dataSource = _indexSegment.getDataSource(column);
+      if (column.equals(nullValueColumn)) {
+        dataSource = new NullValueDataSource(dataSource);
+      }
+      dataSourceMap.put(column, dataSource);
+    }
+    return new MProjectionOperator(dataSourceMap,
+        new BReusableFilteredDocIdSetOperator(null, _indexSegment.getTotalDocs(), 5000));
+  }
+
+  private static List<AggregationInfo> getPrimitiveAggregationsInfo() {
+    List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(getAggregationInfo("count", "*"));
+    aggregationsInfo.add(getAggregationInfo("sum", METRIC_COLUMN));
+    aggregationsInfo.add(getAggregationInfo("max", METRIC_COLUMN));
+    aggregationsInfo.add(getAggregationInfo("min", METRIC_COLUMN));
+    aggregationsInfo.add(getAggregationInfo("avg", METRIC_COLUMN));
+    return aggregationsInfo;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type, String column) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", column);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+
+  private static GroupBy getGroupBy(String... columns) {
+    GroupBy groupBy = new GroupBy();
+    groupBy.setColumns(new ArrayList<String>(Arrays.asList(columns)));
+    groupBy.setTopN(10);
+    return groupBy;
+  }
+
+  private static boolean isNull(int docId) {
+    return docId % 3 == 0;
+  }
+
+  /**
+   * Reports the null dictionary id for every third document of the wrapped single value column.
+   */
+  private static class NullValueDataSource implements DataSource {
+    private final DataSource _dataSource;
+
+    NullValueDataSource(DataSource dataSource) {
+      _dataSource = dataSource;
+    }
+
+    @Override
+    public boolean open() {
+      return _dataSource.open();
+    }
+
+    @Override
+    public Block nextBlock() {
+      return new NullValueBlock(_dataSource.nextBlock());
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      return new NullValueBlock(_dataSource.nextBlock(blockId));
+    }
+
+    @Override
+    public boolean close() {
+      return _dataSource.close();
+    }
+
+    @Override
+    public boolean setPredicate(Predicate predicate) {
+      return _dataSource.setPredicate(predicate);
+    }
+
+    @Override
+    public DataSourceMetadata getDataSourceMetadata() {
+      return _dataSource.getDataSourceMetadata();
+    }
+
+    @Override
+    public InvertedIndexReader getInvertedIndex() {
+      return _dataSource.getInvertedIndex();
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+      return _dataSource.getDictionary();
+    }
+  }
+
+  private static class NullValueBlock implements Block {
+    private final Block _block;
+
+    NullValueBlock(Block block) {
+      _block = block;
+    }
+
+    @Override
+    public BlockId getId() {
+      return _block.getId();
+    }
+
+    @Override
+    public boolean applyPredicate(Predicate predicate) {
+      return _block.applyPredicate(predicate);
+    }
+
+    @Override
+    public BlockDocIdSet getBlockDocIdSet() {
+      return _block.getBlockDocIdSet();
+    }
+
+    @Override
+    public BlockValSet getBlockValueSet() {
+      final BlockValSet blockValSet = _block.getBlockValueSet();
+      return new BlockValSet() {
+        @Override
+        public BlockValIterator iterator() {
+          return new NullValueIterator((BlockSingleValIterator) blockValSet.iterator());
+        }
+
+        @Override
+        public DataType getValueType() {
+          return blockValSet.getValueType();
+        }
+
+        @Override
+        public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+          blockValSet.readIntValues(docIds, startPos, limit, dictIdBuffer, dictIdStartPos);
+          for (int i = 0; i < limit; i++) {
+            if (isNull(docIds[startPos + i])) {
+              dictIdBuffer[dictIdStartPos + i] = Dictionary.NULL_VALUE_INDEX;
+            }
+          }
+        }
+      };
+    }
+
+    @Override
+    public BlockDocIdValueSet getBlockDocIdValueSet() {
+      return _block.getBlockDocIdValueSet();
+    }
+
+    @Override
+    public BlockMetadata getMetadata() {
+      return _block.getMetadata();
+    }
+  }
+
+  private static class NullValueIterator extends BlockSingleValIterator {
+    private final BlockSingleValIterator _iterator;
+    private int _docId = -1;
+
+    NullValueIterator(BlockSingleValIterator iterator) {
+      _iterator = iterator;
+    }
+
+    @Override
+    public boolean skipTo(int docId) {
+      _docId = docId;
+      return _iterator.skipTo(docId);
+    }
+
+    @Override
+    public int nextIntVal() {
+      int dictId = _iterator.nextIntVal();
+      return isNull(_docId) ? Dictionary.NULL_VALUE_INDEX : dictId;
+    }
+
+    @Override
+    public int currentDocId() {
+      return _iterator.currentDocId();
+    }
+
+    @Override
+    public boolean reset() {
+      return _iterator.reset();
+    }
+
+    @Override
+    public boolean next() {
+      return _iterator.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _iterator.hasNext();
+    }
+
+    @Override
+    public int size() {
+      return _iterator.size();
+    }
+
+    @Override
+    public DataType getValueType() {
+      return _iterator.getValueType();
+    }
+  }
+}
@@ -23,20 +23,30 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.operator.MatchEntireSegmentDocIdSetBlock;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
 import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.util.datasource.SingleValueBlock;
 
 
 public class SimpleAggregationFunctionsTest {
@@ -198,6 +208,115 @@ public class SimpleAggregationFunctionsTest {
     }
   }
 
+  @Test
+  public void testDistinctCountHLLAggregation() {
+    AggregationFunction aggregationFunction = new DistinctCountHLLAggregationFunction();
+    aggregationFunction.init(_paramsInfo);
+
+    // Test combine
+    for (int i = 1; i <= _sizeOfCombineList; i *= 10) {
+      List<Serializable> aggregationResults = getHyperLogLogs(i);
+      List<Serializable> combinedResult = aggregationFunction.combine(aggregationResults, CombineLevel.SEGMENT);
+      assertEquals(((HyperLogLog) (combinedResult.get(0))).cardinality(), i, i * 0.05);
+    }
+
+    // Test reduce
+    for (int i = 1; i <= _sizeOfReduceList; i *= 10) {
+      List<Serializable> combinedResults = getHyperLogLogs(i);
+      long reduceSize = (Long) aggregationFunction.reduce(combinedResults);
+      assertEquals(reduceSize, i, i * 0.05);
+    }
+
+    // Duplicated values are counted once, whatever their type
+    HyperLogLog hyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M);
+    for (int i = 0; i < 100000; ++i) {
+      hyperLogLog.offer((Object) Integer.valueOf(i % 20000));
+      hyperLogLog.offer((Object) Long.valueOf(i % 20000));
+      hyperLogLog.offer("str_" + (i % 10000));
+    }
+    assertEquals(hyperLogLog.cardinality(), 30000, 30000 * 0.05);
+  }
+
+  @Test
+  public void testSparseHyperLogLog() {
+    int numRegisters = 1 << HyperLogLog.DEFAULT_LOG2M;
+    for (int numValues = 1; numValues <= 100000; numValues *= 10) {
+      // Same registers and estimates as a sketch which is dense from the start
+      HyperLogLog sparseHyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M);
+      HyperLogLog denseHyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M, new byte[numRegisters]);
+      for (int i = 0; i < numValues; ++i) {
+        sparseHyperLogLog.offer(i);
+        denseHyperLogLog.offer(i);
+      }
+      assertEquals(sparseHyperLogLog.isSparse(), numValues <= 100);
+      assertEquals(sparseHyperLogLog.getRegisters(), denseHyperLogLog.getRegisters());
+      assertEquals(sparseHyperLogLog.cardinality(), denseHyperLogLog.cardinality());
+
+      // Merging any representation into any other one gives the sketch of the union
+      HyperLogLog otherSparseHyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M);
+      HyperLogLog unionHyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M, new byte[numRegisters]);
+      for (int i = 0; i < numValues; ++i) {
+        otherSparseHyperLogLog.offer(-i - 1);
+        unionHyperLogLog.offer(i);
+        unionHyperLogLog.offer(-i - 1);
+      }
+      byte[] union = unionHyperLogLog.getRegisters();
+      assertEquals(new HyperLogLog(HyperLogLog.DEFAULT_LOG2M).merge(sparseHyperLogLog).merge(otherSparseHyperLogLog)
+          .getRegisters(), union);
+      assertEquals(new HyperLogLog(HyperLogLog.DEFAULT_LOG2M).merge(otherSparseHyperLogLog).merge(denseHyperLogLog)
+          .getRegisters(), union);
+      assertEquals(denseHyperLogLog.merge(otherSparseHyperLogLog).getRegisters(), union);
+    }
+  }
+
+  @Test
+  public void testBatchAggregate() {
+    int sizeOfSegment = 25000;
+    int[] dictionary = new int[100];
+    for (int i = 0; i < dictionary.length; ++i) {
+      dictionary[i] = i * 3 - 50;
+    }
+    // values[docId] is the dictionary id of the doc, every 7th doc is null
+    Random random = new Random(42);
+    int[] values = new int[sizeOfSegment];
+    for (int i = 0; i < sizeOfSegment; ++i) {
+      values[i] = (i % 7 == 0) ? Dictionary.NULL_VALUE_INDEX : random.nextInt(dictionary.length);
+    }
+    Block[] blocks = new Block[] { new SingleValueBlock(dictionary, values) };
+
+    int[] filteredDocIds = new int[sizeOfSegment / 3 + 1];
+    int numFilteredDocIds = 0;
+    for (int i = 0; i < sizeOfSegment; i += 3) {
+      filteredDocIds[numFilteredDocIds++] = i;
+    }
+    Block[] docIdSetBlocks =
+        new Block[] { new DocIdSetBlock(filteredDocIds, numFilteredDocIds), new MatchEntireSegmentDocIdSetBlock(
+            sizeOfSegment) };
+
+    AggregationFunction[] aggregationFunctions =
+        new AggregationFunction[] { new SumAggregationFunction(), new MinAggregationFunction(),
+            new MaxAggregationFunction(), new AvgAggregationFunction(), new DistinctCountAggregationFunction() };
+    for (AggregationFunction aggregationFunction : aggregationFunctions) {
+      aggregationFunction.init(_paramsInfo);
+      for (Block docIdSetBlock : docIdSetBlocks) {
+        // Fold the per doc aggregate over the same docs as the batch one
+        Serializable expected = null;
+        BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+        int docId;
+        while ((docId = docIdIterator.next()) != Constants.EOF && docId < sizeOfSegment) {
+          expected = aggregationFunction.aggregate(expected, docId, blocks);
+        }
+        Serializable actual = aggregationFunction.aggregate(docIdSetBlock, blocks);
+        if (expected instanceof AvgPair) {
+          assertEquals(((AvgPair) actual).getFirst(), ((AvgPair) expected).getFirst());
+          assertEquals(((AvgPair) actual).getSecond(), ((AvgPair) expected).getSecond());
+        } else {
+          assertEquals(actual, expected, aggregationFunction.getFunctionName());
+        }
+      }
+    }
+  }
+
   private static List<Serializable> getLongValues(int numberOfElements) {
     List<Serializable> longContainers = new ArrayList<Serializable>();
     for (int i = 0; i < numberOfElements; ++i) {
@@ -232,4 +351,14 @@ public class SimpleAggregationFunctionsTest {
     }
     return intOpenHashSets;
   }
+
+  private static List<Serializable> getHyperLogLogs(int numberOfElements) {
+    List<Serializable> hyperLogLogs = new ArrayList<Serializable>();
+    for (int i = 0; i < numberOfElements; ++i) {
+      HyperLogLog hyperLogLog = new HyperLogLog(HyperLogLog.DEFAULT_LOG2M);
+      hyperLogLog.offer(i);
+      hyperLogLogs.add(hyperLogLog);
+    }
+    return hyperLogLogs;
+  }
 }
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.cache;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class SegmentResultCacheTest {
+  private static final String TABLE_NAME = "testTable";
+
+  @Test
+  public void testKey() throws Exception {
+    IndexSegment segment = getSegment("segment_0", 1234L);
+    BrokerRequest brokerRequest = getAggregationRequest();
+
+    SegmentResultCache.Key key = SegmentResultCache.getKey(segment, brokerRequest);
+    Assert.assertNotNull(key);
+
+    // The bucket hash key and time interval do not change a segment result
+    BrokerRequest sameResultRequest = getAggregationRequest();
+    sameResultRequest.setBucketHashKey("bucket");
+    sameResultRequest.setTimeInterval("interval");
+    Assert.assertEquals(SegmentResultCache.getKey(segment, sameResultRequest), key);
+
+    // A segment refreshed with new content must not match
+    Assert.assertFalse(key.equals(SegmentResultCache.getKey(getSegment("segment_0", 5678L), brokerRequest)));
+    Assert.assertFalse(key.equals(SegmentResultCache.getKey(getSegment("segment_1", 1234L), brokerRequest)));
+
+    BrokerRequest groupByRequest = getAggregationRequest();
+    groupByRequest.setGroupBy(getGroupBy());
+    Assert.assertFalse(key.equals(SegmentResultCache.getKey(segment, groupByRequest)));
+
+    BrokerRequest tracedRequest = getAggregationRequest();
+    tracedRequest.setEnableTrace(true);
+    Assert.assertNull(SegmentResultCache.getKey(segment, tracedRequest));
+
+    BrokerRequest selectionRequest = new BrokerRequest();
+    selectionRequest.setQuerySource(getQuerySource());
+    selectionRequest.setSelections(new Selection());
+    Assert.assertNull(SegmentResultCache.getKey(segment, selectionRequest));
+  }
+
+  @Test
+  public void testAggregationResult() throws Exception {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, new ServerMetrics(new MetricsRegistry()));
+    BrokerRequest brokerRequest = getAggregationRequest();
+    SegmentResultCache.Key key = SegmentResultCache.getKey(getSegment("segment_0", 1234L), brokerRequest);
+    Assert.assertNull(cache.get(key, brokerRequest));
+
+    List<Serializable> aggregationResults = new ArrayList<Serializable>();
+    aggregationResults.add(42L);
+    aggregationResults.add(3.5);
+    IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            aggregationResults);
+    resultBlock.setNumDocsScanned(42);
+    resultBlock.setTotalDocs(100);
+    cache.put(key, resultBlock);
+    Assert.assertEquals(cache.size(), 1);
+
+    IntermediateResultsBlock first = cache.get(key, brokerRequest);
+    IntermediateResultsBlock second = cache.get(key, brokerRequest);
+    Assert.assertEquals(first.getAggregationResult(), aggregationResults);
+    Assert.assertEquals(first.getNumDocsScanned(), 42);
+    Assert.assertEquals(first.getTotalDocs(), 100);
+    // Every hit hands out its own copy, so that the combine phase can merge into it
+    Assert.assertNotSame(first.getAggregationResult(), second.getAggregationResult());
+  }
+
+  @Test
+  public void testGroupByResult() throws Exception {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, new ServerMetrics(new MetricsRegistry()));
+    BrokerRequest brokerRequest = getAggregationRequest();
+    brokerRequest.setGroupBy(getGroupBy());
+    SegmentResultCache.Key key = SegmentResultCache.getKey(getSegment("segment_0", 1234L), brokerRequest);
+
+    List<Map<String, Serializable>> groupByResults = new ArrayList<Map<String, Serializable>>();
+    Map<String, Serializable> countResult = new HashMap<String, Serializable>();
+    countResult.put("a", 10L);
+    countResult.put("b", 20L);
+    Map<String, Serializable> sumResult = new HashMap<String, Serializable>();
+    sumResult.put("a", 1.5);
+    sumResult.put("b", 2.5);
+    groupByResults.add(countResult);
+    groupByResults.add(sumResult);
+    cache.put(key, new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+        groupByResults, true));
+
+    IntermediateResultsBlock first = cache.get(key, brokerRequest);
+    IntermediateResultsBlock second = cache.get(key, brokerRequest);
+    Assert.assertEquals(first.getAggregationGroupByOperatorResult(), groupByResults);
+    Assert.assertNotSame(first.getAggregationGroupByOperatorResult().get(0),
+        second.getAggregationGroupByOperatorResult().get(0));
+  }
+
+  @Test
+  public void testExceptionsAreNotCached() throws Exception {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, new ServerMetrics(new MetricsRegistry()));
+    BrokerRequest brokerRequest = getAggregationRequest();
+    SegmentResultCache.Key key = SegmentResultCache.getKey(getSegment("segment_0", 1234L), brokerRequest);
+    cache.put(key, new IntermediateResultsBlock(new RuntimeException("failed")));
+    Assert.assertEquals(cache.size(), 0);
+    Assert.assertNull(cache.get(key, brokerRequest));
+  }
+
+  private static IndexSegment getSegment(String segmentName, long crc) throws Exception {
+    OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+    segmentZKMetadata.setTableName(TABLE_NAME);
+    segmentZKMetadata.setSegmentName(segmentName);
+    segmentZKMetadata.setCrc(crc);
+    return new IndexSegmentImpl(new File(segmentName), new SegmentMetadataImpl(segmentZKMetadata),
+        new HashMap<String, ColumnIndexContainer>());
+  }
+
+  private static BrokerRequest getAggregationRequest() {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(getQuerySource());
+    brokerRequest.addToAggregationsInfo(getAggregationInfo("count", "*"));
+    brokerRequest.addToAggregationsInfo(getAggregationInfo("sum", "met"));
+    return brokerRequest;
+  }
+
+  private static QuerySource getQuerySource() {
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(TABLE_NAME);
+    return querySource;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type, String column) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", column);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+
+  private static GroupBy getGroupBy() {
+    GroupBy groupBy = new GroupBy();
+    groupBy.setColumns(Arrays.asList("dim"));
+    groupBy.setTopN(10);
+    return groupBy;
+  }
+}
@@ -37,11 +37,14 @@ import org.testng.annotations.Test;
 
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.FilterQuery;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.request.QuerySource;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.data.manager.config.FileBasedInstanceDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.offline.FileBasedInstanceDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
@@ -227,6 +230,31 @@ public class QueryExecutorTest {
 
   }
 
+  @Test
+  public void testCountQueryWithAllSegmentsPruned() {
+    BrokerRequest brokerRequest = getCountQuery();
+    // No segment holds the value, so that the column value pruner prunes all of them
+    List<String> values = new ArrayList<String>();
+    values.add("-1");
+    RequestUtils.generateFilterFromTree(new FilterQueryTree(0, "met", values, FilterOperator.EQUALITY, null),
+        brokerRequest);
+
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("midas");
+    brokerRequest.setQuerySource(querySource);
+    InstanceRequest instanceRequest = new InstanceRequest(0, brokerRequest);
+    instanceRequest.setSearchSegments(new ArrayList<String>());
+    for (IndexSegment segment : _indexSegmentList) {
+      instanceRequest.getSearchSegments().add(segment.getSegmentName());
+    }
+
+    // Still a response with the shape of the query, counting no document
+    DataTable instanceResponse = _queryExecutor.processQuery(instanceRequest);
+    Assert.assertNotNull(instanceResponse);
+    Assert.assertEquals(instanceResponse.getNumberOfRows(), 1);
+    Assert.assertEquals(instanceResponse.getLong(0, 0), 0L);
+  }
+
   private BrokerRequest getCountQuery() {
     BrokerRequest query = new BrokerRequest();
     AggregationInfo aggregationInfo = getCountAggregationInfo();
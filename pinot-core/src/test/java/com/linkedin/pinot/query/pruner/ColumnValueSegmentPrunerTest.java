@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.pruner;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.query.pruner.ColumnValueSegmentPruner;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+public class ColumnValueSegmentPrunerTest {
+
+  private static final String AVRO_DATA = "data/test_data-sv.avro";
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+  private static File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "ColumnValueSegmentPrunerTest");
+
+  private final ColumnValueSegmentPruner _pruner = new ColumnValueSegmentPruner();
+  private IndexSegmentImpl _segment;
+  private int _minValue;
+  private int _maxValue;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+
+    final String filePath =
+        TestUtils.getFileFromResourceUrl(ColumnValueSegmentPrunerTest.class.getClassLoader().getResource(AVRO_DATA));
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "daysSinceEpoch",
+            TimeUnit.DAYS, "testTable");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+
+    _segment = (IndexSegmentImpl) Loaders.IndexSegment.load(INDEX_DIR.listFiles()[0], ReadMode.heap);
+    final ImmutableDictionaryReader dictionary = _segment.getDictionaryFor("column1");
+    _minValue = (Integer) dictionary.get(0);
+    _maxValue = (Integer) dictionary.get(dictionary.length() - 1);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _segment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  private boolean prune(String filter) throws Exception {
+    final BrokerRequest brokerRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from testTable where " + filter));
+    return _pruner.prune(_segment, brokerRequest);
+  }
+
+  @Test
+  public void testEquality() throws Exception {
+    Assert.assertFalse(prune("column1 = '" + _minValue + "'"));
+    Assert.assertFalse(prune("column1 = '" + _maxValue + "'"));
+    Assert.assertTrue(prune("column1 = '" + (_maxValue + 1) + "'"));
+    Assert.assertTrue(prune("column1 = '" + (_minValue - 1) + "'"));
+  }
+
+  @Test
+  public void testIn() throws Exception {
+    Assert.assertFalse(prune("column1 in ('" + (_minValue - 1) + "', '" + _maxValue + "')"));
+    Assert.assertTrue(prune("column1 in ('" + (_minValue - 1) + "', '" + (_maxValue + 1) + "')"));
+  }
+
+  @Test
+  public void testRange() throws Exception {
+    Assert.assertFalse(prune("column1 >= " + _maxValue));
+    Assert.assertTrue(prune("column1 > " + _maxValue));
+    Assert.assertFalse(prune("column1 <= " + _minValue));
+    Assert.assertTrue(prune("column1 < " + _minValue));
+    Assert.assertFalse(prune("column1 between " + (_minValue - 10) + " and " + _minValue));
+  }
+
+  @Test
+  public void testAndOr() throws Exception {
+    final String match = "column1 = '" + _maxValue + "'";
+    final String noMatch = "column1 = '" + (_maxValue + 1) + "'";
+    Assert.assertTrue(prune(match + " and " + noMatch));
+    Assert.assertFalse(prune(match + " or " + noMatch));
+    Assert.assertTrue(prune(noMatch + " or column1 < " + _minValue));
+  }
+
+  @Test
+  public void testUnsupportedPredicates() throws Exception {
+    Assert.assertFalse(prune("column1 <> '" + _maxValue + "'"));
+    Assert.assertFalse(prune("noSuchColumn = 'x'"));
+    Assert.assertFalse(prune("column1 = 'notANumber'"));
+  }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+import com.linkedin.pinot.core.query.scheduler.FCFSQueryScheduler;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.core.query.scheduler.QuerySchedulerFactory;
+import com.linkedin.pinot.core.query.scheduler.TokenBucketQueryScheduler;
+
+
+public class QuerySchedulerTest {
+  private static final String OUT_OF_CAPACITY_KEY =
+      "Exception" + QueryException.SERVER_OUT_OF_CAPACITY_ERROR.getErrorCode();
+  private static final String SCHEDULER_DOWN_KEY =
+      "Exception" + QueryException.SERVER_SCHEDULER_DOWN_ERROR.getErrorCode();
+
+  @Test
+  public void testFactory() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    QueryScheduler scheduler = QuerySchedulerFactory.create(new QuerySchedulerConfig(config), null, null);
+    Assert.assertTrue(scheduler instanceof FCFSQueryScheduler);
+    scheduler.stop();
+
+    config.setProperty(QuerySchedulerConfig.ALGORITHM, QuerySchedulerConfig.TOKEN_BUCKET);
+    scheduler = QuerySchedulerFactory.create(new QuerySchedulerConfig(config), null, null);
+    Assert.assertTrue(scheduler instanceof TokenBucketQueryScheduler);
+    scheduler.stop();
+  }
+
+  @Test
+  public void testFCFSRejectsWhenQueueIsFull() throws Exception {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(QuerySchedulerConfig.QUERY_RUNNER_THREADS, 1);
+    config.setProperty(QuerySchedulerConfig.MAX_PENDING_QUERIES, 1);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    QueryScheduler scheduler = QuerySchedulerFactory.create(new QuerySchedulerConfig(config), queryExecutor, null);
+
+    ListenableFuture<DataTable> running = scheduler.submit(getInstanceRequest(1, "a"));
+    queryExecutor.awaitStarted(1);
+    ListenableFuture<DataTable> pending = scheduler.submit(getInstanceRequest(2, "a"));
+    ListenableFuture<DataTable> rejected = scheduler.submit(getInstanceRequest(3, "b"));
+
+    Assert.assertTrue(rejected.isDone());
+    Assert.assertTrue(rejected.get().getMetadata().containsKey(OUT_OF_CAPACITY_KEY));
+    Assert.assertEquals(rejected.get().getMetadata().get("requestId"), "3");
+
+    queryExecutor.release();
+    Assert.assertEquals(running.get(10, TimeUnit.SECONDS).getMetadata().get("requestId"), "1");
+    Assert.assertEquals(pending.get(10, TimeUnit.SECONDS).getMetadata().get("requestId"), "2");
+    scheduler.stop();
+  }
+
+  @Test
+  public void testPriorityOrderAndPerTableLimit() throws Exception {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(QuerySchedulerConfig.ALGORITHM, QuerySchedulerConfig.PRIORITY_ALGORITHM);
+    config.setProperty(QuerySchedulerConfig.QUERY_RUNNER_THREADS, 1);
+    config.setProperty(QuerySchedulerConfig.MAX_PENDING_QUERIES_PER_TABLE, 2);
+    config.setProperty(QuerySchedulerConfig.TABLE + ".b." + QuerySchedulerConfig.PRIORITY, 10);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    QueryScheduler scheduler = QuerySchedulerFactory.create(new QuerySchedulerConfig(config), queryExecutor, null);
+
+    List<ListenableFuture<DataTable>> accepted = new ArrayList<ListenableFuture<DataTable>>();
+    accepted.add(scheduler.submit(getInstanceRequest(1, "a")));
+    queryExecutor.awaitStarted(1);
+    accepted.add(scheduler.submit(getInstanceRequest(2, "a")));
+    accepted.add(scheduler.submit(getInstanceRequest(3, "a")));
+    ListenableFuture<DataTable> rejected = scheduler.submit(getInstanceRequest(4, "a"));
+    accepted.add(scheduler.submit(getInstanceRequest(5, "b")));
+
+    Assert.assertTrue(rejected.get().getMetadata().containsKey(OUT_OF_CAPACITY_KEY));
+
+    queryExecutor.release();
+    for (ListenableFuture<DataTable> future : accepted) {
+      Assert.assertFalse(future.get(10, TimeUnit.SECONDS).getMetadata().containsKey(OUT_OF_CAPACITY_KEY));
+    }
+    Assert.assertEquals(queryExecutor.getProcessedRequestIds(), Arrays.asList(1L, 5L, 2L, 3L));
+    scheduler.stop();
+  }
+
+  @Test
+  public void testStopAnswersPendingQueries() throws Exception {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty(QuerySchedulerConfig.ALGORITHM, QuerySchedulerConfig.TOKEN_BUCKET);
+    config.setProperty(QuerySchedulerConfig.QUERY_RUNNER_THREADS, 1);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    QueryScheduler scheduler = QuerySchedulerFactory.create(new QuerySchedulerConfig(config), queryExecutor, null);
+
+    scheduler.submit(getInstanceRequest(1, "a"));
+    queryExecutor.awaitStarted(1);
+    ListenableFuture<DataTable> pending = scheduler.submit(getInstanceRequest(2, "a"));
+    scheduler.stop();
+
+    Assert.assertTrue(pending.get(10, TimeUnit.SECONDS).getMetadata().containsKey(SCHEDULER_DOWN_KEY));
+    Assert.assertTrue(scheduler.submit(getInstanceRequest(3, "a")).get().getMetadata()
+        .containsKey(SCHEDULER_DOWN_KEY));
+  }
+
+  private static InstanceRequest getInstanceRequest(long requestId, String tableName) {
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(querySource);
+    return new InstanceRequest(requestId, brokerRequest);
+  }
+
+  /**
+   * Holds every query until released, and records the order the queries ran in.
+   */
+  private static class BlockingQueryExecutor implements QueryExecutor {
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private final List<Long> _processedRequestIds = Collections.synchronizedList(new ArrayList<Long>());
+    private final Object _startedLock = new Object();
+    private int _numStarted = 0;
+
+    @Override
+    public DataTable processQuery(InstanceRequest instanceRequest) {
+      _processedRequestIds.add(instanceRequest.getRequestId());
+      synchronized (_startedLock) {
+        _numStarted++;
+        _startedLock.notifyAll();
+      }
+      try {
+        _release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      DataTable instanceResponse = new DataTable();
+      instanceResponse.getMetadata().put("requestId", Long.toString(instanceRequest.getRequestId()));
+      return instanceResponse;
+    }
+
+    void awaitStarted(int numStarted) throws InterruptedException {
+      synchronized (_startedLock) {
+        while (_numStarted < numStarted) {
+          _startedLock.wait();
+        }
+      }
+    }
+
+    void release() {
+      _release.countDown();
+    }
+
+    List<Long> getProcessedRequestIds() {
+      return new ArrayList<Long>(_processedRequestIds);
+    }
+
+    @Override
+    public void init(Configuration queryExecutorConfig, DataManager dataManager, ServerMetrics serverMetrics) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void updateResourceTimeOutInMs(String resource, long timeOutMs) {
+    }
+  }
+}
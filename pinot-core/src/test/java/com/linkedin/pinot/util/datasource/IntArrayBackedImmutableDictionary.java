@@ -15,8 +15,6 @@
  */
 package com.linkedin.pinot.util.datasource;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.Arrays;
 
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
@@ -26,9 +24,8 @@ public class IntArrayBackedImmutableDictionary extends ImmutableDictionaryReader
 
   private final int[] dictionary;
 
-  protected IntArrayBackedImmutableDictionary(File dictFile, int rows, int columnSize, boolean isMmap,
-      final int[] dictionary) throws IOException {
-    super(dictFile, rows, columnSize, isMmap);
+  protected IntArrayBackedImmutableDictionary(final int[] dictionary) {
+    super(dictionary.length);
     this.dictionary = dictionary;
   }
 
@@ -115,6 +115,13 @@ public class SingleValueBlock implements Block {
       public DataType getValueType() {
         return DataType.INT;
       }
+
+      @Override
+      public void readIntValues(int[] docIds, int startPos, int limit, int[] dictIdBuffer, int dictIdStartPos) {
+        for (int i = 0; i < limit; i++) {
+          dictIdBuffer[dictIdStartPos + i] = values[docIds[startPos + i]];
+        }
+      }
     };
   }
 
@@ -174,12 +181,7 @@ public class SingleValueBlock implements Block {
 
       @Override
       public Dictionary getDictionary() {
-        try {
-          return new IntArrayBackedImmutableDictionary(null, dictionary.length, 1, true, dictionary);
-        } catch (Exception e) {
-
-        }
-        return null;
+        return new IntArrayBackedImmutableDictionary(dictionary);
       }
 
       @Override
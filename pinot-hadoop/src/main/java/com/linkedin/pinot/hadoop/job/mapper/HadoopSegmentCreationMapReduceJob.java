@@ -164,6 +164,9 @@ public class HadoopSegmentCreationMapReduceJob {
       segmentGeneratorConfig.setRecordeReaderConfig(getReaderConfig(fileFormat));
 
       segmentGeneratorConfig.setIndexOutputDir(_localDiskSegmentDirectory);
+      if (_properties.get("segment.creation.threads") != null) {
+        segmentGeneratorConfig.setCreationThreads(_properties.getInt("segment.creation.threads", 1));
+      }
 
       SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
       driver.init(segmentGeneratorConfig);
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+/**
+ * Measures realtime ingestion throughput (rows/sec) of RealtimeSegmentImpl, one row at a time and in batches.
+ *
+ * Run main() with the pinot-perf classpath, or through the JMH runner with the benchmark name as include pattern.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RealtimeSegmentIndexingBenchmark {
+  private static final int NUM_ROWS = 100000;
+  private static final int BATCH_SIZE = 1000;
+  private static final int NUM_DIMENSIONS = 10;
+  private static final int NUM_METRICS = 3;
+
+  private Schema _schema;
+  private List<GenericRow> _rows;
+  private RealtimeSegmentImpl _segment;
+
+  @Setup(Level.Trial)
+  public void setUpRows() {
+    Schema.SchemaBuilder schemaBuilder = new Schema.SchemaBuilder().setSchemaName("indexingBenchmark");
+    for (int i = 0; i < NUM_DIMENSIONS; i++) {
+      schemaBuilder.addSingleValueDimension("dim" + i, DataType.STRING);
+    }
+    schemaBuilder.addMultiValueDimension("dimMulti", DataType.STRING, ",");
+    for (int i = 0; i < NUM_METRICS; i++) {
+      schemaBuilder.addMetric("met" + i, DataType.INT);
+    }
+    schemaBuilder.addTime("daysSinceEpoch", TimeUnit.DAYS, DataType.INT);
+    _schema = schemaBuilder.build();
+
+    Random random = new Random(0);
+    _rows = new ArrayList<GenericRow>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> fields = new HashMap<String, Object>();
+      for (int j = 0; j < NUM_DIMENSIONS; j++) {
+        // cardinality grows with the column index, from 10 up to 10^NUM_DIMENSIONS capped by NUM_ROWS
+        fields.put("dim" + j, "value_" + random.nextInt((int) Math.min(NUM_ROWS, Math.pow(10, j + 1))));
+      }
+      Object[] multiValues = new Object[1 + random.nextInt(3)];
+      for (int j = 0; j < multiValues.length; j++) {
+        multiValues[j] = "multi_" + random.nextInt(100);
+      }
+      fields.put("dimMulti", multiValues);
+      for (int j = 0; j < NUM_METRICS; j++) {
+        fields.put("met" + j, random.nextInt(1000));
+      }
+      fields.put("daysSinceEpoch", 16000 + random.nextInt(7));
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      _rows.add(row);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpSegment() throws Exception {
+    _segment = new RealtimeSegmentImpl(_schema, NUM_ROWS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public int indexRowByRow() {
+    for (GenericRow row : _rows) {
+      _segment.index(row);
+    }
+    return _segment.getTotalDocs();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public int indexInBatches() {
+    for (int i = 0; i < NUM_ROWS; i += BATCH_SIZE) {
+      _segment.index(_rows.subList(i, Math.min(i + BATCH_SIZE, NUM_ROWS)));
+    }
+    return _segment.getTotalDocs();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder().include(RealtimeSegmentIndexingBenchmark.class.getSimpleName())
+        .warmupIterations(3).measurementIterations(5).forks(1).build();
+    new Runner(options).run();
+  }
+}
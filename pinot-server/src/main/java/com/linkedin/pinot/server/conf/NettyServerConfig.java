@@ -24,6 +24,9 @@ public class NettyServerConfig {
   // Netty server port
   private static String NETTY_SERVER_PORT = "port";
 
+  // Requests and responses carry the request id, so that brokers can pipeline requests on a connection
+  private static String NETTY_SERVER_MULTIPLEXED = "multiplexed";
+
   private Configuration _serverNettyConfig;
 
   public NettyServerConfig(Configuration serverNettyConfig) throws ConfigurationException {
@@ -39,4 +42,11 @@ public class NettyServerConfig {
   public int getPort() {
     return _serverNettyConfig.getInt(NETTY_SERVER_PORT);
   }
+
+  /**
+   * @return true if brokers use multiplexed connections to this server
+   */
+  public boolean isMultiplexed() {
+    return _serverNettyConfig.getBoolean(NETTY_SERVER_MULTIPLEXED, false);
+  }
 }
@@ -18,6 +18,8 @@ package com.linkedin.pinot.server.conf;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 
+import com.linkedin.pinot.core.query.config.QuerySchedulerConfig;
+
 
 /**
  * The config used for Server.
@@ -30,6 +32,7 @@ public class ServerConf {
   private static String PINOT_SERVER_INSTANCE = "pinot.server.instance";
   private static String PINOT_SERVER_METRICS = "pinot.server.metrics";
   private static String PINOT_SERVER_QUERY = "pinot.server.query.executor";
+  private static String PINOT_SERVER_QUERY_SCHEDULER = "pinot.server.query.scheduler";
   private static String PINOT_SERVER_REQUEST = "pinot.server.request";
   private static String PINOT_SERVER_NETTY = "pinot.server.netty";
   private static String PINOT_SERVER_INSTANCE_DATA_MANAGER_CLASS = "pinot.server.instance.data.manager.class";
@@ -54,6 +57,10 @@ public class ServerConf {
     return _serverConf.subset(PINOT_SERVER_QUERY);
   }
 
+  public QuerySchedulerConfig getQuerySchedulerConfig() {
+    return new QuerySchedulerConfig(_serverConf.subset(PINOT_SERVER_QUERY_SCHEDULER));
+  }
+
   public Configuration getRequestConfig() {
     return _serverConf.subset(PINOT_SERVER_REQUEST);
   }
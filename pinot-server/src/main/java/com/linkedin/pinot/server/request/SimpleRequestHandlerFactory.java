@@ -16,7 +16,7 @@
 package com.linkedin.pinot.server.request;
 
 import com.linkedin.pinot.common.metrics.ServerMetrics;
-import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 
@@ -29,7 +29,7 @@ import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
  */
 public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
 
-  private QueryExecutor _queryExecutor;
+  private QueryScheduler _queryScheduler;
 
   private ServerMetrics _serverMetrics;
 
@@ -37,18 +37,18 @@ public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
 
   }
 
-  public SimpleRequestHandlerFactory(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+  public SimpleRequestHandlerFactory(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
   }
 
-  public void init(QueryExecutor queryExecutor) {
-    _queryExecutor = queryExecutor;
+  public void init(QueryScheduler queryScheduler) {
+    _queryScheduler = queryScheduler;
   }
 
   @Override
   public RequestHandler createNewRequestHandler() {
-    return new SimpleRequestHandler(_queryExecutor, _serverMetrics);
+    return new SimpleRequestHandler(_queryScheduler, _serverMetrics);
   }
 
 }
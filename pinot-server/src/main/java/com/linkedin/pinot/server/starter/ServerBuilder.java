@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.data.DataManager;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.core.query.scheduler.QuerySchedulerFactory;
 import com.linkedin.pinot.server.conf.NettyServerConfig;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.request.SimpleRequestHandlerFactory;
@@ -155,24 +157,35 @@ public class ServerBuilder {
   }
 
   /**
-   * Build RequestHandlerFactory
+   * Build QueryScheduler
    * @param queryExecutor
    * @return
+   */
+  public QueryScheduler buildQueryScheduler(QueryExecutor queryExecutor) {
+    return QuerySchedulerFactory.create(_serverConf.getQuerySchedulerConfig(), queryExecutor, _serverMetrics);
+  }
+
+  /**
+   * Build RequestHandlerFactory
+   * @param queryScheduler
+   * @return
    * @throws InstantiationException
    * @throws IllegalAccessException
    * @throws ClassNotFoundException
    */
-  public RequestHandlerFactory buildRequestHandlerFactory(QueryExecutor queryExecutor) throws InstantiationException,
+  public RequestHandlerFactory buildRequestHandlerFactory(QueryScheduler queryScheduler) throws InstantiationException,
       IllegalAccessException, ClassNotFoundException {
     String className = _serverConf.getRequestHandlerFactoryClassName();
     LOGGER.info("Trying to Load Request Handler Factory by Class : " + className);
-    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryScheduler, _serverMetrics);
     return requestHandlerFactory;
   }
 
   public NettyServer buildNettyServer(NettyServerConfig nettyServerConfig, RequestHandlerFactory requestHandlerFactory) {
-    LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort());
-    NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null);
+    LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort() + ", multiplexed : "
+        + nettyServerConfig.isMultiplexed());
+    NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null, 100,
+        nettyServerConfig.isMultiplexed());
     return nettyServer;
   }
 
@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.data.DataManager;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.transport.netty.NettyServer;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
@@ -41,6 +42,7 @@ public class ServerInstance {
   private ServerConf _serverConf;
   private DataManager _instanceDataManager;
   private QueryExecutor _queryExecutor;
+  private QueryScheduler _queryScheduler;
   private RequestHandlerFactory _requestHandlerFactory;
   private NettyServer _nettyServer;
 
@@ -69,8 +71,10 @@ public class ServerInstance {
     _instanceDataManager = serverBuilder.buildInstanceDataManager();
     LOGGER.info("Trying to build QueryExecutor");
     _queryExecutor = serverBuilder.buildQueryExecutor(_instanceDataManager);
+    LOGGER.info("Trying to build QueryScheduler");
+    _queryScheduler = serverBuilder.buildQueryScheduler(_queryExecutor);
     LOGGER.info("Trying to build RequestHandlerFactory");
-    setRequestHandlerFactory(serverBuilder.buildRequestHandlerFactory(_queryExecutor));
+    setRequestHandlerFactory(serverBuilder.buildRequestHandlerFactory(_queryScheduler));
     LOGGER.info("Trying to build NettyServer");
     _nettyServer = serverBuilder.buildNettyServer(_serverConf.getNettyConfig(), _requestHandlerFactory);
     setServerThread(new Thread(_nettyServer));
@@ -96,6 +100,7 @@ public class ServerInstance {
    */
   public void shutDown() {
     if (isStarted()) {
+      _queryScheduler.stop();
       _queryExecutor.shutDown();
       _instanceDataManager.shutDown();
       _nettyServer.shutdownGracefully();
@@ -134,6 +139,13 @@ public class ServerInstance {
     this._queryExecutor = queryExecutor;
   }
 
+  /**
+   * @return queryScheduler
+   */
+  public QueryScheduler getQueryScheduler() {
+    return _queryScheduler;
+  }
+
   /**
    * @return requestHandlerFactory
    */
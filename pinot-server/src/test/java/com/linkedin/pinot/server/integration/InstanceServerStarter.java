@@ -33,6 +33,7 @@ import com.linkedin.pinot.common.request.FilterQuery;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.request.QuerySource;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
 import com.linkedin.pinot.server.starter.ServerBuilder;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 
@@ -63,8 +64,11 @@ public class InstanceServerStarter {
     sendQueryToQueryExecutor(getMaxQuery(), queryExecutor);
     sendQueryToQueryExecutor(getMinQuery(), queryExecutor);
 
+    LOGGER.info("Trying to build QueryScheduler");
+    QueryScheduler queryScheduler = serverBuilder.buildQueryScheduler(queryExecutor);
+
     LOGGER.info("Trying to build RequestHandlerFactory");
-    RequestHandlerFactory simpleRequestHandlerFactory = serverBuilder.buildRequestHandlerFactory(queryExecutor);
+    RequestHandlerFactory simpleRequestHandlerFactory = serverBuilder.buildRequestHandlerFactory(queryScheduler);
     LOGGER.info("Trying to build NettyServer");
 
     System.out.println(getMaxQuery());
@@ -18,12 +18,16 @@ package com.linkedin.pinot.requestHandler;
 import io.netty.buffer.ByteBuf;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -37,6 +41,7 @@ import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
+import com.linkedin.pinot.common.query.IncrementalReducer;
 import com.linkedin.pinot.common.query.ReduceService;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
@@ -49,15 +54,18 @@ import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.routing.SegmentPruningService;
 import com.linkedin.pinot.routing.TimeBoundaryService;
 import com.linkedin.pinot.routing.TimeBoundaryService.TimeBoundaryInfo;
 import com.linkedin.pinot.serde.SerDe;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.KeyedFuture;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
 import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.config.SpeculativeRequestConfig;
 import com.linkedin.pinot.transport.scattergather.ScatterGather;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
 
@@ -79,25 +87,38 @@ public class BrokerRequestHandler {
   private final BrokerMetrics _brokerMetrics;
   private final TimeBoundaryService _timeBoundaryService;
   private final long _brokerTimeOut;
+  private final BrokerResultCache _resultCache;
 
-  //TODO: Currently only using RoundRobin selection. But, this can be allowed to be configured.
-  private RoundRobinReplicaSelection _replicaSelection;
+  private final ReplicaSelection _replicaSelection;
+  private final SpeculativeRequestConfig _speculativeRequestConfig;
+  private final SegmentPruningService _segmentPruningService;
 
-  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
-      ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut) {
-    _routingTable = table;
-    _timeBoundaryService = timeBoundaryService;
-    _scatterGatherer = scatterGatherer;
+  private BrokerRequestHandler(BrokerRequestHandlerBuilder builder) {
+    _routingTable = builder._routingTable;
+    _timeBoundaryService = builder._timeBoundaryService;
+    _scatterGatherer = builder._scatterGatherer;
     _requestIdGen = new AtomicLong(0);
-    _replicaSelection = new RoundRobinReplicaSelection();
-    _reduceService = reduceService;
-    _brokerMetrics = brokerMetrics;
-    _brokerTimeOut = brokerTimeOut;
+    if (builder._replicaSelection != null) {
+      _replicaSelection = builder._replicaSelection;
+    } else {
+      _replicaSelection = new RoundRobinReplicaSelection();
+    }
+    _reduceService = builder._reduceService;
+    _brokerMetrics = builder._brokerMetrics;
+    _brokerTimeOut = builder._brokerTimeOut;
+    _resultCache = builder._resultCache;
+    if (builder._speculativeRequestConfig != null) {
+      _speculativeRequestConfig = builder._speculativeRequestConfig;
+    } else {
+      _speculativeRequestConfig = new SpeculativeRequestConfig();
+    }
+    _segmentPruningService = builder._segmentPruningService;
   }
 
   /**
    * Main method to process the request. Following lifecycle stages:
-   * 1. This method will first find the candidate servers to be queried for each set of segments from the routing table
+   * 1. This method will first find the candidate servers to be queried for each set of segments from the routing table,
+   *    without the segments which can not match the filter
    * 2. The second stage will be to select servers for each segment set.
    * 3. Scatter-Gather of request
    * 4. Gather response from the servers.
@@ -116,13 +137,35 @@ public class BrokerRequestHandler {
       return BrokerResponse.getNullBrokerResponse();
     }
     List<String> matchedTables = getMatchedTables(request);
+    if (matchedTables.isEmpty()) {
+      return BrokerResponse.getNullBrokerResponse();
+    }
+
+    BrokerResultCache.CacheKey cacheKey = null;
+    if (_resultCache != null) {
+      cacheKey = _resultCache.getCacheKey(request, matchedTables);
+      if (cacheKey != null) {
+        BrokerResponse cachedResponse = _resultCache.get(cacheKey);
+        if (cachedResponse != null) {
+          _brokerMetrics.addMeteredValue(request, BrokerMeter.RESULT_CACHE_HITS, 1);
+          return cachedResponse;
+        }
+        _brokerMetrics.addMeteredValue(request, BrokerMeter.RESULT_CACHE_MISSES, 1);
+      }
+    }
+
+    // Cleared when a queried server fails or does not respond, such a partial result must not be cached
+    AtomicBoolean isComplete = new AtomicBoolean(true);
+    Object response;
     if (matchedTables.size() > 1) {
-      return processFederatedBrokerRequest(request, overriddenSelection);
+      response = processFederatedBrokerRequest(request, overriddenSelection, isComplete);
+    } else {
+      response = processSingleTableBrokerRequest(request, matchedTables.get(0), overriddenSelection, isComplete);
     }
-    if (matchedTables.size() == 1) {
-      return processSingleTableBrokerRequest(request, matchedTables.get(0), overriddenSelection);
+    if (cacheKey != null && isComplete.get()) {
+      _resultCache.put(cacheKey, response);
     }
-    return BrokerResponse.getNullBrokerResponse();
+    return response;
   }
 
   /**
@@ -152,17 +195,18 @@ public class BrokerRequestHandler {
   }
 
   private Object processSingleTableBrokerRequest(final BrokerRequest request, String matchedTableName,
-      BucketingSelection overriddenSelection) throws InterruptedException {
+      BucketingSelection overriddenSelection, AtomicBoolean isComplete) throws InterruptedException {
     request.getQuerySource().setTableName(matchedTableName);
-    return getDataTableFromBrokerRequest(request, null);
+    return getDataTableFromBrokerRequest(request, null, isComplete);
   }
 
-  private Object processFederatedBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection) {
+  private Object processFederatedBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection,
+      AtomicBoolean isComplete) {
     List<BrokerRequest> perTableRequests = new ArrayList<BrokerRequest>();
     perTableRequests.add(getRealtimeBrokerRequest(request));
     perTableRequests.add(getOfflineBrokerRequest(request));
     try {
-      return getDataTableFromBrokerRequestList(request, perTableRequests, null);
+      return getDataTableFromBrokerRequestList(request, perTableRequests, null, isComplete);
     } catch (Exception e) {
       LOGGER.error("Caught exception while processing federated broker request", e);
       Utils.rethrowException(e);
@@ -230,8 +274,11 @@ public class BrokerRequestHandler {
     }
   }
 
-  private Object getDataTableFromBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection)
-      throws InterruptedException {
+  /**
+   * @param isComplete cleared unless every queried server returned a response without error
+   */
+  private Object getDataTableFromBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection,
+      AtomicBoolean isComplete) throws InterruptedException {
     // Step1
     final long routingStartTime = System.nanoTime();
     RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
@@ -240,88 +287,122 @@ public class BrokerRequestHandler {
       LOGGER.warn("Not found ServerInstances to Segments Mapping:");
       return BrokerResponse.getEmptyBrokerResponse();
     }
+    segmentServices = pruneSegments(request, segmentServices);
 
     final long queryRoutingTime = System.nanoTime() - routingStartTime;
     _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
     // Step 2-4
     final long scatterGatherStartTime = System.nanoTime();
-    ScatterGatherRequestImpl scatterRequest =
-        new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-            ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-            overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
+    ScatterGatherRequestImpl scatterRequest = buildScatterGatherRequest(request, segmentServices, overriddenSelection);
     CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest);
 
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    {
+    //Step 5 - Deserialize the responses and reduce them as they arrive
+    final IncrementalReducer reducer = _reduceService.getIncrementalReducer(request);
+    long deserializationTime = 0;
+    long reduceTime = 0;
+    int numServersResponded = 0;
+    KeyedFuture<ServerInstance, ByteBuf> serverResponse;
+    while ((serverResponse = response.takeCompletedFuture()) != null) {
       Map<ServerInstance, ByteBuf> responses = null;
       try {
-        responses = response.get();
+        responses = serverResponse.get();
       } catch (ExecutionException e) {
         LOGGER.warn("Caught exception while fetching response", e);
         _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
       }
 
-      final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-
-      final long deserializationStartTime = System.nanoTime();
-
-      Map<ServerInstance, Throwable> errors = response.getError();
+      Map<ServerInstance, Throwable> errors = serverResponse.getError();
+      if (errors != null && !errors.isEmpty()) {
+        isComplete.set(false);
+      }
 
       if (null != responses) {
         for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
+          ByteBuf b = e.getValue();
           try {
-            ByteBuf b = e.getValue();
-            byte[] b2 = new byte[b.readableBytes()];
-            if (b2 == null || b2.length == 0) {
+            if (b == null || b.readableBytes() == 0) {
               continue;
             }
-            b.readBytes(b2);
-            DataTable r2 = new DataTable(b2);
+            final long deserializationStartTime = System.nanoTime();
+            DataTable r2 = new DataTable(b.nioBuffer());
             if (errors != null && errors.containsKey(e.getKey())) {
               Throwable throwable = errors.get(e.getKey());
               r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
               _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+            } else {
+              numServersResponded++;
             }
-            instanceResponseMap.put(e.getKey(), r2);
+            final long reduceStartTime = System.nanoTime();
+            deserializationTime += reduceStartTime - deserializationStartTime;
+            reducer.reduce(e.getKey(), r2);
+            reduceTime += System.nanoTime() - reduceStartTime;
           } catch (Exception ex) {
             LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
                 + ex.getMessage());
             _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+            isComplete.set(false);
+          } finally {
+            // The DataTable reads directly from the response buffer, which is no longer needed once reduced.
+            releaseResponseBuffer(b);
           }
         }
       }
-      final long deserializationTime = System.nanoTime() - deserializationStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
     }
+    if (numServersResponded < segmentServices.size()) {
+      isComplete.set(false);
+    }
+    final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime - deserializationTime - reduceTime;
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
+
+    // Step 6 : Build the broker response out of the reduced responses and return
+    final long reduceStartTime = System.nanoTime();
+    BrokerResponse returnValue = reducer.getBrokerResponse();
+    reduceTime += System.nanoTime() - reduceStartTime;
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.REDUCE, reduceTime);
+    _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
+    return returnValue;
+  }
 
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timePhase(request, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(request, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing return", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
+  private Map<ServerInstance, SegmentIdSet> pruneSegments(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices) {
+    if (_segmentPruningService == null) {
+      return segmentServices;
     }
+    return _segmentPruningService.prune(request, segmentServices);
   }
 
+  private ScatterGatherRequestImpl buildScatterGatherRequest(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices, BucketingSelection overriddenSelection) {
+    String tableName = request.getQuerySource().getTableName();
+    return new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
+        ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(),
+        _speculativeRequestConfig.getNumRequests(tableName), overriddenSelection, _requestIdGen.incrementAndGet(),
+        _brokerTimeOut, _speculativeRequestConfig.getDelayMs(tableName), _routingTable, _brokerMetrics);
+  }
+
+  private static void releaseResponseBuffer(ByteBuf responseBuffer) {
+    if (responseBuffer != null && responseBuffer.refCnt() > 0) {
+      responseBuffer.release();
+    }
+  }
+
+  /**
+   * @param isComplete cleared unless every queried server returned a response without error
+   */
   private Object getDataTableFromBrokerRequestList(final BrokerRequest federatedBrokerRequest,
-      final List<BrokerRequest> requests, BucketingSelection overriddenSelection) throws InterruptedException {
+      final List<BrokerRequest> requests, BucketingSelection overriddenSelection, AtomicBoolean isComplete)
+      throws InterruptedException {
     // Step1
     long scatterGatherStartTime = System.nanoTime();
     long queryRoutingTime = 0;
-    Map<BrokerRequest, CompositeFuture<ServerInstance, ByteBuf>> responseFuturesList =
-        new HashMap<BrokerRequest, CompositeFuture<ServerInstance, ByteBuf>>();
+    int numServersQueried = 0;
+    // The responses of all the tables are reduced in a single completion order, whichever table they belong to
+    BlockingQueue<KeyedFuture<ServerInstance, ByteBuf>> completedFutures =
+        new LinkedBlockingQueue<KeyedFuture<ServerInstance, ByteBuf>>();
+    Set<KeyedFuture<ServerInstance, ByteBuf>> pendingResponseFutures =
+        Collections.newSetFromMap(new IdentityHashMap<KeyedFuture<ServerInstance, ByteBuf>, Boolean>());
     for (BrokerRequest request : requests) {
       final long routingStartTime = System.nanoTime();
       RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
@@ -330,6 +411,7 @@ public class BrokerRequestHandler {
         LOGGER.info("Not found ServerInstances to Segments Mapping for Table - " + rtRequest.getTableName());
         continue;
       }
+      segmentServices = pruneSegments(request, segmentServices);
       LOGGER.debug("Find ServerInstances to Segments Mapping for table - " + rtRequest.getTableName());
       for (ServerInstance serverInstance : segmentServices.keySet()) {
         LOGGER.debug(serverInstance + " : " + segmentServices.get(serverInstance));
@@ -339,86 +421,182 @@ public class BrokerRequestHandler {
       // Step 2-4
       scatterGatherStartTime = System.nanoTime();
       ScatterGatherRequestImpl scatterRequest =
-          new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-              ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-              overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
-      responseFuturesList.put(request, _scatterGatherer.scatterGather(scatterRequest));
+          buildScatterGatherRequest(request, segmentServices, overriddenSelection);
+      CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest);
+      pendingResponseFutures.add(response);
+      response.shareCompletedFutures(completedFutures);
+      numServersQueried += segmentServices.size();
     }
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
-    long scatterGatherTime = 0;
     long deserializationTime = 0;
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    long reduceTime = 0;
+    //Step 5 - Deserialize the responses and reduce them as they arrive
+    final IncrementalReducer reducer = _reduceService.getIncrementalReducer(federatedBrokerRequest);
     final AtomicInteger responseSeq = new AtomicInteger(-1);
-    {
-      for (BrokerRequest request : responseFuturesList.keySet()) {
-        CompositeFuture<ServerInstance, ByteBuf> response = responseFuturesList.get(request);
-
-        Map<ServerInstance, ByteBuf> responses = null;
-        try {
-          responses = response.get();
-        } catch (ExecutionException e) {
-          LOGGER.warn("Caught exception while fetching response", e);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-        }
-
-        scatterGatherTime += System.nanoTime() - scatterGatherStartTime;
+    int numServersResponded = 0;
+    while (!pendingResponseFutures.isEmpty()) {
+      KeyedFuture<ServerInstance, ByteBuf> serverResponse = completedFutures.take();
+      // Each composite future ends its own completed futures once it is done
+      if (pendingResponseFutures.remove(serverResponse)) {
+        continue;
+      }
 
-        final long deserializationStartTime = System.nanoTime();
+      Map<ServerInstance, ByteBuf> responses = null;
+      try {
+        responses = serverResponse.get();
+      } catch (ExecutionException e) {
+        LOGGER.warn("Caught exception while fetching response", e);
+        _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+      }
 
-        Map<ServerInstance, Throwable> errors = response.getError();
+      Map<ServerInstance, Throwable> errors = serverResponse.getError();
+      if (errors != null && !errors.isEmpty()) {
+        isComplete.set(false);
+      }
 
-        if (null != responses) {
-          for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
-            try {
-              ByteBuf b = e.getValue();
-              byte[] b2 = new byte[b.readableBytes()];
-              if (b2 == null || b2.length == 0) {
-                continue;
-              }
-              b.readBytes(b2);
-              DataTable r2 = new DataTable(b2);
-              // Hybrid requests may get response from same instance, so we need to distinguish them.
-              ServerInstance decoratedServerInstance =
-                  new ServerInstance(e.getKey().getHostname(), e.getKey().getPort(), responseSeq.incrementAndGet());
-              if (errors != null && errors.containsKey(e.getKey())) {
-                Throwable throwable = errors.get(e.getKey());
-                if (throwable != null) {
-                  r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-                  _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-                }
+      if (null != responses) {
+        for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
+          ByteBuf b = e.getValue();
+          try {
+            if (b == null || b.readableBytes() == 0) {
+              continue;
+            }
+            final long deserializationStartTime = System.nanoTime();
+            DataTable r2 = new DataTable(b.nioBuffer());
+            // Hybrid requests may get response from same instance, so we need to distinguish them.
+            ServerInstance decoratedServerInstance =
+                new ServerInstance(e.getKey().getHostname(), e.getKey().getPort(), responseSeq.incrementAndGet());
+            if (errors != null && errors.containsKey(e.getKey())) {
+              Throwable throwable = errors.get(e.getKey());
+              if (throwable != null) {
+                r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
+                _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
               }
-              instanceResponseMap.put(decoratedServerInstance, r2);
-            } catch (Exception ex) {
-              LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
-                  + ex.getMessage());
-              _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+            } else {
+              numServersResponded++;
             }
+            final long reduceStartTime = System.nanoTime();
+            deserializationTime += reduceStartTime - deserializationStartTime;
+            reducer.reduce(decoratedServerInstance, r2);
+            reduceTime += System.nanoTime() - reduceStartTime;
+          } catch (Exception ex) {
+            LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
+                + ex.getMessage());
+            _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+            isComplete.set(false);
+          } finally {
+            // The DataTable reads directly from the response buffer, which is no longer needed once reduced.
+            releaseResponseBuffer(b);
           }
         }
-        deserializationTime += System.nanoTime() - deserializationStartTime;
       }
     }
+    if (numServersResponded < numServersQueried) {
+      isComplete.set(false);
+    }
+    final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime - deserializationTime - reduceTime;
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
 
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timePhase(federatedBrokerRequest, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(federatedBrokerRequest, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED,
-              returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing query", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
+    // Step 6 : Build the broker response out of the reduced responses and return
+    final long reduceStartTime = System.nanoTime();
+    BrokerResponse returnValue = reducer.getBrokerResponse();
+    reduceTime += System.nanoTime() - reduceStartTime;
+    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.REDUCE, reduceTime);
+    _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED,
+        returnValue.getNumDocsScanned());
+    return returnValue;
+  }
+
+  /**
+   * Builds a BrokerRequestHandler. The routing table, time boundary service, scatter gather, reduce service and broker
+   * metrics are required, the other parts are optional.
+   */
+  public static class BrokerRequestHandlerBuilder {
+    private RoutingTable _routingTable;
+    private TimeBoundaryService _timeBoundaryService;
+    private ScatterGather _scatterGatherer;
+    private ReduceService _reduceService;
+    private BrokerMetrics _brokerMetrics;
+    private long _brokerTimeOut;
+    private BrokerResultCache _resultCache;
+    private ReplicaSelection _replicaSelection;
+    private SpeculativeRequestConfig _speculativeRequestConfig;
+    private SegmentPruningService _segmentPruningService;
+
+    public BrokerRequestHandlerBuilder setRoutingTable(RoutingTable routingTable) {
+      _routingTable = routingTable;
+      return this;
+    }
+
+    public BrokerRequestHandlerBuilder setTimeBoundaryService(TimeBoundaryService timeBoundaryService) {
+      _timeBoundaryService = timeBoundaryService;
+      return this;
+    }
+
+    public BrokerRequestHandlerBuilder setScatterGather(ScatterGather scatterGatherer) {
+      _scatterGatherer = scatterGatherer;
+      return this;
+    }
+
+    public BrokerRequestHandlerBuilder setReduceService(ReduceService reduceService) {
+      _reduceService = reduceService;
+      return this;
+    }
+
+    public BrokerRequestHandlerBuilder setBrokerMetrics(BrokerMetrics brokerMetrics) {
+      _brokerMetrics = brokerMetrics;
+      return this;
+    }
+
+    public BrokerRequestHandlerBuilder setBrokerTimeOut(long brokerTimeOut) {
+      _brokerTimeOut = brokerTimeOut;
+      return this;
+    }
+
+    /**
+     * @param resultCache cache for query results, null (default) to always scatter
+     */
+    public BrokerRequestHandlerBuilder setResultCache(BrokerResultCache resultCache) {
+      _resultCache = resultCache;
+      return this;
+    }
+
+    /**
+     * @param replicaSelection policy for selecting among the servers hosting a segment, null (default) for
+     *          round-robin
+     */
+    public BrokerRequestHandlerBuilder setReplicaSelection(ReplicaSelection replicaSelection) {
+      _replicaSelection = replicaSelection;
+      return this;
+    }
+
+    /**
+     * @param speculativeRequestConfig when to query other servers for segments whose server is slow to respond, null
+     *          (default) to never do so
+     */
+    public BrokerRequestHandlerBuilder setSpeculativeRequestConfig(SpeculativeRequestConfig speculativeRequestConfig) {
+      _speculativeRequestConfig = speculativeRequestConfig;
+      return this;
+    }
+
+    /**
+     * @param segmentPruningService drops segments which can not match the query before scatter, null (default) to
+     *          send all the segments of the table
+     */
+    public BrokerRequestHandlerBuilder setSegmentPruningService(SegmentPruningService segmentPruningService) {
+      _segmentPruningService = segmentPruningService;
+      return this;
+    }
+
+    public BrokerRequestHandler build() {
+      if (_routingTable == null || _timeBoundaryService == null || _scatterGatherer == null || _reduceService == null
+          || _brokerMetrics == null) {
+        throw new IllegalStateException(
+            "Routing table, time boundary service, scatter gather, reduce service and broker metrics are required");
+      }
+      return new BrokerRequestHandler(this);
     }
   }
 
@@ -432,10 +610,25 @@ public class BrokerRequestHandler {
     private final BucketingSelection _bucketingSelection;
     private final long _requestId;
     private final long _requestTimeoutMs;
+    private final long _speculativeRequestDelayMs;
+    private final RoutingTable _routingTable;
+    private final BrokerMetrics _brokerMetrics;
 
     public ScatterGatherRequestImpl(BrokerRequest request, Map<ServerInstance, SegmentIdSet> segmentServices,
         ReplicaSelection replicaSelection, ReplicaSelectionGranularity replicaSelectionGranularity, Object hashKey,
         int numSpeculativeRequests, BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs) {
+      this(request, segmentServices, replicaSelection, replicaSelectionGranularity, hashKey, numSpeculativeRequests,
+          bucketingSelection, requestId, requestTimeoutMs, 0L, null, null);
+    }
+
+    /**
+     * @param routingTable routing table to look up the servers for speculative requests in, null for none
+     * @param brokerMetrics metrics to count the speculative requests in, null for none
+     */
+    public ScatterGatherRequestImpl(BrokerRequest request, Map<ServerInstance, SegmentIdSet> segmentServices,
+        ReplicaSelection replicaSelection, ReplicaSelectionGranularity replicaSelectionGranularity, Object hashKey,
+        int numSpeculativeRequests, BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs,
+        long speculativeRequestDelayMs, RoutingTable routingTable, BrokerMetrics brokerMetrics) {
       _brokerRequest = request;
       _segmentServices = segmentServices;
       _replicaSelection = replicaSelection;
@@ -445,6 +638,9 @@ public class BrokerRequestHandler {
       _bucketingSelection = bucketingSelection;
       _requestId = requestId;
       _requestTimeoutMs = requestTimeoutMs;
+      _speculativeRequestDelayMs = speculativeRequestDelayMs;
+      _routingTable = routingTable;
+      _brokerMetrics = brokerMetrics;
     }
 
     @Override
@@ -485,6 +681,35 @@ public class BrokerRequestHandler {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return _speculativeRequestDelayMs;
+    }
+
+    @Override
+    public List<ServerInstance> getSpeculativeServers(ServerInstance service, SegmentIdSet querySegments) {
+      if (_routingTable == null) {
+        return Collections.emptyList();
+      }
+      RoutingTableLookupRequest rtRequest =
+          new RoutingTableLookupRequest(_brokerRequest.getQuerySource().getTableName());
+      return _routingTable.findServersHostingSegments(rtRequest, querySegments);
+    }
+
+    @Override
+    public void onSpeculativeRequestSent(ServerInstance service, ServerInstance speculativeService) {
+      if (_brokerMetrics != null) {
+        _brokerMetrics.addMeteredValue(_brokerRequest, BrokerMeter.SPECULATIVE_REQUESTS, 1);
+      }
+    }
+
+    @Override
+    public void onSpeculativeResponseUsed(ServerInstance service, ServerInstance speculativeService) {
+      if (_brokerMetrics != null) {
+        _brokerMetrics.addMeteredValue(_brokerRequest, BrokerMeter.SPECULATIVE_RESPONSES_USED, 1);
+      }
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return _bucketingSelection;
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.routing.RoutingTableChangeListener;
+
+
+/**
+ * Broker side cache of query results.
+ *
+ * Entries are keyed by the broker request together with the routing generation of every table the request is
+ * scattered to. A generation is bumped each time the routing table of that table changes, so a result computed on an
+ * older segment set is never served again; the stale entries are also dropped eagerly to free the space.
+ *
+ * Realtime tables keep changing without any routing table change, so requests touching a realtime table bypass the
+ * cache unless a (short) realtime TTL is configured. Traced requests and responses with exceptions are never cached,
+ * nor are results missing the response of a queried server.
+ */
+public class BrokerResultCache implements RoutingTableChangeListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  public static final String ENABLED_CONFIG = "enabled";
+  public static final String MAX_ENTRIES_CONFIG = "maxEntries";
+  public static final String TTL_MS_CONFIG = "ttlMs";
+  public static final String REALTIME_TTL_MS_CONFIG = "realtimeTtlMs";
+
+  private static final long DEFAULT_MAX_ENTRIES = 10000L;
+  private static final long DEFAULT_TTL_MS = 60 * 60 * 1000L;
+  private static final long DEFAULT_REALTIME_TTL_MS = 0L;
+
+  private final long _realtimeTtlMs;
+  private final Cache<CacheKey, CacheEntry> _cache;
+  private final ConcurrentHashMap<String, AtomicLong> _tableGenerations = new ConcurrentHashMap<String, AtomicLong>();
+
+  public BrokerResultCache(Configuration config) {
+    this(config.getLong(MAX_ENTRIES_CONFIG, DEFAULT_MAX_ENTRIES), config.getLong(TTL_MS_CONFIG, DEFAULT_TTL_MS),
+        config.getLong(REALTIME_TTL_MS_CONFIG, DEFAULT_REALTIME_TTL_MS));
+  }
+
+  public BrokerResultCache(long maxEntries, long ttlMs, long realtimeTtlMs) {
+    _realtimeTtlMs = realtimeTtlMs;
+    _cache = CacheBuilder.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).build();
+    LOGGER.info("Broker result cache: maxEntries {}, ttlMs {}, realtimeTtlMs {}", maxEntries, ttlMs, realtimeTtlMs);
+  }
+
+  /**
+   * Returns the cache key for the request scattered to the given tables, or null if the request must bypass the
+   * cache. The key is a snapshot of the request, so the request can be modified afterwards.
+   */
+  public CacheKey getCacheKey(BrokerRequest request, List<String> tableNames) {
+    if (request.isEnableTrace()) {
+      return null;
+    }
+    boolean hasRealtimeTable = false;
+    String[] tables = tableNames.toArray(new String[tableNames.size()]);
+    long[] generations = new long[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      hasRealtimeTable |= TableNameBuilder.getTableTypeFromTableName(tables[i]) == TableType.REALTIME;
+      generations[i] = getGeneration(tables[i]).get();
+    }
+    if (hasRealtimeTable && _realtimeTtlMs <= 0) {
+      return null;
+    }
+    return new CacheKey(request.deepCopy(), tables, generations, hasRealtimeTable);
+  }
+
+  /**
+   * Returns the cached response for the key, or null on a miss.
+   */
+  public BrokerResponse get(CacheKey key) {
+    CacheEntry entry = _cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry._expirationTimeMs < System.currentTimeMillis()) {
+      _cache.invalidate(key);
+      return null;
+    }
+    return entry._response;
+  }
+
+  /**
+   * Caches the response computed for the key, unless it carries exceptions or the routing of one of its tables changed
+   * while it was being computed.
+   */
+  public void put(CacheKey key, Object response) {
+    if (!(response instanceof BrokerResponse)) {
+      return;
+    }
+    BrokerResponse brokerResponse = (BrokerResponse) response;
+    if (brokerResponse.getExceptionsSize() > 0) {
+      return;
+    }
+    for (int i = 0; i < key._tableNames.length; i++) {
+      if (getGeneration(key._tableNames[i]).get() != key._generations[i]) {
+        return;
+      }
+    }
+    long expirationTimeMs = key._hasRealtimeTable ? System.currentTimeMillis() + _realtimeTtlMs : Long.MAX_VALUE;
+    _cache.put(key, new CacheEntry(brokerResponse, expirationTimeMs));
+  }
+
+  @Override
+  public void onRoutingTableChange(String tableName) {
+    getGeneration(tableName).incrementAndGet();
+    Iterator<CacheKey> iterator = _cache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (Arrays.asList(iterator.next()._tableNames).contains(tableName)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  private AtomicLong getGeneration(String tableName) {
+    AtomicLong generation = _tableGenerations.get(tableName);
+    if (generation == null) {
+      AtomicLong newGeneration = new AtomicLong(0);
+      generation = _tableGenerations.putIfAbsent(tableName, newGeneration);
+      if (generation == null) {
+        generation = newGeneration;
+      }
+    }
+    return generation;
+  }
+
+  public static class CacheKey {
+    private final BrokerRequest _request;
+    private final String[] _tableNames;
+    private final long[] _generations;
+    private final boolean _hasRealtimeTable;
+    private final int _hashCode;
+
+    private CacheKey(BrokerRequest request, String[] tableNames, long[] generations, boolean hasRealtimeTable) {
+      _request = request;
+      _tableNames = tableNames;
+      _generations = generations;
+      _hasRealtimeTable = hasRealtimeTable;
+      _hashCode = 31 * (31 * request.hashCode() + Arrays.hashCode(tableNames)) + Arrays.hashCode(generations);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return _hashCode == other._hashCode && Arrays.equals(_generations, other._generations)
+          && Arrays.equals(_tableNames, other._tableNames) && _request.equals(other._request);
+    }
+  }
+
+  private static class CacheEntry {
+    private final BrokerResponse _response;
+    private final long _expirationTimeMs;
+
+    private CacheEntry(BrokerResponse response, long expirationTimeMs) {
+      _response = response;
+      _expirationTimeMs = expirationTimeMs;
+    }
+  }
+}
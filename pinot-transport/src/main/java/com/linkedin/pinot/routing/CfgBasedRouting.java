@@ -15,7 +15,11 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
@@ -50,6 +54,22 @@ public class CfgBasedRouting implements RoutingTable {
     return cfg.buildRequestRoutingMap();
   }
 
+  @Override
+  public List<ServerInstance> findServersHostingSegments(RoutingTableLookupRequest request, SegmentIdSet segmentIds) {
+    Map<ServerInstance, SegmentIdSet> routingMap = findServers(request);
+    if (null == routingMap) {
+      return Collections.emptyList();
+    }
+
+    List<ServerInstance> servers = new ArrayList<ServerInstance>();
+    for (Entry<ServerInstance, SegmentIdSet> entry : routingMap.entrySet()) {
+      if (entry.getValue().getSegments().containsAll(segmentIds.getSegments())) {
+        servers.add(entry.getKey());
+      }
+    }
+    return servers;
+  }
+
   @Override
   public void start() {
     // Nothing to be done here
@@ -15,13 +15,17 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.ExternalView;
@@ -36,6 +40,8 @@ import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.routing.builder.BalancedRandomRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RoutingTableBuilder;
+import com.linkedin.pinot.transport.common.LatencyAwareReplicaSelection;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -54,14 +60,22 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
   private final Map<String, List<ServerToSegmentSetMap>> _brokerRoutingTable =
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
+  // Segments each server is routed to in any of the routing tables of the table
+  private final Map<String, Map<ServerInstance, Set<SegmentId>>> _serverToRoutedSegmentsMap =
+      new ConcurrentHashMap<String, Map<ServerInstance, Set<SegmentId>>>();
   private final Map<String, Long> _routingTableModifiedTimeStampMap = new HashMap<String, Long>();
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
+  private final HelixExternalViewBasedSegmentPruningService _segmentPruningService;
+  private final List<RoutingTableChangeListener> _routingTableChangeListeners =
+      new CopyOnWriteArrayList<RoutingTableChangeListener>();
+  private volatile LatencyAwareReplicaSelection _latencyAwareReplicaSelection;
 
   public HelixExternalViewBasedRouting(RoutingTableBuilder defaultOfflineRoutingTableBuilder,
       RoutingTableBuilder defaultRealtimeRoutingTableBuilder, Map<String, RoutingTableBuilder> routingTableBuilderMap,
       ZkHelixPropertyStore<ZNRecord> propertyStore) {
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
+    _segmentPruningService = new HelixExternalViewBasedSegmentPruningService(propertyStore);
     if (defaultOfflineRoutingTableBuilder != null) {
       _defaultOfflineRoutingTableBuilder = defaultOfflineRoutingTableBuilder;
     } else {
@@ -87,7 +101,64 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       return null;
     }
     List<ServerToSegmentSetMap> serverToSegmentSetMaps = _brokerRoutingTable.get(tableName);
-    return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    int numRoutingTables = serverToSegmentSetMaps.size();
+    ServerToSegmentSetMap serverToSegmentSetMap = serverToSegmentSetMaps.get(_random.nextInt(numRoutingTables));
+    LatencyAwareReplicaSelection latencyAwareReplicaSelection = _latencyAwareReplicaSelection;
+    if (latencyAwareReplicaSelection != null && numRoutingTables > 1) {
+      // Power of two choices: compare with a second routing table and keep the one whose slowest server is faster
+      ServerToSegmentSetMap otherServerToSegmentSetMap =
+          serverToSegmentSetMaps.get(_random.nextInt(numRoutingTables));
+      double cost = latencyAwareReplicaSelection.getMaxCost(serverToSegmentSetMap.getRouting().keySet());
+      double otherCost = latencyAwareReplicaSelection.getMaxCost(otherServerToSegmentSetMap.getRouting().keySet());
+      if (otherCost < cost) {
+        serverToSegmentSetMap = otherServerToSegmentSetMap;
+      }
+    }
+    return serverToSegmentSetMap.getRouting();
+  }
+
+  @Override
+  public List<ServerInstance> findServersHostingSegments(RoutingTableLookupRequest request, SegmentIdSet segmentIds) {
+    Map<ServerInstance, Set<SegmentId>> serverToRoutedSegments = _serverToRoutedSegmentsMap.get(request.getTableName());
+    if (null == serverToRoutedSegments) {
+      return Collections.emptyList();
+    }
+
+    List<ServerInstance> servers = new ArrayList<ServerInstance>();
+    for (Entry<ServerInstance, Set<SegmentId>> entry : serverToRoutedSegments.entrySet()) {
+      if (entry.getValue().containsAll(segmentIds.getSegments())) {
+        servers.add(entry.getKey());
+      }
+    }
+    return servers;
+  }
+
+  /**
+   * Collects the segments each server is routed to in any of the routing tables. As routing tables only ever route to
+   * servers serving the segment, a server is sure to host these.
+   */
+  private static Map<ServerInstance, Set<SegmentId>> computeServerToRoutedSegments(
+      List<ServerToSegmentSetMap> serverToSegmentSetMaps) {
+    Map<ServerInstance, Set<SegmentId>> serverToRoutedSegments = new HashMap<ServerInstance, Set<SegmentId>>();
+    for (ServerToSegmentSetMap serverToSegmentSetMap : serverToSegmentSetMaps) {
+      for (Entry<ServerInstance, SegmentIdSet> entry : serverToSegmentSetMap.getRouting().entrySet()) {
+        Set<SegmentId> routedSegments = serverToRoutedSegments.get(entry.getKey());
+        if (null == routedSegments) {
+          routedSegments = new HashSet<SegmentId>();
+          serverToRoutedSegments.put(entry.getKey(), routedSegments);
+        }
+        routedSegments.addAll(entry.getValue().getSegments());
+      }
+    }
+    return serverToRoutedSegments;
+  }
+
+  /**
+   * Picks routing tables based on the latency observed by the given replica selection instead of at random.
+   * @param latencyAwareReplicaSelection replica selection tracking server latency, null to pick at random
+   */
+  public void setLatencyAwareReplicaSelection(LatencyAwareReplicaSelection latencyAwareReplicaSelection) {
+    _latencyAwareReplicaSelection = latencyAwareReplicaSelection;
   }
 
   @Override
@@ -147,6 +218,7 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
           routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
 
       _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
+      _serverToRoutedSegmentsMap.put(tableName, computeServerToRoutedSegments(serverToSegmentSetMap));
     } catch (Exception e) {
       LOGGER.error("Failed to compute/update the routing table" + e.getCause());
     }
@@ -156,7 +228,14 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     } catch (Exception e) {
       LOGGER.error("Failed to update the TimeBoundaryService : " + e.getCause());
     }
-
+    try {
+      LOGGER.info("Trying to compute segment pruning service for table : " + tableName);
+      _segmentPruningService.updateSegmentPruningService(externalView);
+    } catch (Exception e) {
+      _segmentPruningService.remove(tableName);
+      LOGGER.error("Failed to update the SegmentPruningService : " + e.getCause());
+    }
+    notifyRoutingTableChange(tableName);
   }
 
   public synchronized void markDataResourceOffline(String tableName) {
@@ -164,8 +243,25 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     if (_dataTableSet.contains(tableName)) {
       _dataTableSet.remove(tableName);
       _brokerRoutingTable.remove(tableName);
+      _serverToRoutedSegmentsMap.remove(tableName);
       _routingTableModifiedTimeStampMap.remove(tableName);
       _timeBoundaryService.remove(tableName);
+      _segmentPruningService.remove(tableName);
+      notifyRoutingTableChange(tableName);
+    }
+  }
+
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    _routingTableChangeListeners.add(listener);
+  }
+
+  private void notifyRoutingTableChange(String tableName) {
+    for (RoutingTableChangeListener listener : _routingTableChangeListeners) {
+      try {
+        listener.onRoutingTableChange(tableName);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while notifying routing table change for table : " + tableName, e);
+      }
     }
   }
 
@@ -185,4 +281,8 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     return _timeBoundaryService;
   }
 
+  public SegmentPruningService getSegmentPruningService() {
+    return _segmentPruningService;
+  }
+
 }
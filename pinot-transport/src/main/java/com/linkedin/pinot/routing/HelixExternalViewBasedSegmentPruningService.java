@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+/**
+ * Prunes offline segments whose time interval, from the segment ZK metadata, can not match the EQUALITY, IN and
+ * RANGE predicates on the time column of the table. AND prunes if any child prunes, OR prunes only if every child
+ * prunes. Realtime tables and segments without a time interval are never pruned.
+ *
+ * The time intervals are cached per table and recomputed on external view changes, the same way as the time
+ * boundary.
+ */
+public class HelixExternalViewBasedSegmentPruningService implements SegmentPruningService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HelixExternalViewBasedSegmentPruningService.class);
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final Map<String, TableTimeIntervals> _tableTimeIntervalsMap =
+      new ConcurrentHashMap<String, TableTimeIntervals>();
+
+  public HelixExternalViewBasedSegmentPruningService(ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  public synchronized void updateSegmentPruningService(ExternalView externalView) {
+    if (_propertyStore == null) {
+      return;
+    }
+    String tableName = externalView.getResourceName();
+    // Do nothing for realtime table.
+    if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+      return;
+    }
+    AbstractTableConfig offlineTableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+    if (offlineTableConfig == null || offlineTableConfig.getValidationConfig().getTimeColumnName() == null) {
+      _tableTimeIntervalsMap.remove(tableName);
+      return;
+    }
+    TimeUnit tableTimeUnit =
+        HelixExternalViewBasedTimeBoundaryService.getTimeUnitFromString(offlineTableConfig.getValidationConfig()
+            .getTimeType());
+    updateTimeIntervals(tableName, offlineTableConfig.getValidationConfig().getTimeColumnName(), tableTimeUnit,
+        externalView.getPartitionSet(), ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(_propertyStore,
+            tableName));
+  }
+
+  void updateTimeIntervals(String tableName, String timeColumn, TimeUnit tableTimeUnit,
+      Set<String> offlineSegmentsServing, List<OfflineSegmentZKMetadata> offlineSegmentZKMetadataList) {
+    Map<String, long[]> segmentTimeIntervals = new HashMap<String, long[]>();
+    for (OfflineSegmentZKMetadata offlineSegmentZKMetadata : offlineSegmentZKMetadataList) {
+      String segmentId = offlineSegmentZKMetadata.getSegmentName();
+      if (!offlineSegmentsServing.contains(segmentId) || offlineSegmentZKMetadata.getStartTime() < 0
+          || offlineSegmentZKMetadata.getEndTime() < 0) {
+        continue;
+      }
+      long startTime = offlineSegmentZKMetadata.getStartTime();
+      long endTime = offlineSegmentZKMetadata.getEndTime();
+      TimeUnit segmentTimeUnit = offlineSegmentZKMetadata.getTimeUnit();
+      if (segmentTimeUnit != null) {
+        startTime = tableTimeUnit.convert(startTime, segmentTimeUnit);
+        if (tableTimeUnit.compareTo(segmentTimeUnit) < 0) {
+          // The end time covers the whole last segment time unit, e.g. up to hour 23 of the last day
+          endTime = tableTimeUnit.convert(endTime + 1, segmentTimeUnit) - 1;
+        } else {
+          endTime = tableTimeUnit.convert(endTime, segmentTimeUnit);
+        }
+      }
+      segmentTimeIntervals.put(segmentId, new long[] { startTime, endTime });
+    }
+    _tableTimeIntervalsMap.put(tableName, new TableTimeIntervals(timeColumn, segmentTimeIntervals));
+  }
+
+  @Override
+  public Map<ServerInstance, SegmentIdSet> prune(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices) {
+    TableTimeIntervals tableTimeIntervals = _tableTimeIntervalsMap.get(request.getQuerySource().getTableName());
+    if (tableTimeIntervals == null) {
+      return segmentServices;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(request);
+    if (filterQueryTree == null) {
+      return segmentServices;
+    }
+
+    int numSegmentsPruned = 0;
+    Map<ServerInstance, SegmentIdSet> prunedSegmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+    for (Entry<ServerInstance, SegmentIdSet> entry : segmentServices.entrySet()) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      for (SegmentId segmentId : entry.getValue().getSegments()) {
+        long[] timeInterval = tableTimeIntervals._segmentTimeIntervals.get(segmentId.getSegmentId());
+        if (timeInterval != null && pruneSegment(filterQueryTree, tableTimeIntervals._timeColumn, timeInterval)) {
+          numSegmentsPruned++;
+        } else {
+          segmentIdSet.addSegment(segmentId);
+        }
+      }
+      if (!segmentIdSet.getSegments().isEmpty()) {
+        prunedSegmentServices.put(entry.getKey(), segmentIdSet);
+      }
+    }
+    if (numSegmentsPruned == 0) {
+      return segmentServices;
+    }
+    LOGGER.debug("Pruned {} segments of table {}", numSegmentsPruned, request.getQuerySource().getTableName());
+
+    if (prunedSegmentServices.isEmpty() && !segmentServices.isEmpty()) {
+      // Keep one segment so that the server still returns a response with the shape of the query.
+      Entry<ServerInstance, SegmentIdSet> entry = segmentServices.entrySet().iterator().next();
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      segmentIdSet.addSegment(entry.getValue().getOneSegment());
+      prunedSegmentServices.put(entry.getKey(), segmentIdSet);
+    }
+    return prunedSegmentServices;
+  }
+
+  private static boolean pruneSegment(FilterQueryTree filterQueryTree, String timeColumn, long[] timeInterval) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (pruneSegment(child, timeColumn, timeInterval)) {
+              return true;
+            }
+          }
+          return false;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (!pruneSegment(child, timeColumn, timeInterval)) {
+              return false;
+            }
+          }
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    if (!timeColumn.equals(filterQueryTree.getColumn())) {
+      return false;
+    }
+    long startTime = timeInterval[0];
+    long endTime = timeInterval[1];
+    String value = filterQueryTree.getValue().get(0).trim();
+    try {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY:
+          long time = Long.parseLong(value);
+          return time < startTime || time > endTime;
+        case IN:
+          for (String inValue : value.split("\t\t")) {
+            long inTime = Long.parseLong(inValue);
+            if (inTime >= startTime && inTime <= endTime) {
+              return false;
+            }
+          }
+          return true;
+        case RANGE:
+          // Range values are formatted as "[lower\t\tupper)", where '*' is unbounded.
+          String[] boundaries = value.split("\t\t");
+          String lower = boundaries[0].substring(1);
+          String upper = boundaries[1].substring(0, boundaries[1].length() - 1);
+          if (!lower.equals("*")) {
+            long lowerTime = Long.parseLong(lower);
+            if (endTime < lowerTime || (endTime == lowerTime && value.startsWith("("))) {
+              return true;
+            }
+          }
+          if (!upper.equals("*")) {
+            long upperTime = Long.parseLong(upper);
+            if (startTime > upperTime || (startTime == upperTime && value.endsWith(")"))) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return false;
+      }
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void remove(String tableName) {
+    _tableTimeIntervalsMap.remove(tableName);
+  }
+
+  private static class TableTimeIntervals {
+    private final String _timeColumn;
+    // Segment name to its [startTime, endTime] in the time unit of the table
+    private final Map<String, long[]> _segmentTimeIntervals;
+
+    private TableTimeIntervals(String timeColumn, Map<String, long[]> segmentTimeIntervals) {
+      _timeColumn = timeColumn;
+      _segmentTimeIntervals = segmentTimeIntervals;
+    }
+  }
+}
@@ -87,7 +87,7 @@ public class HelixExternalViewBasedTimeBoundaryService implements TimeBoundarySe
     }
   }
 
-  private TimeUnit getTimeUnitFromString(String timeTypeString) {
+  static TimeUnit getTimeUnitFromString(String timeTypeString) {
     TimeUnit timeUnit = null;
     try {
       timeUnit = TimeUnit.valueOf(timeTypeString);
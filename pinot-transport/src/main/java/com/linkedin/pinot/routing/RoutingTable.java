@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
@@ -32,6 +33,14 @@ public interface RoutingTable {
    */
   public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request);
 
+  /**
+   * Return the servers hosting all the given segments of the table, e.g. to send speculative
+   * requests for the segments to another server.
+   *
+   * @return Servers hosting all the segments, empty if there are none.
+   */
+  public List<ServerInstance> findServersHostingSegments(RoutingTableLookupRequest request, SegmentIdSet segmentIds);
+
   /**
    * Initialize and start the Routing table population
    */
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+public interface SegmentPruningService {
+
+  /**
+   * Drop the segments which can not match the filter of the request from the routing of its table, and the servers
+   * left with no segment. The given routing is not modified.
+   *
+   * @param request
+   * @param segmentServices routing of the request's table
+   * @return routing to scatter the request to
+   */
+  Map<ServerInstance, SegmentIdSet> prune(BrokerRequest request, Map<ServerInstance, SegmentIdSet> segmentServices);
+
+  /**
+   * Remove a table from SegmentPruningService
+   * @param tableName
+   */
+  void remove(String tableName);
+
+}
@@ -18,9 +18,11 @@ package com.linkedin.pinot.transport.common;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -58,6 +60,9 @@ public abstract class AbstractCompositeListenableFuture<K, T> implements KeyedFu
   private final List<Runnable> _pendingRunnable = new ArrayList<Runnable>();
   //List of executors that needs to run the runnables.
   private final List<Executor> _pendingRunnableExecutors = new ArrayList<Executor>();
+  // Underlying futures in completion order, followed by this future as end marker once it is done. Only accessed
+  // under the future lock, as it can be replaced by a queue shared with other composite futures.
+  private BlockingQueue<KeyedFuture<K, T>> _completedFutures = new LinkedBlockingQueue<KeyedFuture<K, T>>();
 
   public AbstractCompositeListenableFuture() {
     _state = State.PENDING;
@@ -121,6 +126,7 @@ public abstract class AbstractCompositeListenableFuture<K, T> implements KeyedFu
       for (long i = 0; i < count; i++) {
         _latch.countDown();
       }
+      addCompletedFuture(this);
     } finally {
       _futureLock.unlock();
     }
@@ -178,6 +184,62 @@ public abstract class AbstractCompositeListenableFuture<K, T> implements KeyedFu
    */
   protected abstract boolean processFutureResult(String name, Map<K, T> responses, Map<K, Throwable> error);
 
+  /**
+   * Blocking call. Returns the underlying futures one by one, in the order they complete, so that their responses can
+   * be processed as soon as they arrive instead of waiting for all of them. Returns null once this future is done and
+   * all the underlying futures which completed before have been returned.
+   */
+  public KeyedFuture<K, T> takeCompletedFuture() throws InterruptedException {
+    BlockingQueue<KeyedFuture<K, T>> completedFutures;
+    try {
+      _futureLock.lock();
+      completedFutures = _completedFutures;
+    } finally {
+      _futureLock.unlock();
+    }
+    KeyedFuture<K, T> future = completedFutures.take();
+    if (future == this) {
+      // Keep the end marker for the subsequent calls.
+      addCompletedFuture(this);
+      return null;
+    }
+    return future;
+  }
+
+  /**
+   * Moves the underlying futures completed so far to the given queue, and adds the ones completing from now on to it,
+   * followed by this future as end marker once it is done. Lets a caller process the responses of several composite
+   * futures in a single completion order, by sharing the queue among them. {@link #takeCompletedFuture()} must not be
+   * called anymore afterwards.
+   */
+  public void shareCompletedFutures(BlockingQueue<KeyedFuture<K, T>> completedFutures) {
+    try {
+      _futureLock.lock();
+      _completedFutures.drainTo(completedFutures);
+      _completedFutures = completedFutures;
+    } finally {
+      _futureLock.unlock();
+    }
+  }
+
+  private void addCompletedFuture(KeyedFuture<K, T> future) {
+    try {
+      _futureLock.lock();
+      _completedFutures.add(future);
+    } finally {
+      _futureLock.unlock();
+    }
+  }
+
+  /**
+   * Called once all the underlying futures are known, marks the end of the completed futures if there are none.
+   */
+  protected void onUnderlyingFuturesAdded(int numUnderlyingFutures) {
+    if (numUnderlyingFutures == 0) {
+      addCompletedFuture(this);
+    }
+  }
+
   protected void addResponseFutureListener(KeyedFuture<K, T> future) {
     future.addListener(new ResponseFutureListener(future), null); // no need for separate Executors
   }
@@ -217,6 +279,7 @@ public abstract class AbstractCompositeListenableFuture<K, T> implements KeyedFu
       // Since the future is done, it is safe to look at error results
       Map<K, Throwable> error = _future.getError();
       boolean done = processFutureResult(_future.getName(), response, error);
+      addCompletedFuture(_future);
 
       if (done) {
         setDone(State.DONE);
@@ -124,6 +124,7 @@ public class AsyncResponseFuture<K, T> implements Callback<T>, KeyedFuture<K, T>
       _futureLock.lock();
       if (_state.isCompleted()) {
         LOGGER.debug("{} Request has already been completed. Discarding this response !!", _ctxt, result);
+        onResponseDiscarded(result);
         return;
       }
       _delayedResponse = result;
@@ -133,6 +134,14 @@ public class AsyncResponseFuture<K, T> implements Callback<T>, KeyedFuture<K, T>
     }
   }
 
+  /**
+   * Called with a response which arrived after the future got completed (e.g. cancelled), and will
+   * hence never be seen by the clients. Subclasses can override this to free the resources held by it.
+   * @param result discarded response
+   */
+  protected void onResponseDiscarded(T result) {
+  }
+
   /**
    * Set Exception and let the future listener get notified.
    * @param t throwable
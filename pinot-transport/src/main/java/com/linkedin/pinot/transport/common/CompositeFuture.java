@@ -97,6 +97,7 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     } else {
       _latch = new CountDownLatch(0);
     }
+    onUnderlyingFuturesAdded(_futures.size());
     for (KeyedFuture<K, V> entry : _futures) {
       if (null != entry) {
         addResponseFutureListener(entry);
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+/**
+ * Selects the replica with the lowest expected cost, where the cost of a server is its exponentially weighted moving
+ * average (EWMA) response latency scaled by the number of requests still outstanding on it. A server that slows down
+ * (GC pause, hot segments) quickly accumulates outstanding requests and a higher EWMA, and traffic moves to its
+ * replicas.
+ *
+ * To avoid every broker thread herding onto the same "best" server, two distinct candidates are picked at random and
+ * the cheaper one is used (power of two choices). The EWMA of an idle server decays with time so that a server which
+ * was slow once gets probed again instead of being starved forever. Errors count as a sample of at least the error
+ * penalty, so that a server failing fast does not look fast. Cancelled requests are no sample at all.
+ *
+ * Expected to be thread-safe.
+ */
+@ThreadSafe
+public class LatencyAwareReplicaSelection extends ReplicaSelection {
+  public static final double DEFAULT_EWMA_ALPHA = 0.3;
+  public static final long DEFAULT_DECAY_HALF_LIFE_MS = 10000L;
+  public static final long DEFAULT_ERROR_PENALTY_MS = 1000L;
+
+  private final ConcurrentMap<ServerInstance, ServerStats> _serverStatsMap =
+      new ConcurrentHashMap<ServerInstance, ServerStats>();
+  private final Random _random = new Random();
+  private final double _ewmaAlpha;
+  private final long _decayHalfLifeMs;
+  private final long _errorPenaltyMs;
+
+  public LatencyAwareReplicaSelection() {
+    this(DEFAULT_EWMA_ALPHA, DEFAULT_DECAY_HALF_LIFE_MS, DEFAULT_ERROR_PENALTY_MS);
+  }
+
+  /**
+   * @param ewmaAlpha weight of a new latency sample in the moving average, in (0, 1]
+   * @param decayHalfLifeMs time after which the average latency of an idle server is halved
+   * @param errorPenaltyMs minimum latency sample recorded for a failed request
+   */
+  public LatencyAwareReplicaSelection(double ewmaAlpha, long decayHalfLifeMs, long errorPenaltyMs) {
+    if (ewmaAlpha <= 0 || ewmaAlpha > 1) {
+      throw new IllegalArgumentException("EWMA alpha must be in (0, 1], got " + ewmaAlpha);
+    }
+    _ewmaAlpha = ewmaAlpha;
+    _decayHalfLifeMs = decayHalfLifeMs;
+    _errorPenaltyMs = errorPenaltyMs;
+  }
+
+  @Override
+  public void reset(SegmentId p) {
+    // Nothing to be done here, the state is kept per server
+  }
+
+  @Override
+  public void reset(SegmentIdSet p) {
+    // Nothing to be done here, the state is kept per server
+  }
+
+  @Override
+  public ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object hashKey) {
+    int size = orderedServers.size();
+
+    if (size <= 0) {
+      return null;
+    }
+    if (size == 1) {
+      return orderedServers.get(0);
+    }
+
+    int first = _random.nextInt(size);
+    int second = _random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    ServerInstance firstServer = orderedServers.get(first);
+    ServerInstance secondServer = orderedServers.get(second);
+    long now = System.currentTimeMillis();
+    return getCost(firstServer, now) <= getCost(secondServer, now) ? firstServer : secondServer;
+  }
+
+  @Override
+  public void onRequestSent(ServerInstance server) {
+    getServerStats(server)._outstandingRequests.incrementAndGet();
+  }
+
+  @Override
+  public void onResponseReceived(ServerInstance server, long latencyMs, boolean isError) {
+    ServerStats stats = getServerStats(server);
+    stats._outstandingRequests.decrementAndGet();
+    stats.addSample(isError ? Math.max(latencyMs, _errorPenaltyMs) : latencyMs);
+  }
+
+  @Override
+  public void onRequestCancelled(ServerInstance server) {
+    // Losing a race against another replica is no sign of the server being slow, only release the request
+    getServerStats(server)._outstandingRequests.decrementAndGet();
+  }
+
+  /**
+   * Returns the number of requests sent to the server and not completed or cancelled yet.
+   */
+  public int getNumOutstandingRequests(ServerInstance server) {
+    ServerStats stats = _serverStatsMap.get(server);
+    return stats == null ? 0 : stats._outstandingRequests.get();
+  }
+
+  /**
+   * Returns the expected cost of sending a request to the server. Servers never seen before have no cost.
+   */
+  public double getCost(ServerInstance server) {
+    return getCost(server, System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the cost of the most expensive of the servers, i.e. the expected cost of a request fanned out to all of
+   * them.
+   */
+  public double getMaxCost(Collection<ServerInstance> servers) {
+    long now = System.currentTimeMillis();
+    double maxCost = 0;
+    for (ServerInstance server : servers) {
+      maxCost = Math.max(maxCost, getCost(server, now));
+    }
+    return maxCost;
+  }
+
+  private double getCost(ServerInstance server, long now) {
+    ServerStats stats = _serverStatsMap.get(server);
+    if (stats == null) {
+      return 0;
+    }
+    int outstandingRequests = Math.max(stats._outstandingRequests.get(), 0);
+    double latencyMs = outstandingRequests == 0 ? stats.getDecayedLatencyMs(now) : stats._ewmaLatencyMs;
+    // Add one to the latency so that outstanding requests still count for servers with a zero average
+    return (latencyMs + 1) * (outstandingRequests + 1);
+  }
+
+  private ServerStats getServerStats(ServerInstance server) {
+    ServerStats stats = _serverStatsMap.get(server);
+    if (stats == null) {
+      stats = new ServerStats();
+      ServerStats existingStats = _serverStatsMap.putIfAbsent(server, stats);
+      if (existingStats != null) {
+        stats = existingStats;
+      }
+    }
+    return stats;
+  }
+
+  private class ServerStats {
+    private final AtomicInteger _outstandingRequests = new AtomicInteger(0);
+    private volatile double _ewmaLatencyMs = 0;
+    private volatile long _lastUpdateTimeMs = System.currentTimeMillis();
+    private boolean _hasSample = false;
+
+    private synchronized void addSample(long latencyMs) {
+      long now = System.currentTimeMillis();
+      if (_hasSample) {
+        _ewmaLatencyMs = _ewmaAlpha * latencyMs + (1 - _ewmaAlpha) * getDecayedLatencyMs(now);
+      } else {
+        _ewmaLatencyMs = latencyMs;
+        _hasSample = true;
+      }
+      _lastUpdateTimeMs = now;
+    }
+
+    private double getDecayedLatencyMs(long now) {
+      if (_decayHalfLifeMs <= 0) {
+        return _ewmaLatencyMs;
+      }
+      return _ewmaLatencyMs * Math.pow(0.5, (double) Math.max(now - _lastUpdateTimeMs, 0) / _decayHalfLifeMs);
+    }
+  }
+}
@@ -51,6 +51,11 @@ public abstract class ReplicaSelection {
           (ascending) order. A key ( in the request) is hashed
           to determine the replica
     **/
+    LATENCY_AWARE,
+    /**
+          Replica with the lowest observed latency and
+          outstanding requests is preferred
+    **/
 
   };
 
@@ -85,4 +90,34 @@ public abstract class ReplicaSelection {
    */
   public abstract ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object hashKey);
 
+  /**
+   * This is a notification by the scatter-gather layer that a request has been dispatched to the server.
+   * Policies that do not track server load can ignore it.
+   * @param server server the request is sent to
+   */
+  public void onRequestSent(ServerInstance server) {
+    // Nothing to be done here
+  }
+
+  /**
+   * This is a notification by the scatter-gather layer that the request sent to the server has completed,
+   * either with a response or an error. Policies that do not track server load can ignore it.
+   * @param server server the request was sent to
+   * @param latencyMs time elapsed since the request was sent
+   * @param isError true if the request did not complete with a response
+   */
+  public void onResponseReceived(ServerInstance server, long latencyMs, boolean isError) {
+    // Nothing to be done here
+  }
+
+  /**
+   * This is a notification by the scatter-gather layer that the request sent to the server was cancelled, e.g.
+   * because a speculative request for the same segments responded first. It tells nothing about the server.
+   * Policies that do not track server load can ignore it.
+   * @param server server the request was sent to
+   */
+  public void onRequestCancelled(ServerInstance server) {
+    // Nothing to be done here
+  }
+
 }
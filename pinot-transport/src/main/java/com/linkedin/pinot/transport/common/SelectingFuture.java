@@ -76,6 +76,7 @@ public class SelectingFuture<K, T> extends AbstractCompositeListenableFuture<K,
 
     _futuresList.addAll(futuresList);
     _latch = new CountDownLatch(futuresList.size());
+    onUnderlyingFuturesAdded(_futuresList.size());
     for (KeyedFuture<K, T> entry : _futuresList) {
       if (null != entry) {
         addResponseFutureListener(entry);
@@ -35,10 +35,21 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   public static final String IDLE_TIMEOUT_MS_KEY = "idleTimeoutMs";
 
+  // Share a few connections per server between all requests, servers must be multiplexed as well
+  public static final String MULTIPLEXED_KEY = "multiplexed";
+
+  // Number of connections per server when multiplexed
+  public static final String MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY = "multiplexedConnectionsPerServer";
+
+  // Maximum number of requests in flight on a multiplexed connection before senders have to wait
+  public static final String MAX_OUTSTANDING_REQUESTS_PER_CONNECTION_KEY = "maxOutstandingRequestsPerConnection";
+
   private final int DEFAULT_MIN_CONNECTIONS_PER_SERVER = 0;
   private final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 30;
   private final int DEFAULT_MAX_BACKLOG_PER_SERVER = 30;
   private static final long DEFAULT_IDLE_TIMEOUT_MS = 6 * 60L * 60 * 1000L; // 6 hours
+  private static final int DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER = 2;
+  private static final int DEFAULT_MAX_OUTSTANDING_REQUESTS_PER_CONNECTION = 1000;
 
   // ThreadPool config for the Async Connection Pool
   private ThreadPoolConfig _threadPool;
@@ -55,12 +66,24 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   private long _idleTimeoutMs;
 
+  // Share a few connections per server between all requests
+  private boolean _multiplexed;
+
+  // Number of connections per server when multiplexed
+  private int _multiplexedConnectionsPerServer;
+
+  // Maximum number of requests in flight on a multiplexed connection
+  private int _maxOutstandingRequestsPerConnection;
+
   public ConnectionPoolConfig() {
     _threadPool = new ThreadPoolConfig();
     _minConnectionsPerServer = DEFAULT_MIN_CONNECTIONS_PER_SERVER;
     _maxConnectionsPerServer = DEFAULT_MAX_CONNECTIONS_PER_SERVER;
     _maxBacklogPerServer = DEFAULT_MAX_BACKLOG_PER_SERVER;
     _idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    _multiplexed = false;
+    _multiplexedConnectionsPerServer = DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER;
+    _maxOutstandingRequestsPerConnection = DEFAULT_MAX_OUTSTANDING_REQUESTS_PER_CONNECTION;
   }
 
   public void init(Configuration cfg) {
@@ -83,6 +106,18 @@ public class ConnectionPoolConfig {
     if (cfg.containsKey(MAX_BACKLOG_PER_SERVER_KEY)) {
       _maxBacklogPerServer = cfg.getInt(MAX_BACKLOG_PER_SERVER_KEY);
     }
+
+    if (cfg.containsKey(MULTIPLEXED_KEY)) {
+      _multiplexed = cfg.getBoolean(MULTIPLEXED_KEY);
+    }
+
+    if (cfg.containsKey(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY)) {
+      _multiplexedConnectionsPerServer = cfg.getInt(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY);
+    }
+
+    if (cfg.containsKey(MAX_OUTSTANDING_REQUESTS_PER_CONNECTION_KEY)) {
+      _maxOutstandingRequestsPerConnection = cfg.getInt(MAX_OUTSTANDING_REQUESTS_PER_CONNECTION_KEY);
+    }
   }
 
   public ThreadPoolConfig getThreadPool() {
@@ -105,4 +140,16 @@ public class ConnectionPoolConfig {
     return _idleTimeoutMs;
   }
 
+  public boolean isMultiplexed() {
+    return _multiplexed;
+  }
+
+  public int getMultiplexedConnectionsPerServer() {
+    return _multiplexedConnectionsPerServer;
+  }
+
+  public int getMaxOutstandingRequestsPerConnection() {
+    return _maxOutstandingRequestsPerConnection;
+  }
+
 }
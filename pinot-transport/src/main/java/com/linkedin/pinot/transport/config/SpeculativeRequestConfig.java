@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.config;
+
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * Config for speculative requests: once the server queried for a set of segments has not responded within the
+ * delay, the same segments are queried on another server hosting them and the first response is used.
+ * The delay can be overridden per table with "table.<tableName>.delayMs", the table name including its type suffix.
+ */
+public class SpeculativeRequestConfig {
+
+  // Delay (ms) after which speculative requests are sent, negative to not send any
+  public static final String DELAY_MS_KEY = "delayMs";
+
+  // Number of speculative requests for each segment-set whose server did not respond in time
+  public static final String NUM_REQUESTS_KEY = "numRequests";
+
+  // Prefix of the per table configs
+  public static final String TABLE_KEY = "table";
+
+  private static final long DEFAULT_DELAY_MS = -1L;
+  private static final int DEFAULT_NUM_REQUESTS = 1;
+
+  private Configuration _tableCfg;
+  private long _delayMs;
+  private int _numRequests;
+
+  public SpeculativeRequestConfig() {
+    _tableCfg = null;
+    _delayMs = DEFAULT_DELAY_MS;
+    _numRequests = DEFAULT_NUM_REQUESTS;
+  }
+
+  public void init(Configuration cfg) {
+    if (cfg.containsKey(DELAY_MS_KEY)) {
+      _delayMs = cfg.getLong(DELAY_MS_KEY);
+    }
+
+    if (cfg.containsKey(NUM_REQUESTS_KEY)) {
+      _numRequests = cfg.getInt(NUM_REQUESTS_KEY);
+    }
+
+    _tableCfg = cfg.subset(TABLE_KEY);
+  }
+
+  /**
+   * Returns the delay (ms) after which speculative requests are sent for the table, negative if none are to be sent.
+   */
+  public long getDelayMs(String tableName) {
+    if (null != _tableCfg) {
+      String key = tableName + "." + DELAY_MS_KEY;
+      if (_tableCfg.containsKey(key)) {
+        return _tableCfg.getLong(key);
+      }
+    }
+    return _delayMs;
+  }
+
+  /**
+   * Returns the number of speculative requests to send for the table, 0 if none are to be sent.
+   */
+  public int getNumRequests(String tableName) {
+    if (getDelayMs(tableName) < 0) {
+      return 0;
+    }
+    return _numRequests;
+  }
+}
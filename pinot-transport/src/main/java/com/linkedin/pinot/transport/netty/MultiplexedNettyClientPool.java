@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.NoneType;
+import com.linkedin.pinot.transport.metrics.AsyncPoolStats;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.metrics.PoolStats;
+import com.linkedin.pinot.transport.pool.KeyedPool;
+import com.yammer.metrics.core.Histogram;
+
+
+/**
+ * KeyedPool of NettyMultiplexedClientConnections. Multiplexed connections carry many requests at
+ * once, so instead of handing out each connection to one request at a time, the pool keeps a fixed
+ * number of connections per server and hands them out in turn to every caller. Checking a connection
+ * back in is a no-op, destroying it replaces it with a new one on a later checkout.
+ *
+ * This lets ScatterGatherImpl send requests on multiplexed connections without knowing about them.
+ */
+public class MultiplexedNettyClientPool implements KeyedPool<ServerInstance, NettyClientConnection> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MultiplexedNettyClientPool.class);
+
+  private final int _connectionsPerServer;
+  private final int _maxOutstandingRequestsPerConnection;
+  private final EventLoopGroup _eventLoop;
+  private final Timer _timer;
+  private final NettyClientMetrics _metrics;
+
+  // Guarded by this
+  private final Map<ServerInstance, ServerConnections> _connections = new HashMap<ServerInstance, ServerConnections>();
+  private boolean _shutdown = false;
+  private int _totalCreated = 0;
+  private int _totalCreateErrors = 0;
+  private int _totalDestroyed = 0;
+
+  public MultiplexedNettyClientPool(int connectionsPerServer, int maxOutstandingRequestsPerConnection,
+      EventLoopGroup eventLoop, Timer timer, NettyClientMetrics metrics) {
+    _connectionsPerServer = connectionsPerServer;
+    _maxOutstandingRequestsPerConnection = maxOutstandingRequestsPerConnection;
+    _eventLoop = eventLoop;
+    _timer = timer;
+    _metrics = metrics;
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public KeyedFuture<ServerInstance, NettyClientConnection> checkoutObject(ServerInstance key) {
+    AsyncResponseFuture<ServerInstance, NettyClientConnection> future =
+        new AsyncResponseFuture<ServerInstance, NettyClientConnection>(key, "Multiplexed connection to " + key);
+    ServerConnections serverConnections;
+    synchronized (this) {
+      if (_shutdown) {
+        future.onError(new IllegalStateException("Pool is shutdown, cannot checkout connection to " + key));
+        return future;
+      }
+      serverConnections = _connections.get(key);
+      if (null == serverConnections) {
+        serverConnections = new ServerConnections();
+        _connections.put(key, serverConnections);
+      }
+      if (!serverConnections.startConnect()) {
+        NettyClientConnection connection = serverConnections.next();
+        if (null == connection) {
+          // All the connections to the server are still connecting, wait for the first one
+          serverConnections._waitingFutures.add(future);
+        } else {
+          future.onSuccess(connection);
+        }
+        return future;
+      }
+    }
+
+    // Connect outside of the lock, so that a slow server does not hold up requests to the others
+    NettyClientConnection connection = new NettyMultiplexedClientConnection(key, _eventLoop, _timer, _metrics,
+        _maxOutstandingRequestsPerConnection);
+    boolean connected = connection.connect();
+    List<AsyncResponseFuture<ServerInstance, NettyClientConnection>> futures =
+        new ArrayList<AsyncResponseFuture<ServerInstance, NettyClientConnection>>();
+    futures.add(future);
+    Exception error = null;
+    synchronized (this) {
+      serverConnections._numPendingConnects--;
+      if (!connected) {
+        _totalCreateErrors++;
+        error = new IllegalStateException("Unable to connect to server " + key);
+        // Waiting callers can still get a connection from the other pending connects
+        if (serverConnections._numPendingConnects == 0) {
+          futures.addAll(serverConnections.takeWaitingFutures());
+        }
+      } else if (_shutdown) {
+        // The pool got shutdown while connecting, so the connection would never be closed
+        _totalCreated++;
+        _totalDestroyed++;
+        error = new IllegalStateException("Pool is shutdown, cannot checkout connection to " + key);
+        futures.addAll(serverConnections.takeWaitingFutures());
+      } else {
+        _totalCreated++;
+        serverConnections.add(connection);
+        futures.addAll(serverConnections.takeWaitingFutures());
+      }
+    }
+    if (null != error) {
+      close(connection);
+      for (AsyncResponseFuture<ServerInstance, NettyClientConnection> f : futures) {
+        f.onError(error);
+      }
+    } else {
+      for (AsyncResponseFuture<ServerInstance, NettyClientConnection> f : futures) {
+        f.onSuccess(connection);
+      }
+    }
+    return future;
+  }
+
+  @Override
+  public void checkinObject(ServerInstance key, NettyClientConnection object) {
+    // Shared connection, nothing to return
+  }
+
+  @Override
+  public void destroyObject(ServerInstance key, NettyClientConnection object) {
+    synchronized (this) {
+      ServerConnections serverConnections = _connections.get(key);
+      if ((null == serverConnections) || !serverConnections.remove(object)) {
+        return;
+      }
+      _totalDestroyed++;
+    }
+    LOGGER.info("Destroying multiplexed client connection to server :" + key);
+    close(object);
+  }
+
+  @Override
+  public KeyedFuture<ServerInstance, NoneType> shutdown() {
+    List<NettyClientConnection> connections = new ArrayList<NettyClientConnection>();
+    synchronized (this) {
+      _shutdown = true;
+      for (ServerConnections serverConnections : _connections.values()) {
+        connections.addAll(serverConnections._connections);
+      }
+      _totalDestroyed += connections.size();
+      _connections.clear();
+    }
+    for (NettyClientConnection connection : connections) {
+      close(connection);
+    }
+    AsyncResponseFuture<ServerInstance, NoneType> future =
+        new AsyncResponseFuture<ServerInstance, NoneType>(null, "Shutdown For Pool");
+    future.onSuccess(NoneType.NONE);
+    return future;
+  }
+
+  private void close(NettyClientConnection connection) {
+    try {
+      connection.close();
+    } catch (InterruptedException e) {
+      LOGGER.error("Got interrupted exception when closing connection to " + connection.getServer(), e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public synchronized PoolStats<Histogram> getStats() {
+    int poolSize = 0;
+    for (ServerConnections serverConnections : _connections.values()) {
+      poolSize += serverConnections._connections.size();
+    }
+    int maxPoolSize = _connectionsPerServer * _connections.size();
+    // Connections are shared, they are all in use and none is ever waited for
+    return new AsyncPoolStats<Histogram>(_totalCreated, _totalDestroyed, _totalCreateErrors, 0, 0, 0, poolSize,
+        maxPoolSize, maxPoolSize, poolSize, poolSize, poolSize, 0, null, null);
+  }
+
+  /**
+   * The connections to one server, handed out round-robin. Connects in progress count towards the connections per
+   * server, so that a burst of checkouts does not open more connections than that.
+   */
+  private class ServerConnections {
+    private final List<NettyClientConnection> _connections = new ArrayList<NettyClientConnection>();
+    // Checkouts waiting for a connect in progress, as there is no connection to hand out yet
+    private final List<AsyncResponseFuture<ServerInstance, NettyClientConnection>> _waitingFutures =
+        new ArrayList<AsyncResponseFuture<ServerInstance, NettyClientConnection>>();
+    private int _numPendingConnects = 0;
+    private int _next = 0;
+
+    /**
+     * Discards the invalid connections, and reserves a connect if there are less connections than wanted.
+     *
+     * @return true if the caller should create a new connection
+     */
+    boolean startConnect() {
+      for (int i = _connections.size() - 1; i >= 0; i--) {
+        if (!_connections.get(i).validate()) {
+          LOGGER.info("Discarding invalid multiplexed client connection to server :"
+              + _connections.get(i).getServer());
+          close(_connections.remove(i));
+          _totalDestroyed++;
+        }
+      }
+      if (_connections.size() + _numPendingConnects < _connectionsPerServer) {
+        _numPendingConnects++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @return the next connection, or null if all the connections are still connecting
+     */
+    NettyClientConnection next() {
+      if (_connections.isEmpty()) {
+        return null;
+      }
+      _next = _next % _connections.size();
+      return _connections.get(_next++);
+    }
+
+    List<AsyncResponseFuture<ServerInstance, NettyClientConnection>> takeWaitingFutures() {
+      List<AsyncResponseFuture<ServerInstance, NettyClientConnection>> waitingFutures =
+          new ArrayList<AsyncResponseFuture<ServerInstance, NettyClientConnection>>(_waitingFutures);
+      _waitingFutures.clear();
+      return waitingFutures;
+    }
+
+    void add(NettyClientConnection connection) {
+      _connections.add(connection);
+    }
+
+    boolean remove(NettyClientConnection connection) {
+      return _connections.remove(connection);
+    }
+  }
+}
@@ -130,6 +130,16 @@ public abstract class NettyClientConnection {
     public ResponseFuture(ServerInstance key, Throwable error, String ctxt) {
       super(key, error, ctxt);
     }
+
+    /**
+     * Responses of cancelled requests are not read by anyone, release them here.
+     */
+    @Override
+    protected void onResponseDiscarded(ByteBuf result) {
+      if (null != result && result.refCnt() > 0) {
+        result.release();
+      }
+    }
   }
 
   /**
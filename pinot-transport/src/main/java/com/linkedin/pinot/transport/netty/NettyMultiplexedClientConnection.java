@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.linkedin.pinot.common.metrics.MetricsHelper;
+import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.Cancellable;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+
+
+/**
+ * TCP based Netty Client Connection which pipelines many requests over a single channel. It talks to
+ * a multiplexed NettyTCPServer.
+ *
+ * Request and Response have the following format
+ *
+ * 0                                                         31
+ * ------------------------------------------------------------
+ * |                  Length ( 32 bits)                       |
+ * |                 Sequence Id ( 64 bits)                   |
+ * |                                                          |
+ * |                 Payload (Request/Response)               |
+ * |                    ...............                       |
+ * |                    ...............                       |
+ * ------------------------------------------------------------
+ *
+ * The server sends responses back as soon as their requests complete, echoing the sequence id of
+ * the request. Sequence ids are assigned by the connection, so requests sharing an InstanceRequest id
+ * (such as speculative requests sent to the same server) can be outstanding together.
+ *
+ * Unlike NettyTCPClientConnection, this connection is thread-safe and meant to be shared by all the
+ * requests to the server instead of being checked out for each one of them, see
+ * MultiplexedNettyClientPool. At most maxOutstandingRequests requests are in flight, senders beyond
+ * that wait for an earlier request to complete, up to their timeout. A request timing out only fails
+ * its own future, the channel stays open for the other requests.
+ */
+public class NettyMultiplexedClientConnection extends NettyClientConnection {
+  private static final int SEQUENCE_ID_LENGTH = 8;
+
+  // Connection Id generator
+  private static final AtomicLong _connIdGen = new AtomicLong(0);
+
+  private final NettyClientMetrics _clientMetric;
+
+  // Connection Id
+  private final long _connId;
+
+  // Sequence Id generator, unique among the requests of this connection
+  private final AtomicLong _sequenceIdGen = new AtomicLong(0);
+
+  // Requests sent and waiting for their response, by sequence id
+  private final ConcurrentMap<Long, OutstandingRequest> _outstandingRequests =
+      new ConcurrentHashMap<Long, OutstandingRequest>();
+
+  // One permit per request which may still be sent before waiting for responses
+  private final Semaphore _requestPermits;
+
+  // Channel Setting notification
+  private final CountDownLatch _channelSet = new CountDownLatch(1);
+
+  public NettyMultiplexedClientConnection(ServerInstance server, EventLoopGroup eventGroup, Timer timer,
+      NettyClientMetrics metric, int maxOutstandingRequests) {
+    super(server, eventGroup, timer);
+    _clientMetric = metric;
+    _connId = _connIdGen.incrementAndGet();
+    _requestPermits = new Semaphore(maxOutstandingRequests);
+    _bootstrap = new Bootstrap();
+    _bootstrap.group(_eventGroup).channel(NioSocketChannel.class).handler(new ChannelHandlerInitializer());
+  }
+
+  @Override
+  public boolean connect() {
+    try {
+      if (_connState != State.INIT) {
+        throw new IllegalStateException("Wrong transition :" + _connState + " -> " + State.CONNECTED);
+      }
+      //Connect synchronously. At the end of this line, _channel should have been set
+      TimerContext t = MetricsHelper.startTimer();
+      ChannelFuture f = _bootstrap.connect(_server.getHostname(), _server.getPort()).sync();
+      f.get();
+      _channelSet.await();
+      t.stop();
+
+      _connState = State.CONNECTED;
+      _clientMetric.addConnectStats(t.getLatencyMs());
+      return true;
+    } catch (Exception ie) {
+      LOGGER.error("Got exception when connecting to server :" + _server, ie);
+    }
+    return false;
+  }
+
+  @Override
+  public ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMs) {
+    String ctxt = "Response Future for request " + requestId + " to server " + _server;
+    if (_connState != State.CONNECTED) {
+      return failRequest(serializedRequest, new IllegalStateException("Connection (" + _connId + ") to server "
+          + _server + " is in state " + _connState), ctxt);
+    }
+
+    // Back-pressure, wait for a slot among the outstanding requests
+    try {
+      if (timeoutMs < 0) {
+        _requestPermits.acquire();
+      } else if (!_requestPermits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+        return failRequest(serializedRequest, new TimeoutException("Timed out waiting to send request " + requestId
+            + " to server " + _server + ", " + _outstandingRequests.size() + " requests are outstanding"), ctxt);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return failRequest(serializedRequest, e, ctxt);
+    }
+
+    ResponseFuture responseFuture = new ResponseFuture(_server, ctxt);
+    long sequenceId = _sequenceIdGen.incrementAndGet();
+    OutstandingRequest request =
+        new OutstandingRequest(sequenceId, requestId, responseFuture, serializedRequest.readableBytes());
+    _outstandingRequests.put(sequenceId, request);
+    responseFuture.setCancellable(request);
+
+    // The channel may have failed after the state check, in which case it may have missed this request
+    if (_connState == State.ERROR) {
+      serializedRequest.release();
+      request.onError(new IllegalStateException("Connection (" + _connId + ") to server " + _server
+          + " is in state " + _connState));
+      return responseFuture;
+    }
+
+    if (timeoutMs >= 0) {
+      request.setTimeout(_timer.newTimeout(request, timeoutMs, TimeUnit.MILLISECONDS));
+    }
+    ByteBuf sequenceIdHeader = Unpooled.buffer(SEQUENCE_ID_LENGTH).writeLong(sequenceId);
+    _channel.writeAndFlush(Unpooled.wrappedBuffer(sequenceIdHeader, serializedRequest)).addListener(request);
+    return responseFuture;
+  }
+
+  private ResponseFuture failRequest(ByteBuf serializedRequest, Throwable error, String ctxt) {
+    serializedRequest.release();
+    return new ResponseFuture(_server, error, ctxt);
+  }
+
+  /**
+   * @return number of requests sent and still waiting for their response
+   */
+  public int getNumOutstandingRequests() {
+    return _outstandingRequests.size();
+  }
+
+  @Override
+  public boolean validate() {
+    return (_connState != State.ERROR) && super.validate();
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    LOGGER.info("Client channel close() called. Closing client channel (id = {}) !!", _connId);
+    if (null != _channel) {
+      _channel.close().sync();
+    }
+  }
+
+  /**
+   * Fails all the outstanding requests and closes the channel.
+   */
+  private void closeOnError(ChannelHandlerContext ctx, Throwable cause) {
+    _connState = State.ERROR;
+    List<OutstandingRequest> requests = new ArrayList<OutstandingRequest>(_outstandingRequests.values());
+    for (OutstandingRequest request : requests) {
+      request.onError(cause);
+    }
+    ctx.close();
+  }
+
+  /**
+   * A request waiting for its response. Whichever of the response, the timeout, a send failure,
+   * cancellation or a channel failure happens first completes it, the others are no-ops.
+   */
+  private class OutstandingRequest implements TimerTask, Cancellable, ChannelFutureListener {
+    private final long _sequenceId;
+    private final long _requestId;
+    private final ResponseFuture _responseFuture;
+    private final long _requestSizeInBytes;
+    private final TimerContext _sendRequestLatency;
+    private final TimerContext _responseLatency;
+    private volatile Timeout _timeout;
+
+    OutstandingRequest(long sequenceId, long requestId, ResponseFuture responseFuture, long requestSizeInBytes) {
+      _sequenceId = sequenceId;
+      _requestId = requestId;
+      _responseFuture = responseFuture;
+      _requestSizeInBytes = requestSizeInBytes;
+      _sendRequestLatency = MetricsHelper.startTimer();
+      _responseLatency = MetricsHelper.startTimer();
+    }
+
+    void setTimeout(Timeout timeout) {
+      _timeout = timeout;
+    }
+
+    /**
+     * Removes the request from the outstanding requests. Only the first caller gets true.
+     */
+    private boolean complete() {
+      if (!_outstandingRequests.remove(_sequenceId, this)) {
+        return false;
+      }
+      if (null != _timeout) {
+        _timeout.cancel(); //If task is already executed, no side-effect
+      }
+      _requestPermits.release();
+      _responseLatency.stop();
+      return true;
+    }
+
+    void onResponse(ByteBuf response) {
+      if (complete()) {
+        _clientMetric.addRequestResponseStats(_requestSizeInBytes, 1, response.readableBytes(), false,
+            _sendRequestLatency.getLatencyMs(), _responseLatency.getLatencyMs());
+        _responseFuture.onSuccess(response);
+      } else {
+        LOGGER.debug("Discarding response of request {} from server {}, it has already completed", _requestId,
+            _server);
+        response.release();
+      }
+    }
+
+    void onError(Throwable cause) {
+      if (complete()) {
+        _clientMetric.addRequestResponseStats(_requestSizeInBytes, 1, 0, true, _sendRequestLatency.getLatencyMs(),
+            _responseLatency.getLatencyMs());
+        _responseFuture.onError(cause);
+      }
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+      String message = "Request (" + _requestId + ") to server " + _server + " timed-out waiting for response !!";
+      LOGGER.error(message);
+      onError(new Exception(message));
+    }
+
+    @Override
+    public boolean cancel() {
+      return complete();
+    }
+
+    @Override
+    public void operationComplete(ChannelFuture future) throws Exception {
+      _sendRequestLatency.stop();
+      if (!future.isSuccess()) {
+        LOGGER.error("Got exception sending the request (" + _requestId + ") to server (" + _server + ") id :"
+            + _connId, future.cause());
+        onError(future.cause());
+      }
+    }
+  }
+
+  /**
+   * Channel Handler for incoming responses.
+   */
+  private class NettyMultiplexedClientConnectionHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+      LOGGER.info("Client Channel to server ({}) (id = {}) is active.", _server, _connId);
+      _channel = ctx.channel();
+      _channelSet.countDown();
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      LOGGER.info("Client Channel to server ({}) (id = {}) in inactive state (closed).  !!", _server, _connId);
+      closeOnError(ctx, new Exception("Client Channel to server (" + _server + ") is in inactive state (closed) !!"));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ByteBuf response = (ByteBuf) msg;
+      long sequenceId = response.readLong();
+      OutstandingRequest request = _outstandingRequests.get(sequenceId);
+      if (null != request) {
+        request.onResponse(response);
+      } else {
+        LOGGER.debug("Discarding response with sequence id {} from server {}, it is not outstanding", sequenceId,
+            _server);
+        response.release();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOGGER.error("Got exception in the channel !", cause);
+      closeOnError(ctx, cause);
+    }
+  }
+
+  private class ChannelHandlerInitializer extends ChannelInitializer<SocketChannel> {
+    @Override
+    protected void initChannel(SocketChannel ch) throws Exception {
+      ChannelPipeline pipeline = ch.pipeline();
+      pipeline.addLast("decoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+      pipeline.addLast("encoder", new LengthFieldPrepender(4));
+      pipeline.addLast("handler", new NettyMultiplexedClientConnectionHandler());
+    }
+  }
+}
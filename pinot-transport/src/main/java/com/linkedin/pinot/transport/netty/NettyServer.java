@@ -31,6 +31,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.linkedin.pinot.common.metrics.AggregatedMetricsRegistry;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
@@ -54,24 +57,28 @@ public abstract class NettyServer implements Runnable {
 
   /**
    * The request handler callback which processes the incoming request.
-   * This method is executed by the Netty worker thread.
+   * This method is executed by the Netty worker thread and is expected to hand the
+   * actual query processing off to another thread, so that a slow query does not
+   * hold up the other channels served by the same worker.
    */
   public static interface RequestHandler {
     /**
      * Callback for Servers to process the request and return the response.
      * The ownership of the request bytebuf resides with the caler (NettyServer).
      * This callback is not expected to call {@link ByteBuf#release()} on request
-     * The ownership of the request byteBuf lies with the caller.
+     * The ownership of the request byteBuf lies with the caller, which releases it
+     * as soon as this method returns. The implementation must hence read the request
+     * before returning and not from the thread completing the returned future.
      *
-     * The implementation MUST not throw any runtime exceptions. In case of errors,
-     * the implementation is expected to construct and return an error response.
-     * If the implementation throws runtime exceptions, then the underlying connection
-     * will be terminated.
+     * The implementation MUST not throw any runtime exceptions nor fail the returned
+     * future. In case of errors, the implementation is expected to construct and return
+     * an error response. If the implementation throws runtime exceptions or fails the
+     * future, then the underlying connection will be terminated.
      *
      * @param request Serialized request
-     * @return Serialized response
+     * @return Future for the serialized response
      */
-    public byte[] processRequest(ByteBuf request);
+    public ListenableFuture<byte[]> processRequest(ByteBuf request);
   }
 
   public static interface RequestHandlerFactory {
@@ -169,23 +176,33 @@ public abstract class NettyServer implements Runnable {
    * |                    ...............                       |
    * |                    ...............                       |
    * ------------------------------------------------------------
+   *
+   * When multiplexed, the payload of both is preceded by a 64 bit sequence id assigned by the client,
+   * which lets it pipeline many requests on the channel and match the responses, sent back in
+   * whatever order the requests complete, to their requests.
    */
-  public static class NettyChannelInboundHandler extends ChannelInboundHandlerAdapter implements ChannelFutureListener {
+  public static class NettyChannelInboundHandler extends ChannelInboundHandlerAdapter {
     private final long _defaultLargeQueryLatencyMs;
     private final RequestHandler _handler;
     private final NettyServerMetrics _metric;
+    private final boolean _multiplexed;
 
     //Metrics Related
-    private long _lastRequsetSizeInBytes;
-    private long _lastResponseSizeInBytes;
-    private TimerContext _lastSendResponseLatency;
-    private TimerContext _lastProcessingLatency;
-    private long _requestStartTime;
+    private volatile long _lastRequsetSizeInBytes;
+    private volatile long _lastResponseSizeInBytes;
+    private volatile TimerContext _lastSendResponseLatency;
+    private volatile TimerContext _lastProcessingLatency;
 
-    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric, long defaultLargeQueryLatencyMs) {
+    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric,
+        long defaultLargeQueryLatencyMs, boolean multiplexed) {
       _handler = handler;
       _metric = metric;
       _defaultLargeQueryLatencyMs = defaultLargeQueryLatencyMs;
+      _multiplexed = multiplexed;
+    }
+
+    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric, long defaultLargeQueryLatencyMs) {
+      this(handler, metric, defaultLargeQueryLatencyMs, false);
     }
 
     public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric) {
@@ -203,28 +220,64 @@ public abstract class NettyServer implements Runnable {
     /**
      * Server Channel Handler State
      */
-    private State _state = State.INIT;
+    private volatile State _state = State.INIT;
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
-      _requestStartTime = System.currentTimeMillis();
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) {
+      final long requestStartTime = System.currentTimeMillis();
       LOGGER.debug("Request received by server !!");
       _state = State.REQUEST_RECEIVED;
       ByteBuf request = (ByteBuf) msg;
-      _lastRequsetSizeInBytes = request.readableBytes();
+      final long requestSizeInBytes = request.readableBytes();
+      _lastRequsetSizeInBytes = requestSizeInBytes;
 
       //Call processing handler
-      _lastProcessingLatency = MetricsHelper.startTimer();
-      byte[] response = _handler.processRequest(request);
-      _lastProcessingLatency.stop();
+      final TimerContext processingLatency = MetricsHelper.startTimer();
+      _lastProcessingLatency = processingLatency;
+      final long sequenceId;
+      ListenableFuture<byte[]> response;
+      try {
+        sequenceId = _multiplexed ? request.readLong() : 0L;
+        response = _handler.processRequest(request);
+      } finally {
+        request.release();
+      }
 
-      // Send Response
-      ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
-      _lastSendResponseLatency = MetricsHelper.startTimer();
+      // Send Response once processed, from the thread completing the future
+      Futures.addCallback(response, new FutureCallback<byte[]>() {
+        @Override
+        public void onSuccess(byte[] result) {
+          processingLatency.stop();
+          // Exceptions thrown here would be swallowed by the future, leaving the request without a response
+          try {
+            if (null == result) {
+              throw new IllegalStateException("Request handler returned a null response");
+            }
+            ByteBuf responseBuf = Unpooled.wrappedBuffer(result);
+            if (_multiplexed) {
+              responseBuf = Unpooled.wrappedBuffer(Unpooled.buffer(8).writeLong(sequenceId), responseBuf);
+            }
+            sendResponse(ctx, responseBuf, new ResponseSentListener(requestStartTime, requestSizeInBytes,
+                result.length, processingLatency));
+          } catch (Exception e) {
+            exceptionCaught(ctx, e);
+          }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          processingLatency.stop();
+          exceptionCaught(ctx, t);
+        }
+      });
+    }
+
+    private void sendResponse(ChannelHandlerContext ctx, ByteBuf responseBuf, ResponseSentListener listener) {
+      _lastResponseSizeInBytes = listener._responseSizeInBytes;
+      _lastSendResponseLatency = listener._sendResponseLatency;
       ChannelFuture f = ctx.writeAndFlush(responseBuf);
       _state = State.RESPONSE_WRITTEN;
-      f.addListener(this);
-      request.release();
+      f.addListener(listener);
     }
 
     @Override
@@ -235,18 +288,39 @@ public abstract class NettyServer implements Runnable {
       ctx.close();
     }
 
-    @Override
-    public void operationComplete(ChannelFuture future) throws Exception {
-      LOGGER.debug("Response has been sent !!");
-      _lastSendResponseLatency.stop();
-      _metric.addServingStats(_lastRequsetSizeInBytes, _lastResponseSizeInBytes, 1L, false,
-          _lastProcessingLatency.getLatencyMs(), _lastSendResponseLatency.getLatencyMs());
-      long totalQueryTime = System.currentTimeMillis() - _requestStartTime;
-      if (totalQueryTime > _defaultLargeQueryLatencyMs) {
-        LOGGER.info("Trace Info: request handler processing time : {}, send response latency: {}, total time to handle request: {}", _lastProcessingLatency.getLatencyMs(),
-            _lastSendResponseLatency.getLatencyMs(), totalQueryTime);
+    /**
+     * Records the serving stats of one request once its response has been sent. Each request has its
+     * own listener as several requests may be in flight on a multiplexed channel.
+     */
+    private class ResponseSentListener implements ChannelFutureListener {
+      private final long _requestStartTime;
+      private final long _requestSizeInBytes;
+      private final long _responseSizeInBytes;
+      private final TimerContext _processingLatency;
+      private final TimerContext _sendResponseLatency;
+
+      ResponseSentListener(long requestStartTime, long requestSizeInBytes, long responseSizeInBytes,
+          TimerContext processingLatency) {
+        _requestStartTime = requestStartTime;
+        _requestSizeInBytes = requestSizeInBytes;
+        _responseSizeInBytes = responseSizeInBytes;
+        _processingLatency = processingLatency;
+        _sendResponseLatency = MetricsHelper.startTimer();
+      }
+
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        LOGGER.debug("Response has been sent !!");
+        _sendResponseLatency.stop();
+        _metric.addServingStats(_requestSizeInBytes, _responseSizeInBytes, 1L, false,
+            _processingLatency.getLatencyMs(), _sendResponseLatency.getLatencyMs());
+        long totalQueryTime = System.currentTimeMillis() - _requestStartTime;
+        if (totalQueryTime > _defaultLargeQueryLatencyMs) {
+          LOGGER.info("Trace Info: request handler processing time : {}, send response latency: {}, total time to handle request: {}", _processingLatency.getLatencyMs(),
+              _sendResponseLatency.getLatencyMs(), totalQueryTime);
+        }
+        _state = State.RESPONSE_SENT;
       }
-      _state = State.RESPONSE_SENT;
     }
 
     @Override
@@ -254,7 +328,7 @@ public abstract class NettyServer implements Runnable {
       return "NettyChannelInboundHandler [_handler=" + _handler + ", _metric=" + _metric + ", _lastRequsetSizeInBytes="
           + _lastRequsetSizeInBytes + ", _lastResponseSizeInBytes=" + _lastResponseSizeInBytes
           + ", _lastSendResponseLatency=" + _lastSendResponseLatency + ", _lastProcessingLatency="
-          + _lastProcessingLatency + ", _state=" + _state + "]";
+          + _lastProcessingLatency + ", _state=" + _state + ", _multiplexed=" + _multiplexed + "]";
     }
   }
 
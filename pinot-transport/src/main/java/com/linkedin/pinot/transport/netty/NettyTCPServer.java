@@ -38,8 +38,17 @@ import com.yammer.metrics.core.MetricsRegistry;
  */
 public class NettyTCPServer extends NettyServer {
 
-  public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry, long defaultLargeQueryLatencyMs) {
+  // Requests and responses carry the request id, see NettyChannelInboundHandler
+  private final boolean _multiplexed;
+
+  public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry,
+      long defaultLargeQueryLatencyMs, boolean multiplexed) {
     super(port, handlerFactory, registry, defaultLargeQueryLatencyMs);
+    _multiplexed = multiplexed;
+  }
+
+  public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry, long defaultLargeQueryLatencyMs) {
+    this(port, handlerFactory, registry, defaultLargeQueryLatencyMs, false);
   }
 
   public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry) {
@@ -55,7 +64,8 @@ public class NettyTCPServer extends NettyServer {
   }
 
   protected ChannelInitializer<SocketChannel> createChannelInitializer() {
-    return new ServerChannelInitializer(_handlerFactory, _metricsRegistry, _metrics, _defaultLargeQueryLatencyMs);
+    return new ServerChannelInitializer(_handlerFactory, _metricsRegistry, _metrics, _defaultLargeQueryLatencyMs,
+        _multiplexed);
   }
 
   /**
@@ -73,13 +83,20 @@ public class NettyTCPServer extends NettyServer {
     private final MetricsRegistry _registry;
     private final AggregatedTransportServerMetrics _globalMetrics;
     private final long _defaultLargeQueryLatencyMs;
+    private final boolean _multiplexed;
 
     public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
-        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs) {
+        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs, boolean multiplexed) {
       _handlerFactory = handlerFactory;
       _registry = registry;
       _globalMetrics = globalMetrics;
       _defaultLargeQueryLatencyMs = defaultLargeQueryLatencyMs;
+      _multiplexed = multiplexed;
+    }
+
+    public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
+        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs) {
+      this(handlerFactory, registry, globalMetrics, defaultLargeQueryLatencyMs, false);
     }
 
     public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
@@ -102,7 +119,8 @@ public class NettyTCPServer extends NettyServer {
       }
 
       ch.pipeline().addLast("request_handler",
-          new NettyChannelInboundHandler(_handlerFactory.createNewRequestHandler(), serverMetric, _defaultLargeQueryLatencyMs));
+          new NettyChannelInboundHandler(_handlerFactory.createNewRequestHandler(), serverMetric,
+              _defaultLargeQueryLatencyMs, _multiplexed));
     }
   }
 }
@@ -20,12 +20,17 @@ import io.netty.buffer.Unpooled;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,6 +43,7 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.BucketingSelection;
+import com.linkedin.pinot.transport.common.Cancellable;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
 import com.linkedin.pinot.transport.common.KeyedFuture;
@@ -71,9 +77,23 @@ public class ScatterGatherImpl implements ScatterGather {
    */
   private final KeyedPool<ServerInstance, NettyClientConnection> _connPool;
 
+  /**
+   * Scheduler for sending speculative requests. No speculative requests are sent without it.
+   */
+  private final ScheduledExecutorService _speculativeRequestScheduler;
+
   public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service) {
+    this(pool, service, null);
+  }
+
+  /**
+   * @param speculativeRequestScheduler scheduler for sending speculative requests, null to never send them
+   */
+  public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service,
+      ScheduledExecutorService speculativeRequestScheduler) {
     _connPool = pool;
     _executorService = service;
+    _speculativeRequestScheduler = speculativeRequestScheduler;
   }
 
   @Override
@@ -115,11 +135,18 @@ public class ScatterGatherImpl implements ScatterGather {
     // async checkout of connections and then dispatch of request
     List<SingleRequestHandler> handlers = new ArrayList<SingleRequestHandler>(mp.size());
 
+    // Replica selection is told about every request and its completion, to let it track server load
+    ReplicaSelection replicaSelection = ctxt.getRequest().getReplicaSelection();
+    long requestStartTimeMs = System.currentTimeMillis();
+
     int i = 0;
     for (Entry<ServerInstance, SegmentIdSet> e : mp.entrySet()) {
       SingleRequestHandler handler =
           new SingleRequestHandler(_connPool, e.getKey(), ctxt.getRequest(), e.getValue(), ctxt.getTimeRemaining(),
               requestDispatchLatch);
+      if (null != replicaSelection) {
+        replicaSelection.onRequestSent(e.getKey());
+      }
       // Submit to thread-pool for checking-out and sending request
       _executorService.submit(handler);
       handlers.add(handler);
@@ -136,8 +163,24 @@ public class ScatterGatherImpl implements ScatterGather {
     if (sentSuccessfully) {
       List<KeyedFuture<ServerInstance, ByteBuf>> responseFutures =
           new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      int numSpeculativeRequests = ctxt.getRequest().getNumSpeculativeRequests();
+      if (numSpeculativeRequests > 0 && null == _speculativeRequestScheduler) {
+        LOGGER.warn("No scheduler for speculative requests, not sending any for request {}",
+            ctxt.getRequest().getRequestId());
+        numSpeculativeRequests = 0;
+      }
+      // Servers already queried by this request, speculative requests go to other servers when possible
+      Set<ServerInstance> queriedServers = Collections.synchronizedSet(new HashSet<ServerInstance>(mp.keySet()));
       for (SingleRequestHandler h : handlers) {
-        responseFutures.add(h.getResponseFuture());
+        ResponseFuture responseFuture = h.getResponseFuture();
+        addResponseLatencyListener(replicaSelection, h.getServer(), responseFuture, requestStartTimeMs);
+        if (numSpeculativeRequests > 0) {
+          SpeculativeRequestHandler speculativeRequestHandler =
+              new SpeculativeRequestHandler(ctxt, h, numSpeculativeRequests, queriedServers);
+          responseFutures.add(speculativeRequestHandler.start());
+        } else {
+          responseFutures.add(responseFuture);
+        }
       }
       response.start(responseFutures);
     } else {
@@ -149,6 +192,9 @@ public class ScatterGatherImpl implements ScatterGather {
       // and so we cancel all of them here
       for (SingleRequestHandler h : handlers) {
         h.cancel();
+        if (null != replicaSelection) {
+          replicaSelection.onResponseReceived(h.getServer(), System.currentTimeMillis() - requestStartTimeMs, true);
+        }
       }
     }
     t.stop();
@@ -156,6 +202,14 @@ public class ScatterGatherImpl implements ScatterGather {
     return response;
   }
 
+  private static void addResponseLatencyListener(ReplicaSelection replicaSelection, ServerInstance server,
+      ResponseFuture responseFuture, long requestStartTimeMs) {
+    if (null != replicaSelection) {
+      responseFuture.addListener(new ResponseLatencyListener(replicaSelection, server, responseFuture,
+          requestStartTimeMs), null);
+    }
+  }
+
   /**
    * Merge segment-sets which have the same set of servers. If 2 segmentIds have overlapping
    * set of servers, they are not merged. If there is predefined-selection for a segmentId,
@@ -208,7 +262,8 @@ public class ScatterGatherImpl implements ScatterGather {
   }
 
   /**
-   * For each segment-set in the instanceToSegmentMap, we select one (or more speculative) servers
+   * For each segment-set in the instanceToSegmentMap, we select one server. Speculative servers are
+   * only selected once a speculative request is due (See {@link SpeculativeRequestHandler}).
    *
    * @param requestContext
    */
@@ -216,41 +271,16 @@ public class ScatterGatherImpl implements ScatterGather {
     Map<ServerInstance, SegmentIdSet> selectedServers = new HashMap<ServerInstance, SegmentIdSet>();
     ScatterGatherRequest request = requestContext.getRequest();
     Map<List<ServerInstance>, SegmentIdSet> instanceToSegmentMap = requestContext.getInvertedMap();
-    //int numDuplicateRequests = request.getNumSpeculativeRequests();
     ReplicaSelection selection = request.getReplicaSelection();
     for (Entry<List<ServerInstance>, SegmentIdSet> e : instanceToSegmentMap.entrySet()) {
       ServerInstance s = selection.selectServer(e.getValue().getOneSegment(), e.getKey(), request.getHashKey());
       mergePartitionGroup(selectedServers, s, e.getValue());
-
-      /**
-       * TODO:
-       * We can easily add speculative execution here. The below code will pick a distinct server
-       * for the segmentId, This entry needs to be maintained in a separate container in ScatterGatherRequestContext
-       * Then in sndRequest, we need to construct SelectingFuture for the pairs of Future corresponding to original
-       * and speculative(duplicate) request.
-       *
-       int numServers = e.getKey().size();
-
-      // Pick Unique servers for speculative request
-      int numIterations = Math.min(numServers - 1, numDuplicateRequests);
-      for (int i = 0, c = 0; i < numIterations; i++, c++)
-      {
-        ServerInstance s1 = e.getKey().get(c);
-        if ( s.equals(s1))
-        {
-          c++;
-          s1 = e.getKey().get(c);
-        }
-        mergePartitionGroup(selectedServers, s1, e.getValue());
-        //TODO: speculative servers need to be maintained in a separate entry in ScatterGatherRequestContext
-      }
-       **/
     }
     requestContext.setSelectedServers(selectedServers);
   }
 
   /**
-   * For each segmentId in the instanceToSegmentMap, we select one (or more speculative) servers
+   * For each segmentId in the instanceToSegmentMap, we select one server
    *
    * @param requestContext
    */
@@ -436,15 +466,327 @@ public class ScatterGatherImpl implements ScatterGather {
       return _server;
     }
 
+    public SegmentIdSet getSegmentIds() {
+      return _segmentIds;
+    }
+
     public ResponseFuture getResponseFuture() {
       return _responseFuture;
     }
   }
 
+  /**
+   * Races speculative requests for the segment-set of a single request against that request, once it has not
+   * responded within the speculative request delay (or failed before). The future returned by {@link #start()} is
+   * keyed by the original server and completes with the first response. The other requests are cancelled then.
+   * It fails only if all the requests failed.
+   */
+  private class SpeculativeRequestHandler implements Runnable, Cancellable {
+    private final ScatterGatherRequestContext _ctxt;
+    // Handler of the original request
+    private final SingleRequestHandler _handler;
+    private final int _numSpeculativeRequests;
+    // Servers queried for the scatter-gather request, shared with the other segment-sets
+    private final Set<ServerInstance> _queriedServers;
+    private final ResponseFuture _future;
+
+    // Handlers of all the requests sent for the segment-set, including the original one
+    private final List<SingleRequestHandler> _handlers = new ArrayList<SingleRequestHandler>();
+    private int _numPendingRequests;
+    private boolean _speculated;
+    private boolean _done;
+    private Throwable _lastError;
+    private ScheduledFuture<?> _speculativeRequestTimeout;
+
+    public SpeculativeRequestHandler(ScatterGatherRequestContext ctxt, SingleRequestHandler handler,
+        int numSpeculativeRequests, Set<ServerInstance> queriedServers) {
+      _ctxt = ctxt;
+      _handler = handler;
+      _numSpeculativeRequests = numSpeculativeRequests;
+      _queriedServers = queriedServers;
+      _future = new ResponseFuture(handler.getServer(), "Speculative response future for request "
+          + ctxt.getRequest().getRequestId() + " to server " + handler.getServer());
+      _future.setCancellable(this);
+    }
+
+    public ResponseFuture start() {
+      synchronized (this) {
+        _handlers.add(_handler);
+        _numPendingRequests = 1;
+      }
+      listen(_handler);
+      synchronized (this) {
+        if (!_done) {
+          _speculativeRequestTimeout =
+              _speculativeRequestScheduler.schedule(this, _ctxt.getRequest().getSpeculativeRequestDelayMS(),
+                  TimeUnit.MILLISECONDS);
+        }
+      }
+      return _future;
+    }
+
+    /**
+     * Sends the speculative requests once the original request did not respond within the delay.
+     */
+    @Override
+    public void run() {
+      sendSpeculativeRequests();
+    }
+
+    private void sendSpeculativeRequests() {
+      List<SingleRequestHandler> speculativeHandlers = new ArrayList<SingleRequestHandler>();
+      boolean failed = false;
+      long timeRemaining = _ctxt.getTimeRemaining();
+      synchronized (this) {
+        if (_done || _speculated) {
+          return;
+        }
+        _speculated = true;
+        if (timeRemaining > 0) {
+          for (ServerInstance server : selectSpeculativeServers()) {
+            speculativeHandlers.add(new SingleRequestHandler(_connPool, server, _ctxt.getRequest(),
+                _handler.getSegmentIds(), timeRemaining, new CountDownLatch(1)));
+          }
+        }
+        _handlers.addAll(speculativeHandlers);
+        _numPendingRequests += speculativeHandlers.size();
+        if (_numPendingRequests == 0) {
+          _done = true;
+          failed = true;
+        }
+      }
+
+      if (failed) {
+        _future.onError(_lastError);
+        return;
+      }
+
+      final ScatterGatherRequest request = _ctxt.getRequest();
+      final ReplicaSelection replicaSelection = request.getReplicaSelection();
+      for (final SingleRequestHandler h : speculativeHandlers) {
+        LOGGER.debug("Sending speculative request {} to server {} for server {}", request.getRequestId(),
+            h.getServer(), _handler.getServer());
+        request.onSpeculativeRequestSent(_handler.getServer(), h.getServer());
+        if (null != replicaSelection) {
+          replicaSelection.onRequestSent(h.getServer());
+        }
+        final long requestStartTimeMs = System.currentTimeMillis();
+        _executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            h.run();
+            if (null != h.getResponseFuture()) {
+              addResponseLatencyListener(replicaSelection, h.getServer(), h.getResponseFuture(), requestStartTimeMs);
+            } else if (null != replicaSelection) {
+              // Cancelled before being dispatched, release the request the replica selection was told about above
+              replicaSelection.onRequestCancelled(h.getServer());
+            }
+            listen(h);
+          }
+        });
+      }
+    }
+
+    /**
+     * Selects the servers for the speculative requests among the candidates hosting the segment-set, preferring the
+     * servers not queried for any other segment-set of the request yet.
+     */
+    private List<ServerInstance> selectSpeculativeServers() {
+      List<ServerInstance> unqueriedServers = new ArrayList<ServerInstance>();
+      List<ServerInstance> queriedServers = new ArrayList<ServerInstance>();
+      List<ServerInstance> candidates =
+          _ctxt.getRequest().getSpeculativeServers(_handler.getServer(), _handler.getSegmentIds());
+      if (null != candidates) {
+        for (ServerInstance candidate : candidates) {
+          if (candidate.equals(_handler.getServer())) {
+            continue;
+          }
+          if (_queriedServers.contains(candidate)) {
+            queriedServers.add(candidate);
+          } else {
+            unqueriedServers.add(candidate);
+          }
+        }
+      }
+
+      List<ServerInstance> selectedServers = new ArrayList<ServerInstance>();
+      selectServers(unqueriedServers, selectedServers);
+      selectServers(queriedServers, selectedServers);
+      _queriedServers.addAll(selectedServers);
+      return selectedServers;
+    }
+
+    private void selectServers(List<ServerInstance> candidates, List<ServerInstance> selectedServers) {
+      ScatterGatherRequest request = _ctxt.getRequest();
+      ReplicaSelection replicaSelection = request.getReplicaSelection();
+      while ((selectedServers.size() < _numSpeculativeRequests) && !candidates.isEmpty()) {
+        ServerInstance server = candidates.get(0);
+        if (null != replicaSelection) {
+          server = replicaSelection.selectServer(_handler.getSegmentIds().getOneSegment(), candidates,
+              request.getHashKey());
+        }
+        candidates.remove(server);
+        selectedServers.add(server);
+      }
+    }
+
+    private void listen(final SingleRequestHandler h) {
+      final ResponseFuture responseFuture = h.getResponseFuture();
+      if (null == responseFuture) {
+        // Cancelled before the request got sent
+        onResponse(h, null);
+        return;
+      }
+      responseFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onResponse(h, responseFuture);
+        }
+      }, null);
+    }
+
+    private void onResponse(SingleRequestHandler h, ResponseFuture responseFuture) {
+      ByteBuf response = null;
+      Throwable error = null;
+      if ((null != responseFuture) && !responseFuture.isCancelled()) {
+        try {
+          response = responseFuture.getOne();
+        } catch (Exception e) {
+          error = e;
+        }
+        Map<ServerInstance, Throwable> errors = responseFuture.getError();
+        if ((null != errors) && !errors.isEmpty()) {
+          error = errors.values().iterator().next();
+        }
+      }
+      if ((null == response) && (null == error)) {
+        error = new Exception("No response from server " + h.getServer() + " for request "
+            + _ctxt.getRequest().getRequestId());
+      }
+
+      boolean useResponse = false;
+      boolean speculate = false;
+      boolean failed = false;
+      List<SingleRequestHandler> otherHandlers = null;
+      synchronized (this) {
+        _numPendingRequests--;
+        if (!_done) {
+          if (null != response) {
+            useResponse = true;
+            _done = true;
+            otherHandlers = new ArrayList<SingleRequestHandler>(_handlers);
+            otherHandlers.remove(h);
+          } else {
+            _lastError = error;
+            if (!_speculated) {
+              // No need to wait for the delay, the original request failed already
+              speculate = true;
+            } else if (_numPendingRequests == 0) {
+              _done = true;
+              failed = true;
+            }
+          }
+        }
+      }
+
+      if (useResponse) {
+        cancelSpeculativeRequestTimeout();
+        _future.onSuccess(response);
+        if (h != _handler) {
+          LOGGER.debug("Using response from speculative request {} to server {} for server {}",
+              _ctxt.getRequest().getRequestId(), h.getServer(), _handler.getServer());
+          _ctxt.getRequest().onSpeculativeResponseUsed(_handler.getServer(), h.getServer());
+        }
+        cancel(otherHandlers);
+      } else if (null != response) {
+        // Lost the race, nobody reads this response
+        if (response.refCnt() > 0) {
+          response.release();
+        }
+      } else if (speculate) {
+        cancelSpeculativeRequestTimeout();
+        sendSpeculativeRequests();
+      } else if (failed) {
+        _future.onError(error);
+      }
+    }
+
+    private void cancelSpeculativeRequestTimeout() {
+      ScheduledFuture<?> speculativeRequestTimeout;
+      synchronized (this) {
+        speculativeRequestTimeout = _speculativeRequestTimeout;
+      }
+      if (null != speculativeRequestTimeout) {
+        speculativeRequestTimeout.cancel(false);
+      }
+    }
+
+    /**
+     * Cancels the given requests. The handlers may still be checking out connections and block cancellation till
+     * then, so this is done off the calling (possibly netty) thread.
+     */
+    private void cancel(final List<SingleRequestHandler> handlers) {
+      if (handlers.isEmpty()) {
+        return;
+      }
+      _executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (SingleRequestHandler h : handlers) {
+            h.cancel();
+          }
+        }
+      });
+    }
+
+    /**
+     * Called when the future is cancelled, cancels all the requests for the segment-set.
+     */
+    @Override
+    public boolean cancel() {
+      List<SingleRequestHandler> handlers;
+      synchronized (this) {
+        _done = true;
+        handlers = new ArrayList<SingleRequestHandler>(_handlers);
+      }
+      cancelSpeculativeRequestTimeout();
+      cancel(handlers);
+      return true;
+    }
+  }
+
   public Histogram getLatency() {
     return _latency;
   }
 
+  /**
+   * Reports the latency of a single server request back to the replica selection once its response future completes.
+   */
+  private static class ResponseLatencyListener implements Runnable {
+    private final ReplicaSelection _replicaSelection;
+    private final ServerInstance _server;
+    private final ResponseFuture _responseFuture;
+    private final long _requestStartTimeMs;
+
+    public ResponseLatencyListener(ReplicaSelection replicaSelection, ServerInstance server,
+        ResponseFuture responseFuture, long requestStartTimeMs) {
+      _replicaSelection = replicaSelection;
+      _server = server;
+      _responseFuture = responseFuture;
+      _requestStartTimeMs = requestStartTimeMs;
+    }
+
+    @Override
+    public void run() {
+      if (_responseFuture.isCancelled()) {
+        _replicaSelection.onRequestCancelled(_server);
+        return;
+      }
+      boolean isError = null != _responseFuture.getError();
+      _replicaSelection.onResponseReceived(_server, System.currentTimeMillis() - _requestStartTimeMs, isError);
+    }
+  }
+
   /**
    * This is used to checkin the connections once the responses/errors are obtained
    *
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.transport.scattergather;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
@@ -74,10 +75,43 @@ public interface ScatterGatherRequest {
    * to be sent foe each scattered request. To turn off speculative requests, this method should
    * return 0.
    *
-   * TODO: Currently Not implemented
+   * Speculative requests are only sent for the segment-sets whose server has not responded within
+   * {@link #getSpeculativeRequestDelayMS()}, the first response for the segment-set is used and the
+   * other requests for it are cancelled.
    */
   public int getNumSpeculativeRequests();
 
+  /**
+   * Return the delay in MS after which speculative requests are sent for a segment-set whose server
+   * has not responded yet. Only used if {@link #getNumSpeculativeRequests()} is positive.
+   * @return
+   */
+  public long getSpeculativeRequestDelayMS();
+
+  /**
+   * Return the candidate servers, other than the given one, which host all the given segments and
+   * can hence be sent a speculative request for them. Only called once a speculative request is due.
+   * @param service Service the segments were originally sent to.
+   * @param querySegments Segments queried in the service.
+   * @return candidate servers, empty if there are none.
+   */
+  public List<ServerInstance> getSpeculativeServers(ServerInstance service, SegmentIdSet querySegments);
+
+  /**
+   * Called when a speculative request has been sent, for tracking.
+   * @param service Service the segments were originally sent to.
+   * @param speculativeService Service the speculative request was sent to.
+   */
+  public void onSpeculativeRequestSent(ServerInstance service, ServerInstance speculativeService);
+
+  /**
+   * Called when the response to a speculative request arrived first and is used instead of the
+   * response of the original service, for tracking.
+   * @param service Service the segments were originally sent to.
+   * @param speculativeService Service whose response is used.
+   */
+  public void onSpeculativeResponseUsed(ServerInstance service, ServerInstance speculativeService);
+
   /**
    * Used for diagnostics, A predefined selection of service can be chosen for each segments
    * and sent to the Scatter-Gather. Scatter-Gather will honor such selection and do not override them.
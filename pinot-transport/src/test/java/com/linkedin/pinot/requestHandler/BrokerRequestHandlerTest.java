@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.query.IncrementalReducer;
+import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.InstanceResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.routing.TimeBoundaryService;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.scattergather.ScatterGather;
+import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class BrokerRequestHandlerTest {
+  private static final String TABLE_NAME = "myTable_OFFLINE";
+  private static final String REALTIME_TABLE_NAME = "myTable_REALTIME";
+  private static final ServerInstance SERVER_1 = new ServerInstance("localhost", 9000);
+  private static final ServerInstance SERVER_2 = new ServerInstance("localhost", 9001);
+
+  private static BrokerRequest getBrokerRequest() {
+    BrokerRequest request = new BrokerRequest();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("myTable");
+    request.setQuerySource(querySource);
+    return request;
+  }
+
+  @Test
+  public void testPartialResultNotCached() throws Exception {
+    TestScatterGather scatterGather = new TestScatterGather(true);
+    BrokerResultCache cache = new BrokerResultCache(100, 60000, 0);
+    BrokerRequestHandler handler = getRequestHandler(scatterGather, cache);
+
+    handler.processBrokerRequest(getBrokerRequest(), null);
+    Assert.assertEquals(cache.size(), 0);
+    handler.processBrokerRequest(getBrokerRequest(), null);
+    Assert.assertEquals(scatterGather._numRequests.get(), 2);
+  }
+
+  @Test
+  public void testCompleteResultCached() throws Exception {
+    TestScatterGather scatterGather = new TestScatterGather(false);
+    BrokerResultCache cache = new BrokerResultCache(100, 60000, 0);
+    BrokerRequestHandler handler = getRequestHandler(scatterGather, cache);
+
+    Object response = handler.processBrokerRequest(getBrokerRequest(), null);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertSame(handler.processBrokerRequest(getBrokerRequest(), null), response);
+    Assert.assertEquals(scatterGather._numRequests.get(), 1);
+  }
+
+  @Test(timeOut = 10000)
+  public void testHybridResponsesReducedInCompletionOrder() throws Exception {
+    // The realtime servers only respond once an offline response got reduced, which never happens if the broker waits
+    // for all the realtime responses first
+    final List<String> reducedTables = Collections.synchronizedList(new ArrayList<String>());
+    final List<AsyncResponseFuture<ServerInstance, ByteBuf>> realtimeFutures =
+        new ArrayList<AsyncResponseFuture<ServerInstance, ByteBuf>>();
+    ScatterGather scatterGather = new ScatterGather() {
+      @Override
+      public CompositeFuture<ServerInstance, ByteBuf> scatterGather(ScatterGatherRequest scatterRequest)
+          throws InterruptedException {
+        // Segments are named after their table
+        String tableName =
+            scatterRequest.getSegmentsServicesMap().get(SERVER_1).getOneSegment().getSegmentId().split("/")[0];
+        List<KeyedFuture<ServerInstance, ByteBuf>> futures = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+        for (ServerInstance server : Arrays.asList(SERVER_1, SERVER_2)) {
+          AsyncResponseFuture<ServerInstance, ByteBuf> future =
+              new AsyncResponseFuture<ServerInstance, ByteBuf>(server, tableName + " " + server);
+          if (tableName.equals(TABLE_NAME)) {
+            try {
+              future.onSuccess(getResponse(tableName));
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          } else {
+            realtimeFutures.add(future);
+          }
+          futures.add(future);
+        }
+        CompositeFuture<ServerInstance, ByteBuf> response =
+            new CompositeFuture<ServerInstance, ByteBuf>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+        response.start(futures);
+        return response;
+      }
+    };
+    ReduceService reduceService = new TestReduceService() {
+      @Override
+      public IncrementalReducer getIncrementalReducer(BrokerRequest brokerRequest) {
+        return new IncrementalReducer() {
+          @Override
+          public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+            reducedTables.add(instanceResponse.getMetadata().get("table"));
+            if (reducedTables.size() == 1) {
+              for (AsyncResponseFuture<ServerInstance, ByteBuf> realtimeFuture : realtimeFutures) {
+                try {
+                  realtimeFuture.onSuccess(getResponse(REALTIME_TABLE_NAME));
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            }
+          }
+
+          @Override
+          public BrokerResponse getBrokerResponse() {
+            return new BrokerResponse();
+          }
+        };
+      }
+    };
+    BrokerRequestHandler handler =
+        new BrokerRequestHandler.BrokerRequestHandlerBuilder()
+            .setRoutingTable(new TestRoutingTable(TABLE_NAME, REALTIME_TABLE_NAME))
+            .setTimeBoundaryService(new TestTimeBoundaryService()).setScatterGather(scatterGather)
+            .setReduceService(reduceService).setBrokerMetrics(new BrokerMetrics(new MetricsRegistry()))
+            .setBrokerTimeOut(1000L).build();
+
+    handler.processBrokerRequest(getBrokerRequest(), null);
+    Assert.assertEquals(reducedTables,
+        Arrays.asList(TABLE_NAME, TABLE_NAME, REALTIME_TABLE_NAME, REALTIME_TABLE_NAME));
+  }
+
+  private static ByteBuf getResponse(String tableName) throws Exception {
+    Map<String, String> metadata = new HashMap<String, String>();
+    metadata.put("table", tableName);
+    return Unpooled.wrappedBuffer(new DataTable(metadata).toBytes());
+  }
+
+  private static BrokerRequestHandler getRequestHandler(ScatterGather scatterGather, BrokerResultCache cache) {
+    return new BrokerRequestHandler.BrokerRequestHandlerBuilder().setRoutingTable(new TestRoutingTable(TABLE_NAME))
+        .setTimeBoundaryService(new TestTimeBoundaryService()).setScatterGather(scatterGather)
+        .setReduceService(new TestReduceService()).setBrokerMetrics(new BrokerMetrics(new MetricsRegistry()))
+        .setBrokerTimeOut(1000L).setResultCache(cache).build();
+  }
+
+  /**
+   * Answers each request from the two servers of the table, the second one times out if asked to.
+   */
+  private static class TestScatterGather implements ScatterGather {
+    private final boolean _secondServerTimesOut;
+    private final AtomicInteger _numRequests = new AtomicInteger();
+
+    private TestScatterGather(boolean secondServerTimesOut) {
+      _secondServerTimesOut = secondServerTimesOut;
+    }
+
+    @Override
+    public CompositeFuture<ServerInstance, ByteBuf> scatterGather(ScatterGatherRequest scatterRequest)
+        throws InterruptedException {
+      _numRequests.incrementAndGet();
+      List<KeyedFuture<ServerInstance, ByteBuf>> futures = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      try {
+        AsyncResponseFuture<ServerInstance, ByteBuf> future1 =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(SERVER_1, "server1");
+        future1.onSuccess(Unpooled.wrappedBuffer(new DataTable(new HashMap<String, String>()).toBytes()));
+        futures.add(future1);
+        AsyncResponseFuture<ServerInstance, ByteBuf> future2 =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(SERVER_2, "server2");
+        if (_secondServerTimesOut) {
+          future2.onError(new TimeoutException("Timed out waiting for " + SERVER_2));
+        } else {
+          future2.onSuccess(Unpooled.wrappedBuffer(new DataTable(new HashMap<String, String>()).toBytes()));
+        }
+        futures.add(future2);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      CompositeFuture<ServerInstance, ByteBuf> response =
+          new CompositeFuture<ServerInstance, ByteBuf>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+      response.start(futures);
+      return response;
+    }
+  }
+
+  private static class TestRoutingTable implements RoutingTable {
+    private final List<String> _tableNames;
+
+    private TestRoutingTable(String... tableNames) {
+      _tableNames = Arrays.asList(tableNames);
+    }
+
+    @Override
+    public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request) {
+      if (!_tableNames.contains(request.getTableName())) {
+        return null;
+      }
+      Map<ServerInstance, SegmentIdSet> servers = new HashMap<ServerInstance, SegmentIdSet>();
+      servers.put(SERVER_1, getSegmentIdSet(request.getTableName() + "/segment1"));
+      servers.put(SERVER_2, getSegmentIdSet(request.getTableName() + "/segment2"));
+      return servers;
+    }
+
+    private static SegmentIdSet getSegmentIdSet(String segmentName) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      segmentIdSet.addSegment(new SegmentId(segmentName));
+      return segmentIdSet;
+    }
+
+    @Override
+    public List<ServerInstance> findServersHostingSegments(RoutingTableLookupRequest request,
+        SegmentIdSet segmentIds) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+
+  private static class TestTimeBoundaryService implements TimeBoundaryService {
+    @Override
+    public TimeBoundaryInfo getTimeBoundaryInfoFor(String table) {
+      return null;
+    }
+
+    @Override
+    public void remove(String tableName) {
+    }
+  }
+
+  private static class TestReduceService implements ReduceService {
+    @Override
+    public BrokerResponse reduce(BrokerRequest brokerRequest,
+        Map<ServerInstance, InstanceResponse> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
+        Map<ServerInstance, DataTable> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IncrementalReducer getIncrementalReducer(BrokerRequest brokerRequest) {
+      return new IncrementalReducer() {
+        private final BrokerResponse _brokerResponse = new BrokerResponse();
+
+        @Override
+        public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+        }
+
+        @Override
+        public BrokerResponse getBrokerResponse() {
+          return _brokerResponse;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+
+
+public class BrokerResultCacheTest {
+  private static final List<String> OFFLINE_TABLE = Collections.singletonList("myTable_OFFLINE");
+  private static final List<String> HYBRID_TABLE = Arrays.asList("myTable_REALTIME", "myTable_OFFLINE");
+
+  private static BrokerRequest getBrokerRequest(String tableName, int limit) {
+    BrokerRequest request = new BrokerRequest();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    request.setQuerySource(querySource);
+    request.setBucketHashKey("limit" + limit);
+    return request;
+  }
+
+  @Test
+  public void testHitAndInvalidation() {
+    BrokerResultCache cache = new BrokerResultCache(100, 60000, 0);
+    BrokerRequest request = getBrokerRequest("myTable", 10);
+    BrokerResultCache.CacheKey key = cache.getCacheKey(request, OFFLINE_TABLE);
+    Assert.assertNull(cache.get(key));
+
+    BrokerResponse response = new BrokerResponse();
+    cache.put(key, response);
+    // The key is a snapshot, the handler rewrites the table name of the request afterwards
+    request.getQuerySource().setTableName("myTable_OFFLINE");
+    Assert.assertSame(cache.get(cache.getCacheKey(getBrokerRequest("myTable", 10), OFFLINE_TABLE)), response);
+    Assert.assertNull(cache.get(cache.getCacheKey(getBrokerRequest("myTable", 20), OFFLINE_TABLE)));
+
+    // Unrelated table changes keep the entry
+    cache.onRoutingTableChange("otherTable_OFFLINE");
+    Assert.assertSame(cache.get(cache.getCacheKey(getBrokerRequest("myTable", 10), OFFLINE_TABLE)), response);
+
+    cache.onRoutingTableChange("myTable_OFFLINE");
+    Assert.assertEquals(cache.size(), 0);
+    Assert.assertNull(cache.get(cache.getCacheKey(getBrokerRequest("myTable", 10), OFFLINE_TABLE)));
+
+    // A result computed across a routing change is not cached
+    BrokerResultCache.CacheKey staleKey = cache.getCacheKey(getBrokerRequest("myTable", 10), OFFLINE_TABLE);
+    cache.onRoutingTableChange("myTable_OFFLINE");
+    cache.put(staleKey, response);
+    Assert.assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testBypass() {
+    BrokerResultCache cache = new BrokerResultCache(100, 60000, 0);
+    Assert.assertNull(cache.getCacheKey(getBrokerRequest("myTable", 10), HYBRID_TABLE));
+
+    BrokerRequest tracedRequest = getBrokerRequest("myTable", 10);
+    tracedRequest.setEnableTrace(true);
+    Assert.assertNull(cache.getCacheKey(tracedRequest, OFFLINE_TABLE));
+
+    BrokerResponse failedResponse = new BrokerResponse();
+    failedResponse.addToExceptions(new ProcessingException(-1));
+    BrokerResultCache.CacheKey key = cache.getCacheKey(getBrokerRequest("myTable", 10), OFFLINE_TABLE);
+    cache.put(key, failedResponse);
+    Assert.assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testRealtimeTtl() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(100, 60000, 50);
+    BrokerResultCache.CacheKey key = cache.getCacheKey(getBrokerRequest("myTable", 10), HYBRID_TABLE);
+    BrokerResponse response = new BrokerResponse();
+    cache.put(key, response);
+    Assert.assertSame(cache.get(key), response);
+    Thread.sleep(100);
+    Assert.assertNull(cache.get(key));
+  }
+}
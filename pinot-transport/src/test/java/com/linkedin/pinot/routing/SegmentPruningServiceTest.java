@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.client.request.RequestConverter;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.pql.parsers.PQLCompiler;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+public class SegmentPruningServiceTest {
+
+  private static final PQLCompiler REQUEST_COMPILER = new PQLCompiler(new HashMap<String, String[]>());
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+
+  private final ServerInstance _server0 = new ServerInstance("localhost", 9000);
+  private final ServerInstance _server1 = new ServerInstance("localhost", 9001);
+  private HelixExternalViewBasedSegmentPruningService _segmentPruningService;
+  private Map<ServerInstance, SegmentIdSet> _segmentServices;
+
+  @BeforeClass
+  public void setUp() {
+    // Segment i covers days [10 * i, 10 * i + 9], server0 hosts segments 0 and 1, server1 hosts segments 2 and 3
+    List<OfflineSegmentZKMetadata> segmentZKMetadataList = new ArrayList<OfflineSegmentZKMetadata>();
+    Set<String> segmentsServing = new HashSet<String>();
+    _segmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+    _segmentServices.put(_server0, new SegmentIdSet());
+    _segmentServices.put(_server1, new SegmentIdSet());
+    for (int i = 0; i < 4; i++) {
+      OfflineSegmentZKMetadata segmentZKMetadata = new OfflineSegmentZKMetadata();
+      segmentZKMetadata.setSegmentName("segment" + i);
+      segmentZKMetadata.setTimeUnit(TimeUnit.DAYS);
+      segmentZKMetadata.setStartTime(10 * i);
+      segmentZKMetadata.setEndTime(10 * i + 9);
+      segmentZKMetadataList.add(segmentZKMetadata);
+      segmentsServing.add("segment" + i);
+      _segmentServices.get(i < 2 ? _server0 : _server1).addSegment(new SegmentId("segment" + i));
+    }
+
+    _segmentPruningService = new HelixExternalViewBasedSegmentPruningService(null);
+    _segmentPruningService.updateTimeIntervals(TABLE_NAME, "daysSinceEpoch", TimeUnit.DAYS, segmentsServing,
+        segmentZKMetadataList);
+  }
+
+  private Map<ServerInstance, SegmentIdSet> prune(String filter) throws Exception {
+    BrokerRequest brokerRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from " + TABLE_NAME + " where " + filter));
+    return _segmentPruningService.prune(brokerRequest, _segmentServices);
+  }
+
+  private static Set<String> getSegments(Map<ServerInstance, SegmentIdSet> segmentServices) {
+    Set<String> segments = new HashSet<String>();
+    for (SegmentIdSet segmentIdSet : segmentServices.values()) {
+      segments.addAll(segmentIdSet.getSegmentsNameList());
+    }
+    return segments;
+  }
+
+  @Test
+  public void testPruneOnTimeColumn() throws Exception {
+    Map<ServerInstance, SegmentIdSet> pruned = prune("daysSinceEpoch = '15'");
+    Assert.assertEquals(pruned.keySet(), new HashSet<ServerInstance>(Arrays.asList(_server0)));
+    Assert.assertEquals(getSegments(pruned), new HashSet<String>(Arrays.asList("segment1")));
+
+    pruned = prune("daysSinceEpoch between 19 and 20");
+    Assert.assertEquals(getSegments(pruned), new HashSet<String>(Arrays.asList("segment1", "segment2")));
+
+    pruned = prune("daysSinceEpoch > 29");
+    Assert.assertEquals(pruned.keySet(), new HashSet<ServerInstance>(Arrays.asList(_server1)));
+    Assert.assertEquals(getSegments(pruned), new HashSet<String>(Arrays.asList("segment3")));
+
+    pruned = prune("daysSinceEpoch in ('5', '35')");
+    Assert.assertEquals(getSegments(pruned), new HashSet<String>(Arrays.asList("segment0", "segment3")));
+
+    pruned = prune("daysSinceEpoch = '5' or (daysSinceEpoch >= 30 and column1 = 'x')");
+    Assert.assertEquals(getSegments(pruned), new HashSet<String>(Arrays.asList("segment0", "segment3")));
+  }
+
+  @Test
+  public void testNoPruning() throws Exception {
+    Assert.assertSame(prune("column1 = 'x'"), _segmentServices);
+    Assert.assertSame(prune("daysSinceEpoch <> '5'"), _segmentServices);
+    Assert.assertSame(prune("daysSinceEpoch = '5' or column1 = 'x'"), _segmentServices);
+    Assert.assertSame(prune("daysSinceEpoch = 'notANumber'"), _segmentServices);
+
+    BrokerRequest otherTableRequest =
+        RequestConverter.fromJSON(REQUEST_COMPILER.compile("select count(*) from otherTable where daysSinceEpoch = 5"));
+    Assert.assertSame(_segmentPruningService.prune(otherTableRequest, _segmentServices), _segmentServices);
+  }
+
+  @Test
+  public void testKeepOneSegmentWhenAllPruned() throws Exception {
+    Map<ServerInstance, SegmentIdSet> pruned = prune("daysSinceEpoch > 100");
+    Assert.assertEquals(getSegments(pruned).size(), 1);
+    Assert.assertEquals(_segmentServices.get(_server0).getSegments().size(), 2);
+    Assert.assertEquals(_segmentServices.get(_server1).getSegments().size(), 2);
+  }
+}
@@ -584,6 +584,39 @@ public class CompositeFutureTest {
     }
   }
 
+  @Test
+  /**
+   * Underlying futures are returned in completion order, then null once the composite is done.
+   * @throws Exception
+   */
+  public void testTakeCompletedFuture() throws Exception {
+    int numFutures = 10;
+    List<AsyncResponseFuture<String, String>> futures = new ArrayList<AsyncResponseFuture<String, String>>();
+    for (int i = 0; i < numFutures; i++) {
+      futures.add(new AsyncResponseFuture<String, String>("key_" + i, ""));
+    }
+    CompositeFuture<String, String> compositeFuture =
+        new CompositeFuture<String, String>("test", GatherModeOnError.AND);
+    compositeFuture.start(new ArrayList<KeyedFuture<String, String>>(futures));
+
+    // Complete the futures in reverse order
+    for (int i = numFutures - 1; i >= 0; i--) {
+      futures.get(i).onSuccess("message_" + i);
+      KeyedFuture<String, String> completedFuture = compositeFuture.takeCompletedFuture();
+      Assert.assertSame(completedFuture, futures.get(i));
+      Assert.assertEquals(completedFuture.get().get("key_" + i), "message_" + i);
+    }
+    Assert.assertNull(compositeFuture.takeCompletedFuture());
+    Assert.assertNull(compositeFuture.takeCompletedFuture());
+    Assert.assertTrue(compositeFuture.isDone());
+
+    // No underlying futures
+    CompositeFuture<String, String> emptyCompositeFuture =
+        new CompositeFuture<String, String>("empty", GatherModeOnError.AND);
+    emptyCompositeFuture.start(new ArrayList<KeyedFuture<String, String>>());
+    Assert.assertNull(emptyCompositeFuture.takeCompletedFuture());
+  }
+
   /**
    * Same class used both as a listener and the one that blocks on get().
    */
@@ -90,6 +90,54 @@ public class ReplicaSelectionTest {
 
   }
 
+  @Test
+  public void testLatencyAwareSelection() {
+    // No decay, so that the test does not depend on timing
+    LatencyAwareReplicaSelection sel = new LatencyAwareReplicaSelection(0.5, 0, 1000);
+
+    ServerInstance s1 = new ServerInstance("localhost", 8080);
+    ServerInstance s2 = new ServerInstance("localhost", 8081);
+    List<ServerInstance> candidates = new ArrayList<ServerInstance>();
+    Assert.assertNull(sel.selectServer(new SegmentId("1"), candidates, null));
+    candidates.add(s1);
+    Assert.assertEquals(sel.selectServer(new SegmentId("1"), candidates, null), s1);
+    candidates.add(s2);
+
+    // s1 is slow, s2 is fast: every selection goes to s2
+    sel.onRequestSent(s1);
+    sel.onResponseReceived(s1, 500, false);
+    sel.onRequestSent(s2);
+    sel.onResponseReceived(s2, 10, false);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(sel.selectServer(new SegmentId("1"), candidates, null), s2);
+    }
+
+    // Requests piling up on s2 make it more expensive than s1
+    for (int i = 0; i < 100; i++) {
+      sel.onRequestSent(s2);
+    }
+    Assert.assertTrue(sel.getCost(s2) > sel.getCost(s1));
+    Assert.assertEquals(sel.selectServer(new SegmentId("1"), candidates, null), s1);
+    for (int i = 0; i < 100; i++) {
+      sel.onResponseReceived(s2, 10, false);
+    }
+    Assert.assertEquals(sel.selectServer(new SegmentId("1"), candidates, null), s2);
+
+    // Failing fast must not make a server look fast
+    sel.onRequestSent(s2);
+    sel.onResponseReceived(s2, 1, true);
+    Assert.assertTrue(sel.getCost(s2) > 500);
+    Assert.assertEquals(sel.getMaxCost(Arrays.asList(s1, s2)), sel.getCost(s2));
+
+    // Cancellations release the request but are neither a latency nor an error sample
+    double cost = sel.getCost(s1);
+    sel.onRequestSent(s1);
+    Assert.assertEquals(sel.getNumOutstandingRequests(s1), 1);
+    sel.onRequestCancelled(s1);
+    Assert.assertEquals(sel.getNumOutstandingRequests(s1), 0);
+    Assert.assertEquals(sel.getCost(s1), cost);
+  }
+
   public static class BucketKey {
     private final int _key;
 
@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
+import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
+import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
+
+
+public class NettyMultiplexedConnectionTest {
+  private static final int PORT = 9091;
+
+  private final HeldRequestHandler _handler = new HeldRequestHandler();
+  private final ServerInstance _server = new ServerInstance("localhost", PORT);
+  private NettyTCPServer _serverConn;
+  private EventLoopGroup _eventLoopGroup;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _serverConn = new NettyTCPServer(PORT, new RequestHandlerFactory() {
+      @Override
+      public RequestHandler createNewRequestHandler() {
+        return _handler;
+      }
+    }, null, 100, true);
+    new Thread(_serverConn, "ServerMain").start();
+    Thread.sleep(1000);
+    _eventLoopGroup = new NioEventLoopGroup();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _serverConn.shutdownGracefully();
+    _eventLoopGroup.shutdownGracefully();
+  }
+
+  @Test
+  public void testOutOfOrderResponses() throws Exception {
+    NettyMultiplexedClientConnection clientConn = newConnection(10);
+    try {
+      ResponseFuture first = send(clientConn, "first", 1L, 5000L);
+      ResponseFuture second = send(clientConn, "second", 2L, 5000L);
+      ResponseFuture third = send(clientConn, "third", 3L, 5000L);
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 3);
+
+      // Answer in reverse order
+      _handler.respond("third");
+      Assert.assertEquals(toString(third.getOne(5, TimeUnit.SECONDS)), "response to third");
+      _handler.respond("second");
+      _handler.respond("first");
+      Assert.assertEquals(toString(first.getOne(5, TimeUnit.SECONDS)), "response to first");
+      Assert.assertEquals(toString(second.getOne(5, TimeUnit.SECONDS)), "response to second");
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 0);
+    } finally {
+      clientConn.close();
+    }
+  }
+
+  @Test
+  public void testTimeoutKeepsConnectionOpen() throws Exception {
+    NettyMultiplexedClientConnection clientConn = newConnection(10);
+    try {
+      ResponseFuture slow = send(clientConn, "slow", 1L, 200L);
+      ResponseFuture fast = send(clientConn, "fast", 2L, 5000L);
+      Assert.assertNull(slow.getOne(5, TimeUnit.SECONDS));
+      Assert.assertNotNull(slow.getError());
+
+      _handler.respond("fast");
+      Assert.assertEquals(toString(fast.getOne(5, TimeUnit.SECONDS)), "response to fast");
+      Assert.assertTrue(clientConn.validate());
+
+      // The late response is dropped
+      _handler.respond("slow");
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 0);
+    } finally {
+      clientConn.close();
+    }
+  }
+
+  @Test
+  public void testBackPressure() throws Exception {
+    NettyMultiplexedClientConnection clientConn = newConnection(1);
+    try {
+      ResponseFuture first = send(clientConn, "held", 1L, 5000L);
+      ResponseFuture rejected = send(clientConn, "rejected", 2L, 100L);
+      Assert.assertTrue(rejected.isDone());
+      Assert.assertTrue(rejected.getError().get(_server) instanceof TimeoutException);
+
+      _handler.respond("held");
+      Assert.assertEquals(toString(first.getOne(5, TimeUnit.SECONDS)), "response to held");
+
+      ResponseFuture pending = send(clientConn, "pending", 3L, 5000L);
+      Assert.assertTrue(pending.cancel(true));
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 0);
+      _handler.respond("pending");
+    } finally {
+      clientConn.close();
+    }
+  }
+
+  @Test
+  public void testSameRequestIdOutstandingTwice() throws Exception {
+    NettyMultiplexedClientConnection clientConn = newConnection(10);
+    try {
+      // Speculative requests to an already queried server reuse the id of the original request
+      ResponseFuture original = send(clientConn, "original", 1L, 5000L);
+      ResponseFuture speculative = send(clientConn, "speculative", 1L, 5000L);
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 2);
+
+      _handler.respond("speculative");
+      Assert.assertEquals(toString(speculative.getOne(5, TimeUnit.SECONDS)), "response to speculative");
+      Assert.assertFalse(original.isDone());
+      _handler.respond("original");
+      Assert.assertEquals(toString(original.getOne(5, TimeUnit.SECONDS)), "response to original");
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 0);
+    } finally {
+      clientConn.close();
+    }
+  }
+
+  @Test
+  public void testPoolSharesConnections() throws Exception {
+    MultiplexedNettyClientPool pool =
+        new MultiplexedNettyClientPool(2, 10, _eventLoopGroup, new HashedWheelTimer(), newMetrics());
+    try {
+      NettyClientConnection first = checkout(pool);
+      NettyClientConnection second = checkout(pool);
+      Assert.assertNotSame(first, second);
+      Assert.assertSame(checkout(pool), first);
+      Assert.assertSame(checkout(pool), second);
+
+      pool.destroyObject(_server, first);
+      Assert.assertFalse(first.validate());
+      NettyClientConnection replacement = checkout(pool);
+      Assert.assertNotSame(replacement, first);
+      Assert.assertTrue(replacement.validate());
+      Assert.assertEquals(pool.getStats().getTotalCreated(), 3);
+    } finally {
+      pool.shutdown().get();
+    }
+  }
+
+  @Test
+  public void testPoolCapsConcurrentConnects() throws Exception {
+    final MultiplexedNettyClientPool pool =
+        new MultiplexedNettyClientPool(2, 10, _eventLoopGroup, new HashedWheelTimer(), newMetrics());
+    try {
+      // A burst of checkouts on a cold pool must not open more connections than the pool holds
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<NettyClientConnection>> connections = new ArrayList<Future<NettyClientConnection>>();
+      ExecutorService executor = Executors.newFixedThreadPool(10);
+      for (int i = 0; i < 10; i++) {
+        connections.add(executor.submit(new Callable<NettyClientConnection>() {
+          @Override
+          public NettyClientConnection call() throws Exception {
+            start.await();
+            return checkout(pool);
+          }
+        }));
+      }
+      start.countDown();
+      Set<NettyClientConnection> distinctConnections = new HashSet<NettyClientConnection>();
+      for (Future<NettyClientConnection> connection : connections) {
+        distinctConnections.add(connection.get(5, TimeUnit.SECONDS));
+      }
+      executor.shutdown();
+      Assert.assertEquals(distinctConnections.size(), 2);
+      Assert.assertEquals(pool.getStats().getTotalCreated(), 2);
+    } finally {
+      pool.shutdown().get();
+    }
+  }
+
+  private NettyClientConnection checkout(MultiplexedNettyClientPool pool) throws Exception {
+    KeyedFuture<ServerInstance, NettyClientConnection> future = pool.checkoutObject(_server);
+    return future.getOne();
+  }
+
+  private NettyMultiplexedClientConnection newConnection(int maxOutstandingRequests) {
+    NettyMultiplexedClientConnection clientConn =
+        new NettyMultiplexedClientConnection(_server, _eventLoopGroup, new HashedWheelTimer(), newMetrics(),
+            maxOutstandingRequests);
+    Assert.assertTrue(clientConn.connect(), "connected");
+    return clientConn;
+  }
+
+  private static NettyClientMetrics newMetrics() {
+    return new NettyClientMetrics(null, "abc");
+  }
+
+  private static ResponseFuture send(NettyClientConnection clientConn, String request, long requestId,
+      long timeoutMs) {
+    return clientConn.sendRequest(Unpooled.wrappedBuffer(request.getBytes()), requestId, timeoutMs);
+  }
+
+  private static String toString(ByteBuf response) {
+    byte[] bytes = new byte[response.readableBytes()];
+    response.readBytes(bytes);
+    return new String(bytes);
+  }
+
+  /**
+   * Holds each request until the test responds to it.
+   */
+  private static class HeldRequestHandler implements RequestHandler {
+    private final ConcurrentMap<String, SettableFuture<byte[]>> _pendingResponses =
+        new ConcurrentHashMap<String, SettableFuture<byte[]>>();
+
+    @Override
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
+      String requestString = NettyMultiplexedConnectionTest.toString(request);
+      SettableFuture<byte[]> response = SettableFuture.create();
+      _pendingResponses.put(requestString, response);
+      return response;
+    }
+
+    void respond(String request) throws InterruptedException {
+      // The request may still be on its way to the server
+      while (!_pendingResponses.containsKey(request)) {
+        Thread.sleep(10);
+      }
+      _pendingResponses.remove(request).set(("response to " + request).getBytes());
+    }
+  }
+}
@@ -23,12 +23,16 @@ import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
 import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
@@ -121,6 +125,57 @@ public class NettySingleConnectionIntegrationTest {
     serverConn.shutdownGracefully();
   }
 
+  @Test
+  public void testNullResponseClosesChannel() throws Exception {
+    NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
+    int port = 9089;
+    RequestHandlerFactory handlerFactory = new RequestHandlerFactory() {
+      @Override
+      public RequestHandler createNewRequestHandler() {
+        return new RequestHandler() {
+          @Override
+          public ListenableFuture<byte[]> processRequest(ByteBuf request) {
+            // Complete the response later from another thread, as a query run by the scheduler does
+            final SettableFuture<byte[]> response = SettableFuture.create();
+            new Thread(new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  Thread.sleep(100);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                response.set(null);
+              }
+            }).start();
+            return response;
+          }
+        };
+      }
+    };
+    NettyTCPServer serverConn = new NettyTCPServer(port, handlerFactory, null);
+    Thread serverThread = new Thread(serverConn, "ServerMain");
+    serverThread.start();
+    Thread.sleep(1000);
+    ServerInstance server = new ServerInstance("localhost", port);
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyTCPClientConnection clientConn =
+        new NettyTCPClientConnection(server, eventLoopGroup, new HashedWheelTimer(), metric);
+    try {
+      Assert.assertTrue(clientConn.connect(), "connected");
+      String request = "dummy request";
+      // The server can not send a response, so it must close the channel rather than leave the request hanging
+      ResponseFuture serverRespFuture =
+          clientConn.sendRequest(Unpooled.wrappedBuffer(request.getBytes()), 1L, 60000L);
+      Assert.assertNull(serverRespFuture.getOne(10, TimeUnit.SECONDS));
+      Assert.assertNotNull(serverRespFuture.getError());
+      Assert.assertFalse(clientConn.validate());
+    } finally {
+      clientConn.close();
+      serverConn.shutdownGracefully();
+    }
+  }
+
   @Test
   public void testConcurrentRequestDispatchError() throws Exception {
     NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
@@ -352,7 +407,7 @@ public class NettySingleConnectionIntegrationTest {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
       byte[] b = new byte[request.readableBytes()];
       request.readBytes(b);
       if (null != _responseHandlingLatch) {
@@ -365,7 +420,7 @@ public class NettySingleConnectionIntegrationTest {
       _request = new String(b);
 
       //LOG.info("Server got the request (" + _request + ")");
-      return _response.getBytes();
+      return Futures.immediateFuture(_response.getBytes());
     }
 
     public String getRequest() {
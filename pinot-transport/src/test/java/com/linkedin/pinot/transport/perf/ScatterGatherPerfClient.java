@@ -25,6 +25,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -473,6 +474,24 @@ public class ScatterGatherPerfClient implements Runnable {
       return 0;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return 0;
+    }
+
+    @Override
+    public List<ServerInstance> getSpeculativeServers(ServerInstance service, SegmentIdSet querySegments) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void onSpeculativeRequestSent(ServerInstance service, ServerInstance speculativeService) {
+    }
+
+    @Override
+    public void onSpeculativeResponseUsed(ServerInstance service, ServerInstance speculativeService) {
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;
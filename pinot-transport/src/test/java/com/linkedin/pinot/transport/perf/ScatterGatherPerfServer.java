@@ -27,6 +27,8 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.linkedin.pinot.common.metrics.AggregatedMetricsRegistry;
 import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.transport.netty.NettyServer;
@@ -154,7 +156,7 @@ public class ScatterGatherPerfServer {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
       byte[] b = new byte[request.readableBytes()];
       request.readBytes(b);
       if (null != _responseHandlingLatch) {
@@ -176,7 +178,7 @@ public class ScatterGatherPerfServer {
         }
       }
       //LOG.info("Server got the request (" + _request + ")");
-      return _response.getBytes();
+      return Futures.immediateFuture(_response.getBytes());
     }
 
     public String getRequest() {
@@ -22,9 +22,12 @@ import io.netty.util.HashedWheelTimer;
 import io.netty.util.ResourceLeakDetector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,10 +41,13 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.LatencyAwareReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
 import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
@@ -599,6 +605,177 @@ public class ScatterGatherTest {
     server4.shutdownGracefully();
   }
 
+  @Test
+  public void testSpeculativeRequest() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start
+    int serverPort1 = 7101; // slow server
+    int serverPort2 = 7102; // replica of the slow server
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 2000, false), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ExecutorService poolExecutor = MoreExecutors.sameThreadExecutor();
+    ExecutorService service = new ThreadPoolExecutor(2, 2, 1, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, poolExecutor,
+            registry);
+    rm.setPool(pool);
+
+    SegmentIdSet pg1 = new SegmentIdSet();
+    pg1.addSegment(new SegmentId("0"));
+
+    ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg1);
+
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg1, "request_0");
+
+    Map<ServerInstance, List<ServerInstance>> speculativeServers = new HashMap<ServerInstance, List<ServerInstance>>();
+    speculativeServers.put(serverInstance1, Arrays.asList(serverInstance1, serverInstance2));
+
+    TestScatterGatherRequest req =
+        new TestScatterGatherRequest(pgMap, pgMapStr, new RoundRobinReplicaSelection(),
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, 1, 5000, speculativeServers, 200);
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, timedExecutor);
+    long startTimeMs = System.currentTimeMillis();
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+    long timeTakenMs = System.currentTimeMillis() - startTimeMs;
+
+    // Response of the replica is used for the segments of the slow server
+    Assert.assertEquals(v.size(), 1);
+    ByteBuf b = v.get(serverInstance1);
+    byte[] b2 = new byte[b.readableBytes()];
+    b.readBytes(b2);
+    Assert.assertEquals(new String(b2), "response_1_0");
+    Assert.assertTrue(timeTakenMs < 2000, "Did not wait for the slow server, took " + timeTakenMs + " ms");
+    Assert.assertEquals(req.getNumSpeculativeRequestsSent(), 1);
+    Assert.assertEquals(req.getNumSpeculativeResponsesUsed(), 1);
+    Assert.assertNull(fut.getError().get(serverInstance1));
+
+    pool.shutdown();
+    service.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
+  @Test
+  public void testSpeculativeRequestCancelledBeforeDispatch() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start
+    int serverPort1 = 7103; // slow server, still faster than the speculative request gets dispatched
+    int serverPort2 = 7104; // replica of the slow server
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 500, false), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    final ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    final ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ExecutorService poolExecutor = MoreExecutors.sameThreadExecutor();
+    ThreadPoolExecutor service = new ThreadPoolExecutor(1, 1, 1, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, poolExecutor,
+            registry);
+    rm.setPool(pool);
+
+    // Holds back the dispatch of the speculative request until the original request has responded and the
+    // speculative request got cancelled
+    final CountDownLatch speculativeRequestCancelled = new CountDownLatch(1);
+    LatencyAwareReplicaSelection replicaSelection = new LatencyAwareReplicaSelection(0.5, 0, 1000) {
+      @Override
+      public void onRequestSent(ServerInstance server) {
+        super.onRequestSent(server);
+        if (server.equals(serverInstance2)) {
+          try {
+            speculativeRequestCancelled.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+
+    SegmentIdSet pg1 = new SegmentIdSet();
+    pg1.addSegment(new SegmentId("0"));
+
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg1);
+
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg1, "request_0");
+
+    Map<ServerInstance, List<ServerInstance>> speculativeServers = new HashMap<ServerInstance, List<ServerInstance>>();
+    speculativeServers.put(serverInstance1, Arrays.asList(serverInstance1, serverInstance2));
+
+    TestScatterGatherRequest req =
+        new TestScatterGatherRequest(pgMap, pgMapStr, replicaSelection, ReplicaSelectionGranularity.SEGMENT_ID_SET, 1,
+            5000, speculativeServers, 100);
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, timedExecutor);
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+
+    // Response of the original request is used, the speculative one got cancelled before being dispatched
+    Assert.assertEquals(v.size(), 1);
+    ByteBuf b = v.get(serverInstance1);
+    byte[] b2 = new byte[b.readableBytes()];
+    b.readBytes(b2);
+    Assert.assertEquals(new String(b2), "response_0_0");
+    Assert.assertEquals(req.getNumSpeculativeRequestsSent(), 1);
+    Assert.assertEquals(req.getNumSpeculativeResponsesUsed(), 0);
+
+    // The executor dispatched the original request, then cancelled the speculative one
+    while (service.getCompletedTaskCount() < 2) {
+      Thread.sleep(10);
+    }
+    speculativeRequestCancelled.countDown();
+    // Then ran the speculative request, which found itself cancelled already
+    while (service.getCompletedTaskCount() < 3) {
+      Thread.sleep(10);
+    }
+
+    // No request is left outstanding on either server
+    Assert.assertEquals(replicaSelection.getNumOutstandingRequests(serverInstance1), 0);
+    Assert.assertEquals(replicaSelection.getNumOutstandingRequests(serverInstance2), 0);
+
+    pool.shutdown();
+    service.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
   public static class TestRequestHandlerFactory implements RequestHandlerFactory {
     public final int _numRequests;
     public final int _id;
@@ -646,7 +823,7 @@ public class ScatterGatherTest {
     }
 
     @Override
-    public byte[] processRequest(ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ByteBuf request) {
 
       if (_sleepTimeMS > 0) {
         try {
@@ -664,7 +841,7 @@ public class ScatterGatherTest {
       _request.add(new String(dst));
       int index = _index.incrementAndGet();
       String res = _responses.get(index);
-      return res.getBytes();
+      return Futures.immediateFuture(res.getBytes());
     }
 
     public List<String> getRequest() {
@@ -679,6 +856,10 @@ public class ScatterGatherTest {
     private final ReplicaSelectionGranularity _granularity;
     private final int _numSpeculativeRequests;
     private final int _timeoutMS;
+    private final Map<ServerInstance, List<ServerInstance>> _speculativeServers;
+    private final long _speculativeRequestDelayMS;
+    private final AtomicInteger _numSpeculativeRequestsSent = new AtomicInteger();
+    private final AtomicInteger _numSpeculativeResponsesUsed = new AtomicInteger();
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
         Map<SegmentIdSet, String> responsesMap) {
@@ -688,17 +869,29 @@ public class ScatterGatherTest {
       _granularity = ReplicaSelectionGranularity.SEGMENT_ID_SET;
       _numSpeculativeRequests = 0;
       _timeoutMS = 10000;
+      _speculativeServers = Collections.emptyMap();
+      _speculativeRequestDelayMS = 0;
     }
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
         Map<SegmentIdSet, String> responsesMap, ReplicaSelection replicaSelection,
         ReplicaSelectionGranularity granularity, int numSpeculativeRequests, int timeoutMS) {
+      this(partitionServicesMap, responsesMap, replicaSelection, granularity, numSpeculativeRequests, timeoutMS,
+          Collections.<ServerInstance, List<ServerInstance>>emptyMap(), 0);
+    }
+
+    public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
+        Map<SegmentIdSet, String> responsesMap, ReplicaSelection replicaSelection,
+        ReplicaSelectionGranularity granularity, int numSpeculativeRequests, int timeoutMS,
+        Map<ServerInstance, List<ServerInstance>> speculativeServers, long speculativeRequestDelayMS) {
       _partitionServicesMap = partitionServicesMap;
       _responsesMap = responsesMap;
       _replicaSelection = replicaSelection;
       _granularity = granularity;
       _numSpeculativeRequests = numSpeculativeRequests;
       _timeoutMS = timeoutMS;
+      _speculativeServers = speculativeServers;
+      _speculativeRequestDelayMS = speculativeRequestDelayMS;
     }
 
     @Override
@@ -732,6 +925,34 @@ public class ScatterGatherTest {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return _speculativeRequestDelayMS;
+    }
+
+    @Override
+    public List<ServerInstance> getSpeculativeServers(ServerInstance service, SegmentIdSet querySegments) {
+      return _speculativeServers.get(service);
+    }
+
+    @Override
+    public void onSpeculativeRequestSent(ServerInstance service, ServerInstance speculativeService) {
+      _numSpeculativeRequestsSent.incrementAndGet();
+    }
+
+    @Override
+    public void onSpeculativeResponseUsed(ServerInstance service, ServerInstance speculativeService) {
+      _numSpeculativeResponsesUsed.incrementAndGet();
+    }
+
+    public int getNumSpeculativeRequestsSent() {
+      return _numSpeculativeRequestsSent.get();
+    }
+
+    public int getNumSpeculativeResponsesUsed() {
+      return _numSpeculativeResponsesUsed.get();
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;
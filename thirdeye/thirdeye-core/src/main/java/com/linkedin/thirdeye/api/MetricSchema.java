@@ -47,6 +47,14 @@ public class MetricSchema {
     return coloffsets[mapping.get(name)];
   }
 
+  public int getOffset(int index) {
+    return coloffsets[index];
+  }
+
+  public int getMetricIndex(String name) {
+    return mapping.get(name);
+  }
+
   public int getNumMetrics() {
     return types.size();
   }
@@ -9,34 +9,61 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 
-import com.linkedin.thirdeye.impl.NumberUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
+ * A set of metric values per time window.
+ *
+ * <p>
+ *   Values are kept in primitive columns: one row per time window, one column per metric.
+ *   SHORT, INT and LONG metrics are stored in a <code>long[]</code> and FLOAT and DOUBLE
+ *   metrics in a <code>double[]</code>, narrowed to the metric type on every write so the
+ *   arithmetic matches that of the serialized representation.
+ * </p>
  *
  * @author kgopalak
  *
  */
 public class MetricTimeSeries {
-  private static final Logger LOGGER = LoggerFactory
-      .getLogger(MetricTimeSeries.class);
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final MetricSchema schema;
+
+  /** The time window of each row, in insertion order */
+  private long[] times;
 
-  Map<Long, ByteBuffer> timeseries;
+  /** Values of the integral metrics, by metric index then row (null for floating point metrics) */
+  private final long[][] longValues;
 
-  private MetricSchema schema;
+  /** Values of the floating point metrics, by metric index then row (null for integral metrics) */
+  private final double[][] doubleValues;
+
+  private int numRows;
+
+  /** Open addressing index from time window to row + 1 (0 marks an empty slot) */
+  private long[] indexTimes;
+  private int[] indexRows;
 
   /**
    *
    * @param schema
    */
   public MetricTimeSeries(MetricSchema schema) {
-    timeseries = new HashMap<Long, ByteBuffer>();
     this.schema = schema;
+    this.times = new long[INITIAL_CAPACITY];
+    this.longValues = new long[schema.getNumMetrics()][];
+    this.doubleValues = new double[schema.getNumMetrics()][];
+    this.indexTimes = new long[INITIAL_CAPACITY * 2];
+    this.indexRows = new int[INITIAL_CAPACITY * 2];
+
+    for (int i = 0; i < schema.getNumMetrics(); i++) {
+      if (isIntegral(schema.getMetricType(i))) {
+        longValues[i] = new long[INITIAL_CAPACITY];
+      } else {
+        doubleValues[i] = new double[INITIAL_CAPACITY];
+      }
+    }
   }
 
   public MetricSchema getSchema()
@@ -50,108 +77,74 @@ public class MetricTimeSeries {
    * @param value
    */
   public void set(long timeWindow, String name, Number value) {
-    initBufferForTimeWindow(timeWindow);
-    ByteBuffer buffer = timeseries.get(timeWindow);
-    buffer.position(schema.getOffset(name));
-    MetricType metricType = schema.getMetricType(name);
-    switch (metricType) {
-    case SHORT:
-      buffer.putShort(value.shortValue());
-      break;
-    case INT:
-      buffer.putInt(value.intValue());
-      break;
-    case LONG:
-      buffer.putLong(value.longValue());
-      break;
-    case FLOAT:
-      buffer.putFloat(value.floatValue());
-      break;
-    case DOUBLE:
-      buffer.putDouble(value.doubleValue());
-      break;
+    int metric = schema.getMetricIndex(name);
+    int row = getOrCreateRow(timeWindow);
+    MetricType metricType = schema.getMetricType(metric);
 
+    if (longValues[metric] != null) {
+      longValues[metric][row] = toLong(value, metricType);
+    } else {
+      doubleValues[metric][row] = toDouble(value, metricType);
     }
   }
 
-  private void initBufferForTimeWindow(long timeWindow) {
-    if (!timeseries.containsKey(timeWindow)) {
-      byte[] bytes = new byte[schema.getRowSizeInBytes()];
-      timeseries.put(timeWindow, ByteBuffer.wrap(bytes));
+  public Number get(long timeWindow, String name) {
+    int row = getRow(timeWindow);
+    if (row < 0) {
+      return 0;
     }
+    return getValue(schema.getMetricIndex(name), row);
   }
 
-  public Number get(long timeWindow, String name) {
-    ByteBuffer buffer = timeseries.get(timeWindow);
-    Number ret = 0;
+  public void increment(long timeWindow, String name, Number delta) {
+    int metric = schema.getMetricIndex(name);
+    int row = getOrCreateRow(timeWindow);
+    MetricType metricType = schema.getMetricType(metric);
 
-    if (buffer != null) {
-      MetricType metricType = schema.getMetricType(name);
-      buffer.position(schema.getOffset(name));
-      switch (metricType) {
-      case SHORT:
-        ret = buffer.getShort();
-        break;
-      case INT:
-        ret = buffer.getInt();
-        break;
-      case LONG:
-        ret = buffer.getLong();
-        break;
-      case FLOAT:
-        ret = buffer.getFloat();
-        break;
-      case DOUBLE:
-        ret = buffer.getDouble();
-        break;
-      }
+    if (longValues[metric] != null) {
+      addLong(metric, row, toLong(delta, metricType));
+    } else {
+      addDouble(metric, row, toDouble(delta, metricType));
     }
-    return ret;
   }
 
-  public void increment(long timeWindow, String name, Number delta) {
-    initBufferForTimeWindow(timeWindow);
-    ByteBuffer buffer = timeseries.get(timeWindow);
-    Number newValue;
-
-    if (buffer != null) {
-      // get Old Value
-      Number oldValue = get(timeWindow, name);
-      MetricType metricType = schema.getMetricType(name);
-      switch (metricType) {
+  /**
+   * Adds a serialized row of metric values to a time window.
+   *
+   * @param timeWindow
+   *  The time window to increment
+   * @param buffer
+   *  A buffer containing the metric values laid out as in {@link MetricSchema}
+   * @param offset
+   *  The absolute position of the first metric value in buffer
+   */
+  public void increment(long timeWindow, ByteBuffer buffer, int offset) {
+    int row = getOrCreateRow(timeWindow);
+
+    for (int i = 0; i < schema.getNumMetrics(); i++) {
+      int position = offset + schema.getOffset(i);
+      switch (schema.getMetricType(i)) {
       case SHORT:
-        newValue = oldValue.shortValue() + delta.shortValue();
+        addLong(i, row, buffer.getShort(position));
         break;
       case INT:
-        newValue = oldValue.intValue() + delta.intValue();
+        addLong(i, row, buffer.getInt(position));
         break;
       case LONG:
-        newValue = oldValue.longValue() + delta.longValue();
+        addLong(i, row, buffer.getLong(position));
         break;
       case FLOAT:
-        newValue = oldValue.floatValue() + delta.floatValue();
+        addDouble(i, row, buffer.getFloat(position));
         break;
       case DOUBLE:
-        newValue = oldValue.doubleValue() + delta.doubleValue();
+        addDouble(i, row, buffer.getDouble(position));
         break;
-      default:
-        throw new UnsupportedOperationException("unknown metricType:"
-            + metricType + " for column:" + name);
       }
-    } else {
-      newValue = delta;
     }
-    set(timeWindow, name, newValue);
   }
 
   public void aggregate(MetricTimeSeries series) {
-    for (long timeWindow : series.timeseries.keySet()) {
-      for (int i = 0; i < schema.getNumMetrics(); i++) {
-        String metricName = schema.getMetricName(i);
-        Number delta = series.get(timeWindow, metricName);
-        increment(timeWindow, metricName, delta);
-      }
-    }
+    aggregate(series, null);
   }
 
   /**
@@ -162,15 +155,47 @@ public class MetricTimeSeries {
    */
   public void aggregate(MetricTimeSeries series, TimeRange timeRange)
   {
-    for (long timeWindow : series.timeseries.keySet())
+    if (!schema.equals(series.schema))
+    {
+      aggregateByName(series, timeRange);
+      return;
+    }
+
+    for (int seriesRow = 0; seriesRow < series.numRows; seriesRow++)
+    {
+      long timeWindow = series.times[seriesRow];
+
+      if (timeRange == null || timeRange.contains(timeWindow))
+      {
+        int row = getOrCreateRow(timeWindow);
+
+        for (int i = 0; i < schema.getNumMetrics(); i++)
+        {
+          if (longValues[i] != null)
+          {
+            addLong(i, row, series.longValues[i][seriesRow]);
+          }
+          else
+          {
+            addDouble(i, row, series.doubleValues[i][seriesRow]);
+          }
+        }
+      }
+    }
+  }
+
+  private void aggregateByName(MetricTimeSeries series, TimeRange timeRange)
+  {
+    for (int seriesRow = 0; seriesRow < series.numRows; seriesRow++)
     {
-      if (timeRange.contains(timeWindow))
+      long timeWindow = series.times[seriesRow];
+
+      if (timeRange == null || timeRange.contains(timeWindow))
       {
         for (int i = 0; i < schema.getNumMetrics(); i++)
         {
           String metricName = schema.getMetricName(i);
-          Number delta = series.get(timeWindow, metricName);
-          increment(timeWindow, metricName, delta);
+          increment(timeWindow, metricName, series.get(timeWindow, metricName));
         }
       }
     }
@@ -182,11 +207,32 @@ public class MetricTimeSeries {
     DataInput in = new DataInputStream(new ByteArrayInputStream(buf));
     int numTimeWindows = in.readInt();
     int bufferSize = in.readInt();
+    if (bufferSize != schema.getRowSizeInBytes()) {
+      throw new IOException("Row size " + bufferSize + " does not match schema row size "
+          + schema.getRowSizeInBytes());
+    }
     for (int i = 0; i < numTimeWindows; i++) {
       long timeWindow = in.readLong();
-      byte[] bytes = new byte[bufferSize];
-      in.readFully(bytes);
-      series.timeseries.put(timeWindow, ByteBuffer.wrap(bytes));
+      int row = series.getOrCreateRow(timeWindow);
+      for (int j = 0; j < schema.getNumMetrics(); j++) {
+        switch (schema.getMetricType(j)) {
+        case SHORT:
+          series.longValues[j][row] = in.readShort();
+          break;
+        case INT:
+          series.longValues[j][row] = in.readInt();
+          break;
+        case LONG:
+          series.longValues[j][row] = in.readLong();
+          break;
+        case FLOAT:
+          series.doubleValues[j][row] = in.readFloat();
+          break;
+        case DOUBLE:
+          series.doubleValues[j][row] = in.readDouble();
+          break;
+        }
+      }
     }
     return series;
   }
@@ -194,21 +240,44 @@ public class MetricTimeSeries {
   /**
    *
    * @return
+   *  A copy of the time windows in this series
    */
   public Set<Long> getTimeWindowSet() {
-    return timeseries.keySet();
+    Set<Long> timeWindows = new HashSet<Long>(numRows * 2);
+    for (int i = 0; i < numRows; i++) {
+      timeWindows.add(times[i]);
+    }
+    return timeWindows;
   }
 
   public byte[] toBytes() throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     DataOutput out = new DataOutputStream(baos);
     // write the number of timeWindows
-    out.writeInt(timeseries.size());
+    out.writeInt(numRows);
     // write the size of the metric buffer for each timeWindow
     out.writeInt(schema.getRowSizeInBytes());
-    for (long time : timeseries.keySet()) {
-      out.writeLong(time);
-      out.write(timeseries.get(time).array());
+    for (int row = 0; row < numRows; row++) {
+      out.writeLong(times[row]);
+      for (int i = 0; i < schema.getNumMetrics(); i++) {
+        switch (schema.getMetricType(i)) {
+        case SHORT:
+          out.writeShort((short) longValues[i][row]);
+          break;
+        case INT:
+          out.writeInt((int) longValues[i][row]);
+          break;
+        case LONG:
+          out.writeLong(longValues[i][row]);
+          break;
+        case FLOAT:
+          out.writeFloat((float) doubleValues[i][row]);
+          break;
+        case DOUBLE:
+          out.writeDouble(doubleValues[i][row]);
+          break;
+        }
+      }
     }
     return baos.toByteArray();
   }
@@ -217,20 +286,18 @@ public class MetricTimeSeries {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("(");
-    for (long timeWindow : timeseries.keySet()) {
+    for (int row = 0; row < numRows; row++) {
       sb.append("[");
       String delim = "";
-      ByteBuffer buffer = timeseries.get(timeWindow);
-      buffer.rewind();
       for (int i = 0; i < schema.getNumMetrics(); i++) {
         if (i > 0) {
           delim = ",";
         }
-        sb.append(delim).append(NumberUtils.readFromBuffer(buffer, schema.getMetricType(i)));
+        sb.append(delim).append(getValue(i, row));
       }
       sb.append("]");
       sb.append("@");
-      sb.append(timeWindow);
+      sb.append(times[row]);
       sb.append(" ");
     }
     sb.setLength(sb.length() - 1);
@@ -247,34 +314,60 @@ public class MetricTimeSeries {
       result[i] = 0;
     }
 
-    for (Long time : timeseries.keySet())
+    if (numRows == 0)
     {
-      for (int i = 0; i < schema.getNumMetrics(); i++)
-      {
-        String metricName = schema.getMetricName(i);
-        MetricType metricType = schema.getMetricType(i);
-        Number metricValue = get(time, metricName);
+      return result;
+    }
 
-        switch (metricType)
-        {
-          case INT:
-            result[i] = result[i].intValue() + metricValue.intValue();
-            break;
-          case SHORT:
-            result[i] = result[i].shortValue() + metricValue.shortValue();
-            break;
-          case LONG:
-            result[i] = result[i].longValue() + metricValue.longValue();
-            break;
-          case FLOAT:
-            result[i] = result[i].floatValue() + metricValue.floatValue();
-            break;
-          case DOUBLE:
-            result[i] = result[i].doubleValue() + metricValue.doubleValue();
-            break;
-          default:
-            throw new IllegalStateException();
-        }
+    for (int i = 0; i < schema.getNumMetrics(); i++)
+    {
+      MetricType metricType = schema.getMetricType(i);
+
+      switch (metricType)
+      {
+        case INT:
+          int intSum = 0;
+          for (int row = 0; row < numRows; row++)
+          {
+            intSum += (int) longValues[i][row];
+          }
+          result[i] = intSum;
+          break;
+        case SHORT:
+          // Promoted to int on each addition, but the running sum is read back as a short
+          int shortSum = 0;
+          for (int row = 0; row < numRows; row++)
+          {
+            shortSum = (short) shortSum + (short) longValues[i][row];
+          }
+          result[i] = shortSum;
+          break;
+        case LONG:
+          long longSum = 0;
+          for (int row = 0; row < numRows; row++)
+          {
+            longSum += longValues[i][row];
+          }
+          result[i] = longSum;
+          break;
+        case FLOAT:
+          float floatSum = 0;
+          for (int row = 0; row < numRows; row++)
+          {
+            floatSum += (float) doubleValues[i][row];
+          }
+          result[i] = floatSum;
+          break;
+        case DOUBLE:
+          double doubleSum = 0;
+          for (int row = 0; row < numRows; row++)
+          {
+            doubleSum += doubleValues[i][row];
+          }
+          result[i] = doubleSum;
+          break;
+        default:
+          throw new IllegalStateException();
       }
     }
 
@@ -284,7 +377,13 @@ public class MetricTimeSeries {
   @Override
   public int hashCode()
   {
-    return timeseries.keySet().hashCode() + 13 * schema.hashCode();
+    // Same as the hash code of the time window set
+    int timeWindowsHash = 0;
+    for (int i = 0; i < numRows; i++)
+    {
+      timeWindowsHash += (int) (times[i] ^ (times[i] >>> 32));
+    }
+    return timeWindowsHash + 13 * schema.hashCode();
   }
 
   @Override
@@ -299,4 +398,120 @@ public class MetricTimeSeries {
 
     return getTimeWindowSet().equals(ts.getTimeWindowSet()) && Arrays.equals(getMetricSums(), ts.getMetricSums());
   }
+
+  private Number getValue(int metric, int row) {
+    switch (schema.getMetricType(metric)) {
+    case SHORT:
+      return (short) longValues[metric][row];
+    case INT:
+      return (int) longValues[metric][row];
+    case LONG:
+      return longValues[metric][row];
+    case FLOAT:
+      return (float) doubleValues[metric][row];
+    case DOUBLE:
+      return doubleValues[metric][row];
+    default:
+      throw new UnsupportedOperationException("unknown metricType:"
+          + schema.getMetricType(metric) + " for column:" + schema.getMetricName(metric));
+    }
+  }
+
+  private void addLong(int metric, int row, long delta) {
+    long[] values = longValues[metric];
+    switch (schema.getMetricType(metric)) {
+    case SHORT:
+      values[row] = (short) (values[row] + delta);
+      break;
+    case INT:
+      values[row] = (int) (values[row] + delta);
+      break;
+    default:
+      values[row] += delta;
+    }
+  }
+
+  private void addDouble(int metric, int row, double delta) {
+    double[] values = doubleValues[metric];
+    if (schema.getMetricType(metric) == MetricType.FLOAT) {
+      values[row] = (float) values[row] + (float) delta;
+    } else {
+      values[row] += delta;
+    }
+  }
+
+  private int getRow(long timeWindow) {
+    int mask = indexRows.length - 1;
+    int slot = hash(timeWindow) & mask;
+    while (indexRows[slot] != 0) {
+      if (indexTimes[slot] == timeWindow) {
+        return indexRows[slot] - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int getOrCreateRow(long timeWindow) {
+    int row = getRow(timeWindow);
+    if (row >= 0) {
+      return row;
+    }
+
+    if (numRows == times.length) {
+      int capacity = times.length * 2;
+      times = Arrays.copyOf(times, capacity);
+      for (int i = 0; i < schema.getNumMetrics(); i++) {
+        if (longValues[i] != null) {
+          longValues[i] = Arrays.copyOf(longValues[i], capacity);
+        } else {
+          doubleValues[i] = Arrays.copyOf(doubleValues[i], capacity);
+        }
+      }
+      indexTimes = new long[capacity * 2];
+      indexRows = new int[capacity * 2];
+      for (int i = 0; i < numRows; i++) {
+        putIndex(times[i], i);
+      }
+    }
+
+    row = numRows++;
+    times[row] = timeWindow;
+    putIndex(timeWindow, row);
+    return row;
+  }
+
+  private void putIndex(long timeWindow, int row) {
+    int mask = indexRows.length - 1;
+    int slot = hash(timeWindow) & mask;
+    while (indexRows[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    indexTimes[slot] = timeWindow;
+    indexRows[slot] = row + 1;
+  }
+
+  private static int hash(long timeWindow) {
+    int h = (int) (timeWindow ^ (timeWindow >>> 32));
+    return h * 0x9E3779B9;
+  }
+
+  private static boolean isIntegral(MetricType metricType) {
+    return metricType == MetricType.SHORT || metricType == MetricType.INT || metricType == MetricType.LONG;
+  }
+
+  private static long toLong(Number value, MetricType metricType) {
+    switch (metricType) {
+    case SHORT:
+      return value.shortValue();
+    case INT:
+      return value.intValue();
+    default:
+      return value.longValue();
+    }
+  }
+
+  private static double toDouble(Number value, MetricType metricType) {
+    return metricType == MetricType.FLOAT ? value.floatValue() : value.doubleValue();
+  }
 }
@@ -23,6 +23,11 @@ public interface StarTree
    */
   void add(StarTreeRecord record);
 
+  /**
+   * Adds a batch of records to the tree, deferring any leaf splits until all have been added.
+   */
+  void add(Collection<StarTreeRecord> records);
+
   /**
    * Opens all resources at leaves
    */
@@ -17,18 +17,30 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class StarTreeImpl implements StarTree {
   private static final Logger LOGGER = LoggerFactory.getLogger(StarTreeImpl.class);
+  private static final int NUM_LEAF_LOCKS = 64;
 
   private final int maxRecordStoreEntries;
   private final StarTreeConfig config;
@@ -36,6 +48,16 @@ public class StarTreeImpl implements StarTree {
   private final StarTreeRecordStoreFactory recordStoreFactory;
   private final File dataDir;
   private final MetricSchema metricSchema;
+  private final AtomicLong leavesQueried;
+
+  /** Shared by adds, held exclusively while a leaf is split */
+  private final ReadWriteLock structureLock;
+
+  /** Striped by leaf id, serializes the updates of each leaf's record store */
+  private final Lock[] leafLocks;
+
+  private volatile ForkJoinPool queryPool;
+  private volatile int maxQueryParallelism;
 
   public StarTreeImpl(StarTreeConfig config)
   {
@@ -46,7 +68,7 @@ public class StarTreeImpl implements StarTree {
     this(config, dataDir, new StarTreeNodeImpl(UUID.randomUUID(),
         StarTreeConstants.STAR, StarTreeConstants.STAR,
         new ArrayList<String>(), new HashMap<String, String>(),
-        new HashMap<String, StarTreeNode>(), null, null));
+        new ConcurrentHashMap<String, StarTreeNode>(), null, null));
   }
 
   public StarTreeImpl(StarTreeConfig config, File dataDir, StarTreeNode root) {
@@ -55,6 +77,14 @@ public class StarTreeImpl implements StarTree {
     this.root = root;
     this.dataDir = dataDir;
     this.metricSchema = MetricSchema.fromMetricSpecs(config.getMetrics());
+    this.leavesQueried = new AtomicLong();
+    this.maxQueryParallelism = 1;
+    this.structureLock = new ReentrantReadWriteLock();
+    this.leafLocks = new Lock[NUM_LEAF_LOCKS];
+    for (int i = 0; i < NUM_LEAF_LOCKS; i++)
+    {
+      leafLocks[i] = new ReentrantLock();
+    }
 
     try
     {
@@ -71,6 +101,31 @@ public class StarTreeImpl implements StarTree {
     }
   }
 
+  /**
+   * Reads the record stores of the leaves that a query touches on queryPool.
+   *
+   * <p>
+   *   Each query is split into at most maxQueryParallelism tasks, so that one wildcard query
+   *   over a high cardinality dimension cannot occupy the whole pool. A null pool (the default)
+   *   reads the leaves serially on the calling thread.
+   * </p>
+   */
+  public void setQueryPool(ForkJoinPool queryPool, int maxQueryParallelism)
+  {
+    if (maxQueryParallelism < 1)
+    {
+      throw new IllegalArgumentException("maxQueryParallelism must be positive: " + maxQueryParallelism);
+    }
+    this.queryPool = queryPool;
+    this.maxQueryParallelism = maxQueryParallelism;
+  }
+
+  /** @return the number of leaf record stores that have been read to answer queries */
+  public long getLeavesQueried()
+  {
+    return leavesQueried.get();
+  }
+
   @Override
   public StarTreeNode getRoot() {
     return root;
@@ -116,12 +171,42 @@ public class StarTreeImpl implements StarTree {
       throw new IllegalArgumentException("No star tree node for query " + query);
     }
 
+    leavesQueried.incrementAndGet();
     return node.getRecordStore().getTimeSeries(query);
   }
 
   @Override
   public void add(StarTreeRecord record) {
-    add(root, record);
+    add(Collections.singletonList(record));
+  }
+
+  /**
+   * Adds records to the tree.
+   *
+   * <p>
+   *   Any number of threads may add concurrently: routing shares the tree structure, and
+   *   updates of a leaf's record store are serialized by a lock striped on the leaf id, so
+   *   threads updating different leaves rarely contend. Leaves that grow past the split
+   *   threshold are split after the whole batch has been added, with exclusive access
+   *   to the tree structure.
+   * </p>
+   */
+  @Override
+  public void add(Collection<StarTreeRecord> records) {
+    Set<StarTreeNode> splitCandidates = new HashSet<StarTreeNode>();
+
+    structureLock.readLock().lock();
+    try {
+      for (StarTreeRecord record : records) {
+        add(root, record, splitCandidates);
+      }
+    } finally {
+      structureLock.readLock().unlock();
+    }
+
+    for (StarTreeNode node : splitCandidates) {
+      split(node);
+    }
   }
 
   private boolean shouldSplit(StarTreeNode node) {
@@ -131,11 +216,29 @@ public class StarTreeImpl implements StarTree {
             && node.getAncestorDimensionNames().size() < config.getDimensions().size();
   }
 
-  private void add(StarTreeNode node, StarTreeRecord record)
+  private Lock getLeafLock(StarTreeNode node) {
+    return leafLocks[(node.getId().hashCode() & Integer.MAX_VALUE) % NUM_LEAF_LOCKS];
+  }
+
+  private void add(StarTreeNode node, StarTreeRecord record, Set<StarTreeNode> splitCandidates)
   {
     if (node.isLeaf())
     {
-      node.getRecordStore().update(record);
+      Lock leafLock = getLeafLock(node);
+      leafLock.lock();
+      try
+      {
+        node.getRecordStore().update(record);
+        if (shouldSplit(node))
+        {
+          splitCandidates.add(node);
+        }
+      }
+      finally
+      {
+        leafLock.unlock();
+      }
+
       boolean valid = true;
       if (!node.getDimensionValue().equals(StarTreeConstants.STAR))
       {
@@ -171,43 +274,6 @@ public class StarTreeImpl implements StarTree {
             node.getPath());
 
       }
-      if (shouldSplit(node))
-      {
-        synchronized (node)
-        {
-          if (shouldSplit(node))
-          {
-            Set<String> blacklist = new HashSet<String>();
-            blacklist.addAll(node.getAncestorDimensionNames());
-            blacklist.add(node.getDimensionName());
-
-            String splitDimensionName = null;
-            if (config.getSplit().getOrder() == null)
-            {
-              // Pick highest cardinality dimension
-              splitDimensionName = node.getRecordStore()
-                                       .getMaxCardinalityDimension(blacklist);
-            } else
-            {
-              // Pick next to split on from fixed order
-              for (String dimensionName : config.getSplit().getOrder())
-              {
-                if (!blacklist.contains(dimensionName))
-                {
-                  splitDimensionName = dimensionName;
-                  break;
-                }
-              }
-            }
-
-            // Split if we found a valid dimension
-            if (splitDimensionName != null)
-            {
-              node.split(splitDimensionName);
-            }
-          }
-        }
-      }
     }
     else
     {
@@ -225,22 +291,66 @@ public class StarTreeImpl implements StarTree {
           StarTreeRecord aliasOtherRecord = record.aliasOther(childDimensionName);
 
           // Add to this node
-          add(target, aliasOtherRecord);
+          add(target, aliasOtherRecord, splitCandidates);
         }
         else
         {
           target = node.addChildNode(childDimensionValue);
-          add(target, record);
+          add(target, record, splitCandidates);
         }
       }
       else
       {
-        add(target, record);
+        add(target, record, splitCandidates);
       }
 
       // In addition to this, update the star node after relaxing dimension of
       // level to "*"
-      add(node.getStarNode(), record.relax(childDimensionName));
+      add(node.getStarNode(), record.relax(childDimensionName), splitCandidates);
+    }
+  }
+
+  private void split(StarTreeNode node)
+  {
+    structureLock.writeLock().lock();
+    try
+    {
+      // Another batch may have split it first
+      if (node.isLeaf() && shouldSplit(node))
+      {
+        Set<String> blacklist = new HashSet<String>();
+        blacklist.addAll(node.getAncestorDimensionNames());
+        blacklist.add(node.getDimensionName());
+
+        String splitDimensionName = null;
+        if (config.getSplit().getOrder() == null)
+        {
+          // Pick highest cardinality dimension
+          splitDimensionName = node.getRecordStore()
+                                   .getMaxCardinalityDimension(blacklist);
+        } else
+        {
+          // Pick next to split on from fixed order
+          for (String dimensionName : config.getSplit().getOrder())
+          {
+            if (!blacklist.contains(dimensionName))
+            {
+              splitDimensionName = dimensionName;
+              break;
+            }
+          }
+        }
+
+        // Split if we found a valid dimension
+        if (splitDimensionName != null)
+        {
+          node.split(splitDimensionName);
+        }
+      }
+    }
+    finally
+    {
+      structureLock.writeLock().unlock();
     }
   }
 
@@ -275,12 +385,46 @@ public class StarTreeImpl implements StarTree {
 
   public void getDimensionValues(StarTreeNode node, String dimensionName,
       Map<String, String> fixedDimensions, Set<String> collector) {
-    if (node.isLeaf()) {
-      Set<String> dimensionValues = node.getRecordStore().getDimensionValues(
-          dimensionName);
-      if (dimensionValues != null) {
-        collector.addAll(dimensionValues);
+    List<StarTreeNode> leaves = new ArrayList<StarTreeNode>();
+    findDimensionValueLeaves(node, dimensionName, fixedDimensions, leaves, collector);
+    leavesQueried.addAndGet(leaves.size());
+
+    ForkJoinPool pool = queryPool;
+    int parallelism = Math.min(maxQueryParallelism, leaves.size());
+    if (pool == null || parallelism <= 1) {
+      collector.addAll(new DimensionValuesTask(leaves, dimensionName).call());
+      return;
+    }
+
+    // Contiguous batches of leaves, one task per batch
+    int batchSize = (leaves.size() + parallelism - 1) / parallelism;
+    List<DimensionValuesTask> tasks = new ArrayList<DimensionValuesTask>(parallelism);
+    for (int start = 0; start < leaves.size(); start += batchSize) {
+      int end = Math.min(leaves.size(), start + batchSize);
+      tasks.add(new DimensionValuesTask(leaves.subList(start, end), dimensionName));
+    }
+
+    try {
+      for (Future<Set<String>> future : pool.invokeAll(tasks)) {
+        collector.addAll(future.get());
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading dimension values for " + dimensionName, e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not read dimension values for " + dimensionName, e.getCause());
+    }
+  }
+
+  /**
+   * Collects the leaves whose record stores hold values for dimensionName under the
+   * fixed dimensions, adding {@link StarTreeConstants#OTHER} to collector if the
+   * dimension has been split into an other node.
+   */
+  private void findDimensionValueLeaves(StarTreeNode node, String dimensionName,
+      Map<String, String> fixedDimensions, List<StarTreeNode> leaves, Set<String> collector) {
+    if (node.isLeaf()) {
+      leaves.add(node);
     } else if (dimensionName.equals(node.getDimensionName())
         && StarTreeConstants.OTHER.equals(node.getDimensionValue())) {
       collector.add(StarTreeConstants.OTHER);
@@ -288,15 +432,38 @@ public class StarTreeImpl implements StarTree {
       // All children
       for (StarTreeNode child : node.getChildren()) {
         if (shouldTraverse(child, fixedDimensions)) {
-          getDimensionValues(child, dimensionName, fixedDimensions, collector);
+          findDimensionValueLeaves(child, dimensionName, fixedDimensions, leaves, collector);
         }
       }
 
       // The other node (n.b. don't need star because those are just repeats)
       if (shouldTraverse(node.getOtherNode(), fixedDimensions)) {
-        getDimensionValues(node.getOtherNode(), dimensionName, fixedDimensions,
-            collector);
+        findDimensionValueLeaves(node.getOtherNode(), dimensionName, fixedDimensions,
+            leaves, collector);
+      }
+    }
+  }
+
+  /** Reads the values of a dimension from the record stores of a batch of leaves */
+  private static class DimensionValuesTask implements Callable<Set<String>> {
+    private final List<StarTreeNode> leaves;
+    private final String dimensionName;
+
+    DimensionValuesTask(List<StarTreeNode> leaves, String dimensionName) {
+      this.leaves = leaves;
+      this.dimensionName = dimensionName;
+    }
+
+    @Override
+    public Set<String> call() {
+      Set<String> values = new HashSet<String>();
+      for (StarTreeNode leaf : leaves) {
+        Set<String> dimensionValues = leaf.getRecordStore().getDimensionValues(dimensionName);
+        if (dimensionValues != null) {
+          values.addAll(dimensionValues);
+        }
       }
+      return values;
     }
   }
 
@@ -25,6 +25,7 @@ import java.nio.file.WatchService;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class StarTreeManagerImpl implements StarTreeManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(StarTreeManagerImpl.class);
@@ -36,8 +37,22 @@ public class StarTreeManagerImpl implements StarTreeManager {
   private final ConcurrentMap<UUID, IndexMetadata> allIndexMetadata;
   private final ConcurrentMap<String, StarTree> mutableTrees;
   private final Set<String> openCollections;
+  private final ForkJoinPool queryPool;
+  private final int maxQueryParallelism;
 
   public StarTreeManagerImpl() {
+    this(null, 1);
+  }
+
+  /**
+   * @param queryPool
+   *  Pool on which the leaves touched by a query are read, or null to read them on the calling thread
+   * @param maxQueryParallelism
+   *  The maximum number of tasks one query may run on queryPool
+   */
+  public StarTreeManagerImpl(ForkJoinPool queryPool, int maxQueryParallelism) {
+    this.queryPool = queryPool;
+    this.maxQueryParallelism = maxQueryParallelism;
     this.configs = new ConcurrentHashMap<String, StarTreeConfig>();
     this.trees = new ConcurrentHashMap<String, ConcurrentMap<File, StarTree>>();
     this.allIndexMetadata = new ConcurrentHashMap<>();
@@ -103,7 +118,8 @@ public class StarTreeManagerImpl implements StarTreeManager {
           StarTreeNode root = (StarTreeNode) inputStream.readObject();
 
           // Create tree
-          StarTree starTree = new StarTreeImpl(config, dataDir, root);
+          StarTreeImpl starTree = new StarTreeImpl(config, dataDir, root);
+          starTree.setQueryPool(queryPool, maxQueryParallelism);
           trees.get(collection).put(dataDir, starTree);
           starTree.open();
           LOGGER.info("Opened tree {} for collection {}", starTree.getRoot(), collection);
@@ -133,7 +149,8 @@ public class StarTreeManagerImpl implements StarTreeManager {
             config.getRollup(),
             config.getSplit(),
             false);
-        final StarTree mutableTree = new StarTreeImpl(inMemoryConfig);
+        final StarTreeImpl mutableTree = new StarTreeImpl(inMemoryConfig);
+        mutableTree.setQueryPool(queryPool, maxQueryParallelism);
         mutableTree.open();
         mutableTrees.put(collection, mutableTree);
 
@@ -242,7 +259,8 @@ public class StarTreeManagerImpl implements StarTreeManager {
 
                   // Create tree
                   try {
-                    StarTree starTree = new StarTreeImpl(config, file, root);
+                    StarTreeImpl starTree = new StarTreeImpl(config, file, root);
+                    starTree.setQueryPool(queryPool, maxQueryParallelism);
                     starTree.open();
                     trees.get(config.getCollection()).put(file, starTree);
                     LOGGER.info("Opened tree {} from {}", starTree.getRoot().getId(), file);
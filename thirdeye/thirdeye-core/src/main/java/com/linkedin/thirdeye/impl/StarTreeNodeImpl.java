@@ -16,6 +16,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StarTreeNodeImpl implements StarTreeNode {
   private static final long serialVersionUID = -403250971215465050L;
@@ -35,9 +36,9 @@ public class StarTreeNodeImpl implements StarTreeNode {
   private final List<String> ancestorDimensionNames;
   private final Map<String, String> ancestorDimensionValues;
 
-  private StarTreeNode otherNode;
-  private StarTreeNode starNode;
-  private String childDimensionName;
+  private volatile StarTreeNode otherNode;
+  private volatile StarTreeNode starNode;
+  private volatile String childDimensionName;
 
   private List<String> nextAncestorDimensionNames;
 
@@ -206,15 +207,19 @@ public class StarTreeNodeImpl implements StarTreeNode {
       starNode = new StarTreeNodeImpl(UUID.randomUUID(),
           splitDimensionName, StarTreeConstants.STAR,
           nextAncestorDimensionNames, nextAncestorDimensionValues,
-          new HashMap<String, StarTreeNode>(), null, null);
+          new ConcurrentHashMap<String, StarTreeNode>(), null, null);
       starNode.init(config, recordStoreFactory);
 
       // Add other node
       otherNode = new StarTreeNodeImpl(UUID.randomUUID(),
           splitDimensionName, StarTreeConstants.OTHER,
           nextAncestorDimensionNames, nextAncestorDimensionValues,
-          new HashMap<String, StarTreeNode>(), null, null);
+          new ConcurrentHashMap<String, StarTreeNode>(), null, null);
       otherNode.init(config, recordStoreFactory);
+
+      // Set the children dimension name before any child makes this node a non-leaf
+      childDimensionName = splitDimensionName;
+
       // Add children nodes who passed
       for (String dimensionValue : groupedRecords.keySet()) {
         // Skip other nodes (forces operations on these to go to special other
@@ -256,31 +261,31 @@ public class StarTreeNodeImpl implements StarTreeNode {
 
       // Clear this node's record store
       recordStore.clear();
-
-      // Set the children dimension name
-      childDimensionName = splitDimensionName;
     }
   }
 
   @Override
   public StarTreeNode addChildNode(String dimensionValue) {
-    if (children.containsKey(dimensionValue)) {
-      return children.get(dimensionValue);
-    }
-    if(dimensionValue.equals(StarTreeConstants.OTHER)){
-      return otherNode;
-    }
-    if(dimensionValue.equals(StarTreeConstants.STAR)){
-      return starNode;
+    // n.b. sync is transient, and children is also present on deserialized nodes
+    synchronized (children) {
+      if (children.containsKey(dimensionValue)) {
+        return children.get(dimensionValue);
+      }
+      if(dimensionValue.equals(StarTreeConstants.OTHER)){
+        return otherNode;
+      }
+      if(dimensionValue.equals(StarTreeConstants.STAR)){
+        return starNode;
+      }
+      StarTreeNode child = new StarTreeNodeImpl(UUID.randomUUID(),
+          splitDimensionName,
+          dimensionValue, nextAncestorDimensionNames,
+          nextAncestorDimensionValues, new ConcurrentHashMap<String, StarTreeNode>(), null,
+          null);
+      child.init(config, recordStoreFactory);
+      children.put(dimensionValue, child);
+      return child;
     }
-    StarTreeNode child = new StarTreeNodeImpl(UUID.randomUUID(),
-        splitDimensionName,
-        dimensionValue, nextAncestorDimensionNames,
-        nextAncestorDimensionValues, new HashMap<String, StarTreeNode>(), null,
-        null);
-    child.init(config, recordStoreFactory);
-    children.put(dimensionValue, child);
-    return child;
   }
 
   /**
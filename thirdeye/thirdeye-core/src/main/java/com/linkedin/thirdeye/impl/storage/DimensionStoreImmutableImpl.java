@@ -7,22 +7,92 @@ import com.linkedin.thirdeye.api.StarTreeConstants;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * A read-only {@link DimensionStore} over a buffer of dictionary-encoded dimension combinations.
+ *
+ * <p>
+ *   On construction, the buffer is scanned once to build an inverted index from each dimension value id to the
+ *   logical offsets of the combinations containing it, so lookups intersect bitmaps instead of scanning the buffer.
+ * </p>
+ */
 public class DimensionStoreImmutableImpl implements DimensionStore
 {
+  private static final BitSet EMPTY = new BitSet(0);
+
+  private static final Comparator<BitSet> CARDINALITY_COMPARATOR = new Comparator<BitSet>()
+  {
+    @Override
+    public int compare(BitSet a, BitSet b)
+    {
+      return Integer.compare(a.cardinality(), b.cardinality());
+    }
+  };
+
   private final StarTreeConfig config;
   private final ByteBuffer buffer;
   private final DimensionDictionary dictionary;
+  private final int baseOffset;
+  private final int numDimensions;
+  private final int numCombinations;
+  private final List<Map<Integer, BitSet>> invertedIndex;
 
   public DimensionStoreImmutableImpl(StarTreeConfig config, ByteBuffer buffer, DimensionDictionary dictionary)
   {
     this.config = config;
     this.buffer = buffer;
     this.dictionary = dictionary;
+    this.baseOffset = buffer.position();
+    this.numDimensions = config.getDimensions().size();
+    this.numCombinations = numDimensions == 0 ? 0 : buffer.remaining() / (numDimensions * 4);
+    this.invertedIndex = buildInvertedIndex();
+  }
+
+  private List<Map<Integer, BitSet>> buildInvertedIndex()
+  {
+    List<Map<Integer, BitSet>> index = new ArrayList<Map<Integer, BitSet>>(numDimensions);
+    for (int i = 0; i < numDimensions; i++)
+    {
+      index.add(new HashMap<Integer, BitSet>());
+    }
+
+    for (int offset = 0; offset < numCombinations; offset++)
+    {
+      for (int i = 0; i < numDimensions; i++)
+      {
+        int valueId = getValueId(offset, i);
+        BitSet offsets = index.get(i).get(valueId);
+        if (offsets == null)
+        {
+          offsets = new BitSet();
+          index.get(i).put(valueId, offsets);
+        }
+        offsets.set(offset);
+      }
+    }
+
+    return index;
+  }
+
+  private int getValueId(int offset, int dimension)
+  {
+    return buffer.getInt(baseOffset + (offset * numDimensions + dimension) * 4);
+  }
+
+  private int[] getKey(int offset)
+  {
+    int[] key = new int[numDimensions];
+    for (int i = 0; i < numDimensions; i++)
+    {
+      key[i] = getValueId(offset, i);
+    }
+    return key;
   }
 
   @Override
@@ -34,20 +104,16 @@ public class DimensionStoreImmutableImpl implements DimensionStore
   @Override
   public List<DimensionKey> getDimensionKeys()
   {
-    List<DimensionKey> dimensionKeys = new ArrayList<DimensionKey>();
+    List<DimensionKey> dimensionKeys = new ArrayList<DimensionKey>(numCombinations);
 
-    ByteBuffer tmpBuffer = buffer.duplicate();
-
-    while (tmpBuffer.position() < tmpBuffer.limit())
+    for (int offset = 0; offset < numCombinations; offset++)
     {
-      String[] dimensionValues = new String[config.getDimensions().size()];
+      String[] dimensionValues = new String[numDimensions];
 
-      for (int i = 0; i < config.getDimensions().size(); i++)
+      for (int i = 0; i < numDimensions; i++)
       {
         DimensionSpec dimensionSpec = config.getDimensions().get(i);
-        Integer valueId = tmpBuffer.getInt();
-        String dimensionValue = dictionary.getDimensionValue(dimensionSpec.getName(), valueId);
-        dimensionValues[i] = dimensionValue;
+        dimensionValues[i] = dictionary.getDimensionValue(dimensionSpec.getName(), getValueId(offset, i));
       }
 
       dimensionKeys.add(new DimensionKey(dimensionValues));
@@ -62,88 +128,95 @@ public class DimensionStoreImmutableImpl implements DimensionStore
     Map<DimensionKey, Integer> matchingKeys = new HashMap<DimensionKey, Integer>();
 
     int[] translatedKey = dictionary.translate(config.getDimensions(), dimensionKey);
-    int[] currentKey = new int[config.getDimensions().size()];
-
-    int idx = 0;
 
-    ByteBuffer tmpBuffer = buffer.duplicate();
-
-    while (tmpBuffer.position() < tmpBuffer.limit())
+    // Star matches everything, any other value only the combinations containing it
+    List<BitSet> constraints = new ArrayList<BitSet>();
+    for (int i = 0; i < numDimensions; i++)
     {
-      boolean matches = true;
-
-      for (int i = 0; i < config.getDimensions().size(); i++)
-      {
-        Integer valueId = tmpBuffer.getInt();
-
-        currentKey[i] = valueId;
-
-        if (translatedKey[i] != valueId && translatedKey[i] != StarTreeConstants.STAR_VALUE)
-        {
-          matches = false;
-        }
-      }
-
-      if (matches)
+      if (translatedKey[i] != StarTreeConstants.STAR_VALUE)
       {
-        matchingKeys.put(dictionary.translate(config.getDimensions(), currentKey), idx);
+        constraints.add(getOffsets(i, translatedKey[i]));
       }
+    }
 
-      idx++;
+    BitSet matches = intersect(constraints);
+    for (int offset = matches.nextSetBit(0); offset >= 0; offset = matches.nextSetBit(offset + 1))
+    {
+      matchingKeys.put(dictionary.translate(config.getDimensions(), getKey(offset)), offset);
     }
 
     // If matching keys is empty, use record with least others!
     if (matchingKeys.isEmpty())
     {
-      idx = 0;
-      tmpBuffer.rewind();
+      constraints.clear();
+      for (int i = 0; i < numDimensions; i++)
+      {
+        BitSet candidates = new BitSet();
+        candidates.or(getOffsets(i, translatedKey[i]));
+        candidates.or(getOffsets(i, StarTreeConstants.STAR_VALUE));
+        candidates.or(getOffsets(i, StarTreeConstants.OTHER_VALUE));
+        constraints.add(candidates);
+      }
 
-      int leastNumOthers = config.getDimensions().size() + 1;
+      int leastNumOthers = numDimensions + 1;
       int leastOthersIdx = -1;
-      int[] leastOthersKey = null;
 
-      while (tmpBuffer.position() < tmpBuffer.limit())
+      BitSet candidates = intersect(constraints);
+      for (int offset = candidates.nextSetBit(0); offset >= 0; offset = candidates.nextSetBit(offset + 1))
       {
-        boolean matches = true;
         int currentNumOthers = 0;
-
-        for (int i = 0; i < config.getDimensions().size(); i++)
+        for (int i = 0; i < numDimensions; i++)
         {
-          Integer valueId = tmpBuffer.getInt();
-
-          currentKey[i] = valueId;
-
-          if (translatedKey[i] != valueId
-              && valueId != StarTreeConstants.STAR_VALUE
-              && valueId != StarTreeConstants.OTHER_VALUE)
-          {
-            matches = false;
-          }
-
-          if (valueId == StarTreeConstants.OTHER_VALUE)
+          if (getValueId(offset, i) == StarTreeConstants.OTHER_VALUE)
           {
             currentNumOthers++;
           }
         }
 
-        if (matches && currentNumOthers < leastNumOthers)
+        if (currentNumOthers < leastNumOthers)
         {
-          leastOthersKey = Arrays.copyOf(currentKey, currentKey.length);
           leastNumOthers = currentNumOthers;
-          leastOthersIdx = idx;
+          leastOthersIdx = offset;
         }
-
-        idx++;
       }
 
-      if (leastOthersKey == null)
+      if (leastOthersIdx == -1)
       {
         throw new IllegalStateException("Could not find alternative dimension combination for " + dimensionKey);
       }
 
-      matchingKeys.put(dictionary.translate(config.getDimensions(), leastOthersKey), leastOthersIdx);
+      matchingKeys.put(dictionary.translate(config.getDimensions(), getKey(leastOthersIdx)), leastOthersIdx);
     }
 
     return matchingKeys;
   }
+
+  private BitSet getOffsets(int dimension, int valueId)
+  {
+    BitSet offsets = invertedIndex.get(dimension).get(valueId);
+    return offsets == null ? EMPTY : offsets;
+  }
+
+  /** Intersects the bitmaps, smallest first, without modifying them; no bitmaps means every combination */
+  private BitSet intersect(List<BitSet> bitmaps)
+  {
+    BitSet result = new BitSet();
+
+    if (bitmaps.isEmpty())
+    {
+      result.set(0, numCombinations);
+      return result;
+    }
+
+    List<BitSet> sorted = new ArrayList<BitSet>(bitmaps);
+    Collections.sort(sorted, CARDINALITY_COMPARATOR);
+
+    result.or(sorted.get(0));
+    for (int i = 1; i < sorted.size() && !result.isEmpty(); i++)
+    {
+      result.and(sorted.get(i));
+    }
+
+    return result;
+  }
 }
@@ -1,11 +1,9 @@
 package com.linkedin.thirdeye.impl.storage;
 
 import com.linkedin.thirdeye.api.MetricSchema;
-import com.linkedin.thirdeye.api.MetricSpec;
 import com.linkedin.thirdeye.api.MetricTimeSeries;
 import com.linkedin.thirdeye.api.StarTreeConfig;
 import com.linkedin.thirdeye.api.TimeRange;
-import com.linkedin.thirdeye.impl.NumberUtils;
 
 import java.nio.ByteBuffer;
 import java.util.Collection;
@@ -64,38 +62,37 @@ public class MetricStoreImmutableImpl implements MetricStore, MetricStoreListene
   {
     MetricTimeSeries timeSeries = new MetricTimeSeries(metricSchema);
 
-    Set<Long> times = getTimes(timeRange);
+    long queryStart = timeRange == null ? getMinTime() : timeRange.getStart();
+    long queryEnd = timeRange == null ? getMaxTime() : timeRange.getEnd();
+    int bucketSize = Long.SIZE / 8 + metricSchema.getRowSizeInBytes();
 
     for (Map.Entry<TimeRange, List<ByteBuffer>> entry : buffers.entrySet())
     {
       TimeRange bufferTimeRange = entry.getKey();
 
-      int rowSize = bufferTimeRange.totalBuckets() * (Long.SIZE / 8 + metricSchema.getRowSizeInBytes());
-
-      for (ByteBuffer originalBuffer : entry.getValue())
+      if (bufferTimeRange.getStart() < 0 || bufferTimeRange.getEnd() < queryStart || bufferTimeRange.getStart() > queryEnd)
       {
-        ByteBuffer buffer = originalBuffer.duplicate();
+        continue;
+      }
+
+      // Each row has one bucket per time in the buffer's range, so only the overlapping buckets are read
+      int rowSize = bufferTimeRange.totalBuckets() * bucketSize;
+      int firstBucket = (int) (Math.max(queryStart, bufferTimeRange.getStart()) - bufferTimeRange.getStart());
+      int lastBucket = (int) (Math.min(queryEnd, bufferTimeRange.getEnd()) - bufferTimeRange.getStart());
 
-        if (bufferTimeRange.getStart() >= 0 && (timeRange == null || !bufferTimeRange.isDisjoint(timeRange)))
+      for (ByteBuffer buffer : entry.getValue())
+      {
+        for (Integer logicalOffset : logicalOffsets)
         {
-          for (Integer logicalOffset : logicalOffsets)
+          int offset = logicalOffset * rowSize + firstBucket * bucketSize;
+
+          for (int i = firstBucket; i <= lastBucket; i++, offset += bucketSize)
           {
-            buffer.mark();
-            buffer.position(logicalOffset * rowSize);
+            long time = buffer.getLong(offset);
 
-            for (int i = 0; i < bufferTimeRange.totalBuckets(); i++)
+            if (time >= queryStart && time <= queryEnd)
             {
-              Long time = buffer.getLong();
-
-              for (MetricSpec metricSpec : config.getMetrics())
-              {
-                Number value = NumberUtils.readFromBuffer(buffer, metricSpec.getType());
-
-                if (times.contains(time))
-                {
-                  timeSeries.increment(time, metricSpec.getName(), value);
-                }
-              }
+              timeSeries.increment(time, buffer, offset + Long.SIZE / 8);
             }
           }
         }
@@ -145,28 +142,4 @@ public class MetricStoreImmutableImpl implements MetricStore, MetricStoreListene
     this.minTime.set(Collections.min(buffers.keySet()));
     this.maxTime.set(Collections.max(buffers.keySet()));
   }
-
-  private Set<Long> getTimes(TimeRange timeRange)
-  {
-    if (timeRange != null)
-    {
-      Set<Long> times = new HashSet<Long>();
-      for (long i = timeRange.getStart(); i <= timeRange.getEnd(); i++)
-      {
-        times.add(i);
-      }
-      return times;
-    }
-    else
-    {
-      Set<Long> times = new HashSet<Long>();
-      for (long i = getMinTime(); i <= getMaxTime(); i++)
-      {
-        times.add(i);
-      }
-      return times;
-    }
-  }
-
-
 }
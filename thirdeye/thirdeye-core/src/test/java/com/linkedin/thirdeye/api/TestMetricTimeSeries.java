@@ -0,0 +1,112 @@
+package com.linkedin.thirdeye.api;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestMetricTimeSeries
+{
+  private MetricSchema schema;
+
+  @BeforeClass
+  public void beforeClass()
+  {
+    schema = new MetricSchema(
+        Arrays.asList("s", "i", "l", "f", "d"),
+        Arrays.asList(MetricType.SHORT, MetricType.INT, MetricType.LONG, MetricType.FLOAT, MetricType.DOUBLE));
+  }
+
+  @Test
+  public void testIncrement_manyTimeWindows()
+  {
+    MetricTimeSeries timeSeries = new MetricTimeSeries(schema);
+    Set<Long> times = new HashSet<Long>();
+
+    for (long time = 1000; time < 2000; time++)
+    {
+      timeSeries.increment(time, "i", 1);
+      timeSeries.increment(time, "i", 2);
+      times.add(time);
+    }
+
+    Assert.assertEquals(timeSeries.getTimeWindowSet(), times);
+    Assert.assertEquals(timeSeries.get(1500L, "i"), 3);
+    Assert.assertEquals(timeSeries.get(1500L, "l"), 0L);
+    Assert.assertEquals(timeSeries.get(2000L, "i"), 0);
+    Assert.assertEquals(timeSeries.getMetricSums()[1], 3000);
+  }
+
+  @Test
+  public void testIncrement_narrowsToMetricType()
+  {
+    MetricTimeSeries timeSeries = new MetricTimeSeries(schema);
+
+    timeSeries.set(0, "s", Short.MAX_VALUE);
+    timeSeries.increment(0, "s", 1);
+    timeSeries.set(0, "i", Integer.MAX_VALUE);
+    timeSeries.increment(0, "i", 1);
+    timeSeries.increment(0, "f", 0.1);
+
+    Assert.assertEquals(timeSeries.get(0, "s"), Short.MIN_VALUE);
+    Assert.assertEquals(timeSeries.get(0, "i"), Integer.MIN_VALUE);
+    Assert.assertEquals(timeSeries.get(0, "f"), 0.1f);
+  }
+
+  @Test
+  public void testIncrement_fromBuffer()
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + schema.getRowSizeInBytes());
+    buffer.position(4);
+    buffer.putShort((short) 1).putInt(2).putLong(3L).putFloat(4.0f).putDouble(5.0);
+
+    MetricTimeSeries timeSeries = new MetricTimeSeries(schema);
+    timeSeries.increment(7, buffer, 4);
+    timeSeries.increment(7, buffer, 4);
+
+    Assert.assertEquals(timeSeries.getMetricSums(), new Number[] { 2, 4, 6L, 8.0f, 10.0 });
+  }
+
+  @Test
+  public void testToBytes_roundTrip() throws Exception
+  {
+    MetricTimeSeries timeSeries = new MetricTimeSeries(schema);
+
+    for (long time = 0; time < 20; time++)
+    {
+      for (String name : schema.getNames())
+      {
+        timeSeries.set(time, name, time * 10);
+      }
+    }
+
+    MetricTimeSeries copy = MetricTimeSeries.fromBytes(timeSeries.toBytes(), schema);
+
+    Assert.assertEquals(copy, timeSeries);
+    for (String name : schema.getNames())
+    {
+      Assert.assertEquals(copy.get(13L, name), timeSeries.get(13L, name));
+    }
+  }
+
+  @Test
+  public void testAggregate_timeRange()
+  {
+    MetricTimeSeries source = new MetricTimeSeries(schema);
+    for (long time = 0; time < 10; time++)
+    {
+      source.set(time, "l", 1L);
+    }
+
+    MetricTimeSeries timeSeries = new MetricTimeSeries(schema);
+    timeSeries.aggregate(source, new TimeRange(2L, 4L));
+    timeSeries.aggregate(source, new TimeRange(4L, 5L));
+
+    Assert.assertEquals(timeSeries.getTimeWindowSet(), new HashSet<Long>(Arrays.asList(2L, 3L, 4L, 5L)));
+    Assert.assertEquals(timeSeries.get(4L, "l"), 2L);
+  }
+}
@@ -23,10 +23,16 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 
 public class TestStarTreeImpl
 {
@@ -131,6 +137,94 @@ public class TestStarTreeImpl
     Assert.assertEquals(aValues, expectedValues);
   }
 
+  @Test
+  public void testGetDimensionValues_parallel() throws Exception
+  {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try
+    {
+      StarTreeImpl starTreeImpl = (StarTreeImpl) starTree;
+      starTreeImpl.setQueryPool(pool, 2);
+      long leavesQueried = starTreeImpl.getLeavesQueried();
+
+      Assert.assertEquals(starTree.getDimensionValues("A", null),
+                          new HashSet<String>(Arrays.asList("A0", "A1", "AX", "?")));
+      Assert.assertEquals(starTree.getDimensionValues("C", null),
+                          new HashSet<String>(Arrays.asList("C0", "C1", "C2", "C3", "C4", "C5", "C6", "C7", "CX", "?")));
+      Assert.assertTrue(starTreeImpl.getLeavesQueried() > leavesQueried + 1);
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAdd_concurrentBatches() throws Exception
+  {
+    final StarTree concurrentTree = new StarTreeImpl(config);
+    concurrentTree.open();
+
+    int numThreads = 4;
+    final int recordsPerThread = 250;
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try
+    {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < numThreads; t++)
+      {
+        final int threadId = t;
+        futures.add(executorService.submit(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            List<StarTreeRecord> batch = new ArrayList<StarTreeRecord>();
+            for (int i = 0; i < recordsPerThread; i++)
+            {
+              MetricTimeSeries ts = new MetricTimeSeries(metricSchema);
+              ts.set(i % 10, "M", 1);
+
+              batch.add(new StarTreeRecordImpl.Builder()
+                      .setDimensionKey(getDimensionKey("A" + threadId, "B" + (i % 4), "C" + (i % 8)))
+                      .setMetricTimeSeries(ts)
+                      .build(config));
+
+              if (batch.size() == 10)
+              {
+                concurrentTree.add(batch);
+                batch = new ArrayList<StarTreeRecord>();
+              }
+            }
+            concurrentTree.add(batch);
+          }
+        }));
+      }
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+    }
+    finally
+    {
+      executorService.shutdown();
+    }
+
+    StarTreeQueryImpl.Builder queryBuilder = new StarTreeQueryImpl.Builder();
+    queryBuilder.setTimeRange(new TimeRange(0L, 10L));
+
+    queryBuilder.setDimensionKey(getDimensionKey("*", "*", "*"));
+    MetricTimeSeries result = concurrentTree.getTimeSeries(queryBuilder.build(config));
+    Assert.assertEquals(result.getMetricSums()[0].intValue(), numThreads * recordsPerThread);
+
+    queryBuilder.setDimensionKey(getDimensionKey("A1", "*", "*"));
+    result = concurrentTree.getTimeSeries(queryBuilder.build(config));
+    Assert.assertEquals(result.getMetricSums()[0].intValue(), recordsPerThread);
+
+    concurrentTree.close();
+  }
+
   @Test
   public void testSerialization() throws Exception
   {
@@ -105,6 +105,24 @@ public class TestDimensionStore
     Map<DimensionKey, Integer> result = dimensionStore.findMatchingKeys(searchKey);
 
     Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.keySet().iterator().next(), new DimensionKey(new String[] {"?", "BX", "CX"}));
+
+    checkLogicalOffsets(result);
+  }
+
+  @Test
+  public void testFindMatchingKeys_noCombination()
+  {
+    DimensionKey searchKey = new DimensionKey(new String[] {
+            "A0",
+            "B1",
+            StarTreeConstants.STAR
+    }); // no combination has both A0 and B1, expect "?", "?", "?"
+
+    Map<DimensionKey, Integer> result = dimensionStore.findMatchingKeys(searchKey);
+
+    Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.keySet().iterator().next(), new DimensionKey(new String[] {"?", "?", "?"}));
 
     checkLogicalOffsets(result);
   }
@@ -13,6 +13,8 @@ public class ThirdEyeKafkaConfig
   private static final TimeGranularity DEFAULT_PERSIST_INTERVAL = new TimeGranularity(15, TimeUnit.MINUTES);
   private static final String DEFAULT_GROUP_ID = "THIRDEYE";
   private static final DateTime DEFAULT_START_TIME = new DateTime(0);
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+  private static final long DEFAULT_BATCH_TIMEOUT_MILLIS = 100;
 
   private String zkAddress;
   private String topicName;
@@ -21,6 +23,8 @@ public class ThirdEyeKafkaConfig
   private String decoderClass = DEFAULT_DECODER_CLASS;
   private TimeGranularity persistInterval = DEFAULT_PERSIST_INTERVAL;
   private DateTime startTime = DEFAULT_START_TIME;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private long batchTimeoutMillis = DEFAULT_BATCH_TIMEOUT_MILLIS;
 
   private Properties decoderConfig = new Properties();
   private Properties consumerConfig = new Properties();
@@ -122,4 +126,30 @@ public class ThirdEyeKafkaConfig
   {
     this.startTime = startTime;
   }
+
+  /** Maximum number of decoded records added to the star tree at once */
+  @JsonProperty
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  @JsonProperty
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  /** A partial batch is added to the star tree when no message arrives within this time */
+  @JsonProperty
+  public long getBatchTimeoutMillis()
+  {
+    return batchTimeoutMillis;
+  }
+
+  @JsonProperty
+  public void setBatchTimeoutMillis(long batchTimeoutMillis)
+  {
+    this.batchTimeoutMillis = batchTimeoutMillis;
+  }
 }
@@ -6,6 +6,7 @@ import com.linkedin.thirdeye.impl.storage.DataUpdateManager;
 import kafka.consumer.Consumer;
 import kafka.consumer.ConsumerConfig;
 import kafka.consumer.ConsumerIterator;
+import kafka.consumer.ConsumerTimeoutException;
 import kafka.consumer.KafkaStream;
 import kafka.javaapi.consumer.ConsumerConnector;
 import kafka.message.MessageAndMetadata;
@@ -99,6 +100,8 @@ public class ThirdEyeKafkaConsumer {
       props.put("group.id", kafkaConfig.getGroupId());
       props.put("auto.commit.enable", "false");
       props.put("auto.offset.reset", "smallest");
+      // Wake up the event iterator to add a partial batch when the topic is idle
+      props.put("consumer.timeout.ms", Long.toString(kafkaConfig.getBatchTimeoutMillis()));
       kafka.consumer.ConsumerConfig consumerConfig = new ConsumerConfig(props);
       ConsumerConnector consumer = Consumer.createJavaConsumerConnector(consumerConfig);
       LOG.info("Configuring kafka with {}", props);
@@ -162,8 +165,13 @@ public class ThirdEyeKafkaConsumer {
     @Override
     public void run() {
       ConsumerIterator<byte[], byte[]> itr = stream.iterator();
-      while (isStarted.get() && itr.hasNext()) {
+      List<StarTreeRecord> batch = new ArrayList<>(kafkaConfig.getBatchSize());
+      while (isStarted.get()) {
         try {
+          if (!itr.hasNext()) {
+            break;
+          }
+
           // Consume
           MessageAndMetadata<byte[], byte[]> next = itr.next();
           long currentTime = System.currentTimeMillis();
@@ -184,26 +192,50 @@ public class ThirdEyeKafkaConsumer {
             continue;
           }
 
-          // Add record
-          lock.readLock().lock(); // n.b. we are locking tree w.r.t clearing, not adding new records
-          try {
-            starTree.add(record);
-            stats.getRecordsAdded().mark();
-          } finally {
-            lock.readLock().unlock();
+          batch.add(record);
+          if (batch.size() >= kafkaConfig.getBatchSize()) {
+            addBatch(batch);
           }
+        } catch (ConsumerTimeoutException e) {
+          // No message within the batch timeout, add what has been consumed so far
+          addBatch(batch);
+        } catch (Exception e) {
+          String collection = starTree.getConfig().getCollection();
+          LOG.error("Error consuming message from kafka for {}", collection, e);
+        }
+      }
+      addBatch(batch);
+    }
+
+    private void addBatch(List<StarTreeRecord> batch) {
+      if (batch.isEmpty()) {
+        return;
+      }
 
-          // Update lag / data time stats
+      try {
+        // Add records
+        lock.readLock().lock(); // n.b. we are locking tree w.r.t clearing, not adding new records
+        try {
+          starTree.add(batch);
+          stats.getRecordsAdded().mark(batch.size());
+        } finally {
+          lock.readLock().unlock();
+        }
+
+        // Update lag / data time stats
+        for (StarTreeRecord record : batch) {
           if (!record.getMetricTimeSeries().getTimeWindowSet().isEmpty()) {
             long maxTimeMillis = getMaxCollectionTimeMillis(record.getMetricTimeSeries());
             if (maxTimeMillis > stats.getDataTimeMillis().get()) {
               stats.getDataTimeMillis().set(maxTimeMillis);
             }
           }
-        } catch (Exception e) {
-          String collection = starTree.getConfig().getCollection();
-          LOG.error("Error consuming message from kafka for {}", collection, e);
         }
+      } catch (Exception e) {
+        String collection = starTree.getConfig().getCollection();
+        LOG.error("Error adding {} records from kafka for {}", batch.size(), collection, e);
+      } finally {
+        batch.clear();
       }
     }
   }
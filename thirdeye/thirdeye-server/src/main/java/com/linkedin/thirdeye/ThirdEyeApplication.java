@@ -30,6 +30,7 @@ import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 
 public class ThirdEyeApplication extends Application<ThirdEyeApplication.Config>
@@ -73,7 +74,30 @@ public class ThirdEyeApplication extends Application<ThirdEyeApplication.Config>
                        .scheduledExecutorService("anomaly_detection_task_scheduler")
                        .build();
 
-    final StarTreeManager starTreeManager = new StarTreeManagerImpl();
+    final StarTreeManager starTreeManager;
+    if (config.getLeafQueryParallelism() > 1)
+    {
+      final ForkJoinPool leafQueryPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+      environment.lifecycle().manage(new Managed()
+      {
+        @Override
+        public void start() throws Exception
+        {
+          // NOP
+        }
+
+        @Override
+        public void stop() throws Exception
+        {
+          leafQueryPool.shutdown();
+        }
+      });
+      starTreeManager = new StarTreeManagerImpl(leafQueryPool, config.getLeafQueryParallelism());
+    }
+    else
+    {
+      starTreeManager = new StarTreeManagerImpl();
+    }
 
     final DataUpdateManager dataUpdateManager = new DataUpdateManager(rootDir);
 
@@ -172,6 +196,8 @@ public class ThirdEyeApplication extends Application<ThirdEyeApplication.Config>
 
     private TimeGranularity anomalyDetectionInterval;
 
+    private int leafQueryParallelism = 1;
+
     public void setRootDir(String rootDir)
     {
       this.rootDir = rootDir;
@@ -192,6 +218,11 @@ public class ThirdEyeApplication extends Application<ThirdEyeApplication.Config>
       this.anomalyDetectionInterval = anomalyDetectionInterval;
     }
 
+    public void setLeafQueryParallelism(int leafQueryParallelism)
+    {
+      this.leafQueryParallelism = leafQueryParallelism;
+    }
+
     @JsonProperty
     public String getRootDir()
     {
@@ -214,6 +245,13 @@ public class ThirdEyeApplication extends Application<ThirdEyeApplication.Config>
     {
       return anomalyDetectionInterval;
     }
+
+    /** The maximum number of leaf reads one query may run in parallel (1 reads leaves serially) */
+    @JsonProperty
+    public int getLeafQueryParallelism()
+    {
+      return leafQueryParallelism;
+    }
   }
 
   public static void main(String[] args) throws Exception